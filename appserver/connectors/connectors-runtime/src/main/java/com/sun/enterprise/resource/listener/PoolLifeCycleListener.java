@@ -143,4 +143,10 @@ public interface PoolLifeCycleListener {
      */
     void connectionRequestDequeued();
 
+    /**
+     * indicates the time a connection request spent in the wait queue
+     * @param queueTimeInMillis time spent in the wait queue
+     */
+    void connectionRequestQueueTime(long queueTimeInMillis);
+
 }
@@ -53,6 +53,7 @@ import com.sun.enterprise.resource.listener.PoolLifeCycleListener;
 import com.sun.enterprise.resource.pool.datastructure.DataStructure;
 import com.sun.enterprise.resource.pool.datastructure.DataStructureFactory;
 import com.sun.enterprise.resource.pool.resizer.Resizer;
+import com.sun.enterprise.resource.pool.waitqueue.HandoffPoolWaitQueue;
 import com.sun.enterprise.resource.pool.waitqueue.PoolWaitQueue;
 import com.sun.enterprise.resource.pool.waitqueue.PoolWaitQueueFactory;
 import com.sun.enterprise.transaction.api.JavaEETransaction;
@@ -386,16 +387,7 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
             }
             if (result != null) {
                 // got one, return it
-                if (poolLifeCycleListener != null) {
-                    poolLifeCycleListener.connectionAcquired(result.getId());
-                    elapsedWaitTime = System.currentTimeMillis() - startTime;
-                    poolLifeCycleListener.connectionRequestServed(elapsedWaitTime);
-                    if (_logger.isLoggable( Level.FINE) ) {
-                        _logger.log(Level.FINE, "Resource Pool: elapsed time " +
-                                "(ms) to get connection for [" + spec + "] : " +
-                                elapsedWaitTime);
-                    }
-                }
+                resourceRequestServed(result, spec, startTime);
                 //got one - seems we are not doing validation or matching
                 //return it
                 break;
@@ -420,7 +412,20 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
                     }
                 }
 
-                if (!blocked) {
+                if (!blocked && waitQueue instanceof HandoffPoolWaitQueue) {
+                    //park on the wait-queue, a released resource is handed over directly
+                    try {
+                        result = waitForHandedOverResource((HandoffPoolWaitQueue) waitQueue,
+                                spec, alloc, remainingWaitTime);
+                    } catch (InterruptedException ex) {
+                        //Could be system shutdown.
+                        break;
+                    }
+                    if (result != null) {
+                        resourceRequestServed(result, spec, startTime);
+                        break;
+                    }
+                } else if (!blocked) {
                     //add to wait-queue
                     Object waitMonitor = new Object();
                     if (poolLifeCycleListener != null) {
@@ -492,6 +497,93 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
         return result;
     }
 
+    private void resourceRequestServed(ResourceHandle result, ResourceSpec spec, long startTime) {
+        if (poolLifeCycleListener != null) {
+            poolLifeCycleListener.connectionAcquired(result.getId());
+            long elapsedWaitTime = System.currentTimeMillis() - startTime;
+            poolLifeCycleListener.connectionRequestServed(elapsedWaitTime);
+            if (_logger.isLoggable( Level.FINE) ) {
+                _logger.log(Level.FINE, "Resource Pool: elapsed time " +
+                        "(ms) to get connection for [" + spec + "] : " +
+                        elapsedWaitTime);
+            }
+        }
+    }
+
+    /**
+     * Waits on the handoff wait-queue for a released resource.<br>
+     * The handed over resource is not part of the free list. It is matched and
+     * validated here, if it can not be used by this request it is put back into
+     * the pool and the next waiting request is notified.
+     *
+     * @param queue     handoff wait-queue of this pool
+     * @param spec      ResourceSpec
+     * @param alloc     ResourceAllocator
+     * @param waitTime  time to wait, 0 to wait indefinitely
+     * @return ResourceHandle handed over resource, null if none could be obtained,
+     *         in which case the caller retries
+     * @throws InterruptedException when the waiting thread is interrupted
+     */
+    private ResourceHandle waitForHandedOverResource(HandoffPoolWaitQueue queue, ResourceSpec spec,
+                                                     ResourceAllocator alloc, long waitTime)
+            throws InterruptedException {
+        if (poolLifeCycleListener != null) {
+            poolLifeCycleListener.connectionRequestQueued();
+        }
+        HandoffPoolWaitQueue.Waiter waiter = queue.enqueue();
+        //a resource might have been freed after this request last looked at the pool
+        if (ds.getFreeListSize() > 0) {
+            queue.signal();
+        }
+        ResourceHandle handle;
+        try {
+            logFine("Resource Pool: getting on handoff wait queue");
+            handle = queue.await(waiter, waitTime);
+        } finally {
+            if (poolLifeCycleListener != null) {
+                poolLifeCycleListener.connectionRequestDequeued();
+                poolLifeCycleListener.connectionRequestQueueTime(waiter.getQueueTime());
+            }
+        }
+        if (handle == null) {
+            return null;
+        }
+        if (_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE, "Resource Pool: resource handed over for [" + spec + "] : " + handle);
+        }
+
+        //a handed over resource goes through the same gateway as one taken from the pool
+        if (!gateway.allowed()) {
+            ds.returnResource(handle);
+            notifyWaitingThreads();
+            return null;
+        }
+        try {
+            if (handle.hasConnectionErrorOccurred() || !isConnectionValid(handle, alloc)) {
+                ds.removeResource(handle);
+                notifyWaitingThreads();
+                return null;
+            }
+            if (!matchConnection(handle, alloc) || handle.isShareable() != alloc.shareableWithinComponent()) {
+                ds.returnResource(handle);
+                notifyWaitingThreads();
+                return null;
+            }
+        } finally {
+            gateway.acquiredResource();
+        }
+
+        setResourceStateToBusy(handle);
+        if (maxConnectionUsage_ > 0) {
+            handle.incrementUsageCount();
+        }
+        if (poolLifeCycleListener != null) {
+            poolLifeCycleListener.connectionUsed(handle.getId());
+            poolLifeCycleListener.decrementNumConnFree();
+        }
+        return handle;
+    }
+
     /**
      * Overridden in AssocWithThreadResourcePool to fetch the resource
      * cached in the ThreadLocal
@@ -1054,13 +1146,18 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
 
     protected void freeResource(ResourceHandle resourceHandle) {
         if(cleanupResource(resourceHandle)) {
+            boolean handedOver = false;
             //Only when resource handle usage count is more than maxConnUsage
             if (maxConnectionUsage_ > 0 &&
                     resourceHandle.getUsageCount() >= maxConnectionUsage_) {
                  performMaxConnectionUsageOperation(resourceHandle);
             } else {
-                // Put it back to the free collection.
-                ds.returnResource(resourceHandle);
+                // Hand it over to the longest waiting request, if any.
+                // Else put it back to the free collection.
+                handedOver = handOverToWaitingThread(resourceHandle);
+                if (!handedOver) {
+                    ds.returnResource(resourceHandle);
+                }
                 //update the monitoring data
                 if (poolLifeCycleListener != null && !resourceHandle.getDestroyByLeakTimeOut()) {
                     poolLifeCycleListener.decrementConnectionUsed(resourceHandle.getId());
@@ -1069,9 +1166,23 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
             }
             //for both the cases of free.add and maxConUsageOperation, a free resource is added.
             // Hence notify waiting threads
-            notifyWaitingThreads();
+            if (!handedOver) {
+                notifyWaitingThreads();
+            }
         }
     }
+
+    /**
+     * Hands over a freed resource to the longest waiting request when the pool
+     * uses a handoff wait-queue.
+     *
+     * @param resourceHandle freed resource
+     * @return boolean indicating whether a waiting request took the resource
+     */
+    protected boolean handOverToWaitingThread(ResourceHandle resourceHandle) {
+        return waitQueue instanceof HandoffPoolWaitQueue &&
+                ((HandoffPoolWaitQueue) waitQueue).offer(resourceHandle);
+    }
     
     protected boolean cleanupResource(ResourceHandle handle) {
         boolean cleanupSuccessful = true;
@@ -1216,6 +1327,14 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
 
 
     protected void notifyWaitingThreads() {
+        if (waitQueue instanceof HandoffPoolWaitQueue) {
+            // wake up the first thread in the waitqueue, it will retry to get a resource.
+            // waiting threads update the queue monitoring data themselves.
+            if (!((HandoffPoolWaitQueue) waitQueue).signal()) {
+                logFine(" No waiting thread to signal");
+            }
+            return;
+        }
         // notify the first thread in the waitqueue
         Object waitMonitor = null;
         synchronized (waitQueue) {
@@ -211,4 +211,10 @@ public class PoolLifeCycleListenerRegistry implements PoolLifeCycleListener {
             listener.connectionRequestDequeued();
         }
     }
+
+    public void connectionRequestQueueTime(long queueTimeInMillis) {
+        for (PoolLifeCycleListener listener : poolListenersList) {
+            listener.connectionRequestQueueTime(queueTimeInMillis);
+        }
+    }
 }
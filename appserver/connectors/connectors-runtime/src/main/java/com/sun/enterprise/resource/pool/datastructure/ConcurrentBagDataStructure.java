@@ -0,0 +1,289 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.resource.pool.datastructure;
+
+import com.sun.enterprise.resource.ResourceHandle;
+import com.sun.enterprise.resource.allocator.ResourceAllocator;
+import com.sun.enterprise.resource.pool.ResourceHandler;
+import com.sun.appserv.connectors.internal.api.PoolingException;
+import com.sun.logging.LogDomains;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lock-free datastructure for pool.<br>
+ * All resources live in a shared bag (copy-on-write list, which is only modified
+ * when resources are created or destroyed). Each entry carries an atomic state, a
+ * resource is claimed by a compare-and-set of that state, hence borrow and return
+ * never take a shared lock.<br>
+ * Every thread also remembers the resources it returned most recently. A borrow
+ * first tries those, so that a thread which repeatedly gets and returns a
+ * connection usually gets the same one back without scanning the shared bag.
+ * Entries in the thread-local list can be stolen by other threads at any time,
+ * the state CAS decides the winner.<br>
+ * Supported parameter (<i>datastructure-parameters</i>) : the maximum number of
+ * recently used resources remembered per thread, defaults to 16.
+ */
+public class ConcurrentBagDataStructure implements DataStructure {
+
+    private static final int STATE_FREE = 0;
+    private static final int STATE_IN_USE = 1;
+    private static final int STATE_REMOVED = -1;
+
+    private static final int DEFAULT_THREAD_LIST_SIZE = 16;
+
+    private final CopyOnWriteArrayList<BagEntry> sharedList = new CopyOnWriteArrayList<BagEntry>();
+    private final ConcurrentHashMap<ResourceHandle, BagEntry> entries =
+            new ConcurrentHashMap<ResourceHandle, BagEntry>();
+    private final ThreadLocal<ArrayList<BagEntry>> threadList = new ThreadLocal<ArrayList<BagEntry>>() {
+        @Override
+        protected ArrayList<BagEntry> initialValue() {
+            return new ArrayList<BagEntry>(threadListSize);
+        }
+    };
+
+    //number of resources created or being created, never exceeds maxSize
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private final int threadListSize;
+    private volatile int maxSize;
+
+    private final ResourceHandler handler;
+
+    protected final static Logger _logger =
+            LogDomains.getLogger(ConcurrentBagDataStructure.class, LogDomains.RSR_LOGGER);
+
+    public ConcurrentBagDataStructure(String parameters, int maxSize,
+                                      ResourceHandler handler, String strategyClass) {
+        this.maxSize = maxSize;
+        this.handler = handler;
+        this.threadListSize = parseThreadListSize(parameters);
+        if (_logger.isLoggable(Level.FINEST)) {
+            _logger.log(Level.FINEST, "pool.datastructure.concurrentbagds.init");
+        }
+    }
+
+    private static int parseThreadListSize(String parameters) {
+        if (parameters != null && parameters.trim().length() > 0) {
+            try {
+                int size = Integer.parseInt(parameters.trim());
+                if (size > 0) {
+                    return size;
+                }
+            } catch (NumberFormatException nfe) {
+                if (_logger.isLoggable(Level.FINE)) {
+                    _logger.log(Level.FINE, "Invalid datastructure-parameters [" + parameters +
+                            "], using default thread-local list size " + DEFAULT_THREAD_LIST_SIZE);
+                }
+            }
+        }
+        return DEFAULT_THREAD_LIST_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int addResource(ResourceAllocator allocator, int count) throws PoolingException {
+        int numResAdded = 0;
+        for (int i = 0; i < count && reserveSlot(); i++) {
+            try {
+                ResourceHandle handle = handler.createResource(allocator);
+                BagEntry entry = new BagEntry(handle);
+                entries.put(handle, entry);
+                sharedList.add(entry);
+                freeCount.incrementAndGet();
+                numResAdded++;
+            } catch (Exception e) {
+                reserved.decrementAndGet();
+                PoolingException pe = new PoolingException(e.getMessage());
+                pe.initCause(e);
+                throw pe;
+            }
+        }
+        return numResAdded;
+    }
+
+    private boolean reserveSlot() {
+        while (true) {
+            int current = reserved.get();
+            if (current >= maxSize) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResourceHandle getResource() {
+        //fast path : resources recently returned by this thread, most recent first.
+        ArrayList<BagEntry> recent = threadList.get();
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            BagEntry entry = recent.remove(i);
+            if (entry.claim()) {
+                return entry.handle;
+            }
+        }
+
+        //slow path : scan the shared bag
+        for (BagEntry entry : sharedList) {
+            if (entry.claim()) {
+                return entry.handle;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void removeResource(ResourceHandle resource) {
+        BagEntry entry = entries.remove(resource);
+        if (entry != null) {
+            if (entry.markRemoved()) {
+                freeCount.decrementAndGet();
+            }
+            sharedList.remove(entry);
+            reserved.decrementAndGet();
+            handler.deleteResource(resource);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void returnResource(ResourceHandle resource) {
+        BagEntry entry = entries.get(resource);
+        if (entry != null && entry.release()) {
+            ArrayList<BagEntry> recent = threadList.get();
+            if (recent.size() >= threadListSize) {
+                recent.remove(0);
+            }
+            recent.add(entry);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getFreeListSize() {
+        return freeCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void removeAll() {
+        for (BagEntry entry : sharedList) {
+            removeResource(entry.handle);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getResourcesSize() {
+        return sharedList.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<ResourceHandle> getAllResources() {
+        ArrayList<ResourceHandle> all = new ArrayList<ResourceHandle>(sharedList.size());
+        for (BagEntry entry : sharedList) {
+            all.add(entry.handle);
+        }
+        return all;
+    }
+
+    /**
+     * Holder of a pooled resource and its bag state.
+     */
+    private final class BagEntry {
+        private final ResourceHandle handle;
+        private final AtomicInteger state = new AtomicInteger(STATE_FREE);
+
+        BagEntry(ResourceHandle handle) {
+            this.handle = handle;
+        }
+
+        boolean claim() {
+            if (state.compareAndSet(STATE_FREE, STATE_IN_USE)) {
+                freeCount.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        boolean release() {
+            if (state.compareAndSet(STATE_IN_USE, STATE_FREE)) {
+                freeCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return true if the entry was free when it got removed
+         */
+        boolean markRemoved() {
+            return state.getAndSet(STATE_REMOVED) == STATE_FREE;
+        }
+    }
+}
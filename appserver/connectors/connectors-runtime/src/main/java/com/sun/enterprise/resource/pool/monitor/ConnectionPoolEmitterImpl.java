@@ -299,6 +299,16 @@ public class ConnectionPoolEmitterImpl implements PoolLifeCycleListener {
         poolProbeProvider.connectionRequestDequeuedEvent(poolName, appName, moduleName);
     }
 
+    /**
+     * Fires probe event related to the time a connection request spent in the
+     * given jdbc connection pool's wait queue.
+     *
+     * @param queueTimeInMillis time spent in the wait queue
+     */
+    public void connectionRequestQueueTime(long queueTimeInMillis) {
+        poolProbeProvider.connectionRequestQueueTimeEvent(poolName, appName, moduleName, queueTimeInMillis);
+    }
+
     private String getAppName(long resourceHandleId) {
 
         // if monitoring is disabled, avoid sending events
@@ -245,4 +245,18 @@ public abstract class ConnectionPoolProbeProvider {
      */
     public void connectionRequestDequeuedEvent(String poolName, String appName, String moduleName) {
     }
+
+    /**
+     * Emits probe event/notification that a connection request spent
+     * <code>queueTimeInMillis</code> in the wait queue of the given connection
+     * pool <code>poolName</code>
+     *
+     * @param poolName
+     * @param appName application-name in which the pool is defined
+     * @param moduleName module-name in which the pool is defined
+     * @param queueTimeInMillis time spent in the wait queue
+     */
+    public void connectionRequestQueueTimeEvent(String poolName, String appName, String moduleName,
+            long queueTimeInMillis) {
+    }
 }
@@ -297,4 +297,20 @@ public class ConnectorConnPoolProbeProvider extends ConnectionPoolProbeProvider
                                                @ProbeParam("appName") String appName,
                                                @ProbeParam("moduleName") String moduleName
                                                ) { }
+
+    /**
+     * Emits probe event/notification that a connection request spent
+     * <code>queueTimeInMillis</code> in the wait queue of the given jca
+     * connection pool <code>poolName</code>
+     *
+     * @param poolName
+     * @param queueTimeInMillis time spent in the wait queue
+     */
+    @Probe(name="connectionRequestQueueTimeEvent")
+    @Override
+    public void connectionRequestQueueTimeEvent(
+            @ProbeParam("poolName") String poolName,
+            @ProbeParam("appName") String appName,
+            @ProbeParam("moduleName") String moduleName,
+            @ProbeParam("queueTimeInMillis") long queueTimeInMillis) { }
 }
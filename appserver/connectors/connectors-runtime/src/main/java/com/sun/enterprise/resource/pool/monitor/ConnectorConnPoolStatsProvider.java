@@ -47,16 +47,20 @@ import org.glassfish.external.probe.provider.annotations.ProbeListener;
 import org.glassfish.external.probe.provider.annotations.ProbeParam;
 import org.glassfish.external.statistics.CountStatistic;
 import org.glassfish.external.statistics.RangeStatistic;
+import org.glassfish.external.statistics.StringStatistic;
 import org.glassfish.external.statistics.annotations.Reset;
 import org.glassfish.external.statistics.impl.CountStatisticImpl;
 import org.glassfish.external.statistics.impl.RangeStatisticImpl;
 import org.glassfish.external.statistics.impl.StatisticImpl;
+import org.glassfish.external.statistics.impl.StringStatisticImpl;
+import org.glassfish.flashlight.statistics.concurrent.LatencyHistogram;
 import org.glassfish.gmbal.AMXMetadata;
 import org.glassfish.gmbal.Description;
 import org.glassfish.gmbal.ManagedAttribute;
 import org.glassfish.gmbal.ManagedObject;
 import org.glassfish.resourcebase.resources.api.PoolInfo;
 
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -139,6 +143,12 @@ public class ConnectorConnPoolStatsProvider {
     private CountStatisticImpl waitQueueLength = new CountStatisticImpl(
             "WaitQueueLength", StatisticImpl.UNIT_COUNT, 
             "Number of connection requests in the queue waiting to be serviced.");    
+    private StringStatisticImpl connRequestQueueTime = new StringStatisticImpl(
+            "ConnRequestQueueTime", "List",
+            "Percentiles of the time connection requests spent in the wait queue, " +
+            "in milliseconds.");
+    private final LatencyHistogram queueTimeHistogram =
+            new LatencyHistogram(TimeUnit.HOURS.toMillis(1));
     private static final String JCA_PROBE_LISTENER = "glassfish:jca:connection-pool:";
 
     public ConnectorConnPoolStatsProvider(PoolInfo poolInfo, Logger logger) {
@@ -480,6 +490,7 @@ public class ConnectorConnPoolStatsProvider {
         averageConnWaitTime.reset();
         totalConnRequestWaitTime.reset();
         waitQueueLength.reset();        
+        queueTimeHistogram.reset();
     }
     
     /**
@@ -562,6 +573,27 @@ public class ConnectorConnPoolStatsProvider {
         }                        
     }
 
+    /**
+     * When a request leaves the wait queue, record the time it spent waiting.
+     */
+    @ProbeListener(JCA_PROBE_LISTENER + "connectionRequestQueueTimeEvent")
+    public void connectionRequestQueueTimeEvent(
+            @ProbeParam("poolName") String poolName,
+            @ProbeParam("appName") String appName,
+            @ProbeParam("moduleName") String moduleName,
+            @ProbeParam("queueTimeInMillis") long queueTimeInMillis
+            ) {
+
+        PoolInfo poolInfo = new PoolInfo(poolName, appName, moduleName);
+        if(this.poolInfo.equals(poolInfo)) {
+            if(logger.isLoggable(Level.FINEST)) {
+                logger.finest("Wait Queue time event received - " +
+                    "poolName = " + poolName);
+            }
+            queueTimeHistogram.record(queueTimeInMillis);
+        }
+    }
+
     protected PoolInfo getPoolInfo() {
         return poolInfo;
     }
@@ -707,4 +739,10 @@ public class ConnectorConnPoolStatsProvider {
     public CountStatistic getWaitQueueLength() {
         return waitQueueLength;
     }    
+
+    @ManagedAttribute(id="connrequestqueuetime")
+    public StringStatistic getConnRequestQueueTime() {
+        connRequestQueueTime.setCurrent(queueTimeHistogram.toString());
+        return connRequestQueueTime;
+    }
 }
@@ -0,0 +1,297 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.resource.pool.waitqueue;
+
+import com.sun.enterprise.resource.ResourceHandle;
+import com.sun.logging.LogDomains;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fair wait queue that hands a released resource directly to the longest waiting
+ * request.<br>
+ * Waiting threads are parked using <code>LockSupport</code> instead of waiting on a
+ * per-request monitor. Each thread reuses its own <code>Waiter</code>, so getting on the
+ * queue does not allocate a monitor object per request. A released resource is
+ * handed over by a CAS on the waiter's slot, hence a waiter that times out
+ * concurrently with a release can never lose the resource : either the CAS
+ * succeeds and the waiter consumes the resource, or the releasing thread moves on
+ * to the next waiter.<br>
+ * Plain monitor objects (as used by the pool's reconfig-wait-queue) are supported
+ * via the {@link PoolWaitQueue} methods so that this class can be used wherever
+ * the default wait queue is used.
+ */
+public class HandoffPoolWaitQueue implements PoolWaitQueue {
+
+    protected final static Logger _logger = LogDomains.getLogger(HandoffPoolWaitQueue.class, LogDomains.RSR_LOGGER);
+
+    private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<Object>();
+    //ConcurrentLinkedQueue.size() is O(n), keep a separate count
+    private final AtomicInteger length = new AtomicInteger();
+
+    private final ThreadLocal<Waiter> waiters = new ThreadLocal<Waiter>() {
+        @Override
+        protected Waiter initialValue() {
+            return new Waiter(Thread.currentThread());
+        }
+    };
+
+    public HandoffPoolWaitQueue() {
+        debug("Initializing handoff Pool Wait Queue");
+    }
+
+    /**
+     * Adds the calling thread to the tail of the queue.
+     *
+     * @return Waiter to be passed to {@link #await(Waiter, long)}
+     */
+    public Waiter enqueue() {
+        Waiter waiter = waiters.get();
+        waiter.reset();
+        addToQueue(waiter);
+        return waiter;
+    }
+
+    /**
+     * Parks the calling thread until a resource is handed over, the waiter is
+     * signalled or the wait time expires. The waiter is no longer on the queue
+     * when this method returns.
+     *
+     * @param waiter        Waiter returned by {@link #enqueue()}
+     * @param waitTimeInMillis maximum time to wait, 0 to wait indefinitely
+     * @return ResourceHandle handed over by a releasing thread, null if the waiter
+     *         was signalled without a resource, timed-out or interrupted.
+     * @throws InterruptedException when the waiting thread is interrupted
+     */
+    public ResourceHandle await(Waiter waiter, long waitTimeInMillis) throws InterruptedException {
+        long deadline = (waitTimeInMillis > 0) ?
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeInMillis) : 0;
+        while (!waiter.isCompleted()) {
+            if (Thread.interrupted()) {
+                if (cancel(waiter)) {
+                    throw new InterruptedException();
+                }
+                //completed concurrently, consume it and restore the interrupt status
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (deadline == 0) {
+                LockSupport.park(this);
+            } else {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    cancel(waiter);
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+        return waiter.consume();
+    }
+
+    /**
+     * Hands the resource over to the longest waiting request.
+     *
+     * @param handle released resource
+     * @return boolean indicating whether a waiter took the resource. When false, the
+     *         caller remains the owner of the resource.
+     */
+    public boolean offer(ResourceHandle handle) {
+        return complete(handle);
+    }
+
+    /**
+     * Wakes up the longest waiting request without handing over a resource
+     * so that it can retry (eg: pool capacity got freed).
+     *
+     * @return boolean indicating whether a waiter was signalled
+     */
+    public boolean signal() {
+        return complete(Waiter.SIGNALLED);
+    }
+
+    private boolean complete(Object item) {
+        Object o;
+        while ((o = queue.poll()) != null) {
+            length.decrementAndGet();
+            if (o instanceof Waiter) {
+                Waiter waiter = (Waiter) o;
+                if (waiter.complete(item)) {
+                    LockSupport.unpark(waiter.thread);
+                    return true;
+                }
+                //waiter gave up (timed-out), try the next one.
+            } else {
+                //plain monitor, can not accept a handed over resource.
+                synchronized (o) {
+                    o.notifyAll();
+                }
+                if (item == Waiter.SIGNALLED) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean cancel(Waiter waiter) {
+        if (waiter.cancel()) {
+            removeFromQueue(waiter);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getQueueLength() {
+        return length.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addToQueue(Object o) {
+        queue.offer(o);
+        length.incrementAndGet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean removeFromQueue(Object o) {
+        if (queue.remove(o)) {
+            length.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object remove() {
+        Object o = queue.poll();
+        if (o != null) {
+            length.decrementAndGet();
+        }
+        return o;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object peek() {
+        return queue.peek();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection getQueueContents() {
+        return queue;
+    }
+
+    protected void debug(String debugStatement) {
+        if (_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE, debugStatement);
+        }
+    }
+
+    /**
+     * A waiting resource request. Instances are owned by and reused for a
+     * single thread.
+     */
+    public static final class Waiter {
+
+        private static final Object WAITING = new Object();
+        private static final Object CANCELLED = new Object();
+        //waiter is woken up without a resource
+        private static final Object SIGNALLED = new Object();
+
+        private final Thread thread;
+        //WAITING, CANCELLED, SIGNALLED or the handed over ResourceHandle
+        private final AtomicReference<Object> slot = new AtomicReference<Object>(WAITING);
+        private long enqueueTime;
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        private void reset() {
+            enqueueTime = System.nanoTime();
+            slot.set(WAITING);
+        }
+
+        private boolean complete(Object value) {
+            return slot.compareAndSet(WAITING, value);
+        }
+
+        private boolean cancel() {
+            return slot.compareAndSet(WAITING, CANCELLED);
+        }
+
+        private boolean isCompleted() {
+            return slot.get() != WAITING;
+        }
+
+        private ResourceHandle consume() {
+            Object value = slot.get();
+            return (value instanceof ResourceHandle) ? (ResourceHandle) value : null;
+        }
+
+        /**
+         * @return time spent on the queue so far, in milliseconds
+         */
+        public long getQueueTime() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueueTime);
+        }
+    }
+}
@@ -40,6 +40,8 @@
 
 package com.sun.enterprise.deployment;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -297,6 +299,15 @@ public class Application extends CommonResourceBundleDescriptor
         return retVal; // new Application();
     }
 
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        entityManagerFactories = new HashMap<String, EntityManagerFactory>();
+        if (habitat != null) {
+            securityRoleMapperFactory = habitat.getService(SecurityRoleMapperFactory.class);
+        }
+    }
+
     /**
      * Returns the generated XML directory feturn the set of ejb references this ejb declares.
      */
@@ -51,6 +51,7 @@ import org.glassfish.deployment.common.DescriptorVisitor;
 import org.glassfish.api.deployment.archive.ArchiveType;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.zip.ZipEntry;
@@ -1008,5 +1009,13 @@ public class ConnectorDescriptor extends CommonResourceBundleDescriptor {
     public void addDefaultResourceName(String resourceName){
         defaultResourceNames.add(resourceName);
     }
+
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.connectorAnnotations = new OrderedSet<AnnotationInfo>();
+        this.configPropertyAnnotations = new HashMap<String, Set<AnnotationInfo>>();
+        this.configPropertyProcessedClasses = new HashSet<String>();
+    }
 }
 
@@ -67,7 +67,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 
 /**
@@ -96,6 +99,10 @@ public abstract class DeploymentDescriptorFile<T extends Descriptor> {
 	    new LocalStringManagerImpl(DeploymentDescriptorFile.class);        
 
     private ArchiveType archiveType;
+
+    // configured SAX parser factories, see getSAXParserFactory
+    private static final ConcurrentMap<List<Object>, SAXParserFactory> saxParserFactories =
+        new ConcurrentHashMap<List<Object>, SAXParserFactory>();
     
     /** Creates a new instance of DeploymentDescriptorFile */
     public DeploymentDescriptorFile() {
@@ -122,40 +129,17 @@ public abstract class DeploymentDescriptorFile<T extends Descriptor> {
         Thread.currentThread().setContextClassLoader(
             getClass().getClassLoader());
         try {
-            SAXParserFactory spf = SAXParserFactory.newInstance();
-
-            // set the namespace awareness
-            spf.setNamespaceAware(true);
-            
-	    // turn validation on for deployment descriptor XML files
-            spf.setValidating(validating);    
-
-	    // this feature is needed for backward compat with old DDs 
-	    // constructed by J2EE1.2 which used Java encoding names
-	    // such as ISO8859_1 etc.
-            
-            // this is a hack for a few days so people can continue runnning
-            // with crimson
-            if (spf.getClass().getName().indexOf("xerces")!=-1) {
-                spf.setFeature(
-                    "http://apache.org/xml/features/allow-java-encodings", true);
-            } else {
-                DOLUtils.getDefaultLogger().log(Level.WARNING, "modify your java command line to include the -Djava.endorsed.dirs option");
-            }
-	    
 	    try {
-                if (!validating) {
-                    // if we are not validating, let's not load the DTD
-                    if (getDeploymentDescriptorPath().indexOf(DescriptorConstants.WLS) != -1) {
-                        // and let's only turn it off for weblogic*.xml for now
-                        spf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-                    }
-                }
+                boolean loadExternalDtd = validating ||
+                    getDeploymentDescriptorPath().indexOf(DescriptorConstants.WLS) == -1;
+                SAXParserFactory spf = getSAXParserFactory(validating, loadExternalDtd);
 
-		// Validation part 2a: set the schema language if necessary            
-		spf.setFeature("http://apache.org/xml/features/validation/schema",validating);		
-	    
-            	SAXParser sp = spf.newSAXParser();
+                SAXParser sp;
+                // factories are shared, and newSAXParser is not guaranteed
+                // to be thread safe
+                synchronized (spf) {
+                    sp = spf.newSAXParser();
+                }
                 
                 // put the default schema for this deployment file type
                 String path = getDefaultSchemaSource();
@@ -190,6 +174,62 @@ public abstract class DeploymentDescriptorFile<T extends Descriptor> {
         }
         return null;
     }
+
+    /**
+     * Returns the configured SAXParserFactory for the given settings.
+     * Looking up and configuring a factory is expensive compared to
+     * creating a parser from it, so factories are created once per
+     * defining class loader and configuration and then reused for every
+     * descriptor. Must be called with the context class loader already
+     * set to the loader of this class.
+     *
+     * @param validating true if the parser should excercise DTD validation
+     * @param loadExternalDtd false if external DTDs should not be loaded
+     * @return the shared factory
+     */
+    private SAXParserFactory getSAXParserFactory(boolean validating,
+            boolean loadExternalDtd) throws Exception {
+        List<Object> key = Arrays.<Object>asList(getClass().getClassLoader(),
+            validating, loadExternalDtd);
+        SAXParserFactory spf = saxParserFactories.get(key);
+        if (spf != null) {
+            return spf;
+        }
+
+        spf = SAXParserFactory.newInstance();
+
+        // set the namespace awareness
+        spf.setNamespaceAware(true);
+
+        // turn validation on for deployment descriptor XML files
+        spf.setValidating(validating);
+
+        // this feature is needed for backward compat with old DDs
+        // constructed by J2EE1.2 which used Java encoding names
+        // such as ISO8859_1 etc.
+
+        // this is a hack for a few days so people can continue runnning
+        // with crimson
+        if (spf.getClass().getName().indexOf("xerces")!=-1) {
+            spf.setFeature(
+                "http://apache.org/xml/features/allow-java-encodings", true);
+        } else {
+            DOLUtils.getDefaultLogger().log(Level.WARNING, "modify your java command line to include the -Djava.endorsed.dirs option");
+        }
+
+        // if we are not validating, let's not load the DTD
+        // (only turned off for weblogic*.xml for now)
+        if (!loadExternalDtd) {
+            spf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        }
+
+        // Validation part 2a: set the schema language if necessary
+        spf.setFeature("http://apache.org/xml/features/validation/schema",validating);
+
+        SAXParserFactory existing = saxParserFactories.putIfAbsent(key, spf);
+        return existing == null ? spf : existing;
+    }
+
     /**
      * @return a DOM parser to read XML File into a DOM tree
      *
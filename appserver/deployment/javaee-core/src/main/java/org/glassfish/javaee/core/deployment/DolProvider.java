@@ -70,11 +70,13 @@ import org.glassfish.api.container.Sniffer;
 import org.glassfish.deployment.common.*;
 import org.glassfish.hk2.classmodel.reflect.Parser;
 import org.glassfish.hk2.classmodel.reflect.Types;
+import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.internal.api.ClassLoaderHierarchy;
 import org.glassfish.internal.deployment.ApplicationInfoProvider;
 import org.glassfish.internal.deployment.Deployment;
 import org.glassfish.internal.deployment.DeploymentTracing;
 import org.glassfish.internal.deployment.ExtendedDeploymentContext;
+import org.glassfish.loader.util.ASClassLoaderUtil;
 import org.jvnet.hk2.annotations.Service;
 import org.glassfish.hk2.api.PreDestroy;
 import org.xml.sax.SAXException;
@@ -87,7 +89,9 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.Collection;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -131,9 +135,20 @@ public class DolProvider implements ApplicationMetaDataProvider<Application>,
     @Inject
     ResourceValidator resourceValidator;
 
+    @Inject
+    ServiceLocator habitat;
+
     private static String WRITEOUT_XML = System.getProperty(
         "writeout.xml");
 
+    // keep a binary snapshot of the processed DOL and use it when
+    // loading unchanged applications, see DolSnapshot
+    private static final boolean DOL_SNAPSHOT = Boolean.getBoolean(
+        "org.glassfish.deployment.dolSnapshot");
+
+    // class loaders able to load the descriptor classes, lazily computed
+    private volatile List<ClassLoader> descriptorClassLoaders;
+
     final private static LocalStringManagerImpl localStrings = new LocalStringManagerImpl(DolProvider.class);
 
 
@@ -182,6 +197,34 @@ public class DolProvider implements ApplicationMetaDataProvider<Application>,
         
         long start = System.currentTimeMillis();
         Application application=null;
+
+        // a deployment plan rewrites the archive, never snapshot those
+        File snapshot = null;
+        String digest = null;
+        if (DOL_SNAPSHOT && deploymentPlan == null) {
+            snapshot = new File(dc.getScratchDir("xml"), DolSnapshot.FILE_NAME);
+            digest = DolSnapshot.digest(name, archiveType, xmlValidationLevel,
+                getSnapshotRoots(dc, params));
+            if (params.origin.isLoad()) {
+                application = DolSnapshot.read(snapshot, digest,
+                    getDescriptorClassLoaders(cl));
+            }
+            if (application != null) {
+                DolSnapshot.restore(application, cl);
+                application.setRegistrationName(name);
+                if (holder != null) {
+                    holder.app = application;
+                }
+
+                sourceArchive.removeExtraData(Types.class);
+                sourceArchive.removeExtraData(Parser.class);
+
+                Logger.getAnonymousLogger().log(Level.FINE, "DOL Loading time from snapshot " + (System.currentTimeMillis() - start));
+
+                return application;
+            }
+        }
+
         if (holder!=null) {
             application = holder.app;
 
@@ -223,9 +266,68 @@ public class DolProvider implements ApplicationMetaDataProvider<Application>,
 
         Logger.getAnonymousLogger().log(Level.FINE, "DOL Loading time" + (System.currentTimeMillis() - start));
 
+        if (snapshot != null) {
+            DolSnapshot.write(snapshot, digest, application);
+        }
+
         return application;
     }
 
+    /**
+     * Returns the files the processing of the application depends on : the
+     * application bits, its alternate descriptors and the libraries whose
+     * annotations may be processed with it, that is the libraries given at
+     * deployment and the domain lib/applibs and lib/ext directories.
+     */
+    private File[] getSnapshotRoots(DeploymentContext dc,
+            DeployCommandParameters params) {
+        List<File> roots = new ArrayList<File>();
+        roots.add(dc.getSourceDir());
+        if (dc instanceof ExtendedDeploymentContext) {
+            roots.add(((ExtendedDeploymentContext) dc).getAppAltDDDir());
+        }
+        File libDir = env.getLibPath();
+        roots.add(new File(libDir, "applibs"));
+        roots.add(new File(libDir, "ext"));
+        URL[] libraries = ASClassLoaderUtil.getDeployParamLibrariesAsURLs(
+            params.libraries(), env);
+        if (libraries != null) {
+            for (URL library : libraries) {
+                if (library != null) {
+                    roots.add(new File(library.getFile()));
+                }
+            }
+        }
+        return roots.toArray(new File[roots.size()]);
+    }
+
+    /**
+     * Returns the class loaders used to resolve the classes of a DOL
+     * snapshot. Descriptor implementations live next to the archivists
+     * that create them, so the loaders of all archivists are used, followed
+     * by the application class loader.
+     */
+    private List<ClassLoader> getDescriptorClassLoaders(ClassLoader cl) {
+        List<ClassLoader> loaders = descriptorClassLoaders;
+        if (loaders == null) {
+            Set<ClassLoader> result = new LinkedHashSet<ClassLoader>();
+            result.add(Application.class.getClassLoader());
+            result.add(getClass().getClassLoader());
+            for (Archivist archivist : habitat.getAllServices(Archivist.class)) {
+                result.add(archivist.getClass().getClassLoader());
+            }
+            for (ExtensionsArchivist archivist : habitat.getAllServices(ExtensionsArchivist.class)) {
+                result.add(archivist.getClass().getClassLoader());
+            }
+            result.remove(null);
+            loaders = new ArrayList<ClassLoader>(result);
+            descriptorClassLoaders = loaders;
+        }
+        List<ClassLoader> withApp = new ArrayList<ClassLoader>(loaders);
+        withApp.add(cl);
+        return withApp;
+    }
+
     public Application load(DeploymentContext dc) throws IOException {
         DeployCommandParameters params = dc.getCommandParameters(DeployCommandParameters.class);
         Application application = processDOL(dc);
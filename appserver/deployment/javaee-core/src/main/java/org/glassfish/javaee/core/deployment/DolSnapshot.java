@@ -0,0 +1,354 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package org.glassfish.javaee.core.deployment;
+
+import com.sun.appserv.server.util.Version;
+import com.sun.enterprise.deployment.Application;
+import com.sun.enterprise.deployment.BundleDescriptor;
+import com.sun.enterprise.deployment.util.DOLUtils;
+import org.glassfish.deployment.common.RootDeploymentDescriptor;
+import org.glassfish.deployment.common.SecurityRoleMapper;
+import org.glassfish.security.common.Role;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Binary snapshot of a fully processed deployment object graph.
+ *
+ * The snapshot is written once the descriptors and annotations of an
+ * application have been processed and is read back when the same,
+ * unchanged application is loaded again, typically on server restart,
+ * so that the archivists do not have to parse and process it again.
+ *
+ * A snapshot starts with a header made of a magic number, the snapshot
+ * format version and a digest of everything the processing depends on
+ * (server version, application name and type, validation level, the
+ * application bits and the libraries whose annotations are processed with
+ * them). It is followed by the serialized application and the
+ * role assignments made while reading its runtime descriptors. It is only used when the header matches exactly,
+ * any mismatch or read failure means the application is processed the
+ * regular way.
+ */
+final class DolSnapshot {
+
+    static final String FILE_NAME = "dol.snapshot";
+
+    private static final int MAGIC = 0x444f4c53;
+
+    // bump when the layout or the serialized form of the DOL changes
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Logger logger = DOLUtils.getDefaultLogger();
+
+    private DolSnapshot() {
+    }
+
+    /**
+     * Computes the digest of the given application bits and settings.
+     * Files are identified by their path, size and modification time,
+     * which is enough to notice a redeployment or an edited exploded
+     * directory without reading the contents.
+     *
+     * @param appName the application name
+     * @param archiveType the archive type of the application
+     * @param xmlValidationLevel the xml validation level in use
+     * @param roots the directories and files holding the application bits
+     * and its libraries, null or missing entries are ignored
+     * @return the hex encoded digest
+     */
+    static String digest(String appName, String archiveType,
+            String xmlValidationLevel, File... roots) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(md, Version.getFullVersion());
+        update(md, appName);
+        update(md, archiveType);
+        update(md, xmlValidationLevel);
+        for (File root : roots) {
+            if (root != null && root.exists()) {
+                update(md, root.getName());
+                digestTree(md, root, "");
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void digestTree(MessageDigest md, File file, String path) {
+        if (file.isDirectory()) {
+            String[] names = file.list();
+            if (names == null) {
+                return;
+            }
+            Arrays.sort(names);
+            for (String name : names) {
+                digestTree(md, new File(file, name), path + "/" + name);
+            }
+        } else {
+            update(md, path);
+            update(md, String.valueOf(file.length()));
+            update(md, String.valueOf(file.lastModified()));
+        }
+    }
+
+    private static void update(MessageDigest md, String value) {
+        md.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+    }
+
+    /**
+     * Writes the snapshot of the given application. The snapshot is
+     * written to a temporary file first so that a partially written
+     * snapshot is never picked up. Failures are not fatal, the previous
+     * snapshot if any is removed and the application will simply be
+     * processed again next time.
+     *
+     * @param snapshot the snapshot file
+     * @param digest the digest of the application, see digest
+     * @param application the fully processed application
+     */
+    static void write(File snapshot, String digest, Application application) {
+        File tmp = new File(snapshot.getParentFile(), snapshot.getName() + ".tmp");
+        try {
+            File dir = snapshot.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create directory " + dir.getAbsolutePath());
+            }
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(digest);
+                ObjectOutputStream oos = new ObjectOutputStream(out);
+                oos.writeObject(application);
+                oos.writeObject(getRoleAssignments(application));
+                oos.flush();
+            } finally {
+                out.close();
+            }
+            if (snapshot.exists() && !snapshot.delete()) {
+                throw new IOException("Cannot delete " + snapshot.getAbsolutePath());
+            }
+            if (!tmp.renameTo(snapshot)) {
+                throw new IOException("Cannot rename " + tmp.getAbsolutePath());
+            }
+        } catch (Exception e) {
+            // not all applications can be snapshotted, e.g. if some
+            // descriptor holds a non serializable value
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "Cannot write DOL snapshot for "
+                    + application.getRegistrationName(), e);
+            }
+            tmp.delete();
+            snapshot.delete();
+        }
+    }
+
+    /**
+     * Reads the application back from its snapshot.
+     *
+     * @param snapshot the snapshot file
+     * @param digest the digest of the application as it is now
+     * @param loaders the class loaders used to resolve the descriptor
+     * classes, tried in order
+     * @return the application or null if there is no usable snapshot
+     */
+    static Application read(File snapshot, String digest,
+            List<ClassLoader> loaders) {
+        if (!snapshot.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(snapshot)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                        || !digest.equals(in.readUTF())) {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine("DOL snapshot " + snapshot + " is stale");
+                    }
+                    return null;
+                }
+                ObjectInputStream ois = new SnapshotInputStream(in, loaders);
+                Application application = (Application) ois.readObject();
+                @SuppressWarnings("unchecked")
+                Map<String, List<Principal>> roleAssignments =
+                    (Map<String, List<Principal>>) ois.readObject();
+                assignRoles(application, roleAssignments);
+                return application;
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "Cannot read DOL snapshot " + snapshot, e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Role mappings read from the runtime descriptors are not kept in the
+     * DOL but registered with the application role mapper, so they are
+     * saved alongside it.
+     */
+    private static Map<String, List<Principal>> getRoleAssignments(
+            Application application) {
+        Map<String, List<Principal>> result = new HashMap<String, List<Principal>>();
+        SecurityRoleMapper mapper = application.getRoleMapper();
+        if (mapper == null) {
+            return result;
+        }
+        // makes the mapper account for all pending assignments
+        mapper.getRoleToSubjectMapping();
+        for (Iterator<?> roles = mapper.getRoles(); roles.hasNext();) {
+            Object next = roles.next();
+            Role role = (next instanceof Role) ? (Role) next : new Role(String.valueOf(next));
+            List<Principal> principals = new ArrayList<Principal>();
+            for (Enumeration<?> e = mapper.getUsersAssignedTo(role); e.hasMoreElements();) {
+                principals.add((Principal) e.nextElement());
+            }
+            for (Enumeration<?> e = mapper.getGroupsAssignedTo(role); e.hasMoreElements();) {
+                principals.add((Principal) e.nextElement());
+            }
+            result.put(role.getName(), principals);
+        }
+        return result;
+    }
+
+    private static void assignRoles(Application application,
+            Map<String, List<Principal>> roleAssignments) {
+        if (roleAssignments.isEmpty()) {
+            return;
+        }
+        SecurityRoleMapper mapper = application.getRoleMapper();
+        if (mapper == null) {
+            throw new IllegalStateException("No role mapper for " + application.getName());
+        }
+        for (Map.Entry<String, List<Principal>> entry : roleAssignments.entrySet()) {
+            Role role = new Role(entry.getKey());
+            for (Principal principal : entry.getValue()) {
+                mapper.assignRole(principal, role, application);
+            }
+        }
+    }
+
+    /**
+     * Restores the state that is not part of the snapshot.
+     *
+     * @param application the application read from the snapshot
+     * @param cl the class loader of the application
+     */
+    static void restore(Application application, ClassLoader cl) {
+        application.setClassLoader(cl);
+        for (RootDeploymentDescriptor extension : application.getExtensionsDescriptors()) {
+            extension.setClassLoader(cl);
+        }
+        for (BundleDescriptor bundle : application.getBundleDescriptors()) {
+            bundle.setClassLoader(cl);
+            for (RootDeploymentDescriptor extension : bundle.getExtensionsDescriptors()) {
+                extension.setClassLoader(cl);
+            }
+        }
+    }
+
+    /**
+     * Descriptor classes are spread over several modules, so classes are
+     * resolved against a list of class loaders rather than the caller's.
+     */
+    private static final class SnapshotInputStream extends ObjectInputStream {
+
+        private final List<ClassLoader> loaders;
+
+        SnapshotInputStream(InputStream in, List<ClassLoader> loaders)
+                throws IOException {
+            super(in);
+            this.loaders = loaders;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            for (ClassLoader loader : loaders) {
+                try {
+                    return Class.forName(desc.getName(), false, loader);
+                } catch (ClassNotFoundException e) {
+                    // try the next one
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
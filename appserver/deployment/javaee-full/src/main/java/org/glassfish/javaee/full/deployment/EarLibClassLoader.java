@@ -50,6 +50,10 @@ import com.sun.enterprise.loader.ASURLClassLoader;
 public class EarLibClassLoader extends ASURLClassLoader
 {
 
+    static {
+        registerAsParallelCapable();
+    }
+
     public EarLibClassLoader(URL[] urls, ClassLoader classLoader) {
         super(classLoader); 
 
@@ -300,12 +300,15 @@ public interface EjbContainer extends ConfigBeanProxy, PropertyBag, ConfigExtens
      * nru
      *     policy tries to pick 'not recently used' instances and is a
      *     pseudo-random selection process.
+     * sampled
+     *     picks the least recently accessed of a few sampled instances and
+     *     writes passivated state to the store in the background.
      *
      * @return possible object is
      *         {@link String }
      */
     @Attribute (defaultValue="nru")
-    @Pattern(regexp="(nru|fifo|lru)")
+    @Pattern(regexp="(nru|fifo|lru|sampled)")
     String getVictimSelectionPolicy();
 
     /**
@@ -43,6 +43,7 @@ package com.sun.ejb;
 import java.lang.reflect.Method;
 
 import com.sun.ejb.containers.interceptors.InterceptorManager;
+import com.sun.ejb.containers.interceptors.MethodInvoker;
 import com.sun.enterprise.security.ee.CachedPermission;
 import org.glassfish.ejb.deployment.descriptor.EjbRemovalInfo;
 
@@ -80,6 +81,9 @@ public class InvocationInfo {
     // correspond to ejb interface methods.
     public Method     targetMethod1;
     public Method     targetMethod2;
+
+    // Bound invoker for targetMethod1, set when the bean uses direct dispatch
+    public MethodInvoker targetInvoker1;
     public boolean    ejbIntfOverride;
 
     public boolean    flushEnabled;
@@ -109,6 +109,7 @@ import com.sun.ejb.MethodLockInfo;
 import com.sun.ejb.codegen.EjbOptionalIntfGenerator;
 import com.sun.ejb.codegen.ServiceInterfaceGenerator;
 import com.sun.ejb.containers.interceptors.InterceptorManager;
+import com.sun.ejb.containers.interceptors.MethodInvoker;
 import com.sun.ejb.containers.interceptors.SystemInterceptorProxy;
 import com.sun.ejb.containers.util.MethodMap;
 import com.sun.ejb.monitoring.probes.EjbCacheProbeProvider;
@@ -158,6 +159,7 @@ import org.glassfish.ejb.deployment.descriptor.EjbInitInfo;
 import org.glassfish.ejb.deployment.descriptor.EjbMessageBeanDescriptor;
 import org.glassfish.ejb.deployment.descriptor.EjbSessionDescriptor;
 import org.glassfish.ejb.deployment.descriptor.ScheduledTimerDescriptor;
+import org.glassfish.ejb.security.application.EJBSecurityManager;
 import org.glassfish.ejb.spi.WSEjbEndpointRegistry;
 import org.glassfish.enterprise.iiop.api.GlassFishORBHelper;
 import org.glassfish.enterprise.iiop.api.ProtocolManager;
@@ -289,6 +291,14 @@ public abstract class BaseContainer
 
     protected static final String SINGLETON_BEAN_POOL_PROP = "singleton-bean-pool";
 
+    // glassfish-ejb-jar.xml <enterprise-beans><property> that selects the
+    // StripedPool for stateless session and message-driven bean pools
+    protected static final String STRIPED_BEAN_POOL_PROP = "striped-bean-pool";
+
+    // glassfish-ejb-jar.xml <enterprise-beans><property> that binds business
+    // and around-invoke methods to MethodHandles when the container starts
+    protected static final String DIRECT_DISPATCH_PROP = "direct-dispatch";
+
     protected ClassLoader loader = null;
     protected Class ejbClass = null;
     protected Class sfsbSerializedClass = null;
@@ -524,6 +534,9 @@ public abstract class BaseContainer
 
     protected InterceptorManager interceptorManager;
 
+    // True if bean methods are called through InvocationInfo.targetInvoker1
+    private boolean directDispatch;
+
     // the order must be the same as CallbackType and getPre30LifecycleMethodNames
     private static final Class[] lifecycleCallbackAnnotationClasses = {
         AroundConstruct.class, 
@@ -949,13 +962,18 @@ public abstract class BaseContainer
 
             initializeInterceptorManager();
 
+            directDispatch = isDirectDispatchEnabled();
+            interceptorManager.setDirectDispatch(directDispatch);
+
             for(Object o : invocationInfoMap.values()) {
                 InvocationInfo next = (InvocationInfo) o;
                 setInterceptorChain(next);
+                setTargetInvoker(next);
             }
             for(Object o : this.webServiceInvocationInfoMap.values()) {
                 InvocationInfo next = (InvocationInfo) o;
                 setInterceptorChain(next);
+                setTargetInvoker(next);
             }
 
         } catch(Exception e) {
@@ -979,6 +997,26 @@ public abstract class BaseContainer
         }
     }
     
+    /**
+     * Direct dispatch bypasses Method.invoke, so it is only used when there is
+     * no Java security manager and the bean's policy context is handled by
+     * EJBSecurityManager.
+     */
+    private boolean isDirectDispatchEnabled() {
+        String prop = ejbDescriptor.getEjbBundleDescriptor().getEnterpriseBeansProperty(DIRECT_DISPATCH_PROP);
+        return Boolean.parseBoolean(prop) && System.getSecurityManager() == null
+                && securityManager instanceof EJBSecurityManager;
+    }
+
+    private void setTargetInvoker(InvocationInfo info) {
+        if (directDispatch && info.targetMethod1 != null) {
+            info.targetInvoker1 = MethodInvoker.create(info.targetMethod1);
+            if (info.targetInvoker1 == null && _logger.isLoggable(Level.FINE)) {
+                _logger.log(Level.FINE, "Using reflection for " + info.targetMethod1);
+            }
+        }
+    }
+
     public final void setStoppedState() {
         containerState = CONTAINER_STOPPED;
     }
@@ -4238,7 +4276,15 @@ public abstract class BaseContainer
             throws Throwable {
         try {
             onEjbMethodStart(inv.invocationInfo.str_method_sig);
-            if (inv.useFastPath) {
+            MethodInvoker invoker = inv.invocationInfo.targetInvoker1;
+            if (invoker != null && beanClassMethod == invoker.getMethod()) {
+                try {
+                    return ((EJBSecurityManager) securityManager).runMethod(invoker, target, params);
+                } catch (Throwable t) {
+                    // Keep the Method.invoke semantics of the other paths
+                    throw new InvocationTargetException(t);
+                }
+            } else if (inv.useFastPath) {
                 return inv.getBeanMethod().invoke(inv.ejb, inv.methodParams);
             } else {
 
@@ -4815,6 +4861,11 @@ public abstract class BaseContainer
     public Object invokeBeanMethod(EjbInvocation inv)
         throws Throwable
     {
+        MethodInvoker invoker = (inv.invocationInfo == null) ? null : inv.invocationInfo.targetInvoker1;
+        if (invoker != null && inv.getBeanMethod() == invoker.getMethod()) {
+            return ((EJBSecurityManager) securityManager).runMethod(invoker, inv.ejb,
+                    inv.getParameters());
+        }
         try {
 
             return securityManager.invoke(inv.getBeanMethod(), inv.isLocal, inv.ejb,
@@ -4951,6 +5002,10 @@ public abstract class BaseContainer
         timerProbeNotifier.ejbTimerDeliveredEvent();
     }
 
+    protected void timedObjectDeliveryLateness(long driftMillis, long latenessMillis) {
+        timerProbeNotifier.ejbTimerDeliveryLatenessEvent(driftMillis, latenessMillis);
+    }
+
     private static class JndiInfo {
 
         private JndiInfo(String name, Object object) {
@@ -152,6 +152,12 @@ public class EJBTimerService {
     private static final String RESCHEDULE_FAILED_TIMER = "reschedule-failed-timer";
     private boolean rescheduleFailedTimer = false;
 
+    // Schedule non-persistent timers on a timing wheel rather than on the
+    // shared JDK timer
+    private static final String NON_PERSISTENT_TIMER_WHEEL = "non-persistent-timer-wheel";
+    private static final long TIMER_WHEEL_TICK_IN_MILLIS = 10;
+    private TimerWheel timerWheel_;
+
     // Flag that allows to load EJBTimerService on the 1st access and
     // distinguish between not available and not loaded
     private static volatile boolean _timerServiceVerified = false;
@@ -274,6 +280,11 @@ public class EJBTimerService {
 
                 rescheduleFailedTimer = Boolean.valueOf(ejbt.getPropertyValue(RESCHEDULE_FAILED_TIMER));
 
+                if( Boolean.valueOf(ejbt.getPropertyValue(NON_PERSISTENT_TIMER_WHEEL)) ) {
+                    timerWheel_ = new TimerWheel("EJB Timer Wheel",
+                            TIMER_WHEEL_TICK_IN_MILLIS);
+                }
+
                 // Load confing listener
                 ejbContainerUtil.getServices().getService(EJBTimerServiceConfigListener.class);
             }
@@ -286,7 +297,8 @@ public class EJBTimerService {
         logger.log(Level.FINE, "EJB Timer Service properties : " +
                    "min delivery interval = " + getMinimumDeliveryInterval() +
                    "\nmax redeliveries = " + maxRedeliveries_ +
-                   "\nredelivery interval = " + getRedeliveryInterval());
+                   "\nredelivery interval = " + getRedeliveryInterval() +
+                   "\nnon-persistent timer wheel = " + (timerWheel_ != null));
     }
 
     synchronized void timedObjectCount() {
@@ -353,9 +365,12 @@ public class EJBTimerService {
         }
     }
 
-    private void shutdown() {
+    protected void shutdown() {
         // Set flag to prevent any new timer expirations.
         shutdown_ = true;
+        if( timerWheel_ != null ) {
+            timerWheel_.stop();
+        }
     }
 
     /**
@@ -467,8 +482,13 @@ public class EJBTimerService {
                     timerState.scheduled(timerTask);
                 }
 
-                java.util.Timer jdkTimer = ejbContainerUtil.getTimer();
-                jdkTimer.schedule(timerTask, timerExpiration);            
+                if( timerWheel_ != null && !timerState.isPersistent() ) {
+                    timerTask.scheduledOn(timerWheel_.schedule(timerTask,
+                            timerExpiration.getTime() - System.currentTimeMillis()));
+                } else {
+                    java.util.Timer jdkTimer = ejbContainerUtil.getTimer();
+                    jdkTimer.schedule(timerTask, timerExpiration);
+                }
             }
         } else {
             
@@ -1102,7 +1122,8 @@ public class EJBTimerService {
     /**
      * Called from timer thread.  Used to deliver ejb timeout.
      */
-    private void deliverTimeout(TimerPrimaryKey timerId) {
+    private void deliverTimeout(TimerPrimaryKey timerId, long scheduledAt,
+                                long expiredAt) {
 
         if( logger.isLoggable(Level.FINE) ) {
             logger.log(Level.FINE, "EJBTimerService.deliverTimeout(): work " 
@@ -1153,6 +1174,11 @@ public class EJBTimerService {
                 }
             }
         }
+
+        // Drift is how late the scheduler fired, lateness how late the
+        // ejbTimeout call starts after waiting for a worker thread.
+        container.timedObjectDeliveryLateness(expiredAt - scheduledAt,
+                System.currentTimeMillis() - scheduledAt);
          
         try {
                     
@@ -1399,12 +1425,12 @@ public class EJBTimerService {
 
     /**
      * This method is called back from the EJBTimerTask object 
-     * on the JDK Timer Thread.  Work performed in this callback 
-     * should be short-lived, so do a little bookkeeping and then
-     * launch a separate thread to invoke ejbTimeout, etc.
+     * on the JDK Timer Thread or the timer wheel thread.  Work performed
+     * in this callback should be short-lived, so do a little bookkeeping
+     * and then launch a separate thread to invoke ejbTimeout, etc.
      */
 
-    void taskExpired(TimerPrimaryKey timerId) {
+    void taskExpired(TimerPrimaryKey timerId, Date expiration) {
         RuntimeTimerState timerState = getTimerState(timerId);
 
         if( timerState != null ) {
@@ -1417,7 +1443,8 @@ public class EJBTimerService {
                            "Adding work pool task for timer " + timerId);
                     }
 
-                    TaskExpiredWork work = new TaskExpiredWork(this, timerId);
+                    TaskExpiredWork work = new TaskExpiredWork(this, timerId,
+                            expiration.getTime(), System.currentTimeMillis());
                     ejbContainerUtil.addWork(work);
                 } else {
                     logger.log(Level.FINE, "Timer " + timerId + 
@@ -1898,6 +1925,13 @@ public class EJBTimerService {
             return result;
         }
 
+        // Returns a Set of persistent timer ids in the cache
+        public synchronized Set<TimerPrimaryKey> getPersistentTimerIds() {
+            Set<TimerPrimaryKey> result = new HashSet<TimerPrimaryKey>(timers_.keySet());
+            result.removeAll(nonpersistentTimers_.keySet());
+            return result;
+        }
+
     } //TimerCache{}
 
     /**
@@ -1907,16 +1941,21 @@ public class EJBTimerService {
     private static class TaskExpiredWork implements Runnable {
         private EJBTimerService timerService_;
         private TimerPrimaryKey timerId_;
+        private long expiration_;
+        private long expiredAt_;
 
         public TaskExpiredWork(EJBTimerService timerService, 
-                               TimerPrimaryKey timerId) {
+                               TimerPrimaryKey timerId, long expiration,
+                               long expiredAt) {
             timerService_ = timerService;
             timerId_ = timerId;
+            expiration_ = expiration;
+            expiredAt_ = expiredAt;
         }
 
         public void run() {
             // Delegate to Timer Service.
-            timerService_.deliverTimeout(timerId_);
+            timerService_.deliverTimeout(timerId_, expiration_, expiredAt_);
         } 
 
     } // TaskExpiredWork
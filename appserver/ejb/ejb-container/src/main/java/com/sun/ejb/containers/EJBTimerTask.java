@@ -62,6 +62,10 @@ public class EJBTimerTask extends TimerTask {
     private TimerPrimaryKey timerId_;
     private EJBTimerService timerService_;
 
+    // Set when the task is scheduled on the timer wheel instead of the
+    // JDK timer.
+    private TimerWheel.Timeout wheelTimeout_;
+
     EJBTimerTask(Date timeout, TimerPrimaryKey timerId, 
                  EJBTimerService timerService)
     { 
@@ -72,7 +76,18 @@ public class EJBTimerTask extends TimerTask {
     
     public void run() {
         // Delegate to Timer Service.
-        timerService_.taskExpired(timerId_);
+        timerService_.taskExpired(timerId_, timeout_);
+    }
+
+    void scheduledOn(TimerWheel.Timeout wheelTimeout) {
+        wheelTimeout_ = wheelTimeout;
+    }
+
+    public boolean cancel() {
+        if( wheelTimeout_ != null ) {
+            return wheelTimeout_.cancel();
+        }
+        return super.cancel();
     }
     
     public Date getTimeout() {
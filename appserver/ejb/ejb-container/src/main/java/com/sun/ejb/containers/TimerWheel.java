@@ -0,0 +1,303 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.ejb.containers;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Hierarchical timing wheel used by the EJB Timer Service to schedule
+ * non-persistent timer expirations instead of the shared JDK Timer.
+ *
+ * Scheduling and cancelling are O(1) and never take a lock: new timeouts
+ * and cancellations are handed to the wheel thread through lock-free
+ * queues, and only the wheel thread touches the buckets. The wheel has
+ * 4 levels of 256 buckets, so with the default 10 ms tick the first
+ * level covers 2.5 seconds and the last one about 500 days. Timeouts
+ * further out are parked in the last level and re-placed when reached.
+ *
+ * Expired tasks are run on the wheel thread and must be short-lived.
+ * EJBTimerTask only does bookkeeping there and hands the ejbTimeout call
+ * to the ejb container thread pool.  A task that throws does not stop
+ * the wheel, unlike java.util.Timer.
+ */
+final class TimerWheel implements Runnable {
+
+    private static final Logger logger = EjbContainerUtilImpl.getLogger();
+
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    // Upper bound on the number of new timeouts placed per tick, so that
+    // a burst of createTimer calls cannot hold back expirations.
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private static final int ST_PENDING   = 0;
+    private static final int ST_EXPIRED   = 1;
+    private static final int ST_CANCELLED = 2;
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout[][] buckets = new Timeout[LEVELS][WHEEL_SIZE];
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<Timeout>();
+    private final Thread worker;
+
+    // Only accessed by the wheel thread.
+    private long currentTick;
+
+    private volatile boolean stopped;
+
+    TimerWheel(String name, long tickMillis) {
+        tickNanos = TimeUnit.MILLISECONDS.toNanos((tickMillis <= 0) ? 1 : tickMillis);
+        startNanos = System.nanoTime();
+
+        worker = new Thread(this, name);
+        worker.setDaemon(true);
+        // Same reason as for the JDK timer in EjbContainerUtilImpl: the
+        // wheel outlives deployed apps and must not pin an app class loader.
+        worker.setContextClassLoader(TimerWheel.class.getClassLoader());
+        worker.start();
+    }
+
+    /**
+     * Schedules task to run once, after delayMillis. Safe to call from any
+     * thread.
+     */
+    Timeout schedule(Runnable task, long delayMillis) {
+        long deadline = System.nanoTime() - startNanos
+            + TimeUnit.MILLISECONDS.toNanos((delayMillis < 0) ? 0 : delayMillis);
+        Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(worker);
+    }
+
+    public void run() {
+        while( !stopped ) {
+            long sleepNanos = currentTick * tickNanos - (System.nanoTime() - startNanos);
+            if( sleepNanos > 0 ) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+
+            // If the thread fell behind, ticks are processed back to back
+            // until it has caught up.
+            removeCancelled();
+            transferPending();
+            cascade();
+            expire();
+            currentTick++;
+        }
+        pending.clear();
+        cancelled.clear();
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while( (timeout = cancelled.poll()) != null ) {
+            if( timeout.level >= 0 ) {
+                unlink(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        for(int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = pending.poll();
+            if( timeout == null ) {
+                break;
+            }
+            if( timeout.state == ST_PENDING ) {
+                place(timeout);
+            }
+        }
+    }
+
+    /**
+     * At the start of each round of a lower level, move the timeouts of the
+     * matching bucket of the next level down. Higher levels go first so
+     * that their timeouts can land in the buckets cascaded after them.
+     */
+    private void cascade() {
+        for(int level = LEVELS - 1; level > 0; level--) {
+            int shift = WHEEL_BITS * level;
+            if( (currentTick & ((1L << shift) - 1)) == 0 ) {
+                Timeout timeout = detach(level,
+                        (int) (currentTick >>> shift) & WHEEL_MASK);
+                while( timeout != null ) {
+                    Timeout next = timeout.next;
+                    timeout.next = null;
+                    if( timeout.state == ST_PENDING ) {
+                        place(timeout);
+                    }
+                    timeout = next;
+                }
+            }
+        }
+    }
+
+    private void expire() {
+        Timeout timeout = detach(0, (int) currentTick & WHEEL_MASK);
+        while( timeout != null ) {
+            Timeout next = timeout.next;
+            timeout.next = null;
+            if( STATE.compareAndSet(timeout, ST_PENDING, ST_EXPIRED) ) {
+                try {
+                    timeout.task.run();
+                } catch(Throwable t) {
+                    logger.log(Level.WARNING, "Exception in timer wheel task", t);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void place(Timeout timeout) {
+        // Round up so that a timeout never fires before its deadline.
+        long deadlineTick = (timeout.deadline + tickNanos - 1) / tickNanos;
+        if( deadlineTick < currentTick ) {
+            deadlineTick = currentTick;
+        }
+        long delta = deadlineTick - currentTick;
+        if( delta > MAX_DELTA ) {
+            deadlineTick = currentTick + MAX_DELTA;
+            delta = MAX_DELTA;
+        }
+
+        int level = 0;
+        while( (level < LEVELS - 1)
+                && (delta >= (1L << (WHEEL_BITS * (level + 1)))) ) {
+            level++;
+        }
+        int slot = (int) (deadlineTick >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+
+        Timeout head = buckets[level][slot];
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = head;
+        if( head != null ) {
+            head.prev = timeout;
+        }
+        buckets[level][slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if( timeout.prev != null ) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.level][timeout.slot] = timeout.next;
+        }
+        if( timeout.next != null ) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+    }
+
+    /**
+     * Empties a bucket and returns its former contents as a list linked
+     * through next.
+     */
+    private Timeout detach(int level, int slot) {
+        Timeout head = buckets[level][slot];
+        buckets[level][slot] = null;
+        for(Timeout t = head; t != null; t = t.next) {
+            t.prev = null;
+            t.level = -1;
+        }
+        return head;
+    }
+
+    /**
+     * Handle for a scheduled task.
+     */
+    final class Timeout {
+
+        private final Runnable task;
+
+        // nanoseconds since the wheel was started
+        private final long deadline;
+
+        volatile int state = ST_PENDING;
+
+        // Only accessed by the wheel thread.
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it has not run yet. The bucket entry is
+         * removed by the wheel thread on its next tick.
+         */
+        boolean cancel() {
+            if( STATE.compareAndSet(this, ST_PENDING, ST_CANCELLED) ) {
+                cancelled.add(this);
+                return true;
+            }
+            return false;
+        }
+    }
+}
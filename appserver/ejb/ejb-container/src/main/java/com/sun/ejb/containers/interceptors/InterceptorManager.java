@@ -41,6 +41,7 @@
 package com.sun.ejb.containers.interceptors;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -110,6 +111,9 @@ public class InterceptorManager {
     // Optionally specified delegate to be set on SystemInterceptorProxy
     private Object runtimeInterceptor;
 
+    // Bind around-invoke methods to MethodHandles when the chains are built
+    private boolean directDispatch;
+
     List<InterceptorDescriptor> frameworkInterceptors = new LinkedList<InterceptorDescriptor>();
 
 
@@ -210,6 +214,15 @@ public class InterceptorManager {
 
     }
 
+    /**
+     * Invoke around-invoke and around-timeout methods through bound
+     * MethodHandles rather than reflection. Applies to the chains that
+     * are built after this call.
+     */
+    public void setDirectDispatch(boolean directDispatch) {
+        this.directDispatch = directDispatch;
+    }
+
     public InterceptorManager.InterceptorChain getAroundInvokeChain(
             MethodDescriptor mDesc, Method beanMethod) {
 
@@ -343,8 +356,9 @@ public class InterceptorManager {
                + " found on class " + className, e); 
             }
 
+            AroundInvokeInterceptor aroundInvoke;
             if (interceptor.getFromBeanClass()) {
-                interceptors.add(new BeanAroundInvokeInterceptor(method));
+                aroundInvoke = new BeanAroundInvokeInterceptor(method);
             } else {
                 Integer bigInt = instanceIndexMap.get(className);
                 int index = (bigInt == null) ? -1 : bigInt;
@@ -354,8 +368,12 @@ public class InterceptorManager {
                 Class clazz = interceptorClasses[index];
                 _logger.log(Level.FINE, "*[md.getDeclaredMethod() => " 
                             + method + " FOR CLAZZ: " + clazz);  
-                interceptors.add(new AroundInvokeInterceptor(index, method));
+                aroundInvoke = new AroundInvokeInterceptor(index, method);
+            }
+            if (directDispatch) {
+                aroundInvoke.bindHandle();
             }
+            interceptors.add(aroundInvoke);
         }
     }
 
@@ -839,6 +857,9 @@ class AroundInvokeInterceptor {
     protected int index;
     protected Method method;
 
+    // (Object instance, Object invCtx) -> Object, null unless direct dispatch
+    protected MethodHandle handle;
+
     AroundInvokeInterceptor(int index, Method method) {
         this.index = index;
         this.method = method;
@@ -865,7 +886,15 @@ class AroundInvokeInterceptor {
 
     }
 
+    void bindHandle() {
+        handle = MethodInvoker.createAroundInvokeHandle(method);
+    }
+
     Object intercept(final InterceptorManager.AroundInvokeContext invCtx) throws Throwable {
+        if (handle != null) {
+            return (Object) handle.invokeExact(
+                    invCtx.getInterceptorInstances()[index], (Object) invCtx);
+        }
         try {
             final Object[] interceptors = invCtx.getInterceptorInstances();
 
@@ -909,6 +938,9 @@ class BeanAroundInvokeInterceptor
     }
 
     Object intercept(final InterceptorManager.AroundInvokeContext invCtx) throws Throwable {
+        if (handle != null) {
+            return (Object) handle.invokeExact(invCtx.getTarget(), (Object) invCtx);
+        }
         try {
 
             if( System.getSecurityManager() != null ) {
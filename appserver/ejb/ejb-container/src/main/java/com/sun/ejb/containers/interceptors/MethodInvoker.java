@@ -0,0 +1,134 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.ejb.containers.interceptors;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes a bean class or interceptor method through a MethodHandle that is
+ * bound once, when the container starts, instead of through Method.invoke.
+ * Exceptions thrown by the method propagate as is, they are not wrapped in
+ * an InvocationTargetException.
+ *
+ * Invokers are only created when no security manager is installed, since
+ * the calls are then made without an access control context of their own.
+ */
+public final class MethodInvoker {
+
+    private static final MethodType SPREAD_TYPE =
+            MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private static final MethodType AROUND_INVOKE_TYPE =
+            MethodType.methodType(Object.class, Object.class, Object.class);
+
+    private final Method method;
+
+    // (Object target, Object[] params) -> Object
+    private final MethodHandle handle;
+
+    private MethodInvoker(Method method, MethodHandle handle) {
+        this.method = method;
+        this.handle = handle;
+    }
+
+    /**
+     * @return an invoker for the instance method, or null if it can't be
+     * bound. The caller should then use Method.invoke.
+     */
+    public static MethodInvoker create(Method method) {
+        MethodHandle mh = unreflect(method);
+        if (mh == null) {
+            return null;
+        }
+        mh = mh.asSpreader(Object[].class, method.getParameterTypes().length)
+               .asType(SPREAD_TYPE);
+        return new MethodInvoker(method, mh);
+    }
+
+    /**
+     * @return a handle of type (Object, Object)Object that invokes an
+     * around-invoke or around-timeout method on the given instance with the
+     * given InvocationContext, or null if it can't be bound.
+     */
+    static MethodHandle createAroundInvokeHandle(Method method) {
+        MethodHandle mh = unreflect(method);
+        if (mh == null || method.getParameterTypes().length != 1) {
+            return null;
+        }
+        return mh.asType(AROUND_INVOKE_TYPE);
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        if (method == null || Modifier.isStatic(method.getModifiers()) ||
+                System.getSecurityManager() != null) {
+            return null;
+        }
+        try {
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+            // A variable arity method would otherwise collect the trailing
+            // arguments itself
+            return MethodHandles.lookup().unreflect(method).asFixedArity();
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Object invoke(Object target, Object[] params) throws Throwable {
+        return (Object) handle.invokeExact(target, params);
+    }
+
+    public String toString() {
+        return "MethodInvoker[" + method + "]";
+    }
+}
@@ -86,7 +86,7 @@ public class LruSessionCache
         level = "SEVERE",
         cause = "Session store exception or deserialization exception happened.",
         action = "Check error message and exception stack.")
-    private static final String EXCEPTION_LOADING_BACKUP_SESSION = "AS-EJB-00005";
+    static final String EXCEPTION_LOADING_BACKUP_SESSION = "AS-EJB-00005";
 
     @LogMessageInfo(
         message = "[{0}]: Error while  loading from backup session: <[{1}]>",
@@ -98,7 +98,7 @@ public class LruSessionCache
     @LogMessageInfo(
         message = "[{0}]: Exception during backingStore.passivateSave([{1}])",
         level = "WARNING")
-    private static final String EXCEPTION_DURING_PASSIVATE_SAVE = "AS-EJB-00007";
+    static final String EXCEPTION_DURING_PASSIVATE_SAVE = "AS-EJB-00007";
 
     @LogMessageInfo(
         message = "[{0}]: Iterator(), resetting head.lPrev",
@@ -313,8 +313,8 @@ public class LruSessionCache
 	}*/
         try {
             value = getStateFromStore(sessionKey, container);
-            newItem = new LruSessionCacheItem(hashCode, sessionKey,
-                    value, -1, CACHE_ITEM_LOADING); 
+            newItem = createItem(hashCode, sessionKey,
+                    value, -1, CACHE_ITEM_LOADING);
             newItem.setNext( buckets[index] );
             buckets[index] = newItem;
 
@@ -525,7 +525,7 @@ public class LruSessionCache
         return false;
     } //passivateEJB
 
-    private Object getStateFromStore(Serializable sessionKey, SFSBContainerCallback container) {
+    protected Object getStateFromStore(Serializable sessionKey, SFSBContainerCallback container) {
 
         Object object = null;
 
@@ -555,7 +555,7 @@ public class LruSessionCache
         return object;
     }
 
-    private boolean saveStateToStore(Serializable sessionKey, StatefulEJBContext ctx)
+    protected boolean saveStateToStore(Serializable sessionKey, StatefulEJBContext ctx)
 	throws java.io.NotSerializableException, java.io.IOException
     {
         byte[] data = container.serializeContext(ctx);
@@ -606,6 +606,10 @@ public class LruSessionCache
 	currentCacheState = STATE_UNDEPLOYING;
     }
 
+    protected boolean isRunning() {
+        return currentCacheState == STATE_RUNNING;
+    }
+
     /**
      * get an Iterator for the values stored in the cache
      * @returns an Iterator
@@ -838,6 +842,12 @@ public class LruSessionCache
         return new LruSessionCacheItem(hashCode, sessionKey, value, size);
     }
 
+    protected LruSessionCacheItem createItem(int hashCode, Object sessionKey,
+            Object value, int size, byte state)
+    {
+        return new LruSessionCacheItem(hashCode, sessionKey, value, size, state);
+    }
+
     //*Class for LruSessionCacheItem
     protected static class LruSessionCacheItem
         extends LruCacheItem
@@ -909,6 +919,10 @@ public class LruSessionCache
         return 0;
     }
 
+    public int getPassivationQueueDepth() {
+        return 0;
+    }
+
     public int getNumPassivationSuccess() {
 	/*return (sfsbStoreMonitor == null)
         ? 0 : sfsbStoreMonitor.getNumPassivationSuccess(); */
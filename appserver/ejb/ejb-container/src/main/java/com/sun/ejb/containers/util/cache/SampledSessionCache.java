@@ -0,0 +1,470 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.ejb.containers.util.cache;
+
+import com.sun.ejb.containers.EjbContainerUtilImpl;
+import com.sun.ejb.spi.container.SFSBContainerCallback;
+import com.sun.ejb.spi.container.StatefulEJBContext;
+
+import org.glassfish.ha.store.api.BackingStoreException;
+import org.glassfish.ha.store.util.SimpleMetadata;
+import org.glassfish.logging.annotation.LogMessageInfo;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.logging.Level;
+
+/**
+ * SFSB cache that does not keep an LRU list. A cache access only clears
+ * the trimmed flag of the item, and victims are picked when the cache
+ * overflows by sampling a few entries from a random bucket and taking
+ * the one with the oldest last access time. No cache wide lock is taken
+ * on the request path.
+ *
+ * The state of passivated beans is serialized by the passivating thread,
+ * as before, but is written to the BackingStore by a background task that
+ * drains the pending saves in batches. Until it is written, the state is
+ * served from memory if the bean is looked up again.
+ *
+ * Selected with victim-selection-policy "sampled".
+ */
+public class SampledSessionCache
+    extends LruSessionCache
+{
+
+    @LogMessageInfo(
+        message = "[{0}]: Cannot schedule passivation writer",
+        level = "WARNING")
+    private static final String SCHEDULE_PASSIVATION_WRITER_ERROR = "AS-EJB-00064";
+
+    // Number of passivation candidates compared per victim selection
+    private static final int SAMPLE_SIZE = 8;
+
+    // Upper bound on the buckets visited per victim selection
+    private static final int MAX_BUCKETS_SCANNED = 8 * SAMPLE_SIZE;
+
+    private static final int MAX_SELECTION_ATTEMPTS = 3;
+
+    private final AtomicInteger victimsAccessed = new AtomicInteger();
+
+    private final ConcurrentHashMap<Serializable, PendingSave> pendingSaves
+            = new ConcurrentHashMap<Serializable, PendingSave>();
+
+    private final ConcurrentLinkedQueue<Serializable> saveQueue
+            = new ConcurrentLinkedQueue<Serializable>();
+
+    private final AtomicInteger saveQueueDepth = new AtomicInteger();
+
+    private final AtomicBoolean writerScheduled = new AtomicBoolean();
+
+    public SampledSessionCache(String cacheName,
+        SFSBContainerCallback container, int cacheIdleTime, int removalTime)
+    {
+        super("Sampled-" + cacheName, container, cacheIdleTime, removalTime);
+    }
+
+    protected CacheItem createItem(int hashCode, Object sessionKey,
+            Object value, int size)
+    {
+        return new SampledCacheItem(hashCode, sessionKey, value, size);
+    }
+
+    protected LruSessionCacheItem createItem(int hashCode, Object sessionKey,
+            Object value, int size, byte state)
+    {
+        return new SampledCacheItem(hashCode, sessionKey, value, size, state);
+    }
+
+    /**
+     * Called with the bucket of the new item locked. Victim selection
+     * reads the other buckets without locking them; a stale read only
+     * makes the sample less accurate.
+     */
+    protected CacheItem itemAdded(CacheItem item) {
+        if (isThresholdReached()) {
+            return selectVictim(item);
+        }
+        return null;
+    }
+
+    protected void itemAccessed(CacheItem item) {
+        // A trimmed item that is accessed before it got passivated stays in
+        // the cache; passivateEJB checks the flag again under the bucket lock
+        if (item.getClass() == SampledCacheItem.class
+                && ((SampledCacheItem) item).untrim()) {
+            victimsAccessed.incrementAndGet();
+        }
+    }
+
+    protected void itemRefreshed(CacheItem item, int oldSize) {
+    }
+
+    protected void itemRemoved(CacheItem item) {
+    }
+
+    private CacheItem selectVictim(CacheItem added) {
+        CacheItem[] table = buckets;
+        int maxIndex = table.length;
+        int maxScanned = Math.min(maxIndex, MAX_BUCKETS_SCANNED);
+
+        for (int attempt = 0; attempt < MAX_SELECTION_ATTEMPTS; attempt++) {
+            SampledCacheItem victim = null;
+            long victimAccessTime = Long.MAX_VALUE;
+            int sampled = 0;
+
+            int index = ThreadLocalRandom.current().nextInt(maxIndex);
+            for (int scanned = 0; scanned < maxScanned && sampled < SAMPLE_SIZE; scanned++) {
+                for (CacheItem item = table[index]; item != null && sampled < SAMPLE_SIZE;
+                        item = item.getNext()) {
+                    if (item == added || item.getClass() != SampledCacheItem.class) {
+                        continue;
+                    }
+                    SampledCacheItem candidate = (SampledCacheItem) item;
+                    StatefulEJBContext ctx = (StatefulEJBContext) candidate.getValue();
+                    if (candidate.isTrimmed() || ctx == null || !ctx.canBePassivated()) {
+                        continue;
+                    }
+                    sampled++;
+                    long accessTime = ctx.getLastAccessTime();
+                    if (accessTime < victimAccessTime) {
+                        victim = candidate;
+                        victimAccessTime = accessTime;
+                    }
+                }
+                index = (index + 1 == maxIndex) ? 0 : index + 1;
+            }
+
+            if (victim == null) {
+                // Nothing can be passivated right now; the cache goes over
+                // its threshold until trimTimedoutItems catches up
+                return null;
+            }
+            if (victim.trim()) {
+                return victim;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * No LRU list is kept, so the whole cache is scanned for idle beans.
+     */
+    public void trimTimedoutItems(int maxTrimCount) {
+        long idleThreshold = System.currentTimeMillis() - cacheIdleTimeoutInSeconds*1000L;
+        int batchCount = container.getPassivationBatchCount();
+        ArrayList<CacheItem> victims = new ArrayList<CacheItem>();
+        int totalSize = 0;
+
+        if (_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE, "[" + cacheName + "]: TrimTimedoutBeans started...");
+        }
+        for (int index = 0; index < buckets.length && isRunning(); index++) {
+            if (buckets[index] == null) {
+                continue;
+            }
+            synchronized (bucketLocks[index]) {
+                for (CacheItem item = buckets[index]; item != null; item = item.getNext()) {
+                    StatefulEJBContext ctx = (StatefulEJBContext) item.getValue();
+                    if ((ctx != null) && (ctx.getLastAccessTime() <= idleThreshold)
+                            && ctx.canBePassivated()
+                            && ((SampledCacheItem) item).trim()) {
+                        victims.add(item);
+                    }
+                }
+            }
+            if (victims.size() >= batchCount) {
+                totalSize += trimVictims(victims);
+            }
+        }
+        totalSize += trimVictims(victims);
+
+        if (_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE, "[" + cacheName + "]: TrimTimedoutBeans "
+                + " finished after removing " + totalSize + " idle beans");
+        }
+    }
+
+    private int trimVictims(ArrayList<CacheItem> victims) {
+        int sz = victims.size();
+        for (int i = 0; i < sz; i++) {
+            trimItem(victims.get(i));
+        }
+        victims.clear();
+        return sz;
+    }
+
+    public Iterator values() {
+        ArrayList valueList = new ArrayList();
+        for (int index = 0; index < buckets.length; index++) {
+            synchronized (bucketLocks[index]) {
+                for (CacheItem item = buckets[index]; item != null; item = item.getNext()) {
+                    if (item.getValue() != null) {
+                        valueList.add(item.getValue());
+                    }
+                }
+            }
+        }
+        return valueList.iterator();
+    }
+
+    public void shutdown() {
+        ArrayList<StatefulEJBContext> valueList = new ArrayList<StatefulEJBContext>();
+        for (int index = 0; index < buckets.length; index++) {
+            synchronized (bucketLocks[index]) {
+                for (CacheItem item = buckets[index]; item != null; item = item.getNext()) {
+                    StatefulEJBContext ctx = (StatefulEJBContext) item.getValue();
+                    if (ctx != null) {
+                        ((SampledCacheItem) item).trim();
+                        valueList.add(ctx);
+                    }
+                }
+            }
+        }
+
+        for (StatefulEJBContext ctx : valueList) {
+            container.passivateEJB(ctx);
+        }
+
+        // The server is going down; write what is left on this thread
+        writePendingSaves(Integer.MAX_VALUE);
+    }
+
+    public void destroy() {
+        saveQueue.clear();
+        pendingSaves.clear();
+        saveQueueDepth.set(0);
+        super.destroy();
+    }
+
+    /**
+     * Serializes the bean on the passivating thread, so that serialization
+     * errors are reported to the container as before, and queues the write.
+     */
+    protected boolean saveStateToStore(Serializable sessionKey, StatefulEJBContext ctx)
+        throws java.io.NotSerializableException, java.io.IOException
+    {
+        if (backingStore == null) {
+            return false;
+        }
+        byte[] data = container.serializeContext(ctx);
+        if (data == null) {
+            return false;
+        }
+
+        SimpleMetadata beanState = new SimpleMetadata(
+            ctx.getVersion(), ctx.getLastAccessTime(), removalTimeoutInSeconds*1000L, data);
+        beanState.setVersion(ctx.getVersion());
+
+        pendingSaves.put(sessionKey, new PendingSave(beanState, !ctx.existsInStore()));
+        saveQueue.add(sessionKey);
+        saveQueueDepth.incrementAndGet();
+        scheduleWriter();
+        return true;
+    }
+
+    protected Object getStateFromStore(Serializable sessionKey, SFSBContainerCallback container) {
+        PendingSave pending = pendingSaves.remove(sessionKey);
+        if (pending == null) {
+            return super.getStateFromStore(sessionKey, container);
+        }
+        awaitWrite(pending);
+
+        try {
+            incrementLoadFromBackupCount();
+            return container.deserializeData(pending.beanState.getState());
+        } catch (Exception ex) {
+            _logger.log(Level.SEVERE, EXCEPTION_LOADING_BACKUP_SESSION, new Object[]{cacheName, sessionKey, ex});
+            return null;
+        }
+    }
+
+    public Object remove(Object sessionKey, boolean removeFromStore) {
+        PendingSave pending = pendingSaves.remove(sessionKey);
+        if (pending != null) {
+            // the bean must not be written back after it is removed
+            awaitWrite(pending);
+        }
+        return super.remove(sessionKey, removeFromStore);
+    }
+
+    /**
+     * Waits for a write of the given state that is in progress, if any.
+     * The state has been taken out of pendingSaves, so it is not written
+     * once this method returns.
+     */
+    private static void awaitWrite(PendingSave pending) {
+        synchronized (pending) {
+            // the writer holds the lock while writing
+        }
+    }
+
+    private void scheduleWriter() {
+        if (writerScheduled.compareAndSet(false, true)) {
+            try {
+                EjbContainerUtilImpl.getInstance().addWork(new PassivationWriter());
+            } catch (Exception ex) {
+                writerScheduled.set(false);
+                _logger.log(Level.WARNING, SCHEDULE_PASSIVATION_WRITER_ERROR, new Object[]{cacheName, ex});
+            }
+        }
+    }
+
+    /**
+     * Writes up to maxCount queued states to the BackingStore. A state that
+     * was activated or removed since it got queued is skipped, and if the
+     * same bean was passivated again only its latest state is written.
+     * A state is written holding its lock and only while it is still
+     * pending, so that activation and removal can wait for the write.
+     */
+    private int writePendingSaves(int maxCount) {
+        int count = 0;
+        Serializable sessionKey;
+        while (count < maxCount && (sessionKey = saveQueue.poll()) != null) {
+            saveQueueDepth.decrementAndGet();
+            PendingSave pending = pendingSaves.get(sessionKey);
+            if (pending == null) {
+                continue;
+            }
+            synchronized (pending) {
+                if (pendingSaves.get(sessionKey) != pending) {
+                    // activated or removed in the meantime
+                    continue;
+                }
+                try {
+                    backingStore.save(sessionKey, pending.beanState, pending.isNew);
+                    pendingSaves.remove(sessionKey, pending);
+                    count++;
+                } catch (BackingStoreException sfsbEx) {
+                    // Keep the state in memory so the bean can still be activated
+                    _logger.log(Level.WARNING, EXCEPTION_DURING_PASSIVATE_SAVE,
+                            new Object[]{cacheName, sessionKey, sfsbEx});
+                }
+            }
+        }
+        return count;
+    }
+
+    public int getNumVictimsAccessed() {
+        return victimsAccessed.get();
+    }
+
+    public int getPassivationQueueDepth() {
+        return saveQueueDepth.get();
+    }
+
+    public void appendStats(StringBuffer sbuf) {
+        super.appendStats(sbuf);
+        sbuf.append("[PassivationQueueDepth=").append(saveQueueDepth.get()).append("]");
+    }
+
+    private class PassivationWriter implements Runnable {
+
+        public void run() {
+            try {
+                if (backingStore != null) {
+                    writePendingSaves(container.getPassivationBatchCount());
+                }
+            } finally {
+                writerScheduled.set(false);
+            }
+            // Resubmit instead of looping so that one busy cache does not
+            // hold on to a pool thread
+            if (!saveQueue.isEmpty()) {
+                scheduleWriter();
+            }
+        }
+    }
+
+    private static final class PendingSave {
+        final SimpleMetadata beanState;
+        final boolean isNew;
+
+        PendingSave(SimpleMetadata beanState, boolean isNew) {
+            this.beanState = beanState;
+            this.isNew = isNew;
+        }
+    }
+
+    protected static class SampledCacheItem
+        extends LruSessionCacheItem
+    {
+        private static final AtomicIntegerFieldUpdater<SampledCacheItem> TRIMMED =
+            AtomicIntegerFieldUpdater.newUpdater(SampledCacheItem.class, "trimmed");
+
+        private volatile int trimmed;
+
+        protected SampledCacheItem(int hashCode, Object key, Object value,
+                                   int size)
+        {
+            super(hashCode, key, value, size);
+        }
+
+        protected SampledCacheItem(int hashCode, Object key, Object value,
+                                   int size, byte state)
+        {
+            super(hashCode, key, value, size, state);
+        }
+
+        public boolean isTrimmed() {
+            return trimmed != 0;
+        }
+
+        public void setTrimmed(boolean value) {
+            trimmed = value ? 1 : 0;
+        }
+
+        boolean trim() {
+            return TRIMMED.compareAndSet(this, 0, 1);
+        }
+
+        boolean untrim() {
+            return trimmed != 0 && TRIMMED.compareAndSet(this, 1, 0);
+        }
+    }
+}
@@ -0,0 +1,741 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.ejb.containers.util.pool;
+
+import com.sun.ejb.containers.EJBContextImpl;
+import com.sun.ejb.containers.EjbContainerUtilImpl;
+import com.sun.enterprise.util.Utility;
+
+import java.util.ArrayList;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+
+/**
+ * <p>StripedPool is an alternative to NonBlockingPool for pools that are
+ * used by many request threads at the same time, such as the stateless
+ * session bean and message-driven bean pools. Instead of guarding one
+ * ArrayList with one monitor, idle objects are kept in
+ * <ul>
+ * <li>a few slots per stripe, where the stripe is picked from the calling
+ *     thread, so that a thread usually gets back the instance it returned
+ *     last, and</li>
+ * <li>a lock-free overflow stack shared by all threads.</li>
+ * </ul>
+ * <p>Like NonBlockingPool, getObject never waits: if nothing is pooled a new
+ * object is created, and objects returned while the pool already holds
+ * maxPoolSize instances are destroyed. Refilling up to steadyPoolSize and
+ * removing idle objects run as background work. The idle trimmer detaches
+ * the overflow stack with a single atomic swap and pushes the survivors
+ * back, so callers never wait for it; at worst they create a new instance
+ * while it runs.
+ * <p>The singleton-bean-pool mode of NonBlockingPool needs callers to wait
+ * for the single instance and is not supported by this pool.
+ */
+public class StripedPool
+    extends AbstractPool
+{
+
+    private static final int SLOTS_PER_STRIPE = 4;
+
+    // Distance between two stripes in the slot array, so that stripes
+    // used by different cores do not share a cache line.
+    private static final int STRIPE_SPACING = 16;
+
+    private final AtomicReferenceArray<Object> slots;
+    private final int stripeMask;
+    private final AtomicReference<Node> overflow = new AtomicReference<Node>();
+
+    private final AtomicInteger pooledCount = new AtomicInteger();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger destroyed = new AtomicInteger();
+    private final AtomicInteger successes = new AtomicInteger();
+    private final AtomicInteger returned = new AtomicInteger();
+
+    private final AtomicBoolean addedResizeTask = new AtomicBoolean();
+    private final AtomicBoolean addedIdleBeanWork = new AtomicBoolean();
+    private final AtomicBoolean inResizing = new AtomicBoolean();
+
+    private TimerTask poolTimerTask;
+    private boolean maintainSteadySize;
+
+    // Set to true in close(). Objects returned afterwards are destroyed
+    // and no more resize work is scheduled.
+    private volatile boolean poolClosed = false;
+
+    public StripedPool(long beanId, String poolName, ObjectFactory factory,
+        int steadyPoolSize, int resizeQuantity,
+        int maxPoolSize, int idleTimeoutInSeconds,
+        ClassLoader loader)
+    {
+        this.poolName = poolName;
+        this.beanId = beanId;
+
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors()) {
+            stripes <<= 1;
+        }
+        this.stripeMask = stripes - 1;
+        this.slots = new AtomicReferenceArray<Object>(stripes * STRIPE_SPACING);
+
+        initializePool(factory, steadyPoolSize, resizeQuantity, maxPoolSize,
+                       idleTimeoutInSeconds, loader);
+    }
+
+    private void initializePool(ObjectFactory factory, int steadyPoolSize,
+        int resizeQuantity, int maxPoolSize, int idleTimeoutInSeconds,
+        ClassLoader loader)
+    {
+        this.factory = factory;
+        this.steadyPoolSize = (steadyPoolSize <= 0) ? 0 : steadyPoolSize;
+        this.resizeQuantity = (resizeQuantity <= 0) ? 0 : resizeQuantity;
+        this.maxPoolSize = (maxPoolSize <= 0)
+            ? Integer.MAX_VALUE : maxPoolSize;
+        this.steadyPoolSize = (this.steadyPoolSize > this.maxPoolSize)
+            ? this.maxPoolSize : this.steadyPoolSize;
+        this.idleTimeoutInSeconds =
+            (idleTimeoutInSeconds <= 0) ? 0 : idleTimeoutInSeconds;
+
+        this.containerClassLoader = loader;
+
+        this.maintainSteadySize = (this.steadyPoolSize > 0);
+        if ((this.idleTimeoutInSeconds > 0) && (this.resizeQuantity > 0)) {
+            try {
+                this.poolTimerTask = new PoolResizeTimerTask();
+                EjbContainerUtilImpl.getInstance().getTimer().scheduleAtFixedRate
+                    (poolTimerTask, idleTimeoutInSeconds*1000L,
+                     idleTimeoutInSeconds*1000L);
+                if(_logger.isLoggable(Level.FINE)) {
+                    _logger.log(Level.FINE,
+                      "[Pool-" + poolName + "]: Added PoolResizeTimerTask...");
+                }
+            } catch (Throwable th) {
+                _logger.log(Level.WARNING,"[Pool-" +
+                            poolName + "]: Could not add"
+                            + " PoolTimerTask. Continuing anyway...", th);
+            }
+        }
+    }
+
+    public Object getObject(boolean canWait, Object param)
+        throws PoolException
+    {
+        return getObject(param);
+    }
+
+    public Object getObject(long maxWaitTime, Object param)
+        throws PoolException
+    {
+        return getObject(param);
+    }
+
+    public Object getObject(Object param)
+    {
+        Object obj = poll();
+        if (obj != null) {
+            successes.incrementAndGet();
+            if (maintainSteadySize && (pooledCount.get() < steadyPoolSize)) {
+                addResizeTaskForImmediateExecution();
+            }
+            return obj;
+        }
+
+        if (maintainSteadySize) {
+            addResizeTaskForImmediateExecution();
+        }
+        poolProbeNotifier.ejbObjectAddedEvent(beanId, appName, modName, ejbName);
+        created.incrementAndGet();
+        try {
+            return factory.create(param);
+        } catch (RuntimeException th) {
+            poolProbeNotifier.ejbObjectAddFailedEvent(beanId, appName, modName, ejbName);
+            created.decrementAndGet();
+            throw th;
+        }
+    }
+
+    /**
+     * Return an object back to the pool. An object that is obtained through
+     *	getObject() must always be returned back to the pool using either
+     *	returnObject(obj) or through destroyObject(obj).
+     */
+    public void returnObject(Object object) {
+        if (!poolClosed && offer(object)) {
+            returned.incrementAndGet();
+            return;
+        }
+
+        poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
+        destroyed.incrementAndGet();
+        try {
+            factory.destroy(object);
+        } catch (Exception ex) {
+            _logger.log(Level.FINE, "exception in returnObj", ex);
+        }
+    }
+
+    /**
+     * Destroys an Object. Note that applications should not ignore
+     * the reference to the object that they got from getObject(). An object
+     * that is obtained through getObject() must always be returned back to
+     * the pool using either returnObject(obj) or through destroyObject(obj).
+     * This method tells that the object should be destroyed and cannot
+     * be reused.
+     */
+    public void destroyObject(Object object) {
+        poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
+        destroyed.incrementAndGet();
+        try {
+            factory.destroy(object);
+        } catch (Exception ex) {
+            _logger.log(Level.FINE, "exception in destroyObject", ex);
+        }
+    }
+
+    /**
+    * Preload the pool with objects.
+    * @param count the number of objects to be added.
+    */
+    protected void preload(int count) {
+        ArrayList instances = new ArrayList(count);
+        try {
+            for (int i=0; i<count; i++) {
+                instances.add(factory.create(null));
+            }
+        } catch (Exception ex) {
+            //Need not throw this exception up since we are pre-populating
+        }
+
+        created.addAndGet(instances.size());
+        for (Object o : instances) {
+            if (poolClosed || !offer(o)) {
+                destroyObject(o);
+            }
+        }
+    }
+
+    /**
+    * Prepopulate the pool with objects.
+    * @param count the number of objects to be added.
+    */
+    public void prepopulate(int count) {
+        this.steadyPoolSize = (count <= 0) ? 0 : count;
+        this.steadyPoolSize = (this.steadyPoolSize > this.maxPoolSize)
+            ? this.maxPoolSize : this.steadyPoolSize;
+
+        if (this.steadyPoolSize > 0) {
+            preload(this.steadyPoolSize);
+        }
+    }
+
+    /**
+    * Close the pool
+    */
+    public void close() {
+        poolClosed = true;
+        if (poolTimerTask != null) {
+            try {
+                poolTimerTask.cancel();
+                if(_logger.isLoggable(Level.FINE)) {
+                    _logger.log(Level.FINE,
+                        "[Pool-"+poolName+"]: Cancelled pool timer task "
+                                + " at: " + (new java.util.Date()));
+                }
+            } catch (Throwable th) {
+                //Can safely ignore this!!
+            }
+        }
+
+        // since we're calling into ejb code, we need to set context
+        // class loader
+        ClassLoader origLoader =
+            Utility.setContextClassLoader(containerClassLoader);
+
+        ArrayList removeList = drain();
+        if(_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE,"[Pool-"+poolName+"]: Destroying "
+                        + removeList.size() + " beans from the pool...");
+        }
+        for (Object o : removeList) {
+            try {
+                poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
+                destroyed.incrementAndGet();
+                try {
+                    factory.destroy(o);
+                } catch (Throwable th) {
+                    _logger.log(Level.FINE, "exception in close", th);
+                }
+            } catch (Throwable th) {
+                _logger.log(Level.WARNING,
+                    "[Pool-"+poolName+"]: Error while destroying", th);
+            }
+        }
+        if(_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE,"Pool-"+poolName+"]: Pool closed....");
+        }
+        unregisterProbeProvider();
+
+        Utility.setContextClassLoader(origLoader);
+
+        this.poolTimerTask         = null;
+        this.containerClassLoader  = null;
+    }
+
+    protected void remove(int count) {
+        ArrayList removeList = new ArrayList();
+        Object obj;
+        while ((removeList.size() < count) && ((obj = poll()) != null)) {
+            removeList.add(obj);
+            poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
+            destroyed.incrementAndGet();
+        }
+        destroyAll(removeList, "remove");
+    }
+
+    /**
+     * Removes up to resizeQuantity objects that have been idle for longer
+     * than idleTimeoutInSeconds, without going below steadyPoolSize.
+     * Oldest objects on the overflow stack are considered first, then the
+     * stripe slots.
+     */
+    protected void removeIdleObjects() {
+        int excess = pooledCount.get() - steadyPoolSize;
+        if ((excess <= 0) || (idleTimeoutInSeconds <= 0)
+                || (resizeQuantity <= 0)) {
+            return;
+        }
+        int victimCount = (excess > resizeQuantity) ? resizeQuantity : excess;
+        long allowedIdleTime = System.currentTimeMillis() -
+            idleTimeoutInSeconds*1000L;
+        if(_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE,
+                        "[Pool-"+poolName+"]: Resize:: reducing "
+                        + " pool size by up to: " + victimCount);
+        }
+
+        ArrayList removeList = new ArrayList(victimCount);
+
+        // Take the whole overflow stack with one swap. The nodes are now
+        // private to this thread; survivors are re-linked through new nodes
+        // so a concurrent poll() that still holds an old head cannot
+        // succeed with a stale compareAndSet.
+        ArrayList chain = new ArrayList();
+        for (Node n = overflow.getAndSet(null); n != null; n = n.next) {
+            chain.add(n.obj);
+        }
+        Node keepHead = null;
+        Node keepTail = null;
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            Object obj = chain.get(i);
+            if ((removeList.size() < victimCount) && isIdle(obj, allowedIdleTime)) {
+                removeList.add(obj);
+                pooledCount.decrementAndGet();
+            } else {
+                keepHead = new Node(obj, keepHead);
+                if (keepTail == null) {
+                    keepTail = keepHead;
+                }
+            }
+        }
+        if (keepHead != null) {
+            Node head;
+            do {
+                head = overflow.get();
+                keepTail.next = head;
+            } while (!overflow.compareAndSet(head, keepHead));
+        }
+
+        for (int i = 0; (i < slots.length()) && (removeList.size() < victimCount); i++) {
+            Object obj = slots.get(i);
+            if ((obj != null) && isIdle(obj, allowedIdleTime)
+                    && slots.compareAndSet(i, obj, null)) {
+                removeList.add(obj);
+                pooledCount.decrementAndGet();
+            }
+        }
+
+        for (int i = 0; i < removeList.size(); i++) {
+            poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
+            destroyed.incrementAndGet();
+        }
+        destroyAll(removeList, "doResize");
+    }
+
+    protected void doResize() {
+
+        if (poolClosed || !inResizing.compareAndSet(false, true)) {
+            return;
+        }
+
+        //We need to set the context class loader for this (deamon) thread!!
+        final Thread currentThread = Thread.currentThread();
+        final ClassLoader previousClassLoader =
+            currentThread.getContextClassLoader();
+        final ClassLoader ctxClassLoader = containerClassLoader;
+
+        long startTime = 0;
+        try {
+            if(System.getSecurityManager() == null) {
+                currentThread.setContextClassLoader(ctxClassLoader);
+            } else {
+                java.security.AccessController.doPrivileged(
+                        new java.security.PrivilegedAction() {
+                    public java.lang.Object run() {
+                        currentThread.setContextClassLoader(ctxClassLoader);
+                        return null;
+                    }
+                });
+            }
+
+            if(_logger.isLoggable(Level.FINE)) {
+                _logger.log(Level.FINE,
+                    "[Pool-"+poolName+"]: Resize started at: "
+                  + (new java.util.Date())+" steadyPoolSize ::"+steadyPoolSize
+                  + " resizeQuantity ::"+resizeQuantity+" maxPoolSize ::" +
+                  maxPoolSize );
+            }
+            startTime = System.currentTimeMillis();
+
+            int curSize = pooledCount.get();
+            if (curSize > steadyPoolSize) {
+                removeIdleObjects();
+            } else if ((curSize < steadyPoolSize) && maintainSteadySize) {
+                long populateCount = 0;
+                if (resizeQuantity <= 0) {
+                    populateCount = steadyPoolSize - curSize;
+                } else {
+                    while ((curSize + populateCount) < steadyPoolSize) {
+                        populateCount += resizeQuantity;
+                    }
+                    if ((curSize + populateCount) > maxPoolSize) {
+                        populateCount -= (curSize + populateCount) - maxPoolSize;
+                    }
+                }
+                if (populateCount > 0) {
+                    preload((int)populateCount);
+                }
+            }
+        } catch (Throwable th) {
+            _logger.log(Level.WARNING,
+                        "[Pool-"+poolName+"]: Exception during reSize", th);
+
+        } finally {
+            inResizing.set(false);
+            if(System.getSecurityManager() == null) {
+                currentThread.setContextClassLoader(previousClassLoader);
+            } else {
+                java.security.AccessController.doPrivileged(
+                        new java.security.PrivilegedAction() {
+                    public java.lang.Object run() {
+                        currentThread.setContextClassLoader(previousClassLoader);
+                        return null;
+                    }
+                });
+            }
+        }
+
+        long endTime = System.currentTimeMillis();
+        if(_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE,
+                "[Pool-"+poolName+"]: Resize completed at: "
+                + (new java.util.Date()) + "; after reSize: " +
+                getAllAttrValues());
+            _logger.log(Level.FINE, "[Pool-"+poolName+"]: Resize took: "
+                        + ((endTime-startTime)/1000.0) + " seconds.");
+        }
+    }
+
+    private void addResizeTaskForImmediateExecution() {
+        if (poolClosed || addedResizeTask.get()
+                || !addedResizeTask.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            EjbContainerUtilImpl.getInstance().addWork(new ReSizeWork());
+            if(_logger.isLoggable(Level.FINE)) {
+                _logger.log(Level.FINE,
+                     "[Pool-" + poolName + "]: Added PoolResizeTimerTask...");
+            }
+        } catch (Exception ex) {
+            addedResizeTask.set(false);
+            if(_logger.isLoggable(Level.WARNING)) {
+                _logger.log(Level.WARNING,
+                            "[Pool-"+poolName+"]: Cannot perform "
+                            + " pool resize task", ex);
+            }
+        }
+    }
+
+    /**
+     * Takes an object from the caller's stripe, then from the overflow
+     * stack, and finally from any other stripe.
+     */
+    private Object poll() {
+        int base = stripeBase();
+        Object obj = pollStripe(base);
+        if (obj != null) {
+            return obj;
+        }
+
+        Node head;
+        while ((head = overflow.get()) != null) {
+            if (overflow.compareAndSet(head, head.next)) {
+                pooledCount.decrementAndGet();
+                return head.obj;
+            }
+        }
+
+        if (pooledCount.get() > 0) {
+            for (int s = 0; s < slots.length(); s += STRIPE_SPACING) {
+                if ((s != base) && ((obj = pollStripe(s)) != null)) {
+                    return obj;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Object pollStripe(int base) {
+        for (int i = base; i < base + SLOTS_PER_STRIPE; i++) {
+            if (slots.get(i) != null) {
+                Object obj = slots.getAndSet(i, null);
+                if (obj != null) {
+                    pooledCount.decrementAndGet();
+                    return obj;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds an object to the caller's stripe, or to the overflow stack if
+     * the stripe is full. Returns false if the pool already holds
+     * maxPoolSize objects.
+     */
+    private boolean offer(Object obj) {
+        if (pooledCount.incrementAndGet() > maxPoolSize) {
+            pooledCount.decrementAndGet();
+            return false;
+        }
+
+        int base = stripeBase();
+        for (int i = base; i < base + SLOTS_PER_STRIPE; i++) {
+            if ((slots.get(i) == null) && slots.compareAndSet(i, null, obj)) {
+                return true;
+            }
+        }
+
+        Node node = new Node(obj, null);
+        Node head;
+        do {
+            head = overflow.get();
+            node.next = head;
+        } while (!overflow.compareAndSet(head, node));
+        return true;
+    }
+
+    private ArrayList drain() {
+        ArrayList objects = new ArrayList();
+        for (Node n = overflow.getAndSet(null); n != null; n = n.next) {
+            objects.add(n.obj);
+        }
+        for (int i = 0; i < slots.length(); i++) {
+            Object obj = slots.getAndSet(i, null);
+            if (obj != null) {
+                objects.add(obj);
+            }
+        }
+        pooledCount.addAndGet(-objects.size());
+        return objects;
+    }
+
+    private void destroyAll(ArrayList removeList, String op) {
+        int sz = removeList.size();
+        for (int i=0; i<sz; i++) {
+            try {
+                factory.destroy(removeList.get(i));
+            } catch (Throwable th) {
+                _logger.log(Level.FINE, "exception in " + op, th);
+            }
+        }
+    }
+
+    private int stripeBase() {
+        long id = Thread.currentThread().getId();
+        int h = ((int) (id ^ (id >>> 32))) * 0x9E3779B9;
+        return ((h >>> 16) & stripeMask) * STRIPE_SPACING;
+    }
+
+    private static boolean isIdle(Object obj, long allowedIdleTime) {
+        return (obj instanceof EJBContextImpl)
+            && (((EJBContextImpl) obj).getLastTimeUsed() <= allowedIdleTime);
+    }
+
+    /**************** For Monitoring ***********************/
+    /*******************************************************/
+
+    public int getCreatedCount() {
+        return created.get();
+    }
+
+    public int getDestroyedCount() {
+        return destroyed.get();
+    }
+
+    public int getPoolSuccess() {
+        return successes.get();
+    }
+
+    public int getSize() {
+        return pooledCount.get();
+    }
+
+    public int getNumBeansInPool() {
+        return pooledCount.get();
+    }
+
+    public int getTotalBeansCreated() {
+        return created.get();
+    }
+
+    public int getTotalBeansDestroyed() {
+        return destroyed.get();
+    }
+
+    public void appendStats(StringBuffer sbuf) {
+        sbuf.append("[Pool: ")
+            .append("SZ=").append(pooledCount.get()).append("; ")
+            .append("CC=").append(created.get()).append("; ")
+            .append("DC=").append(destroyed.get()).append("; ")
+            .append("WC=0; ")
+            .append("MSG=0");
+        if (configData != null) {
+            sbuf.append(configData);
+        }
+        sbuf.append("]");
+    }
+
+    public String getAllMonitoredAttrbuteValues() {
+        StringBuffer sbuf = new StringBuffer();
+        sbuf.append("createdCount=").append(created.get()).append(";")
+            .append("destroyedCount=").append(destroyed.get()).append(";")
+            .append("waitCount=0;")
+            .append("size=").append(pooledCount.get()).append(";")
+            .append("maxPoolSize=").append(maxPoolSize).append(";");
+        return sbuf.toString();
+    }
+
+    public String getAllAttrValues() {
+        StringBuffer sbuf = new StringBuffer("[Pool-"+poolName+"] ");
+        sbuf.append("CC=").append(created.get()).append("; ")
+            .append("DC=").append(destroyed.get()).append("; ")
+            .append("PS=").append(successes.get()).append("; ")
+            .append("PR=").append(returned.get()).append("; ")
+            .append("CS=").append(pooledCount.get()).append("; ")
+            .append("SS=").append(steadyPoolSize).append("; ")
+            .append("MS=").append(maxPoolSize).append(";");
+        return sbuf.toString();
+    }
+
+    private static final class Node {
+        final Object obj;
+        Node next;
+
+        Node(Object obj, Node next) {
+            this.obj = obj;
+            this.next = next;
+        }
+    }
+
+    private class ReSizeWork
+        implements Runnable
+    {
+        public void run() {
+            try {
+                doResize();
+            } catch (Exception ex) {
+                _logger.log(Level.WARNING,
+                    "[Pool-"+poolName+"]: Exception during reSize", ex);
+            } finally {
+                addedResizeTask.set(false);
+            }
+        }
+    }
+
+    private class IdleBeanWork
+        implements Runnable
+    {
+        public void run() {
+            try {
+                doResize();
+            } catch (Exception ex) {
+            } finally {
+                addedIdleBeanWork.set(false);
+            }
+        }
+    }
+
+    private class PoolResizeTimerTask
+        extends java.util.TimerTask
+    {
+        PoolResizeTimerTask() {}
+
+        public void run() {
+            if (!addedIdleBeanWork.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                EjbContainerUtilImpl.getInstance().addWork(new IdleBeanWork());
+            } catch (Exception ex) {
+                addedIdleBeanWork.set(false);
+                _logger.log(Level.WARNING,
+                            "[Pool-"+poolName+"]: Cannot perform "
+                            + " pool idle bean cleanup", ex);
+            }
+        }
+    } // End of class PoolResizeTimerTask
+
+}
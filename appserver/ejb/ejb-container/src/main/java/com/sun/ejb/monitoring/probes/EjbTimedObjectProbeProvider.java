@@ -61,4 +61,9 @@ public class EjbTimedObjectProbeProvider {
     @Probe(name="timerDeliveredEvent")
     public void ejbTimerDeliveredEvent() {}
 
+    @Probe(name="timerDeliveryLatenessEvent")
+    public void ejbTimerDeliveryLatenessEvent(
+            @ProbeParam("driftMillis") long driftMillis,
+            @ProbeParam("latenessMillis") long latenessMillis) {}
+
 }
@@ -87,6 +87,7 @@ public class EjbCacheStatsProvider {
     private BoundedRangeStatisticImpl cacheHits;
     private BoundedRangeStatisticImpl cacheMisses;
     private BoundedRangeStatisticImpl numBeans;
+    private RangeStatisticImpl passivationQueueDepth;
 
     private static final Logger _logger = EjbContainerUtilImpl.getLogger();
 
@@ -120,6 +121,10 @@ public class EjbCacheStatsProvider {
             0, 0, 0, Long.MAX_VALUE, 0, "CacheMisses", "count", 
             "Provides the number of times a user request fails to find an EJB in associated EJB cache instance",
             now, now);
+        passivationQueueDepth = new RangeStatisticImpl(
+            0, 0, 0, "PassivationQueueDepth", "count",
+            "Provides the number of passivated EJBs whose state is waiting to be written to the store",
+            now, now);
     }
 
     public void register() {
@@ -159,6 +164,13 @@ public class EjbCacheStatsProvider {
         return numBeans;
     }
 
+    @ManagedAttribute(id="passivationqueuedepth")
+    @Description( "Number of passivated EJBs waiting to be written to the store")
+    public RangeStatistic getPassivationQueueDepth() {
+        passivationQueueDepth.setCurrent(delegate.getPassivationQueueDepth());
+        return passivationQueueDepth;
+    }
+
     @ManagedAttribute(id="numexpiredsessionsremoved")
     @Description( "Number of expired sessions removed by the cleanup thread.")
     public CountStatistic getNumExpiredSessionsRemoved() {
@@ -58,5 +58,7 @@ public interface EjbCacheStatsProviderDelegate
 
     public int getNumPassivationSuccess();
 
+    public int getPassivationQueueDepth();
+
     public int getMaxCacheSize();
 }
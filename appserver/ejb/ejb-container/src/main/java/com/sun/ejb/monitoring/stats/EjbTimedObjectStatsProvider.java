@@ -40,6 +40,7 @@
 
 package com.sun.ejb.monitoring.stats;
 
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,6 +50,7 @@ import org.glassfish.external.probe.provider.StatsProviderManager;
 import org.glassfish.external.probe.provider.annotations.*;
 import org.glassfish.external.statistics.*;
 import org.glassfish.external.statistics.impl.*;
+import org.glassfish.flashlight.statistics.concurrent.LatencyHistogram;
 import org.glassfish.gmbal.*;
 
 /**
@@ -70,6 +72,29 @@ public class EjbTimedObjectStatsProvider {
     private CountStatisticImpl timerDeliveredStat = new CountStatisticImpl("NumTimersDelivered",
             "count", "Number of timers delivered by the system");
 
+    private TimeStatisticImpl driftStat = new TimeStatisticImpl(0L, 0L, 0L, 0L,
+            "TimerDeliveryDrift", "Milliseconds",
+            "Time between a timer expiration and the moment the scheduler fired it",
+            System.currentTimeMillis(), -1L);
+
+    private TimeStatisticImpl latenessStat = new TimeStatisticImpl(0L, 0L, 0L, 0L,
+            "TimerDeliveryLateness", "Milliseconds",
+            "Time between a timer expiration and the start of its timeout callback",
+            System.currentTimeMillis(), -1L);
+
+    private StringStatisticImpl driftHistogramStat = new StringStatisticImpl(
+            "TimerDeliveryDriftHistogram", "List",
+            "Percentiles of the scheduler drift of timer expirations, in milliseconds");
+
+    private StringStatisticImpl latenessHistogramStat = new StringStatisticImpl(
+            "TimerDeliveryLatenessHistogram", "List",
+            "Percentiles of the delivery lateness of timer expirations, in milliseconds");
+
+    private final LatencyHistogram driftHistogram =
+            new LatencyHistogram(TimeUnit.DAYS.toMillis(1));
+    private final LatencyHistogram latenessHistogram =
+            new LatencyHistogram(TimeUnit.DAYS.toMillis(1));
+
     private static final Logger _logger = EjbContainerUtilImpl.getLogger();
 
     private String appName = null;
@@ -118,6 +143,16 @@ public class EjbTimedObjectStatsProvider {
         timerDeliveredStat.increment();
     }
 
+    @ProbeListener("glassfish:ejb:timers:timerDeliveryLatenessEvent")
+    public void ejbTimerDeliveryLatenessEvent(
+            @ProbeParam("driftMillis") long driftMillis,
+            @ProbeParam("latenessMillis") long latenessMillis) {
+        driftStat.incrementCount(driftMillis);
+        latenessStat.incrementCount(latenessMillis);
+        driftHistogram.record(driftMillis);
+        latenessHistogram.record(latenessMillis);
+    }
+
     @ManagedAttribute(id="numtimerscreated")
     @Description( "Number of timers created in the system")
     public CountStatistic getNumTimersCreated() {
@@ -135,4 +170,30 @@ public class EjbTimedObjectStatsProvider {
     public CountStatistic getNumTimersDelivered() {
         return timerDeliveredStat;
     }
+
+    @ManagedAttribute(id="timerdeliverydrift")
+    @Description( "Time between a timer expiration and the moment the scheduler fired it")
+    public TimeStatistic getTimerDeliveryDrift() {
+        return driftStat.getStatistic();
+    }
+
+    @ManagedAttribute(id="timerdeliverylateness")
+    @Description( "Time between a timer expiration and the start of its timeout callback")
+    public TimeStatistic getTimerDeliveryLateness() {
+        return latenessStat.getStatistic();
+    }
+
+    @ManagedAttribute(id="timerdeliverydrifthistogram")
+    @Description( "Percentiles of the scheduler drift of timer expirations, in milliseconds")
+    public StringStatistic getTimerDeliveryDriftHistogram() {
+        driftHistogramStat.setCurrent(driftHistogram.toString());
+        return driftHistogramStat.getStatistic();
+    }
+
+    @ManagedAttribute(id="timerdeliverylatenesshistogram")
+    @Description( "Percentiles of the delivery lateness of timer expirations, in milliseconds")
+    public StringStatistic getTimerDeliveryLatenessHistogram() {
+        latenessHistogramStat.setCurrent(latenessHistogram.toString());
+        return latenessHistogramStat.getStatistic();
+    }
 }
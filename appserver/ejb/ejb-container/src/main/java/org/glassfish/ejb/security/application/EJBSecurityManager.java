@@ -85,6 +85,7 @@ import org.glassfish.internal.api.Globals;
 import org.glassfish.security.common.Role;
 
 import com.sun.ejb.EjbInvocation;
+import com.sun.ejb.containers.interceptors.MethodInvoker;
 import com.sun.enterprise.deployment.EjbIORConfigurationDescriptor;
 import com.sun.enterprise.deployment.MethodDescriptor;
 import com.sun.enterprise.deployment.MethodPermission;
@@ -1085,6 +1086,27 @@ public final class EJBSecurityManager
         return ret;
     }
 
+    /**
+     * Same as runMethod, but calls the business method through a bound
+     * invoker. Exceptions thrown by the method are not wrapped in an
+     * InvocationTargetException.
+     *
+     * @param invoker the invoker bound to the EJB business method
+     * @param obj     the EJB bean instance
+     * @param oa      parameters passed to the business method
+     * @return return value from the business method
+     * @throws Throwable the exception thrown by the business method
+     */
+    public Object runMethod(MethodInvoker invoker, Object obj, Object[] oa)
+            throws Throwable {
+        String oldCtxID = setPolicyContext(this.contextId);
+        try {
+            return invoker.invoke(obj, oa);
+        } finally {
+            resetPolicyContext(oldCtxID, this.contextId);
+        }
+    }
+
     private static void resetPolicyContext(final String newV, String oldV)
             throws Throwable {
         if ( newV != null && (oldV == null || !oldV.equals(newV))) {
@@ -0,0 +1,171 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.ejb.containers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TimerWheelTest {
+
+    // With a 1 ms tick the first level covers 256 ms and the second one
+    // about 65 seconds.
+    private static final long TICK_MILLIS = 1;
+    // Slack allowed for a loaded build machine
+    private static final long LATE_MILLIS = 1000;
+
+    private TimerWheel wheel;
+
+    @Before
+    public void startWheel() {
+        wheel = new TimerWheel("TimerWheelTest", TICK_MILLIS);
+    }
+
+    @After
+    public void stopWheel() {
+        wheel.stop();
+    }
+
+    /**
+     * Timeouts on both sides of the level boundaries are cascaded from the
+     * second level to the first and never fire early.
+     */
+    @Test
+    public void timeoutsCascadeAcrossLevels() throws Exception {
+        long[] delays = {0, 10, 255, 256, 257, 511, 512, 513, 1100, 2300};
+        CountDownLatch done = new CountDownLatch(delays.length);
+        List<Task> tasks = new ArrayList<Task>();
+        for (long delay : delays) {
+            Task task = new Task(delay, done);
+            tasks.add(task);
+            wheel.schedule(task, delay);
+        }
+
+        assertTrue(done.await(2300 + LATE_MILLIS, TimeUnit.MILLISECONDS));
+        for (Task task : tasks) {
+            assertEquals(1, task.runs.get());
+            long elapsed = task.elapsedMillis();
+            assertTrue("fired after " + elapsed + " ms instead of " + task.delay,
+                    elapsed >= task.delay && elapsed <= task.delay + LATE_MILLIS);
+        }
+    }
+
+    /**
+     * A cancelled timeout does not run, whether it is still pending or
+     * already placed in a bucket, and cannot be cancelled twice.
+     */
+    @Test
+    public void cancelledTimeoutsDoNotRun() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        Task pending = new Task(100, null);
+        Task placed = new Task(600, null);
+        Task kept = new Task(700, done);
+
+        TimerWheel.Timeout pendingTimeout = wheel.schedule(pending, pending.delay);
+        assertTrue(pendingTimeout.cancel());
+        assertFalse(pendingTimeout.cancel());
+
+        TimerWheel.Timeout placedTimeout = wheel.schedule(placed, placed.delay);
+        wheel.schedule(kept, kept.delay);
+        // let the wheel thread move it to the second level
+        Thread.sleep(50);
+        assertTrue(placedTimeout.cancel());
+
+        assertTrue(done.await(700 + LATE_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(0, pending.runs.get());
+        assertEquals(0, placed.runs.get());
+        assertEquals(1, kept.runs.get());
+    }
+
+    /**
+     * A timeout that has run cannot be cancelled, and a task that throws
+     * does not stop the wheel.
+     */
+    @Test
+    public void expiredTimeoutsAndFailingTasks() throws Exception {
+        final CountDownLatch failed = new CountDownLatch(1);
+        TimerWheel.Timeout failing = wheel.schedule(new Runnable() {
+            public void run() {
+                failed.countDown();
+                throw new IllegalStateException("expected by the test");
+            }
+        }, 5);
+        assertTrue(failed.await(LATE_MILLIS, TimeUnit.MILLISECONDS));
+
+        CountDownLatch done = new CountDownLatch(1);
+        Task task = new Task(5, done);
+        wheel.schedule(task, task.delay);
+        assertTrue(done.await(LATE_MILLIS, TimeUnit.MILLISECONDS));
+        assertFalse(failing.cancel());
+    }
+
+    private static final class Task implements Runnable {
+        final long delay;
+        final long scheduled = System.nanoTime();
+        final AtomicInteger runs = new AtomicInteger();
+        final AtomicLong ran = new AtomicLong();
+        private final CountDownLatch done;
+
+        Task(long delay, CountDownLatch done) {
+            this.delay = delay;
+            this.done = done;
+        }
+
+        public void run() {
+            ran.set(System.nanoTime());
+            runs.incrementAndGet();
+            if (done != null) {
+                done.countDown();
+            }
+        }
+
+        long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(ran.get() - scheduled);
+        }
+    }
+}
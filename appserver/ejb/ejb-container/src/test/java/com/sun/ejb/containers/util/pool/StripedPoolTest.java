@@ -0,0 +1,196 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.ejb.containers.util.pool;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class StripedPoolTest {
+
+    /**
+     * An object returned by a thread is handed back to the same thread.
+     */
+    @Test
+    public void returnedObjectIsReused() {
+        TestFactory factory = new TestFactory();
+        StripedPool pool = newPool(factory, 10);
+
+        Object first = pool.getObject(null);
+        pool.returnObject(first);
+        assertSame(first, pool.getObject(null));
+        assertEquals(1, pool.getCreatedCount());
+        pool.close();
+    }
+
+    /**
+     * Objects returned by another thread, to its stripe and to the overflow
+     * stack, are reused instead of creating new ones.
+     */
+    @Test
+    public void objectsReturnedByOtherThreadsAreStolen() throws Exception {
+        TestFactory factory = new TestFactory();
+        final StripedPool pool = newPool(factory, 100);
+        final List<Object> returned = new ArrayList<Object>();
+
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10; i++) {
+                    returned.add(pool.getObject(null));
+                }
+                for (Object o : returned) {
+                    pool.returnObject(o);
+                }
+            }
+        };
+        other.start();
+        other.join();
+        assertEquals(10, pool.getSize());
+
+        Set<Object> reused = new HashSet<Object>();
+        for (int i = 0; i < 10; i++) {
+            reused.add(pool.getObject(null));
+        }
+        assertEquals(new HashSet<Object>(returned), reused);
+        assertEquals(10, pool.getCreatedCount());
+        assertEquals(0, pool.getSize());
+        pool.close();
+    }
+
+    /**
+     * Objects returned while the pool holds maxPoolSize objects are
+     * destroyed, and close() destroys the pooled ones.
+     */
+    @Test
+    public void maxPoolSizeAndClose() {
+        TestFactory factory = new TestFactory();
+        StripedPool pool = newPool(factory, 5);
+
+        List<Object> objects = new ArrayList<Object>();
+        for (int i = 0; i < 8; i++) {
+            objects.add(pool.getObject(null));
+        }
+        for (Object o : objects) {
+            pool.returnObject(o);
+        }
+        assertEquals(5, pool.getSize());
+        assertEquals(3, factory.destroyed.get());
+
+        pool.close();
+        assertEquals(0, pool.getSize());
+        assertEquals(8, factory.destroyed.get());
+        assertEquals(8, pool.getDestroyedCount());
+    }
+
+    /**
+     * Under contention an object is never handed to two threads at once,
+     * a destroyed object is never handed out, and every object created is
+     * either pooled or destroyed at the end.
+     */
+    @Test
+    public void getAndReturnUnderContention() throws Exception {
+        final TestFactory factory = new TestFactory();
+        final StripedPool pool = newPool(factory, 8);
+        final AtomicInteger failures = new AtomicInteger();
+
+        Thread[] threads = new Thread[16];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 20000; j++) {
+                        PooledObject o = (PooledObject) pool.getObject(null);
+                        if (o.destroyed || !o.inUse.compareAndSet(false, true)) {
+                            failures.incrementAndGet();
+                        }
+                        o.inUse.set(false);
+                        pool.returnObject(o);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(0, failures.get());
+        assertTrue(pool.getSize() <= 8);
+        assertEquals(factory.created.get(), pool.getCreatedCount());
+        assertEquals(factory.destroyed.get(), pool.getDestroyedCount());
+        assertEquals(pool.getCreatedCount() - pool.getDestroyedCount(), pool.getSize());
+        pool.close();
+        assertEquals(factory.created.get(), factory.destroyed.get());
+    }
+
+    private static StripedPool newPool(ObjectFactory factory, int maxPoolSize) {
+        StripedPool pool = new StripedPool(0L, "test", factory, 0, 0,
+                maxPoolSize, 0, StripedPoolTest.class.getClassLoader());
+        pool.setInfo("app", "module", "ejb");
+        return pool;
+    }
+
+    private static final class PooledObject {
+        final AtomicBoolean inUse = new AtomicBoolean();
+        volatile boolean destroyed;
+    }
+
+    private static final class TestFactory implements ObjectFactory {
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger destroyed = new AtomicInteger();
+
+        public Object create(Object param) {
+            created.incrementAndGet();
+            return new PooledObject();
+        }
+
+        public void destroy(Object object) {
+            ((PooledObject) object).destroyed = true;
+            destroyed.incrementAndGet();
+        }
+    }
+}
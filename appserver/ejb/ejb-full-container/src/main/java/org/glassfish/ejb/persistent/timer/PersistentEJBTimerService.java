@@ -55,6 +55,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ejb.CreateException;
@@ -62,6 +66,9 @@ import javax.ejb.EJBException;
 import javax.ejb.FinderException;
 import javax.ejb.TimerConfig;
 import javax.sql.DataSource;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.Transaction;
 import javax.transaction.TransactionManager;
 
 import com.sun.appserv.connectors.internal.api.ConnectorRuntime;
@@ -129,6 +136,32 @@ public class PersistentEJBTimerService extends EJBTimerService {
     // Possible values "redeliver" and "stop"
     private String operationOnConnectionFailure = null;
 
+    // Batched timer store: restore timers by expiration window, write last
+    // expirations of periodic timers in batches, and claim timers of failed 
+    // server instances by time slice under a lease
+    private static final String BATCHED_TIMER_STORE = "batched-timer-store";
+    private static final String RESTORE_WINDOW_IN_SECONDS = "timer-restore-window-in-seconds";
+    private static final String SWEEP_INTERVAL_IN_MILLIS = "timer-store-sweep-interval-in-millis";
+    private static final long DEFAULT_RESTORE_WINDOW_IN_SECONDS = 300;
+    private static final long DEFAULT_SWEEP_INTERVAL_IN_MILLIS = 10000;
+    private static final int LEASE_DURATION_IN_SWEEPS = 6;
+    private static final int RESTORE_PAGE_SIZE = 500;
+
+    private boolean batchedTimerStore = false;
+    private long restoreWindow = DEFAULT_RESTORE_WINDOW_IN_SECONDS * 1000;
+    private long sweepInterval = DEFAULT_SWEEP_INTERVAL_IN_MILLIS;
+
+    // Single-action timers expiring before this time are restored
+    private volatile long restoredUntil = 0;
+    private volatile boolean leaseRenewed = false;
+
+    // Last expirations of periodic timers not yet written to the database
+    private final ConcurrentMap<TimerPrimaryKey, Long> pendingLastExpirations =
+            new ConcurrentHashMap<TimerPrimaryKey, Long>();
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private TimerTask sweeperTask = null;
+
     private PersistentEJBTimerService(String ejbName, boolean removeOldTimers) throws Exception {
         super();
 
@@ -165,6 +198,30 @@ public class PersistentEJBTimerService extends EJBTimerService {
                     getDBReadBeforeTimeoutProperty();
 
                 operationOnConnectionFailure = ejbt.getPropertyValue(ON_CONECTION_FAILURE);
+
+                batchedTimerStore = Boolean.valueOf(ejbt.getPropertyValue(BATCHED_TIMER_STORE));
+                String window = ejbt.getPropertyValue(RESTORE_WINDOW_IN_SECONDS);
+                if( window != null ) {
+                    restoreWindow = Long.parseLong(window) * 1000;
+                }
+                String interval = ejbt.getPropertyValue(SWEEP_INTERVAL_IN_MILLIS);
+                if( interval != null ) {
+                    sweepInterval = Long.parseLong(interval);
+                }
+                if( restoreWindow <= 0 || sweepInterval <= 0 ) {
+                    logger.log(Level.WARNING, "Invalid batched timer store settings: " +
+                            "restore window and sweep interval must be positive. " +
+                            "Defaults will be used instead.");
+                    restoreWindow = DEFAULT_RESTORE_WINDOW_IN_SECONDS * 1000;
+                    sweepInterval = DEFAULT_SWEEP_INTERVAL_IN_MILLIS;
+                }
+
+                if( logger.isLoggable(Level.FINE) ) {
+                    logger.log(Level.FINE, "EJB Timer Service properties : " +
+                               "\nbatched timer store = " + batchedTimerStore +
+                               "\nrestore window in millis = " + restoreWindow +
+                               "\nsweep interval in millis = " + sweepInterval);
+                }
             }
 
         } catch(Exception e) {
@@ -215,6 +272,11 @@ public class PersistentEJBTimerService extends EJBTimerService {
                                             ownerIdOfThisServer);
         }
 
+        if( batchedTimerStore ) {
+            // Instances claim the timers slice by slice once the lease expired
+            return expireLease(fromOwnerId);
+        }
+
         logger.log(Level.INFO, "Beginning timer migration process from " +
                    "owner " + fromOwnerId + " to " + ownerIdOfThisServer);
 
@@ -366,7 +428,7 @@ public class PersistentEJBTimerService extends EJBTimerService {
                 restoreTimers();
                 rc = true;
             } else {
-                int s = (timerLocal_.findActiveTimersOwnedByThisServer()).size();
+                int s = timerLocal_.countActiveTimersOwnedByThisServer();
                 if (s > 0) {
                     logger.log(Level.INFO, "[" + s + "] EJB Timers owned by this server will be restored when timeout beans are loaded");
                 } else {
@@ -392,6 +454,16 @@ public class PersistentEJBTimerService extends EJBTimerService {
             return;
         }
 
+        if( batchedTimerStore ) {
+            // Periodic timers and single-action timers expiring in the
+            // restore window, a page per transaction. The sweeper restores
+            // the rest as the window moves on.
+            int restored = restoreTimers(Long.MIN_VALUE, restoredUntil);
+            logger.log(Level.INFO, "[" + restored + "] EJB Timers restored that are " +
+                    "periodic or expire before " + new Date(restoredUntil));
+            return;
+        }
+
         TransactionManager tm = ejbContainerUtil.getTransactionManager();
         try {
             // create a tx in which to do database access for all timers 
@@ -416,6 +488,47 @@ public class PersistentEJBTimerService extends EJBTimerService {
         }
     }
 
+    /**
+     * Restore active timers owned by this server instance, a page at a time
+     * with a transaction per page. With fromTime of Long.MIN_VALUE restores 
+     * periodic timers and single-action timers that expire before toTime,
+     * otherwise single-action timers that expire in [fromTime, toTime).
+     * Timers that are already restored are skipped.
+     * @return the number of timers in the restored pages
+     */
+    private int restoreTimers(long fromTime, long toTime) throws Exception {
+        TransactionManager tm = ejbContainerUtil.getTransactionManager();
+        int restored = 0;
+        String lastTimerId = "";
+        List<TimerState> page = null;
+        do {
+            tm.begin();
+            try {
+                if( fromTime == Long.MIN_VALUE ) {
+                    page = timerLocal_.findActiveTimersOwnedByThisServerDueBefore(
+                            lastTimerId, toTime, RESTORE_PAGE_SIZE);
+                } else {
+                    page = timerLocal_.findActiveSingleActionTimersOwnedByThisServerDueBetween(
+                            lastTimerId, fromTime, toTime, RESTORE_PAGE_SIZE);
+                }
+                if( !page.isEmpty() ) {
+                    lastTimerId = page.get(page.size() - 1).getTimerId();
+                    restored += _restoreTimers(new HashSet<TimerState>(page)).size();
+                }
+            } finally {
+                // We're not modifying any state in this tx other than removing
+                // expired schedules so no harm in always committing.
+                try {
+                    tm.commit();
+                } catch(Exception e) {
+                    logger.log(Level.WARNING, "ejb.timer_service_init_error", e);
+                }
+            }
+        } while( page.size() == RESTORE_PAGE_SIZE );
+
+        return restored;
+    }
+
     /**
      * The portion of timer migration that notifies containers about 
      * automatic timers being migrated to this instance
@@ -738,8 +851,17 @@ public class PersistentEJBTimerService extends EJBTimerService {
         try {
             tm.begin();
 
-            Set<TimerState> timers = _restoreTimers(
+            Set<TimerState> timers = null;
+            if( batchedTimerStore ) {
+                // Reach past the window of a sweep that might be running 
+                // concurrently and skipping the timers of this container.
+                timers = _restoreTimers((Set<TimerState>)timerLocal_.
+                        findActiveTimersOwnedByThisServerByContainerDueBefore(containerId, 
+                                System.currentTimeMillis() + 2 * restoreWindow));
+            } else {
+                timers = _restoreTimers(
                     (Set<TimerState>)timerLocal_.findActiveTimersOwnedByThisServerByContainer(containerId));
+            }
 
             if (timers.size() > 0) {
                 logger.log(Level.FINE, "Found " + timers.size() + 
@@ -1161,6 +1283,10 @@ public class PersistentEJBTimerService extends EJBTimerService {
     protected boolean isValidTimerForThisServer(TimerPrimaryKey timerId,
                                           RuntimeTimerState timerState) {
         if (timerState.isPersistent()) {
+            if( batchedTimerStore && timerState.isPeriodic() ) {
+                // Checked when the last expiration is written by the sweeper
+                return true;
+            }
             if( getValidTimerFromDB( timerId ) == null ) {
                 return false;
             }
@@ -1175,6 +1301,11 @@ public class PersistentEJBTimerService extends EJBTimerService {
     protected void resetLastExpiration(TimerPrimaryKey timerId,
                                           RuntimeTimerState timerState) {
         if (timerState.isPersistent()) {
+            if( batchedTimerStore ) {
+                addPendingLastExpiration(timerId, System.currentTimeMillis());
+                return;
+            }
+
             TimerState timer = getValidTimerFromDB( timerId );
             if( null == timer ) {
                 return;
@@ -1290,6 +1421,295 @@ public class PersistentEJBTimerService extends EJBTimerService {
     }
 
 
+    //
+    // Batched timer store
+    //
+
+    /**
+     * Remember the last expiration of a periodic timer, to be written to
+     * the database by the next sweep once the current transaction commits.
+     */
+    private void addPendingLastExpiration(final TimerPrimaryKey timerId, 
+                                          final long lastExpiration) {
+        try {
+            Transaction tx = ejbContainerUtil.getTransactionManager().getTransaction();
+            if( tx != null && tx.getStatus() == Status.STATUS_ACTIVE ) {
+                tx.registerSynchronization(new Synchronization() {
+                    public void beforeCompletion() {
+                    }
+
+                    public void afterCompletion(int status) {
+                        if( status == Status.STATUS_COMMITTED ) {
+                            pendingLastExpirations.put(timerId, lastExpiration);
+                        }
+                    }
+                });
+                return;
+            }
+        } catch(Exception e) {
+            logger.log(Level.FINE, "Cannot register last expiration " +
+                    "synchronization for timer " + timerId, e);
+        }
+        pendingLastExpirations.put(timerId, lastExpiration);
+    }
+
+    private void startSweeper() {
+        sweeperTask = new TimerTask() {
+            public void run() {
+                // Keep the JDK timer thread free, and skip a sweep while
+                // the previous one is still running
+                if( sweeping.compareAndSet(false, true) ) {
+                    try {
+                        ejbContainerUtil.addWork(new Runnable() {
+                            public void run() {
+                                try {
+                                    sweep();
+                                } finally {
+                                    sweeping.set(false);
+                                }
+                            }
+                        });
+                    } catch(Exception e) {
+                        sweeping.set(false);
+                        logger.log(Level.WARNING, "Cannot start EJB timer store sweep", e);
+                    }
+                }
+            }
+        };
+        ejbContainerUtil.getTimer().schedule(sweeperTask, sweepInterval, sweepInterval);
+    }
+
+    private void sweep() {
+        flushLastExpirations();
+        sweepLeases();
+
+        long windowEnd = System.currentTimeMillis() + restoreWindow;
+        if( totalTimedObjectsInitialized_ > 0 ) {
+            try {
+                int restored = restoreTimers(restoredUntil, windowEnd);
+                if( logger.isLoggable(Level.FINE) ) {
+                    logger.log(Level.FINE, "[" + restored + "] single-action timers " +
+                            "restored that expire before " + new Date(windowEnd));
+                }
+            } catch(Exception e) {
+                logger.log(Level.WARNING, "Cannot restore EJB timers that expire before " +
+                        new Date(windowEnd), e);
+                return;
+            }
+        }
+        // Timers of containers that are not up yet are restored with them
+        restoredUntil = windowEnd;
+    }
+
+    /**
+     * Write the pending last expirations in one transaction. Timers that
+     * were not updated have been cancelled or migrated by another server 
+     * instance and are removed from this server's cache.
+     */
+    private void flushLastExpirations() {
+        if( pendingLastExpirations.isEmpty() ) {
+            return;
+        }
+
+        Map<TimerPrimaryKey, Long> batch = 
+                new HashMap<TimerPrimaryKey, Long>(pendingLastExpirations);
+        Set<TimerPrimaryKey> notUpdated = null;
+        TransactionManager tm = ejbContainerUtil.getTransactionManager();
+        try {
+            tm.begin();
+            notUpdated = timerLocal_.updateLastExpirations(batch);
+            tm.commit();
+        } catch(Exception e) {
+            // Keep them pending for the next sweep
+            logger.log(Level.WARNING, "Cannot write last expiration of [" + 
+                    batch.size() + "] EJB timers", e);
+            try {
+                tm.rollback();
+            } catch(Exception re) {
+                logger.log(Level.FINE, "last expiration rollback error", re);
+            }
+            return;
+        }
+
+        for(Map.Entry<TimerPrimaryKey, Long> entry : batch.entrySet()) {
+            // Leave a newer expiration for the next sweep
+            pendingLastExpirations.remove(entry.getKey(), entry.getValue());
+        }
+
+        for(TimerPrimaryKey timerId : notUpdated) {
+            if( logger.isLoggable(Level.FINE) ) {
+                logger.log(Level.FINE, "Timer :" + timerId + 
+                        ": is no longer owned by " + ownerIdOfThisServer_ + 
+                        ". Expunging the timer from its cache.");
+            }
+            expungeTimer(timerId, false);
+        }
+    }
+
+    /**
+     * Renew the lease of this server instance on its timers, and claim the
+     * next time slice of timers of each instance whose lease expired.
+     */
+    private void sweepLeases() {
+        long now = System.currentTimeMillis();
+        long previous = 0;
+        List<TimerLease> expired = null;
+        TransactionManager tm = ejbContainerUtil.getTransactionManager();
+        try {
+            tm.begin();
+            previous = timerLocal_.renewLease(now + sweepInterval * LEASE_DURATION_IN_SWEEPS, 
+                    !leaseRenewed);
+            expired = timerLocal_.findExpiredLeases(now);
+            tm.commit();
+        } catch(Exception e) {
+            logger.log(Level.WARNING, "Cannot renew the lease of " + ownerIdOfThisServer_ +
+                    " on its EJB timers", e);
+            try {
+                tm.rollback();
+            } catch(Exception re) {
+                logger.log(Level.FINE, "lease rollback error", re);
+            }
+            return;
+        }
+
+        if( leaseRenewed && previous < now ) {
+            // Other instances might have claimed timers of this one
+            revalidateTimers();
+        }
+        leaseRenewed = true;
+
+        for(TimerLease lease : expired) {
+            if( !lease.getOwnerId().equals(ownerIdOfThisServer_) ) {
+                claimNextSlice(lease.getOwnerId(), lease.getExpirationRaw(), now);
+            }
+        }
+    }
+
+    /**
+     * Take ownership of the next slice of timers of a server instance whose 
+     * lease expired at epoch. Slices are restore windows aligned to multiples 
+     * of the window. The first claim takes periodic timers and all timers 
+     * that are due before the end of the current restore window, however long
+     * ago the lease expired; later slices are claimed once they enter the 
+     * restore window, one per sweep.
+     */
+    private void claimNextSlice(String fromOwnerId, long epoch, long now) {
+        long firstSlice = epoch / restoreWindow - 1;
+        // Last slice that starts before the end of the restore window
+        long dueSlice = (now + restoreWindow - 1) / restoreWindow;
+        Set<TimerState> claimed = null;
+        TransactionManager tm = ejbContainerUtil.getTransactionManager();
+        try {
+            tm.begin();
+            long lastClaimed = timerLocal_.findLastClaimedSlice(fromOwnerId, epoch);
+            if( lastClaimed < firstSlice ) {
+                long slice = Math.max(firstSlice, dueSlice);
+                claimed = timerLocal_.claimTimerSlice(fromOwnerId, epoch, slice, 
+                        Long.MIN_VALUE, (slice + 1) * restoreWindow);
+            } else if( lastClaimed < dueSlice ) {
+                long slice = lastClaimed + 1;
+                claimed = timerLocal_.claimTimerSlice(fromOwnerId, epoch, slice, 
+                        slice * restoreWindow, (slice + 1) * restoreWindow);
+            } else if( timerLocal_.countTimersOwnedBy(fromOwnerId) == 0 ) {
+                timerLocal_.releaseLeases(fromOwnerId);
+                logger.log(Level.INFO, "All EJB timers of " + fromOwnerId + 
+                        " have been claimed by other server instances");
+            }
+            tm.commit();
+        } catch(Exception e) {
+            // Expected when another instance claimed the same slice first
+            logger.log(Level.FINE, "timer slice claim error", e);
+            try {
+                tm.rollback();
+            } catch(Exception re) {
+                logger.log(Level.FINE, "timer slice claim rollback error", re);
+            }
+            return;
+        }
+
+        if( claimed != null && !claimed.isEmpty() ) {
+            logger.log(Level.INFO, "Claimed [" + claimed.size() + "] EJB timers of " +
+                    fromOwnerId + ". Now reactivating timers...");
+            try {
+                _notifyContainers(claimed);
+
+                tm.begin();
+                _restoreTimers(claimed);
+            } catch(Exception e) {
+                logger.log(Level.WARNING, "timer restoration error", e);
+            } finally {
+                try {
+                    tm.commit();
+                } catch(Exception re) {
+                    logger.log(Level.FINE, "timer restoration error", re);
+                }
+            }
+        }
+    }
+
+    /**
+     * The lease of this server instance had expired before it was renewed.
+     * Remove restored timers that other instances claimed in the meantime.
+     */
+    private void revalidateTimers() {
+        logger.log(Level.WARNING, "The lease of " + ownerIdOfThisServer_ +
+                " on its EJB timers had expired. Revalidating restored timers.");
+
+        // Timers added to the cache after this point are committed after
+        // the query below, so they are never expunged by mistake
+        Set<TimerPrimaryKey> restored = timerCache_.getPersistentTimerIds();
+        Set owned = null;
+        TransactionManager tm = ejbContainerUtil.getTransactionManager();
+        try {
+            tm.begin();
+            owned = timerLocal_.findActiveTimerIdsOwnedByThisServer();
+            tm.commit();
+        } catch(Exception e) {
+            logger.log(Level.WARNING, "Cannot revalidate EJB timers of " + 
+                    ownerIdOfThisServer_, e);
+            try {
+                tm.rollback();
+            } catch(Exception re) {
+                logger.log(Level.FINE, "timer revalidation rollback error", re);
+            }
+            return;
+        }
+
+        for(TimerPrimaryKey timerId : restored) {
+            if( !owned.contains(timerId) ) {
+                expungeTimer(timerId, false);
+            }
+        }
+    }
+
+    /**
+     * Expire the lease of another server instance on its timers, so that 
+     * running instances claim them slice by slice. 
+     * @return the number of timers to be claimed
+     */
+    private int expireLease(String fromOwnerId) {
+        logger.log(Level.INFO, "Expiring the lease of owner " + fromOwnerId + 
+                " on its timers. They will be claimed by time slice.");
+
+        TransactionManager tm = ejbContainerUtil.getTransactionManager();
+        int count = 0;
+        try {
+            tm.begin();
+            count = timerLocal_.expireLease(fromOwnerId, System.currentTimeMillis());
+            tm.commit();
+        } catch(Exception e) {
+            // This could be the expected result in the case that multiple 
+            // server instances expire the lease at the same time.  
+            logger.log(Level.FINE, "timer lease expiration error", e);
+            try {
+                tm.rollback();
+            } catch(Exception re) {
+                logger.log(Level.FINE, "timer lease expiration rollback error", re);
+            }
+        }
+        return count;
+    }
+
     // Used by TimerBean.testTimer
     TimerLocal getTimerLocal() {
         return timerLocal_;
@@ -1397,12 +1817,31 @@ public class PersistentEJBTimerService extends EJBTimerService {
         } else if (target == null) {
             // target is null when accessed from the BaseContainer on load, i.e. where timers are running
             logger.log(Level.INFO, "==> Restoring Timers ... " );
+            if (batchedTimerStore) {
+                // Take the lease before restoring so that other instances
+                // stop claiming timers of this one
+                sweepLeases();
+                restoredUntil = System.currentTimeMillis() + restoreWindow;
+            }
             if (restoreEJBTimers()) {
                 logger.log(Level.INFO, "<== ... Timers Restored.");
+                if (batchedTimerStore) {
+                    startSweeper();
+                }
             }
         }
     }
 
+    @Override
+    protected void shutdown() {
+        super.shutdown();
+        if (sweeperTask != null) {
+            sweeperTask.cancel();
+            // Write last expirations delivered since the last sweep
+            flushLastExpirations();
+        }
+    }
+
     private String getTimerResource() {
         return getTimerResource(ejbt);
     }
@@ -47,6 +47,8 @@ import java.io.ObjectStreamException;
 import java.util.Date;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.logging.Logger;
@@ -693,6 +695,148 @@ public class TimerBean implements TimerLocal {
         return q.executeUpdate();
     }
 
+    //
+    // Batched timer store
+    //
+
+    public List<TimerState> findActiveTimersOwnedByThisServerDueBefore(
+            String afterTimerId, long time, int maxResults) {
+        Query q = em.createNamedQuery("findTimersByOwnerAndStateDueBefore");
+        q.setParameter(1, getOwnerIdOfThisServer());
+        q.setParameter(2, EJBTimerService.STATE_ACTIVE);
+        q.setParameter(3, afterTimerId);
+        q.setParameter(4, time);
+        q.setMaxResults(maxResults);
+        return q.getResultList();
+    }
+
+    public List<TimerState> findActiveSingleActionTimersOwnedByThisServerDueBetween(
+            String afterTimerId, long fromTime, long toTime, int maxResults) {
+        Query q = em.createNamedQuery("findSingleActionTimersByOwnerAndStateDueBetween");
+        q.setParameter(1, getOwnerIdOfThisServer());
+        q.setParameter(2, EJBTimerService.STATE_ACTIVE);
+        q.setParameter(3, afterTimerId);
+        q.setParameter(4, fromTime);
+        q.setParameter(5, toTime);
+        q.setMaxResults(maxResults);
+        return q.getResultList();
+    }
+
+    public Set findActiveTimersOwnedByThisServerByContainerDueBefore
+        (long containerId, long time) {
+        Query q = em.createNamedQuery("findTimersByContainerAndOwnerAndStateDueBefore");
+        q.setParameter(1, containerId);
+        q.setParameter(2, getOwnerIdOfThisServer());
+        q.setParameter(3, EJBTimerService.STATE_ACTIVE);
+        q.setParameter(4, time);
+        return new HashSet(q.getResultList());
+    }
+
+    public Set<TimerPrimaryKey> updateLastExpirations(Map<TimerPrimaryKey, Long> lastExpirations) {
+        Set<TimerPrimaryKey> notUpdated = new HashSet<TimerPrimaryKey>();
+        Query q = em.createNamedQuery("updateLastExpirationByOwner");
+        q.setParameter("ownerId", getOwnerIdOfThisServer());
+        for (Map.Entry<TimerPrimaryKey, Long> entry : lastExpirations.entrySet()) {
+            q.setParameter("timerId", entry.getKey().getTimerId());
+            q.setParameter("lastExpiration", entry.getValue());
+            if (q.executeUpdate() == 0) {
+                notUpdated.add(entry.getKey());
+            }
+        }
+        return notUpdated;
+    }
+
+    public long renewLease(long expiration, boolean releaseSlices) {
+        String ownerId = getOwnerIdOfThisServer();
+        long previous = 0;
+        TimerLease lease = em.find(TimerLease.class, ownerId);
+        if (lease == null) {
+            em.persist(new TimerLease(ownerId, ownerId, ownerId, 
+                    TimerLease.HEARTBEAT, expiration));
+        } else {
+            previous = lease.getExpirationRaw();
+            lease.setHolderId(ownerId);
+            lease.setExpirationRaw(expiration);
+        }
+
+        if (releaseSlices) {
+            // Slices claimed from this server during a previous outage
+            Query q = em.createNamedQuery("deleteSliceLeasesByOwner");
+            q.setParameter("ownerId", ownerId);
+            q.executeUpdate();
+        }
+        return previous;
+    }
+
+    public int expireLease(String ownerId, long time) {
+        TimerLease lease = em.find(TimerLease.class, ownerId);
+        if (lease == null) {
+            em.persist(new TimerLease(ownerId, ownerId, getOwnerIdOfThisServer(), 
+                    TimerLease.HEARTBEAT, time));
+        } else if (lease.getExpirationRaw() > time) {
+            // Keep the expiration of a lease that had already expired, 
+            // slices claimed since then are keyed by it
+            lease.setExpirationRaw(time);
+        }
+        return countTimersOwnedBy(ownerId);
+    }
+
+    public List<TimerLease> findExpiredLeases(long time) {
+        Query q = em.createNamedQuery("findExpiredHeartbeatLeases");
+        q.setParameter(1, time);
+        return q.getResultList();
+    }
+
+    public long findLastClaimedSlice(String ownerId, long epoch) {
+        Query q = em.createNamedQuery("findLastClaimedSlice");
+        q.setParameter(1, ownerId);
+        q.setParameter(2, epoch);
+        Number slice = (Number)q.getSingleResult();
+        return (slice == null)? -1 : slice.longValue();
+    }
+
+    public Set<TimerState> claimTimerSlice(String fromOwnerId, long epoch, long slice,
+            long fromTime, long toTime) {
+        String ownerId = getOwnerIdOfThisServer();
+
+        // Inserting the lease fails on its primary key if another server 
+        // instance claimed this slice first, and serializes the claims
+        // before the timers are read
+        em.persist(new TimerLease(TimerLease.sliceLeaseId(fromOwnerId, epoch, slice),
+                fromOwnerId, ownerId, slice, epoch));
+        em.flush();
+
+        Query q = null;
+        Query u = null;
+        if (fromTime == Long.MIN_VALUE) {
+            q = em.createNamedQuery("findTimersByOwnerDueBeforeOrPeriodic");
+            q.setParameter(1, fromOwnerId);
+            q.setParameter(2, toTime);
+            u = em.createNamedQuery("updateTimersFromOwnerToNewOwnerDueBeforeOrPeriodic");
+        } else {
+            q = em.createNamedQuery("findTimersByOwnerDueBetween");
+            q.setParameter(1, fromOwnerId);
+            q.setParameter(2, fromTime);
+            q.setParameter(3, toTime);
+            u = em.createNamedQuery("updateTimersFromOwnerToNewOwnerDueBetween");
+            u.setParameter("fromTime", fromTime);
+        }
+        Set<TimerState> claimed = new HashSet<TimerState>(q.getResultList());
+
+        u.setParameter("fromOwner", fromOwnerId);
+        u.setParameter("toOwner", ownerId);
+        u.setParameter("toTime", toTime);
+        u.executeUpdate();
+
+        return claimed;
+    }
+
+    public int releaseLeases(String ownerId) {
+        Query q = em.createNamedQuery("deleteLeasesByOwner");
+        q.setParameter("ownerId", ownerId);
+        return q.executeUpdate();
+    }
+
     /**
      * To be used to read in TimerBean.Blob and replace with TimerState.Blob 
      * on v2.x upgrade
@@ -0,0 +1,156 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package org.glassfish.ejb.persistent.timer;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * TimerLease is a row in the lease table used by the batched timer store.
+ * A row with slice <code>HEARTBEAT</code> is the liveness lease of a server
+ * instance, renewed on every sweep. Any other row records that the timers of
+ * a dead server instance that expire in one restore window (a time slice)
+ * were claimed by the holder; for those rows <code>expirationRaw</code> is
+ * the expiration of the dead instance's last heartbeat, which identifies
+ * the outage the slice was claimed for.
+ */
+@Entity(name="TimerLease")
+@NamedQueries({
+    @NamedQuery(
+        name="findExpiredHeartbeatLeases",
+        query="SELECT l FROM TimerLease l WHERE l.slice = -1 AND l.expirationRaw < ?1"
+    ),
+    @NamedQuery(
+        name="findLastClaimedSlice",
+        query="SELECT MAX(l.slice) FROM TimerLease l WHERE l.ownerId = ?1 AND " +
+              "l.slice >= 0 AND l.expirationRaw = ?2"
+    ),
+    @NamedQuery(
+        name="deleteLeasesByOwner",
+        query="DELETE FROM TimerLease l WHERE l.ownerId = :ownerId"
+    ),
+    @NamedQuery(
+        name="deleteSliceLeasesByOwner",
+        query="DELETE FROM TimerLease l WHERE l.ownerId = :ownerId AND l.slice >= 0"
+    )
+})
+@Table(name="EJB__TIMER__LEASE__TBL")
+public class TimerLease {
+
+    // Value of slice for the liveness lease of a server instance
+    static final long HEARTBEAT = -1;
+
+    @Id
+    @Column(name="LEASEID")
+    private String leaseId;
+
+    // Server instance whose timers this lease is about
+    @Column(name="TIMEROWNERID")
+    private String ownerId;
+
+    // Server instance that holds the lease
+    @Column(name="HOLDERID")
+    private String holderId;
+
+    @Column(name="SLICE")
+    private long slice;
+
+    @Column(name="EXPIRATIONRAW")
+    private long expirationRaw;
+
+    public TimerLease() {
+    }
+
+    TimerLease(String leaseId, String ownerId, String holderId,
+               long slice, long expirationRaw) {
+        this.leaseId = leaseId;
+        this.ownerId = ownerId;
+        this.holderId = holderId;
+        this.slice = slice;
+        this.expirationRaw = expirationRaw;
+    }
+
+    String getLeaseId() {
+        return leaseId;
+    }
+
+    String getOwnerId() {
+        return ownerId;
+    }
+
+    String getHolderId() {
+        return holderId;
+    }
+
+    void setHolderId(String holderId) {
+        this.holderId = holderId;
+    }
+
+    long getSlice() {
+        return slice;
+    }
+
+    long getExpirationRaw() {
+        return expirationRaw;
+    }
+
+    void setExpirationRaw(long expirationRaw) {
+        this.expirationRaw = expirationRaw;
+    }
+
+    /**
+     * Id of the lease on the timers of <code>ownerId</code> that expire
+     * in the given slice of the outage that started at <code>epoch</code>.
+     */
+    static String sliceLeaseId(String ownerId, long epoch, long slice) {
+        return ownerId + "@@" + epoch + "@@" + slice;
+    }
+
+    public String toString() {
+        return "TimerLease " + leaseId + " ::owner=" + ownerId + " ::holder=" + holderId +
+               " ::slice=" + slice + " ::expiration=" + expirationRaw;
+    }
+}
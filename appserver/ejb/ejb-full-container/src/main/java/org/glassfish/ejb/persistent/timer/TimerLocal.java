@@ -43,6 +43,8 @@ package org.glassfish.ejb.persistent.timer;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.ejb.CreateException;
@@ -159,4 +161,47 @@ public interface TimerLocal {
 
     // Delete all timers owned by this Application (aka applicationId)
     int deleteTimersByApplication(long applicationId);
+
+
+    //
+    // Batched timer store
+    //
+
+    // Page of active timers owned by this server that are periodic or expire
+    // before the given time, ordered by timer id starting after afterTimerId
+    List<TimerState> findActiveTimersOwnedByThisServerDueBefore(
+            String afterTimerId, long time, int maxResults);
+
+    // Page of active single-action timers owned by this server that expire
+    // in [fromTime, toTime), ordered by timer id starting after afterTimerId
+    List<TimerState> findActiveSingleActionTimersOwnedByThisServerDueBetween(
+            String afterTimerId, long fromTime, long toTime, int maxResults);
+
+    Set findActiveTimersOwnedByThisServerByContainerDueBefore(long containerId, long time);
+
+    // Write last expirations of timers owned by this server. Returns the ids 
+    // of timers that were not updated because they were cancelled or migrated
+    Set<TimerPrimaryKey> updateLastExpirations(Map<TimerPrimaryKey, Long> lastExpirations);
+
+    // Renew the lease of this server on its timers. Returns the previous 
+    // expiration of the lease, or 0 if there was none
+    long renewLease(long expiration, boolean releaseSlices);
+
+    // Expire the lease of another server on its timers so that they are
+    // claimed by slice. Returns the number of timers still owned by it
+    int expireLease(String ownerId, long time);
+
+    List<TimerLease> findExpiredLeases(long time);
+
+    // Last slice claimed from ownerId since its lease expired at epoch, or -1
+    long findLastClaimedSlice(String ownerId, long epoch);
+
+    // Take ownership of the timers of another server that expire in 
+    // [fromTime, toTime), or before toTime and all periodic timers if fromTime 
+    // is Long.MIN_VALUE. Fails if another server claimed the slice first
+    Set<TimerState> claimTimerSlice(String fromOwnerId, long epoch, long slice,
+            long fromTime, long toTime);
+
+    // Delete all leases on the timers of ownerId
+    int releaseLeases(String ownerId);
 }
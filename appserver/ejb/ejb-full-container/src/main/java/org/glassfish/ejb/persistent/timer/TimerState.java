@@ -126,6 +126,35 @@ import com.sun.logging.LogDomains;
         name="findTimersByOwnerAndState",
         query="SELECT t FROM Timer t WHERE t.ownerId = ?1 AND t.state=?2"
     ),
+    @NamedQuery(
+        // Paged by timerId. Periodic and calendar-based timers are always included
+        name="findTimersByOwnerAndStateDueBefore",
+        query="SELECT t FROM Timer t WHERE t.ownerId = ?1 AND t.state=?2 AND t.timerId > ?3 AND " +
+              "(t.intervalDuration > 0 OR t.schedule IS NOT NULL OR t.initialExpirationRaw < ?4) " +
+              "ORDER BY t.timerId"
+    ),
+    @NamedQuery(
+        // Paged by timerId. Single-action timers only
+        name="findSingleActionTimersByOwnerAndStateDueBetween",
+        query="SELECT t FROM Timer t WHERE t.ownerId = ?1 AND t.state=?2 AND t.timerId > ?3 AND " +
+              "t.intervalDuration = 0 AND t.schedule IS NULL AND " +
+              "t.initialExpirationRaw >= ?4 AND t.initialExpirationRaw < ?5 ORDER BY t.timerId"
+    ),
+    @NamedQuery(
+        name="findTimersByContainerAndOwnerAndStateDueBefore",
+        query="SELECT t FROM Timer t WHERE t.containerId = ?1 AND t.ownerId=?2 AND t.state=?3 AND " +
+              "(t.intervalDuration > 0 OR t.schedule IS NOT NULL OR t.initialExpirationRaw < ?4)"
+    ),
+    @NamedQuery(
+        name="findTimersByOwnerDueBetween",
+        query="SELECT t FROM Timer t WHERE t.ownerId = ?1 AND " +
+              "t.initialExpirationRaw >= ?2 AND t.initialExpirationRaw < ?3"
+    ),
+    @NamedQuery(
+        name="findTimersByOwnerDueBeforeOrPeriodic",
+        query="SELECT t FROM Timer t WHERE t.ownerId = ?1 AND " +
+              "(t.intervalDuration > 0 OR t.schedule IS NOT NULL OR t.initialExpirationRaw < ?2)"
+    ),
     @NamedQuery(
         name="countTimersByApplication",
         query="SELECT COUNT(t) FROM Timer t WHERE t.applicationId = ?1"
@@ -160,6 +189,24 @@ import com.sun.logging.LogDomains;
         query="UPDATE Timer t SET t.ownerId = :toOwner WHERE t.ownerId = :fromOwner"
     )
     ,
+    @NamedQuery(
+        name="updateTimersFromOwnerToNewOwnerDueBetween",
+        query="UPDATE Timer t SET t.ownerId = :toOwner WHERE t.ownerId = :fromOwner AND " +
+              "t.initialExpirationRaw >= :fromTime AND t.initialExpirationRaw < :toTime"
+    )
+    ,
+    @NamedQuery(
+        name="updateTimersFromOwnerToNewOwnerDueBeforeOrPeriodic",
+        query="UPDATE Timer t SET t.ownerId = :toOwner WHERE t.ownerId = :fromOwner AND " +
+              "(t.intervalDuration > 0 OR t.schedule IS NOT NULL OR t.initialExpirationRaw < :toTime)"
+    )
+    ,
+    @NamedQuery(
+        name="updateLastExpirationByOwner",
+        query="UPDATE Timer t SET t.lastExpirationRaw = :lastExpiration " +
+              "WHERE t.timerId = :timerId AND t.ownerId = :ownerId"
+    )
+    ,
     @NamedQuery(
         name="deleteTimersByContainer",
         query="DELETE FROM Timer t WHERE t.containerId = :containerId"
@@ -53,3 +53,14 @@ SCHEDULE             VARCHAR(255),
 APPLICATIONID        BIGINT         NOT NULL,
 CONSTRAINT PK_EJB__TIMER__TBL PRIMARY KEY (TIMERID) 
 ) ;
+
+CREATE TABLE EJB__TIMER__LEASE__TBL (
+LEASEID              VARCHAR(255)   NOT NULL,
+TIMEROWNERID         VARCHAR(255)   NOT NULL,
+HOLDERID             VARCHAR(255),
+SLICE                BIGINT         NOT NULL,
+EXPIRATIONRAW        BIGINT         NOT NULL,
+CONSTRAINT PK_EJB__TIMER__LEASE__TBL PRIMARY KEY (LEASEID)
+);
+
+CREATE INDEX IDX_EJB__TIMER__OWNER ON EJB__TIMER__TBL (OWNERID, STATE, INITIALEXPIRATIONRAW);
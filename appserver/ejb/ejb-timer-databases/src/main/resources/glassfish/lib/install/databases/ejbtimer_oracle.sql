@@ -52,4 +52,15 @@ LASTEXPIRATIONRAW    NUMBER(19)    NOT NULL,
 SCHEDULE             VARCHAR(255)  NULL,
 APPLICATIONID        NUMBER(19)    NOT NULL,
 CONSTRAINT PK_EJB__TIMER__TBL PRIMARY KEY (TIMERID)
-)
+);
+
+CREATE TABLE EJB__TIMER__LEASE__TBL (
+LEASEID              VARCHAR(256)   NOT NULL,
+TIMEROWNERID         VARCHAR(256)   NOT NULL,
+HOLDERID             VARCHAR(256)   NULL,
+SLICE                NUMBER(19)     NOT NULL,
+EXPIRATIONRAW        NUMBER(19)     NOT NULL,
+CONSTRAINT PK_EJB__TIMER__LEASE__TBL PRIMARY KEY (LEASEID)
+);
+
+CREATE INDEX IDX_EJB__TIMER__OWNER ON EJB__TIMER__TBL (OWNERID, STATE, INITIALEXPIRATIONRAW);
@@ -55,3 +55,16 @@ PRIMARY KEY (TIMERID)
 );
 CREATE INDEX EJB__TIMER__TBL.IDX1 KEY(TIMERID)
 ;
+
+CREATE TABLE EJB__TIMER__LEASE__TBL (
+LEASEID              VARCHAR(255)  NOT NULL, 
+TIMEROWNERID         VARCHAR(255)  NOT NULL, 
+HOLDERID             VARCHAR(255), 
+SLICE                DECIMAL(18,0) NOT NULL, 
+EXPIRATIONRAW        DECIMAL(18,0) NOT NULL,
+PRIMARY KEY (LEASEID)
+);
+CREATE INDEX EJB__TIMER__LEASE__TBL.IDX1 KEY(LEASEID)
+;
+CREATE INDEX EJB__TIMER__TBL.IDX2 KEY(OWNERID, STATE, INITIALEXPIRATIONRAW)
+;
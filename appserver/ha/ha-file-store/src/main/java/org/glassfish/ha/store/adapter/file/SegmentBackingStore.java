@@ -0,0 +1,878 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package org.glassfish.ha.store.adapter.file;
+
+import org.glassfish.ha.store.api.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.*;
+import java.util.zip.CRC32;
+
+/**
+ * An implementation of BackingStore that appends records to rolling
+ * segment files instead of writing one file per key.
+ *
+ * Every save, timestamp update and remove appends a record to the active
+ * segment. An in-memory index maps each key to the segment and offset of
+ * its latest value, and is rebuilt from the segments on startup.
+ * Timestamp updates append a small record without the payload.
+ *
+ * Segments are fsync'ed in batches by a background task, at most
+ * segment.sync.interval.in.millis after a write. Another background task
+ * compacts the oldest segments once most of their records are dead, by
+ * copying the live records to the active segment and deleting the old files.
+ */
+public class SegmentBackingStore<K extends Serializable, V extends Serializable>
+        extends BackingStore<K, V> {
+
+    protected Logger logger =
+            Logger.getLogger(SegmentBackingStore.class.getName());
+
+    private static Level TRACE_LEVEL = Level.FINE;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final byte PUT = 1;
+
+    private static final byte TOUCH = 2;
+
+    private static final byte REMOVE = 3;
+
+    // record length, type, timestamp and key length, followed by the key,
+    // the value and a CRC32 of everything after the record length
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 4;
+
+    private static final int TRAILER_SIZE = 4;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    protected File baseDir;
+
+    private String debugStr;
+
+    private SegmentBackingStoreFactory factory;
+
+    private long defaultMaxIdleTimeoutInSeconds = 10L * 60L;
+
+    private long segmentSize = 64L * 1024L * 1024L;
+
+    private long syncIntervalInMillis = 100L;
+
+    private long compactionIntervalInMillis = 30L * 1000L;
+
+    // A segment is compacted when less than this percentage of it is live
+    private long compactionLivePercent = 50L;
+
+    private final ConcurrentHashMap<String, Location> index
+            = new ConcurrentHashMap<String, Location>();
+
+    // Ordered oldest first; the last one is the active segment
+    private final CopyOnWriteArrayList<Segment> segments
+            = new CopyOnWriteArrayList<Segment>();
+
+    // Guards appends and the index updates that go with them, so that the
+    // index always agrees with the order of the records in the log
+    private final Object writeLock = new Object();
+
+    private volatile Segment activeSegment;
+
+    private volatile boolean shutdown;
+
+    private ScheduledFuture<?> syncTask;
+
+    private ScheduledFuture<?> compactionTask;
+
+    /**
+     * No arg constructor
+     */
+    public SegmentBackingStore() {
+    }
+
+    @Override
+    protected void initialize(BackingStoreConfiguration<K, V> conf)
+        throws BackingStoreException {
+
+        if (conf.getLogger() != null) {
+            logger = conf.getLogger();
+        }
+
+        super.initialize(conf);
+        debugStr = "[SegmentBackingStore - " + conf.getStoreName() + "] ";
+
+        baseDir = conf.getBaseDirectory();
+        if ((baseDir.mkdirs() == false) && (! baseDir.isDirectory())) {
+            throw new BackingStoreException("[SegmentBackingStore::initialize] Create base directory ("
+                    + baseDir.getAbsolutePath() + ") failed");
+        }
+
+        Map<String, Object> vendorMap = conf.getVendorSpecificSettings();
+        if (vendorMap != null) {
+            defaultMaxIdleTimeoutInSeconds = getLongSetting(vendorMap,
+                    "max.idle.timeout.in.seconds", defaultMaxIdleTimeoutInSeconds);
+            segmentSize = getLongSetting(vendorMap,
+                    "segment.size.in.bytes", segmentSize);
+            syncIntervalInMillis = getLongSetting(vendorMap,
+                    "segment.sync.interval.in.millis", syncIntervalInMillis);
+            compactionIntervalInMillis = getLongSetting(vendorMap,
+                    "segment.compaction.interval.in.millis", compactionIntervalInMillis);
+            compactionLivePercent = getLongSetting(vendorMap,
+                    "segment.compaction.live.percent", compactionLivePercent);
+        }
+
+        try {
+            recover();
+        } catch (IOException ioEx) {
+            throw new BackingStoreException("[SegmentBackingStore::initialize] Cannot open segments in "
+                    + baseDir.getAbsolutePath(), ioEx);
+        }
+
+        ScheduledExecutorService executor = SegmentBackingStoreFactory.getMaintenanceExecutor();
+        syncTask = executor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    sync();
+                }
+            }, syncIntervalInMillis, syncIntervalInMillis, TimeUnit.MILLISECONDS);
+        compactionTask = executor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        compact();
+                    } catch (Throwable th) {
+                        logger.log(Level.WARNING, debugStr + " Exception during compaction", th);
+                    }
+                }
+            }, compactionIntervalInMillis, compactionIntervalInMillis, TimeUnit.MILLISECONDS);
+
+        logger.log(Level.INFO, "[SegmentBackingStore::initialize] Successfully Created and initialized store. "
+                + "Working dir: " + baseDir + "; Segments: " + segments.size()
+                + "; Entries: " + index.size() + "; Configuration: " + conf);
+    }
+
+    private static long getLongSetting(Map<String, Object> vendorMap, String name, long defaultValue) {
+        Object value = vendorMap.get(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.toString());
+            } catch (NumberFormatException nfEx) {
+                //Ignore. Use default
+            }
+        }
+        return defaultValue;
+    }
+
+    /*package*/ void setSegmentBackingStoreFactory(SegmentBackingStoreFactory factory) {
+        this.factory = factory;
+    }
+
+    public BackingStoreFactory getBackingStoreFactory() {
+        return factory;
+    }
+
+    @Override
+    public V load(K key, String version) throws BackingStoreException {
+
+        String sessionKey = key.toString();
+        V value = null;
+
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered load(" + key + ", " + version + ")");
+        }
+
+        Location loc = index.get(sessionKey);
+        if (loc == null) {
+            return null;
+        }
+
+        byte[] data = null;
+        try {
+            try {
+                data = readValue(loc);
+            } catch (ClosedChannelException ccEx) {
+                if (ccEx instanceof ClosedByInterruptException) {
+                    throw ccEx;
+                }
+                // The segment was compacted away; the record has moved
+                loc = index.get(sessionKey);
+                if (loc == null) {
+                    return null;
+                }
+                data = readValue(loc);
+            }
+        } catch (IOException ioEx) {
+            logger.log(Level.WARNING, debugStr + "Failed to read(" + key + ", " + version + ")", ioEx);
+            return null;
+        }
+
+        try {
+            ByteArrayInputStream bis2 = new ByteArrayInputStream(data);
+            ObjectInputStream ois = super.createObjectInputStream(bis2);
+            value = (V) ois.readObject();
+
+            if (logger.isLoggable(TRACE_LEVEL)) {
+                logger.log(TRACE_LEVEL, debugStr + "Done load(" + key + ", " + version + ")");
+            }
+        } catch (Exception ex) {
+            logger.log(Level.WARNING, debugStr + "Failed to load(" + key + ", " + version + ")", ex);
+        }
+
+        return value;
+    }
+
+    @Override
+    public String save(K sessionKey, V value, boolean isNew)
+            throws BackingStoreException {
+
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered save(" + sessionKey + ")");
+        }
+
+        String key = sessionKey.toString();
+        byte[] keyBytes = key.getBytes(UTF8);
+        byte[] data = getSerializedState(value);
+        long now = System.currentTimeMillis();
+        ByteBuffer record = encode(PUT, now, keyBytes, data);
+
+        try {
+            synchronized (writeLock) {
+                checkOpen();
+                int recordLength = record.remaining();
+                long offset = append(record);
+                indexPut(key, new Location(activeSegment, offset, recordLength,
+                        keyBytes.length, now));
+            }
+        } catch (IOException ioEx) {
+            throw new BackingStoreException("Could not save session: " + sessionKey, ioEx);
+        }
+
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Done save(" + sessionKey + ")");
+        }
+        return getBackingStoreConfiguration().getInstanceName();
+    }
+
+    @Override
+    public void remove(K sessionKey) throws BackingStoreException {
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered remove(" + sessionKey + ")");
+        }
+
+        String key = sessionKey.toString();
+        try {
+            synchronized (writeLock) {
+                if (!shutdown && index.containsKey(key)) {
+                    append(encode(REMOVE, System.currentTimeMillis(), key.getBytes(UTF8), null));
+                    indexRemove(key);
+                }
+            }
+        } catch (IOException ioEx) {
+            throw new BackingStoreException("Could not remove session: " + sessionKey, ioEx);
+        }
+
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Done remove(" + sessionKey + ")");
+        }
+    }
+
+    @Override
+    public String updateTimestamp(K sessionKey, String version, Long timeStamp)
+            throws BackingStoreException {
+        updateTimestamp(sessionKey, timeStamp.longValue());
+        return getBackingStoreConfiguration().getInstanceName();
+    }
+
+    @Override
+    public void updateTimestamp(K sessionKey, long time)
+            throws BackingStoreException {
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered updateTimestamp(" + sessionKey + ", " + time + ")");
+        }
+
+        String key = sessionKey.toString();
+        try {
+            synchronized (writeLock) {
+                checkOpen();
+                Location loc = index.get(key);
+                if (loc == null) {
+                    logger.log(Level.WARNING, debugStr
+                            + ": Cannot update timsestamp for: " + sessionKey
+                            + "; Entry does not exist");
+                    return;
+                }
+                append(encode(TOUCH, time, key.getBytes(UTF8), null));
+                loc.lastAccessed = time;
+                loc.touchedIn = activeSegment;
+            }
+        } catch (IOException ioEx) {
+            throw new BackingStoreException(
+                    "Cannot update timsestamp for: " + sessionKey, ioEx);
+        }
+
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Done updateTimestamp(" + sessionKey + ", " + time + ")");
+        }
+    }
+
+    @Override
+    public int removeExpired() throws BackingStoreException {
+        return removeExpired(defaultMaxIdleTimeoutInSeconds * 1000L);
+    }
+
+    /**
+     * Scans the in-memory index, so no file is read or listed.
+     */
+    @Override
+    public int removeExpired(long idleForMillis) throws BackingStoreException {
+        long threshold = System.currentTimeMillis() - idleForMillis;
+        int expiredSessions = 0;
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered removeExpired()");
+        }
+
+        try {
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                if (shutdown) {
+                    break;
+                }
+                Location loc = entry.getValue();
+                if (loc.lastAccessed >= threshold) {
+                    continue;
+                }
+                String key = entry.getKey();
+                synchronized (writeLock) {
+                    if (!shutdown && index.get(key) == loc && loc.lastAccessed < threshold) {
+                        append(encode(REMOVE, System.currentTimeMillis(), key.getBytes(UTF8), null));
+                        indexRemove(key);
+                        expiredSessions++;
+                    }
+                }
+            }
+        } catch (IOException ioEx) {
+            logger.log(Level.WARNING, debugStr + " Exception while removing "
+                    + "expired entries", ioEx);
+        }
+
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Done removeExpired(); removed " + expiredSessions);
+        }
+        return expiredSessions;
+    }
+
+    @Override
+    public int size() throws BackingStoreException {
+        return index.size();
+    }
+
+    /**
+     * Syncs and closes the segments. The files are kept, and are read
+     * again by the next store created on the same directory.
+     */
+    @Override
+    public void close() throws BackingStoreException {
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered close()");
+        }
+        synchronized (writeLock) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        }
+        if (syncTask != null) {
+            syncTask.cancel(false);
+        }
+        if (compactionTask != null) {
+            compactionTask.cancel(false);
+        }
+        synchronized (writeLock) {
+            sync();
+            for (Segment seg : segments) {
+                seg.close();
+            }
+        }
+    }
+
+    public void shutdown() {
+        try {
+            close();
+        } catch (BackingStoreException bsEx) {
+            logger.log(Level.WARNING, debugStr + " shutdown() failed ", bsEx);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            if (logger.isLoggable(TRACE_LEVEL)) {
+                logger.log(TRACE_LEVEL, debugStr + "Entered destroy()");
+            }
+            close();
+            for (Segment seg : segments) {
+                if (!seg.file.delete() && seg.file.exists()) {
+                    logger.log(Level.WARNING, debugStr + " destroy() failed to remove file: "
+                            + seg.file.getAbsolutePath());
+                }
+            }
+            segments.clear();
+            index.clear();
+
+            if (baseDir.delete() == false) {
+                if (baseDir.exists()) {
+                    logger.log(Level.WARNING, debugStr + " destroy() failed to remove dir: " + baseDir.getAbsolutePath());
+                }
+            }
+            if (logger.isLoggable(TRACE_LEVEL)) {
+                logger.log(TRACE_LEVEL, debugStr + "Done destroy()");
+            }
+        } catch (Throwable th) {
+            logger.log(Level.WARNING, debugStr + " destroy() failed ", th);
+        }
+    }
+
+    private void checkOpen() throws BackingStoreException {
+        if (shutdown) {
+            throw new BackingStoreException(debugStr + "Store is closed");
+        }
+    }
+
+    /**
+     * Appends the record to the active segment, rolling to a new segment
+     * if it is full. Must be called with the writeLock held.
+     *
+     * @return the offset of the record in the (new) active segment
+     */
+    private long append(ByteBuffer record) throws IOException {
+        Segment seg = activeSegment;
+        if (seg.size > 0 && seg.size + record.remaining() > segmentSize) {
+            // The sealed segment is synced by the next sync() run
+            seg = new Segment(seg.id + 1, segmentFile(seg.id + 1));
+            segments.add(seg);
+            activeSegment = seg;
+        }
+        long offset = seg.size;
+        int length = record.remaining();
+        seg.writeFully(record, offset);
+        seg.size = offset + length;
+        seg.dirty = true;
+        return offset;
+    }
+
+    private void indexPut(String key, Location loc) {
+        loc.segment.liveBytes.addAndGet(loc.recordLength);
+        Location old = index.put(key, loc);
+        if (old != null) {
+            old.segment.liveBytes.addAndGet(-old.recordLength);
+        }
+    }
+
+    private void indexRemove(String key) {
+        Location old = index.remove(key);
+        if (old != null) {
+            old.segment.liveBytes.addAndGet(-old.recordLength);
+        }
+    }
+
+    private byte[] readValue(Location loc) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(loc.recordLength - HEADER_SIZE - loc.keyLength - TRAILER_SIZE);
+        loc.segment.readFully(buf, loc.offset + HEADER_SIZE + loc.keyLength);
+        return buf.array();
+    }
+
+    /**
+     * Forces the segments written since the last run to disk.
+     */
+    private void sync() {
+        for (Segment seg : segments) {
+            if (seg.dirty) {
+                seg.dirty = false;
+                try {
+                    seg.force();
+                } catch (ClosedChannelException ccEx) {
+                    // Compacted or closed
+                } catch (IOException ioEx) {
+                    seg.dirty = true;
+                    logger.log(Level.WARNING, debugStr + " Exception while syncing " + seg.file, ioEx);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the live records of the oldest segments to the active segment
+     * and deletes them. Only a prefix of the log is ever deleted, so a
+     * REMOVE record can't go away while an older PUT of the same key is
+     * still on disk.
+     */
+    private void compact() {
+        List<Segment> victims = new ArrayList<Segment>();
+        for (Segment seg : segments) {
+            if (seg == activeSegment
+                    || seg.liveBytes.get() * 100L > seg.size * compactionLivePercent) {
+                break;
+            }
+            victims.add(seg);
+        }
+        if (victims.isEmpty() || shutdown) {
+            return;
+        }
+
+        Set<Segment> victimSet = new HashSet<Segment>(victims);
+        int moved = 0;
+        try {
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                if (shutdown) {
+                    return;
+                }
+                Location loc = entry.getValue();
+                boolean moveValue = victimSet.contains(loc.segment);
+                if (!moveValue && !victimSet.contains(loc.touchedIn)) {
+                    continue;
+                }
+
+                String key = entry.getKey();
+                byte[] keyBytes = key.getBytes(UTF8);
+                byte[] data = moveValue ? readValue(loc) : null;
+                synchronized (writeLock) {
+                    if (shutdown || index.get(key) != loc) {
+                        continue;
+                    }
+                    long time = loc.lastAccessed;
+                    if (moveValue) {
+                        ByteBuffer record = encode(PUT, time, keyBytes, data);
+                        int recordLength = record.remaining();
+                        long offset = append(record);
+                        indexPut(key, new Location(activeSegment, offset, recordLength,
+                                keyBytes.length, time));
+                    } else if (victimSet.contains(loc.touchedIn)) {
+                        // Keep the last access time of a value in a newer segment
+                        append(encode(TOUCH, time, keyBytes, null));
+                        loc.touchedIn = activeSegment;
+                    }
+                    moved++;
+                }
+            }
+        } catch (IOException ioEx) {
+            logger.log(Level.WARNING, debugStr + " Exception during compaction", ioEx);
+            return;
+        }
+
+        // The copies must be on disk before the originals go away
+        sync();
+        for (Segment seg : victims) {
+            segments.remove(seg);
+            seg.close();
+            if (!seg.file.delete() && seg.file.exists()) {
+                logger.log(Level.WARNING, debugStr + " Couldn't remove segment: " + seg.file);
+            }
+        }
+
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Compacted " + victims.size()
+                    + " segments; moved " + moved + " records");
+        }
+    }
+
+    /**
+     * Rebuilds the index from the segment files. Records after the first
+     * incomplete or corrupt one in a segment are dropped.
+     */
+    private void recover() throws IOException {
+        File[] files = baseDir.listFiles();
+        List<Long> ids = new ArrayList<Long>();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        ids.add(Long.valueOf(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException nfEx) {
+                        logger.log(Level.WARNING, debugStr + " Ignoring file: " + file);
+                    }
+                }
+            }
+        }
+        Collections.sort(ids);
+
+        for (Long id : ids) {
+            Segment seg = new Segment(id.longValue(), segmentFile(id.longValue()));
+            segments.add(seg);
+            replay(seg);
+        }
+
+        if (segments.isEmpty()) {
+            segments.add(new Segment(1L, segmentFile(1L)));
+        }
+        activeSegment = segments.get(segments.size() - 1);
+    }
+
+    private void replay(Segment seg) throws IOException {
+        long fileSize = seg.channel().size();
+        long pos = 0;
+        ByteBuffer lengthBuf = ByteBuffer.allocate(4);
+        CRC32 crc = new CRC32();
+        while (pos + HEADER_SIZE + TRAILER_SIZE <= fileSize) {
+            lengthBuf.clear();
+            seg.readFully(lengthBuf, pos);
+            int recordLength = lengthBuf.getInt(0);
+            if (recordLength < HEADER_SIZE + TRAILER_SIZE || pos + recordLength > fileSize) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(recordLength);
+            seg.readFully(record, pos);
+            byte[] bytes = record.array();
+            crc.reset();
+            crc.update(bytes, 4, recordLength - 4 - TRAILER_SIZE);
+            if ((int) crc.getValue() != record.getInt(recordLength - TRAILER_SIZE)) {
+                break;
+            }
+
+            byte type = record.get(4);
+            long time = record.getLong(5);
+            int keyLength = record.getInt(13);
+            if (keyLength < 0 || HEADER_SIZE + keyLength + TRAILER_SIZE > recordLength) {
+                break;
+            }
+            String key = new String(bytes, HEADER_SIZE, keyLength, UTF8);
+
+            if (type == PUT) {
+                indexPut(key, new Location(seg, pos, recordLength, keyLength, time));
+            } else if (type == TOUCH) {
+                Location loc = index.get(key);
+                if (loc != null) {
+                    loc.lastAccessed = time;
+                    loc.touchedIn = seg;
+                }
+            } else if (type == REMOVE) {
+                indexRemove(key);
+            }
+            pos += recordLength;
+        }
+
+        if (pos < fileSize) {
+            logger.log(Level.WARNING, debugStr + " Dropping " + (fileSize - pos)
+                    + " bytes of incomplete records at the end of " + seg.file);
+            seg.channel().truncate(pos);
+        }
+        seg.size = pos;
+    }
+
+    private File segmentFile(long id) {
+        return new File(baseDir, SEGMENT_PREFIX + String.format("%012d", id) + SEGMENT_SUFFIX);
+    }
+
+    private static ByteBuffer encode(byte type, long time, byte[] key, byte[] value) {
+        int valueLength = (value == null) ? 0 : value.length;
+        int recordLength = HEADER_SIZE + key.length + valueLength + TRAILER_SIZE;
+        ByteBuffer buf = ByteBuffer.allocate(recordLength);
+        buf.putInt(recordLength).put(type).putLong(time).putInt(key.length).put(key);
+        if (value != null) {
+            buf.put(value);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 4, recordLength - 4 - TRAILER_SIZE);
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+        return buf;
+    }
+
+    private byte[] getSerializedState(V value)
+            throws BackingStoreException {
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = null;
+        try {
+            oos = new ObjectOutputStream(bos);
+            oos.writeObject(value);
+            oos.flush();
+            return bos.toByteArray();
+        } catch (IOException ioEx) {
+            throw new BackingStoreException("Error during getSerializedState", ioEx);
+        } finally {
+            try {
+                if (oos != null) {
+                    oos.close();
+                }
+            } catch (IOException ioEx) {/* Noop */}
+        }
+    }
+
+    /**
+     * A segment file. Its channel is shared by all the threads reading and
+     * writing the segment. A thread interrupted during an IO operation
+     * closes the channel, which is then reopened so that the other threads
+     * are not affected.
+     */
+    private static final class Segment {
+
+        final long id;
+
+        final File file;
+
+        private RandomAccessFile raf;
+
+        private volatile FileChannel channel;
+
+        // Set once the segment is compacted away or the store closed
+        private boolean closed;
+
+        // Only written with the writeLock held
+        volatile long size;
+
+        // Bytes of the records in this segment that the index points to
+        final AtomicLong liveBytes = new AtomicLong();
+
+        // Written since the last sync
+        volatile boolean dirty;
+
+        Segment(long id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+        }
+
+        FileChannel channel() {
+            return channel;
+        }
+
+        void readFully(ByteBuffer buf, long position) throws IOException {
+            long start = position - buf.position();
+            while (buf.hasRemaining()) {
+                FileChannel ch = channel;
+                try {
+                    if (ch.read(buf, start + buf.position()) < 0) {
+                        throw new EOFException("Unexpected end of segment at " + (start + buf.position()));
+                    }
+                } catch (ClosedChannelException ccEx) {
+                    reopen(ch, ccEx);
+                }
+            }
+        }
+
+        void writeFully(ByteBuffer buf, long position) throws IOException {
+            long start = position - buf.position();
+            while (buf.hasRemaining()) {
+                FileChannel ch = channel;
+                try {
+                    ch.write(buf, start + buf.position());
+                } catch (ClosedChannelException ccEx) {
+                    reopen(ch, ccEx);
+                }
+            }
+        }
+
+        void force() throws IOException {
+            FileChannel ch = channel;
+            try {
+                ch.force(false);
+            } catch (ClosedChannelException ccEx) {
+                reopen(ch, ccEx);
+                channel.force(false);
+            }
+        }
+
+        /**
+         * Replaces the given channel if it was closed by an interrupted
+         * thread. The exception is rethrown to the interrupted thread
+         * itself, and when the segment was closed on purpose.
+         */
+        private synchronized void reopen(FileChannel ch, ClosedChannelException ccEx)
+                throws IOException {
+            if (closed) {
+                throw ccEx;
+            }
+            if (channel == ch) {
+                raf.close();
+                raf = new RandomAccessFile(file, "rw");
+                channel = raf.getChannel();
+            }
+            if (ccEx instanceof ClosedByInterruptException) {
+                throw ccEx;
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            try {
+                raf.close();
+            } catch (IOException ioEx) {/* Noop */}
+        }
+    }
+
+    private static final class Location {
+
+        final Segment segment;
+
+        final long offset;
+
+        final int recordLength;
+
+        final int keyLength;
+
+        volatile long lastAccessed;
+
+        // Segment of the TOUCH record that set lastAccessed, if any
+        volatile Segment touchedIn;
+
+        Location(Segment segment, long offset, int recordLength, int keyLength, long lastAccessed) {
+            this.segment = segment;
+            this.offset = offset;
+            this.recordLength = recordLength;
+            this.keyLength = keyLength;
+            this.lastAccessed = lastAccessed;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package org.glassfish.ha.store.adapter.file;
+
+import org.glassfish.ha.store.api.*;
+import org.jvnet.hk2.annotations.Service;
+
+import java.io.Serializable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates SegmentBackingStores. Selected with persistence type "segment".
+ */
+@Service(name = "segment")
+public class SegmentBackingStoreFactory
+        implements BackingStoreFactory {
+
+    private static final int MAINTENANCE_THREADS = 2;
+
+    private static ScheduledExecutorService maintenanceExecutor;
+
+    /**
+     * Returns the executor that runs the fsync and compaction tasks of all
+     * segment stores.
+     */
+    static synchronized ScheduledExecutorService getMaintenanceExecutor() {
+        if (maintenanceExecutor == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                    MAINTENANCE_THREADS, new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "SegmentBackingStore-maintenance-"
+                                    + threadCount.incrementAndGet());
+                            t.setDaemon(true);
+                            //do not pin the class loader of the application
+                            //whose store happened to start the executor
+                            t.setContextClassLoader(null);
+                            return t;
+                        }
+                    });
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            maintenanceExecutor = executor;
+        }
+        return maintenanceExecutor;
+    }
+
+    @Override
+    public <K extends Serializable, V extends Serializable> BackingStore<K, V> createBackingStore(
+            BackingStoreConfiguration<K, V> conf)
+                throws BackingStoreException {
+        SegmentBackingStore<K, V> store = new SegmentBackingStore<K, V>();
+        store.setSegmentBackingStoreFactory(this);
+        store.initialize(conf);
+        return store;
+    }
+
+    @Override
+    public BackingStoreTransaction createBackingStoreTransaction() {
+        //Like the FileStore, save() writes immediately, so there is nothing to commit
+        return new FileStoreTransaction();
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.ha.store.adapter.file;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.glassfish.ha.store.api.BackingStore;
+import org.glassfish.ha.store.api.BackingStoreConfiguration;
+import org.glassfish.ha.store.api.BackingStoreException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SegmentBackingStoreTest {
+
+    private File dir;
+
+    private List<BackingStore<String, Value>> stores = new ArrayList<BackingStore<String, Value>>();
+
+    @Before
+    public void createDirectory() throws Exception {
+        dir = File.createTempFile("segment-store", "");
+        assertTrue(dir.delete());
+    }
+
+    @After
+    public void destroyStores() throws Exception {
+        for (BackingStore<String, Value> store : stores) {
+            store.destroy();
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * Saves, timestamp updates and removes are replayed from the segments
+     * by a store opened on the same directory.
+     */
+    @Test
+    public void stateIsRecoveredOnReopen() throws Exception {
+        BackingStore<String, Value> store = open(64L * 1024L, 60000L);
+        store.save("a", value("value-a"), true);
+        store.save("b", value("value-b"), true);
+        store.save("a", value("value-a2"), false);
+        store.updateTimestamp("b", 12345L);
+        store.save("c", value("value-c"), true);
+        store.remove("c");
+        store.close();
+
+        store = open(64L * 1024L, 60000L);
+        assertEquals(2, store.size());
+        assertEquals(value("value-a2"), store.load("a", null));
+        assertEquals(value("value-b"), store.load("b", null));
+        assertNull(store.load("c", null));
+        // b was last accessed long ago
+        assertEquals(1, store.removeExpired(60000L));
+        assertNull(store.load("b", null));
+    }
+
+    /**
+     * A record with a bad CRC, and the records after it, are dropped on
+     * recovery and truncated from the segment.
+     */
+    @Test
+    public void corruptRecordsAreDroppedOnRecovery() throws Exception {
+        BackingStore<String, Value> store = open(64L * 1024L, 60000L);
+        store.save("a", value("value-a"), true);
+        File segment = singleSegment();
+        long validLength = segment.length();
+        store.save("b", value("value-b"), true);
+        store.save("c", value("value-c"), true);
+        store.close();
+
+        // flip a byte in the value of b
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            long pos = validLength + 30;
+            raf.seek(pos);
+            int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 0xff);
+        } finally {
+            raf.close();
+        }
+
+        store = open(64L * 1024L, 60000L);
+        assertEquals(1, store.size());
+        assertEquals(value("value-a"), store.load("a", null));
+        assertNull(store.load("b", null));
+        assertNull(store.load("c", null));
+        assertEquals(validLength, segment.length());
+
+        // the log is usable after the truncation
+        store.save("d", value("value-d"), true);
+        store.close();
+        store = open(64L * 1024L, 60000L);
+        assertEquals(2, store.size());
+        assertEquals(value("value-d"), store.load("d", null));
+    }
+
+    /**
+     * A partially written record at the end of a segment is dropped.
+     */
+    @Test
+    public void incompleteRecordIsDroppedOnRecovery() throws Exception {
+        BackingStore<String, Value> store = open(64L * 1024L, 60000L);
+        store.save("a", value("value-a"), true);
+        store.close();
+
+        File segment = singleSegment();
+        long validLength = segment.length();
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.seek(validLength);
+            raf.writeInt(1000);
+            raf.write(new byte[20]);
+        } finally {
+            raf.close();
+        }
+
+        store = open(64L * 1024L, 60000L);
+        assertEquals(value("value-a"), store.load("a", null));
+        assertEquals(validLength, segment.length());
+    }
+
+    /**
+     * Segments that are mostly dead are compacted away, and the live
+     * values survive both the compaction and a reopen.
+     */
+    @Test
+    public void deadSegmentsAreCompacted() throws Exception {
+        BackingStore<String, Value> store = open(1024L, 20L);
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            padding.append('x');
+        }
+        for (int round = 0; round < 50; round++) {
+            for (int k = 0; k < 5; k++) {
+                store.save("key" + k, value("value" + k + "-" + round + padding), false);
+            }
+        }
+        // compaction may already be running, count the segments rolled
+        assertTrue(lastSegmentId() > 10);
+
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (segmentCount() > 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue("segments left: " + segmentCount(), segmentCount() <= 3);
+        for (int k = 0; k < 5; k++) {
+            assertEquals(value("value" + k + "-49" + padding), store.load("key" + k, null));
+        }
+
+        store.close();
+        store = open(1024L, 60000L);
+        assertEquals(5, store.size());
+        for (int k = 0; k < 5; k++) {
+            assertEquals(value("value" + k + "-49" + padding), store.load("key" + k, null));
+        }
+    }
+
+    /**
+     * A thread interrupted during an IO operation closes the shared channel.
+     * The operation fails for that thread only; the segment is reopened for
+     * the other threads.
+     */
+    @Test
+    public void segmentIsReopenedAfterInterrupt() throws Exception {
+        final BackingStore<String, Value> store = open(64L * 1024L, 60000L);
+        store.save("a", value("value-a"), true);
+
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+        Thread interrupted = new Thread() {
+            @Override
+            public void run() {
+                Thread.currentThread().interrupt();
+                try {
+                    store.save("b", value("value-b"), true);
+                    result.set("saved");
+                } catch (BackingStoreException bsEx) {
+                    result.set(bsEx);
+                }
+            }
+        };
+        interrupted.start();
+        interrupted.join();
+        assertTrue("save was not interrupted: " + result.get(),
+                result.get() instanceof BackingStoreException);
+
+        assertEquals(value("value-a"), store.load("a", null));
+        assertNull(store.load("b", null));
+        store.save("c", value("value-c"), true);
+        assertEquals(value("value-c"), store.load("c", null));
+
+        store.close();
+        BackingStore<String, Value> reopened = open(64L * 1024L, 60000L);
+        assertEquals(2, reopened.size());
+        assertEquals(value("value-a"), reopened.load("a", null));
+        assertEquals(value("value-c"), reopened.load("c", null));
+    }
+
+    private BackingStore<String, Value> open(long segmentSize, long compactionInterval)
+            throws BackingStoreException {
+        BackingStoreConfiguration<String, Value> conf = new BackingStoreConfiguration<String, Value>();
+        conf.setStoreName("test").setInstanceName("instance").setBaseDirectory(dir)
+                .setKeyClazz(String.class).setValueClazz(Value.class);
+        conf.getVendorSpecificSettings().put("segment.size.in.bytes", segmentSize);
+        conf.getVendorSpecificSettings().put("segment.sync.interval.in.millis", 10L);
+        conf.getVendorSpecificSettings().put("segment.compaction.interval.in.millis", compactionInterval);
+        BackingStore<String, Value> store = new SegmentBackingStoreFactory().createBackingStore(conf);
+        stores.add(store);
+        return store;
+    }
+
+    private File singleSegment() {
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private int segmentCount() {
+        return dir.listFiles().length;
+    }
+
+    private long lastSegmentId() {
+        long last = 0;
+        for (File file : dir.listFiles()) {
+            String name = file.getName();
+            last = Math.max(last, Long.parseLong(name.substring("segment-".length(),
+                    name.length() - ".log".length())));
+        }
+        return last;
+    }
+
+    private static Value value(String text) {
+        return new Value(text);
+    }
+
+    // BackingStore deserializes with the class loader of the value class,
+    // so a bootstrap class such as String can't be the value class
+    private static final class Value implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+
+        Value(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof Value) && text.equals(((Value) o).text);
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
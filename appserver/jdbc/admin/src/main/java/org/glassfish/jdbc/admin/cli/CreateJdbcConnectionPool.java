@@ -102,7 +102,7 @@ public class CreateJdbcConnectionPool implements AdminCommand {
     @Param(name="isConnectValidateReq", alias = "isConnectionValidationRequired",  optional=true, defaultValue="false")
     Boolean isconnectvalidatereq;
     
-    @Param(name = "validationMethod", optional=true, alias = "connectionValidationMethod",  acceptableValues="auto-commit,meta-data,table,custom-validation", defaultValue = "table")
+    @Param(name = "validationMethod", optional=true, alias = "connectionValidationMethod",  acceptableValues="auto-commit,meta-data,table,custom-validation,jdbc4", defaultValue = "table")
     String validationmethod = "table";
     
     @Param(name="validationTable", alias = "validationTableName",  optional=true)
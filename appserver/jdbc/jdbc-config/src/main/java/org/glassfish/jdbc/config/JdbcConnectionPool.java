@@ -366,12 +366,14 @@ public interface JdbcConnectionPool extends ConfigBeanProxy, Resource, ResourceP
      *   using connection.getMetaData()
      * table
      *   performing a query on a user specified table(see validation-table-name)
+     * jdbc4
+     *   using connection.isValid()
      *
      * @return possible object is
      *         {@link String }
      */
     @Attribute (defaultValue="table")
-    @Pattern(regexp="(auto-commit|meta-data|custom-validation|table)")
+    @Pattern(regexp="(auto-commit|meta-data|custom-validation|table|jdbc4)")
     String getConnectionValidationMethod();
 
     /**
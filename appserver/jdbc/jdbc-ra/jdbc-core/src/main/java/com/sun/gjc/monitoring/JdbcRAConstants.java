@@ -66,7 +66,23 @@ public interface JdbcRAConstants {
      */
     public static final String TRACE_SQL = "traceSQLEvent";
 
+    /**
+     * Represents the execution time of a traced sql query event.
+     */
+    public static final String TRACE_SQL_EXECUTION_TIME = "traceSQLExecutionTimeEvent";
+
     public static final String POTENTIAL_STATEMENT_LEAK = "potentialStatementLeakEvent";
+
+    /**
+     * Represents a connection validated against the database event.
+     */
+    public static final String CONNECTION_VALIDATED = "connectionValidatedEvent";
+
+    /**
+     * Represents a connection validation skipped as the connection was
+     * returned to the pool within the validation idle window.
+     */
+    public static final String CONNECTION_VALIDATION_SKIPPED = "connectionValidationSkippedEvent";
     
     /**
      * Represents module provider name.
@@ -90,6 +106,11 @@ public interface JdbcRAConstants {
 
     public static final String STATEMENT_LEAK_PROBE = "statementleak";
 
+    /**
+     * Represents probe provider name for connection validation.
+     */
+    public static final String CONNECTION_VALIDATION_PROBE = "connectionvalidation";
+
     /**
      * Dotted name used in monitoring for Statement caching.
      */
@@ -104,6 +125,12 @@ public interface JdbcRAConstants {
 
     public static final String STATEMENT_LEAK_DOTTED_NAME = GLASSFISH + ":" +
             JDBCRA + ":" + STATEMENT_LEAK_PROBE + ":";
+
+    /**
+     * Dotted name used in monitoring for connection validation.
+     */
+    public static final String CONNECTION_VALIDATION_DOTTED_NAME = GLASSFISH + ":" +
+            JDBCRA + ":" + CONNECTION_VALIDATION_PROBE + ":";
     
     /**
      * Represents top queries to report.
@@ -124,4 +151,16 @@ public interface JdbcRAConstants {
                 "executeQuery",
                 "executeUpdate"
             ));
+
+    /**
+     * List of method names that execute a sql query. Their execution time is
+     * reported by the traceSQLExecutionTimeEvent.
+     */
+    public static final List<String> sqlExecutionMethodNames =
+            Collections.unmodifiableList(
+            Arrays.asList(
+                "execute",
+                "executeQuery",
+                "executeUpdate"
+            ));
 }
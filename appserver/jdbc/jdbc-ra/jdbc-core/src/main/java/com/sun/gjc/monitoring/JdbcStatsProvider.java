@@ -46,9 +46,9 @@ import org.glassfish.external.probe.provider.annotations.ProbeListener;
 import org.glassfish.external.probe.provider.annotations.ProbeParam;
 import org.glassfish.external.statistics.CountStatistic;
 import org.glassfish.external.statistics.StringStatistic;
-import org.glassfish.external.statistics.impl.CountStatisticImpl;
 import org.glassfish.external.statistics.impl.StatisticImpl;
 import org.glassfish.external.statistics.impl.StringStatisticImpl;
+import org.glassfish.flashlight.statistics.concurrent.StripedCountStatistic;
 import org.glassfish.gmbal.AMXMetadata;
 import org.glassfish.gmbal.Description;
 import org.glassfish.gmbal.ManagedAttribute;
@@ -69,18 +69,32 @@ public class JdbcStatsProvider {
             "FreqUsedSqlQueries", "List",
             "Most frequently used sql queries");
 
-    private CountStatisticImpl numStatementCacheHit = new CountStatisticImpl(
+    private StringStatisticImpl sqlQueryExecutionTimes = new StringStatisticImpl(
+            "SqlQueryExecutionTimes", "List",
+            "Execution count and 50th, 99th and 99.9th percentiles of the " +
+            "execution time of the most frequently used sql queries");
+
+    private StripedCountStatistic numStatementCacheHit = new StripedCountStatistic(
             "NumStatementCacheHit", StatisticImpl.UNIT_COUNT,
             "The total number of Statement Cache hits.");
 
-    private CountStatisticImpl numStatementCacheMiss = new CountStatisticImpl(
+    private StripedCountStatistic numStatementCacheMiss = new StripedCountStatistic(
             "NumStatementCacheMiss", StatisticImpl.UNIT_COUNT,
             "The total number of Statement Cache misses.");
 
-    private CountStatisticImpl numPotentialStatementLeak = new CountStatisticImpl(
+    private StripedCountStatistic numPotentialStatementLeak = new StripedCountStatistic(
             "NumPotentialStatementLeak", StatisticImpl.UNIT_COUNT,
             "The total number of potential Statement leaks");
 
+    private StripedCountStatistic numConnValidated = new StripedCountStatistic(
+            "NumConnValidated", StatisticImpl.UNIT_COUNT,
+            "The total number of connections validated against the database.");
+
+    private StripedCountStatistic numConnValidationSkipped = new StripedCountStatistic(
+            "NumConnValidationSkipped", StatisticImpl.UNIT_COUNT,
+            "The total number of connection validations skipped as the " +
+            "connection was returned within the validation idle window.");
+
     private PoolInfo poolInfo;
     private SQLTraceCache sqlTraceCache;
 
@@ -152,6 +166,31 @@ public class JdbcStatsProvider {
         }
     }
 
+    /**
+     * Whenever a traced sql statement completes, its execution time is
+     * recorded in the SQLTraceCache. This is used to report the execution time
+     * percentiles of the frequently used sql queries.
+     *
+     * @param poolName
+     * @param sql
+     * @param executionTime execution time in nanoseconds
+     */
+    @ProbeListener(JdbcRAConstants.SQL_TRACING_DOTTED_NAME + JdbcRAConstants.TRACE_SQL_EXECUTION_TIME)
+    public void traceSQLExecutionTimeEvent(
+                                   @ProbeParam("poolName") String poolName,
+                                   @ProbeParam("appName") String appName,
+                                   @ProbeParam("moduleName") String moduleName,
+                                   @ProbeParam("sql") String sql,
+                                   @ProbeParam("executionTime") long executionTime) {
+
+        PoolInfo poolInfo = new PoolInfo(poolName, appName, moduleName);
+        if(this.poolInfo.equals(poolInfo)){
+            if(sqlTraceCache != null) {
+                sqlTraceCache.recordExecutionTime(sql, executionTime);
+            }
+        }
+    }
+
     /**
      * Whenever statement leak happens, increment numPotentialStatementLeak count.
      * @param poolName JdbcConnectionPool that has got a statement leak event.
@@ -168,6 +207,40 @@ public class JdbcStatsProvider {
         }
     }
 
+    /**
+     * Whenever a connection is validated, increment numConnValidated count.
+     * @param poolName JdbcConnectionPool that has got a connection validated event.
+     */
+    @ProbeListener(JdbcRAConstants.CONNECTION_VALIDATION_DOTTED_NAME + JdbcRAConstants.CONNECTION_VALIDATED)
+    public void connectionValidatedEvent(
+                                   @ProbeParam("poolName") String poolName,
+                                   @ProbeParam("appName") String appName,
+                                   @ProbeParam("moduleName") String moduleName) {
+
+        PoolInfo poolInfo = new PoolInfo(poolName, appName, moduleName);
+        if(this.poolInfo.equals(poolInfo)){
+            numConnValidated.increment();
+        }
+    }
+
+    /**
+     * Whenever a connection validation is skipped, increment
+     * numConnValidationSkipped count.
+     * @param poolName JdbcConnectionPool that has got a connection validation
+     * skipped event.
+     */
+    @ProbeListener(JdbcRAConstants.CONNECTION_VALIDATION_DOTTED_NAME + JdbcRAConstants.CONNECTION_VALIDATION_SKIPPED)
+    public void connectionValidationSkippedEvent(
+                                   @ProbeParam("poolName") String poolName,
+                                   @ProbeParam("appName") String appName,
+                                   @ProbeParam("moduleName") String moduleName) {
+
+        PoolInfo poolInfo = new PoolInfo(poolName, appName, moduleName);
+        if(this.poolInfo.equals(poolInfo)){
+            numConnValidationSkipped.increment();
+        }
+    }
+
 
     @ManagedAttribute(id="numstatementcachehit")
     public CountStatistic getNumStatementCacheHit() {
@@ -189,10 +262,28 @@ public class JdbcStatsProvider {
         return freqUsedSqlQueries;
     }
 
+    @ManagedAttribute(id="sqlqueryexecutiontimes")
+    public StringStatistic getSqlQueryExecutionTimes() {
+        if(sqlTraceCache != null) {
+            sqlQueryExecutionTimes.setCurrent(sqlTraceCache.getTopQueriesExecutionTimes());
+        }
+        return sqlQueryExecutionTimes;
+    }
+
     @ManagedAttribute(id="numpotentialstatementleak")
     public CountStatistic getNumPotentialStatementLeak() {
         return numPotentialStatementLeak;
     }
+
+    @ManagedAttribute(id="numconnvalidated")
+    public CountStatistic getNumConnValidated() {
+        return numConnValidated;
+    }
+
+    @ManagedAttribute(id="numconnvalidationskipped")
+    public CountStatistic getNumConnValidationSkipped() {
+        return numConnValidationSkipped;
+    }
     
     /**
      * Get the SQLTraceCache associated with this stats provider.
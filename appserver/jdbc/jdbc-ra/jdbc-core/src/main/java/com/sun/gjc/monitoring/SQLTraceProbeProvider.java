@@ -67,4 +67,21 @@ public class SQLTraceProbeProvider {
             @ProbeParam("sql") String sql) {
 
     }
+
+    /**
+     * Emits probe event/notification that a sql query traced for the given
+     * connection pool <code>poolName</code> completed in <code>executionTime</code>
+     *
+     * @param poolName for which sql query was traced
+     * @param sql sql query that was executed
+     * @param executionTime time taken to execute the query, in nanoseconds
+     */
+    @Probe(name=JdbcRAConstants.TRACE_SQL_EXECUTION_TIME)
+    public void traceSQLExecutionTimeEvent(@ProbeParam("poolName") String poolName,
+                                   @ProbeParam("appName") String appName,
+                                   @ProbeParam("moduleName") String moduleName,
+            @ProbeParam("sql") String sql,
+            @ProbeParam("executionTime") long executionTime) {
+
+    }
 }
@@ -140,7 +140,12 @@ public abstract class JdbcObjectsFactory implements Serializable {
                 record.setThreadID(Thread.currentThread().getId());
                 record.setTimeStamp(System.currentTimeMillis());
                 sqlTraceDelegator.sqlTrace(record);
-                return method.invoke(actualObject, args);
+                long startTime = System.nanoTime();
+                try {
+                    return method.invoke(actualObject, args);
+                } finally {
+                    sqlTraceDelegator.sqlTraceCompleted(record, System.nanoTime() - startTime);
+                }
             }
         };
         result = (T) Proxy.newProxyInstance(actualObject.getClass().getClassLoader(), ifaces, ih);        
@@ -44,6 +44,7 @@ import com.sun.appserv.connectors.internal.spi.MCFLifecycleListener;
 import com.sun.enterprise.util.i18n.StringManager;
 import com.sun.gjc.common.DataSourceObjectBuilder;
 import com.sun.gjc.common.DataSourceSpec;
+import com.sun.gjc.monitoring.ConnectionValidationProbeProvider;
 import com.sun.gjc.monitoring.JdbcStatsProvider;
 import com.sun.gjc.util.SQLTraceDelegator;
 import com.sun.gjc.util.SecurityUtils;
@@ -112,6 +113,24 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
     //Jdbc Stats provider that is created
     private JdbcStatsProvider jdbcStatsProvider = null;
 
+    //Connection validation settings resolved once per pool and reset
+    //whenever one of the validation properties is changed. Unresolved is the
+    //default value of the transient mode so that a deserialized factory
+    //resolves it again.
+    private static final int VALIDATION_UNRESOLVED = 0;
+    private static final int VALIDATION_DISABLED = 1;
+    private static final int VALIDATION_CUSTOM = 2;
+    private static final int VALIDATION_AUTO_COMMIT = 3;
+    private static final int VALIDATION_META_DATA = 4;
+    private static final int VALIDATION_TABLE = 5;
+    private static final int VALIDATION_JDBC4 = 6;
+    private static final int VALIDATION_IMPROPER = 7;
+
+    private transient volatile int validationMode = VALIDATION_UNRESOLVED;
+    private transient volatile ConnectionValidation customValidator = null;
+    private long validationIdleWindowInMillis = 0;
+    private transient volatile ConnectionValidationProbeProvider validationProbeProvider = null;
+
     protected static final StringManager localStrings =
             StringManager.getManager(DataSourceObjectBuilder.class);
 
@@ -297,34 +316,99 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
             return;
         }
 
-        String conVal = spec.getDetail(DataSourceSpec.CONNECTIONVALIDATIONREQUIRED);
-
-        boolean connectionValidationRequired =
-                (conVal == null) ? false : Boolean.valueOf(conVal.toLowerCase(Locale.getDefault()));
-        if (!connectionValidationRequired) {
+        int mode = validationMode;
+        if (mode == VALIDATION_UNRESOLVED) {
+            mode = resolveValidationMode();
+            validationMode = mode;
+        }
+        if (mode == VALIDATION_DISABLED) {
             return;
         }
 
-
-        String validationMethod = spec.getDetail(DataSourceSpec.VALIDATIONMETHOD).toLowerCase(Locale.getDefault());
-
         mc.checkIfValid();
         /**
          * The above call checks if the actual physical connection
          * is usable or not.
          */
+        if (validationIdleWindowInMillis > 0 &&
+                System.currentTimeMillis() - mc.getLastReturnedTime() < validationIdleWindowInMillis) {
+            getValidationProbeProvider().connectionValidationSkippedEvent(getPoolName(),
+                    getApplicationName(), getModuleName());
+            return;
+        }
         java.sql.Connection con = mc.getActualConnection();
 
-        if(validationMethod.equals("custom-validation")) {
-            isValidByCustomValidation(con, spec.getDetail(DataSourceSpec.VALIDATIONCLASSNAME));
+        switch (mode) {
+            case VALIDATION_CUSTOM:
+                isValidByCustomValidation(con, spec.getDetail(DataSourceSpec.VALIDATIONCLASSNAME));
+                break;
+            case VALIDATION_AUTO_COMMIT:
+                isValidByAutoCommit(con);
+                break;
+            case VALIDATION_META_DATA:
+                isValidByMetaData(con);
+                break;
+            case VALIDATION_TABLE:
+                isValidByTableQuery(con, spec.getDetail(DataSourceSpec.VALIDATIONTABLENAME));
+                break;
+            case VALIDATION_JDBC4:
+                isValidByJdbc4(con, mc.getStatementTimeout());
+                break;
+            default:
+                throw new ResourceException("The validation method is not proper");
+        }
+        getValidationProbeProvider().connectionValidatedEvent(getPoolName(),
+                getApplicationName(), getModuleName());
+    }
+
+    /**
+     * Returns the probe provider of the connection validation events, created
+     * on first use as it is not serialized with this factory.
+     *
+     * @return connection validation probe provider
+     */
+    private ConnectionValidationProbeProvider getValidationProbeProvider() {
+        ConnectionValidationProbeProvider provider = validationProbeProvider;
+        if (provider == null) {
+            provider = new ConnectionValidationProbeProvider();
+            validationProbeProvider = provider;
+        }
+        return provider;
+    }
+
+    /**
+     * Resolves the connection validation mode from the validation properties
+     * so that it is not derived again for every connection that is validated.
+     *
+     * @return validation mode
+     */
+    private int resolveValidationMode() {
+        String conVal = spec.getDetail(DataSourceSpec.CONNECTIONVALIDATIONREQUIRED);
+
+        boolean connectionValidationRequired =
+                (conVal == null) ? false : Boolean.valueOf(conVal.toLowerCase(Locale.getDefault()));
+        if (!connectionValidationRequired) {
+            return VALIDATION_DISABLED;
+        }
+
+        String validationMethod = spec.getDetail(DataSourceSpec.VALIDATIONMETHOD);
+        if (validationMethod == null) {
+            return VALIDATION_IMPROPER;
+        }
+        validationMethod = validationMethod.toLowerCase(Locale.getDefault());
+
+        if (validationMethod.equals("custom-validation")) {
+            return VALIDATION_CUSTOM;
         } else if (validationMethod.equals("auto-commit")) {
-            isValidByAutoCommit(con);
+            return VALIDATION_AUTO_COMMIT;
         } else if (validationMethod.equals("meta-data")) {
-            isValidByMetaData(con);
+            return VALIDATION_META_DATA;
         } else if (validationMethod.equals("table")) {
-            isValidByTableQuery(con, spec.getDetail(DataSourceSpec.VALIDATIONTABLENAME));
+            return VALIDATION_TABLE;
+        } else if (validationMethod.equals("jdbc4")) {
+            return VALIDATION_JDBC4;
         } else {
-            throw new ResourceException("The validation method is not proper");
+            return VALIDATION_IMPROPER;
         }
     }
     
@@ -344,8 +428,12 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
         }
         
         try {
-            Class validationClass = Thread.currentThread().getContextClassLoader().loadClass(validationClassName);
-            ConnectionValidation valClass = (ConnectionValidation) validationClass.newInstance();
+            ConnectionValidation valClass = customValidator;
+            if (valClass == null) {
+                Class validationClass = Thread.currentThread().getContextClassLoader().loadClass(validationClassName);
+                valClass = (ConnectionValidation) validationClass.newInstance();
+                customValidator = valClass;
+            }
             isValid = valClass.isConnectionValid(con);
         } catch (Exception e) {
             _logger.log(Level.INFO, "jdbc.exc_custom_validation", validationClassName);
@@ -357,6 +445,34 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
         }
     }
 
+    /**
+     * Checks if a <code>java.sql.Connection</code> is valid or not
+     * by using the JDBC 4.0 <code>Connection.isValid</code> method.
+     *
+     * @param con     <code>java.sql.Connection</code> to be validated
+     * @param timeout time in seconds to wait for the validation to complete,
+     *                0 to wait without a timeout
+     * @throws ResourceException if the connection is not valid
+     */
+    protected void isValidByJdbc4(java.sql.Connection con, int timeout) throws ResourceException {
+        if (con == null) {
+            throw new ResourceException("The connection is not valid as "
+                    + "the connection is null");
+        }
+
+        boolean isValid;
+        try {
+            isValid = con.isValid(timeout);
+        } catch (Throwable t) {
+            _logger.log(Level.INFO, "jdbc.exc_jdbc4_validation");
+            throw new ResourceException(t);
+        }
+        if (!isValid) {
+            _logger.log(Level.INFO, "jdbc.exc_jdbc4_validation");
+            throw new ResourceException("JDBC 4.0 validation detected invalid connection");
+        }
+    }
+
     /**
      * Checks if a <code>java.sql.Connection</code> is valid or not
      * by checking its auto commit property.
@@ -750,6 +866,7 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
     @ConfigProperty(type = String.class, defaultValue = "false")
     public void setConnectionValidationRequired(String conVldReq) {
         spec.setDetail(DataSourceSpec.CONNECTIONVALIDATIONREQUIRED, conVldReq);
+        validationMode = VALIDATION_UNRESOLVED;
     }
 
     /**
@@ -769,6 +886,7 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
     @ConfigProperty(type = String.class, defaultValue = "")
     public void setValidationMethod(String validationMethod) {
         spec.setDetail(DataSourceSpec.VALIDATIONMETHOD, validationMethod);
+        validationMode = VALIDATION_UNRESOLVED;
     }
 
     /**
@@ -810,6 +928,7 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
             boolean isAssignable = ConnectionValidation.class.isAssignableFrom(validationClass);
             if (isAssignable) {
                 spec.setDetail(DataSourceSpec.VALIDATIONCLASSNAME, className);
+                customValidator = null;
             } else {
                 //Validation Failed
                 _logger.log(Level.SEVERE, "jdbc.set_custom_validation_class_name_failure", className);
@@ -835,6 +954,40 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
         return spec.getDetail(DataSourceSpec.VALIDATIONCLASSNAME);
     }
 
+    /**
+     * Sets the time window in milliseconds during which a connection
+     * returned to the pool is not validated again.
+     *
+     * @param value <code>String</code>
+     */
+    @ConfigProperty(type = String.class, defaultValue = "0")
+    public void setValidationIdleWindowInMillis(String value) {
+        spec.setDetail(DataSourceSpec.VALIDATIONIDLEWINDOWINMILLIS, value);
+        long window = 0;
+        if (value != null && !value.trim().equals("")) {
+            try {
+                window = Long.parseLong(value.trim());
+            } catch (NumberFormatException nfe) {
+                _logger.log(Level.WARNING, "jdbc.invalid_validation_idle_window", value);
+            }
+        }
+        validationIdleWindowInMillis = window > 0 ? window : 0;
+        if (_logger.isLoggable(Level.FINE)) {
+            _logger.fine("Validation idle window : " + validationIdleWindowInMillis
+                    + " ms for pool : " + getPoolName());
+        }
+    }
+
+    /**
+     * Returns the time window in milliseconds during which a connection
+     * returned to the pool is not validated again.
+     *
+     * @return validation idle window
+     */
+    public String getValidationIdleWindowInMillis() {
+        return spec.getDetail(DataSourceSpec.VALIDATIONIDLEWINDOWINMILLIS);
+    }
+
     /**
      * Sets the transaction isolation level
      *
@@ -143,6 +143,10 @@ public class ManagedConnectionImpl implements javax.resource.spi.ManagedConnecti
 
     private DatabaseMetaData cachedDatabaseMetaData = null;
     private Boolean isClientInfoSupported = null;
+
+    //Time at which the last connection handle was closed, used to skip
+    //validation of connections returned within the validation idle window.
+    private volatile long lastReturnedTime = System.currentTimeMillis();
     
     /**
      * Constructor for <code>ManagedConnectionImpl</code>. The pooledConn parameter is expected
@@ -772,6 +776,7 @@ public class ManagedConnectionImpl implements javax.resource.spi.ManagedConnecti
 
         connHolder30Object.invalidate();
         decrementCount();
+        lastReturnedTime = System.currentTimeMillis();
         ce.setConnectionHandle(connHolder30Object);
 
         if (markedForRemoval && !transactionInProgress) {
@@ -915,6 +920,17 @@ public class ManagedConnectionImpl implements javax.resource.spi.ManagedConnecti
         return statementTimeout;
     }
 
+    /**
+     * Returns the time at which a connection handle of this
+     * <code>ManagedConnection</code> was last closed, or the creation time
+     * if no handle was closed yet.
+     *
+     * @return time in milliseconds
+     */
+    long getLastReturnedTime() {
+        return lastReturnedTime;
+    }
+
     public void setLastTransactionIsolationLevel(int isolationLevel) {
         lastTransactionIsolationLevel = isolationLevel;
     }
@@ -0,0 +1,355 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.gjc.spi.base.datastructure;
+
+import com.sun.gjc.monitoring.StatementCacheProbeProvider;
+import com.sun.gjc.spi.base.CacheObjectKey;
+import com.sun.gjc.spi.base.PreparedStatementWrapper;
+import com.sun.logging.LogDomains;
+import org.glassfish.resourcebase.resources.api.PoolInfo;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Statement cache with true least-recently-used eviction and lock-free reads.
+ * <p/>
+ * Entries are kept in a <code>ConcurrentHashMap</code>. Every hit stamps the
+ * entry with a logical access time, eviction removes the entry with the oldest
+ * stamp, preferring statements that are not in use. Only additions and
+ * evictions take a lock, hence the cache is not wrapped by
+ * {@link SynchronizedCache}.
+ * <p/>
+ * The capacity of the cache is adjusted based on its hit and miss ratio : a
+ * cache that misses while full borrows capacity from the other caches of the
+ * same pool, a cache that does not use its capacity gives it back. The sum of
+ * the capacities of all caches of a pool never exceeds the configured
+ * statement-cache-size times the number of caches (connections) of that pool.
+ */
+public class ConcurrentLRUCacheImpl implements Cache {
+
+    protected final static Logger _logger =
+            LogDomains.getLogger(ConcurrentLRUCacheImpl.class, LogDomains.RSR_LOGGER);
+
+    //number of lookups after which the capacity is re-evaluated
+    private static final int SIZING_WINDOW = 256;
+    //miss ratio (in percent) above which a full cache asks for more capacity
+    private static final int GROW_MISS_PERCENTAGE = 10;
+
+    private final ConcurrentHashMap<CacheObjectKey, CacheEntry> map =
+            new ConcurrentHashMap<CacheObjectKey, CacheEntry>();
+    private final AtomicLong clock = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private final PoolInfo poolInfo;
+    private final int baseSize;
+    private final StatementCacheBudget budget;
+    private volatile int maxSize;
+    private final AtomicBoolean budgetReleased = new AtomicBoolean();
+    private StatementCacheProbeProvider probeProvider = null;
+
+    public ConcurrentLRUCacheImpl(PoolInfo poolInfo, int maxSize) {
+        this.poolInfo = poolInfo;
+        this.baseSize = maxSize;
+        this.maxSize = maxSize;
+        this.budget = StatementCacheBudget.getBudget(poolInfo);
+        try {
+            probeProvider = new StatementCacheProbeProvider();
+        } catch (Exception ex) {
+            //TODO logger
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object checkAndUpdateCache(CacheObjectKey key) {
+        Object result = null;
+        CacheEntry entry = map.get(key);
+        if (entry != null) {
+            //Cache hit
+            entry.lastAccess = clock.incrementAndGet();
+            result = entry.entryObj;
+            if (_logger.isLoggable(Level.FINEST)) {
+                _logger.finest("Cache Hit");
+            }
+            if (probeProvider != null) {
+                probeProvider.statementCacheHitEvent(poolInfo.getName(),
+                        poolInfo.getApplicationName(), poolInfo.getModuleName());
+            }
+        } else {
+            //Cache miss
+            misses.incrementAndGet();
+            if (_logger.isLoggable(Level.FINEST)) {
+                _logger.finest("Cache Miss");
+            }
+            if (probeProvider != null) {
+                probeProvider.statementCacheMissEvent(poolInfo.getName(),
+                        poolInfo.getApplicationName(), poolInfo.getModuleName());
+            }
+        }
+        if (lookups.incrementAndGet() >= SIZING_WINDOW) {
+            resize();
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addToCache(CacheObjectKey key, Object o, boolean force) {
+        CacheEntry entry = new CacheEntry(o, clock.incrementAndGet());
+        if (force) {
+            CacheEntry old = map.put(key, entry);
+            if (old == null) {
+                evictIfNeeded();
+            } else if (old.entryObj != o) {
+                //the replaced statement is no longer reachable from the cache
+                close(old);
+            }
+        } else if (map.putIfAbsent(key, entry) == null) {
+            evictIfNeeded();
+        } else if (o instanceof PreparedStatementWrapper) {
+            //not cached, statement will be closed by the application
+            ((PreparedStatementWrapper) o).setCached(false);
+        }
+    }
+
+    private void evictIfNeeded() {
+        if (map.size() <= maxSize) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            while (map.size() > maxSize) {
+                if (!evictOne(true) && !evictOne(false)) {
+                    break;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes and closes the least recently used entry.
+     *
+     * @param freeOnly only consider statements that are not in use
+     * @return boolean indicating whether an entry was evicted
+     */
+    private boolean evictOne(boolean freeOnly) {
+        Map.Entry<CacheObjectKey, CacheEntry> victim = null;
+        for (Map.Entry<CacheObjectKey, CacheEntry> candidate : map.entrySet()) {
+            if (freeOnly && isBusy(candidate.getValue())) {
+                continue;
+            }
+            if (victim == null || candidate.getValue().lastAccess < victim.getValue().lastAccess) {
+                victim = candidate;
+            }
+        }
+        if (victim != null && map.remove(victim.getKey(), victim.getValue())) {
+            close(victim.getValue());
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isBusy(CacheEntry entry) {
+        return entry.entryObj instanceof PreparedStatementWrapper &&
+                ((PreparedStatementWrapper) entry.entryObj).isBusy();
+    }
+
+    private static void close(CacheEntry entry) {
+        try {
+            //TODO Move to a more generic Contract and invoke close()
+            //PreparedStatementWrapper could implement the contract instead
+            PreparedStatementWrapper ps = (PreparedStatementWrapper) entry.entryObj;
+            ps.setCached(false);
+            //a statement in use is closed by the application once it is done with it
+            if (!ps.isBusy()) {
+                ps.close();
+            }
+        } catch (SQLException e) {
+            //ignore
+        }
+    }
+
+    /**
+     * Re-evaluates the capacity of this cache at the end of a sizing window.
+     */
+    private void resize() {
+        if (!evictionLock.tryLock()) {
+            //another thread is evicting or resizing, try in the next window
+            return;
+        }
+        try {
+            int windowLookups = lookups.getAndSet(0);
+            int windowMisses = misses.getAndSet(0);
+            if (windowLookups == 0) {
+                return;
+            }
+            int size = map.size();
+            int current = maxSize;
+            int step = Math.max(1, baseSize / 4);
+            boolean missing = (windowMisses * 100) / windowLookups > GROW_MISS_PERCENTAGE;
+
+            if (missing && size >= current && current < baseSize * 2) {
+                int granted = budget.borrow(Math.min(step, baseSize * 2 - current));
+                maxSize = current + granted;
+            } else if (!missing && size + step < current && current - step >= Math.max(1, baseSize / 4)) {
+                //unused capacity, give it back to the other caches of the pool
+                budget.giveBack(step);
+                maxSize = current - step;
+            } else if (budget.isOverdrawn() && current > baseSize) {
+                budget.giveBack(step);
+                maxSize = current - step;
+                evictIfNeeded();
+            }
+            if (_logger.isLoggable(Level.FINEST) && current != maxSize) {
+                _logger.finest("Statement cache size for pool [" + poolInfo + "] changed from " +
+                        current + " to " + maxSize);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Clears the statement cache and hands back the capacity borrowed from
+     * (or given to) the other caches of the pool.
+     */
+    public void clearCache() {
+        if (_logger.isLoggable(Level.FINE)) {
+            _logger.fine("clearing objects in cache");
+        }
+        map.clear();
+        if (budgetReleased.compareAndSet(false, true)) {
+            budget.giveBack(maxSize - baseSize);
+            budget.release();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void flushCache() {
+        Iterator<CacheEntry> it = map.values().iterator();
+        while (it.hasNext()) {
+            CacheEntry entry = it.next();
+            it.remove();
+            close(entry);
+        }
+    }
+
+    /**
+     * Removes and closes the least recently used statement.
+     */
+    public void purge() {
+        evictionLock.lock();
+        try {
+            if (!evictOne(true)) {
+                evictOne(false);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes and closes the given statement. Used for purging bad statements.
+     *
+     * @param obj statement to be removed from the cache
+     */
+    public void purge(Object obj) {
+        Iterator<CacheEntry> it = map.values().iterator();
+        while (it.hasNext()) {
+            CacheEntry entry = it.next();
+            if (entry.entryObj.equals(obj)) {
+                if (_logger.isLoggable(Level.FINEST)) {
+                    _logger.log(Level.FINEST, "Purging an entry from cache");
+                }
+                it.remove();
+                close(entry);
+                break;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getSize() {
+        return map.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isSynchronized() {
+        return true;
+    }
+
+    /**
+     * Cache object that has an entry and its last access time.
+     */
+    private static class CacheEntry {
+        private final Object entryObj;
+        private volatile long lastAccess;
+
+        CacheEntry(Object o, long lastAccess) {
+            this.entryObj = o;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
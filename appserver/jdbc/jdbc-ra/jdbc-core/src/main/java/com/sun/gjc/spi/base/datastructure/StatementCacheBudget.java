@@ -0,0 +1,145 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.gjc.spi.base.datastructure;
+
+import org.glassfish.resourcebase.resources.api.PoolInfo;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool wide statement cache capacity shared by the {@link ConcurrentLRUCacheImpl}
+ * instances (one per connection) of a pool. Capacity given back by a cache can
+ * be borrowed by the other caches of the same pool.
+ * <p/>
+ * A budget is reference counted by the caches using it. When the last cache of
+ * a pool is cleared (its connection destroyed) the budget is dropped, so a
+ * destroyed or recreated pool does not keep a stale budget.
+ */
+class StatementCacheBudget {
+
+    private static final ConcurrentMap<PoolInfo, StatementCacheBudget> budgets =
+            new ConcurrentHashMap<PoolInfo, StatementCacheBudget>();
+
+    private final PoolInfo poolInfo;
+    //capacity that can be borrowed, negative when caches hold more than the budget
+    private final AtomicInteger spare = new AtomicInteger();
+    //caches using this budget, 0 once the budget is dropped
+    private final AtomicInteger users = new AtomicInteger(1);
+
+    private StatementCacheBudget(PoolInfo poolInfo) {
+        this.poolInfo = poolInfo;
+    }
+
+    /**
+     * Gets the budget of the pool for a new cache. Every call must be paired
+     * with a {@link #release()} once the cache is no longer used.
+     */
+    static StatementCacheBudget getBudget(PoolInfo poolInfo) {
+        while (true) {
+            StatementCacheBudget budget = budgets.get(poolInfo);
+            if (budget == null) {
+                StatementCacheBudget newBudget = new StatementCacheBudget(poolInfo);
+                if (budgets.putIfAbsent(poolInfo, newBudget) == null) {
+                    return newBudget;
+                }
+            } else if (budget.retain()) {
+                return budget;
+            } else {
+                //released by its last cache concurrently, replace it
+                budgets.remove(poolInfo, budget);
+            }
+        }
+    }
+
+    private boolean retain() {
+        while (true) {
+            int current = users.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (users.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Called when a cache using this budget is cleared. The budget is dropped
+     * when no cache uses it anymore.
+     */
+    void release() {
+        if (users.decrementAndGet() == 0) {
+            budgets.remove(poolInfo, this);
+        }
+    }
+
+    /**
+     * @param requested capacity requested
+     * @return capacity granted, at most <code>requested</code>
+     */
+    int borrow(int requested) {
+        while (true) {
+            int available = spare.get();
+            if (available <= 0) {
+                return 0;
+            }
+            int granted = Math.min(available, requested);
+            if (spare.compareAndSet(available, available - granted)) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * @param capacity capacity returned, negative when the caller takes
+     * back capacity it had given
+     */
+    void giveBack(int capacity) {
+        spare.addAndGet(capacity);
+    }
+
+    boolean isOverdrawn() {
+        return spare.get() < 0;
+    }
+}
@@ -43,26 +43,46 @@ package com.sun.gjc.util;
 import com.sun.logging.LogDomains;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Timer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.glassfish.flashlight.statistics.concurrent.LatencyHistogram;
 
 /**
  * Maintains the Sql Tracing Cache used to store SQL statements used by the
  * applications. This is used by the JDBCRA monitoring to display the most
  * frequently used queries by applications.
+ * <p/>
+ * The cache is a heavy-hitters summary (Space-Saving) : a bounded number of
+ * queries are counted in a concurrent map, updating a query does not take any
+ * lock. When the number of monitored queries grows beyond twice the capacity,
+ * the least used ones are dropped and a query seen afterwards starts from the
+ * highest count dropped, so that a frequent query is never under-counted. The
+ * top queries are selected with a bounded heap when reported. Execution times
+ * of every monitored query are kept in a {@link LatencyHistogram} to report
+ * percentiles.
  *
  * @author Shalini M
  */
 public class SQLTraceCache {
 
-    //List of sql trace objects
-    private final List<SQLTrace> list;
-    //Maximum size of the cache.
+    //Maximum number of queries to report.
     private int numTopQueriesToReport = 10;
+    //Number of queries monitored.
+    private final int capacity;
     private long timeToKeepQueries = 60 * 1000;
+    private final ConcurrentHashMap<String, QueryStats> queries;
+    private final ReentrantLock trimLock = new ReentrantLock();
+    //highest count of a query dropped from the summary
+    private volatile long droppedCount = 0;
     private SQLTraceTimerTask sqlTraceTimerTask;
     private String poolName;
     private String appName;
@@ -71,16 +91,42 @@ public class SQLTraceCache {
             LogDomains.RSR_LOGGER);
     private static final String LINE_BREAK = "%%%EOL%%%";
 
+    //most frequently used first, then the most recently used
+    private static final Comparator<QueryStats> FREQUENCY_ORDER = new Comparator<QueryStats>() {
+        public int compare(QueryStats o1, QueryStats o2) {
+            long c1 = o1.count.get();
+            long c2 = o2.count.get();
+            if (c1 != c2) {
+                return (c1 > c2) ? -1 : 1;
+            }
+            long t1 = o1.lastUsageTime;
+            long t2 = o2.lastUsageTime;
+            return (t1 == t2) ? 0 : ((t1 > t2) ? -1 : 1);
+        }
+    };
+
     public SQLTraceCache(String poolName, String appName, String moduleName, int maxSize, long timeToKeepQueries) {
         this.poolName = poolName;
         this.appName = appName;
         this.moduleName = moduleName;
         this.numTopQueriesToReport = maxSize;
-        list = new ArrayList<SQLTrace>();
+        this.capacity = Math.max(maxSize * 10, 100);
+        this.queries = new ConcurrentHashMap<String, QueryStats>(capacity * 2);
         this.timeToKeepQueries = timeToKeepQueries * 60 * 1000;
     }
 
+    /**
+     * Returns a snapshot of the monitored queries, most frequently used first.
+     *
+     * @return list of SQLTrace
+     */
     public List<SQLTrace> getSqlTraceList() {
+        List<QueryStats> stats = new ArrayList<QueryStats>(queries.values());
+        Collections.sort(stats, FREQUENCY_ORDER);
+        List<SQLTrace> list = new ArrayList<SQLTrace>(stats.size());
+        for (QueryStats s : stats) {
+            list.add(s.toSQLTrace());
+        }
         return list;
     }
 
@@ -139,57 +185,126 @@ public class SQLTraceCache {
     /**
      * Request for adding a sql query in the form of SQLTrace to this cache.
      * If the query is already found
-     * in the list, the number of times it is executed is incremented by one
+     * in the cache, the number of times it is executed is incremented by one
      * along with the timestamp.
-     * If the query is a new one, it is added to the list.
+     * If the query is a new one, it is added to the cache.
      * 
      * @param cacheObj
-     * @return
      */
     public void checkAndUpdateCache(SQLTrace cacheObj) {
-        synchronized (list) {
-            if (cacheObj != null) {
-                int index = list.indexOf(cacheObj);
-                if (index != -1) {
-                    //If already found in the cache
-                    //equals is invoked here and hence comparison based on query name is done
-                    //Get the object at the index to update the numExecutions
-                    SQLTrace cache = (SQLTrace) list.get(index);
-                    cache.setNumExecutions(cache.getNumExecutions() + 1);
-                    cache.setLastUsageTime(System.currentTimeMillis());
-                } else {
-                    //First occurrence of the query. query to be added.
-                    cacheObj.setNumExecutions(1);
-                    cacheObj.setLastUsageTime(System.currentTimeMillis());
-                    list.add(cacheObj);
+        if (cacheObj != null && cacheObj.getQueryName() != null) {
+            QueryStats stats = getQueryStats(cacheObj.getQueryName());
+            stats.count.incrementAndGet();
+            stats.lastUsageTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Records the execution time of a sql query.
+     *
+     * @param sql query executed
+     * @param executionTimeInNanos time taken to execute the query
+     */
+    public void recordExecutionTime(String sql, long executionTimeInNanos) {
+        if (sql != null) {
+            QueryStats stats = queries.get(sql);
+            if (stats != null) {
+                stats.recordExecutionTime(executionTimeInNanos);
+            }
+        }
+    }
+
+    private QueryStats getQueryStats(String sql) {
+        QueryStats stats = queries.get(sql);
+        if (stats == null) {
+            //Space-Saving : a new query may have been dropped before, start
+            //from the highest count dropped.
+            QueryStats newStats = new QueryStats(sql, droppedCount);
+            stats = queries.putIfAbsent(sql, newStats);
+            if (stats == null) {
+                stats = newStats;
+                if (queries.size() > capacity * 2) {
+                    trim(capacity);
                 }
             }
         }
+        return stats;
     }
 
     /**
-     * Entries are removed from the list after sorting
-     * them in the least frequently used order. Only numTopQueriesToReport number of
-     * entries are maintained in the list after the purgeEntries.
+     * Drops the least frequently used queries so that at most
+     * <code>size</code> queries are monitored.
      */
-    public void purgeEntries() {
-        synchronized(list) {
-            Collections.sort(list, Collections.reverseOrder());
-            Iterator i = list.iterator();
-            while (i.hasNext()) {
-                SQLTrace cacheObj = (SQLTrace) i.next();
-                if (list.size() > numTopQueriesToReport) {
-                    if(_logger.isLoggable(Level.FINEST)) {
-                        _logger.finest("removing sql=" + cacheObj.getQueryName());
+    private void trim(int size) {
+        if (queries.size() - size <= 0 || trimLock.isLocked()) {
+            return;
+        }
+        //choose the queries to drop before taking the lock, the lock only
+        //keeps concurrent trims from dropping the same excess twice
+        List<QueryStats> stats = new ArrayList<QueryStats>(queries.values());
+        Collections.sort(stats, FREQUENCY_ORDER);
+        if (!trimLock.tryLock()) {
+            //another thread is trimming
+            return;
+        }
+        try {
+            int toRemove = queries.size() - size;
+            long maxDropped = droppedCount;
+            for (int i = stats.size() - 1; i >= 0 && toRemove > 0; i--) {
+                QueryStats s = stats.get(i);
+                if (queries.remove(s.sql, s)) {
+                    toRemove--;
+                    maxDropped = Math.max(maxDropped, s.count.get());
+                    if (_logger.isLoggable(Level.FINEST)) {
+                        _logger.finest("removing sql=" + s.sql);
                     }
-                    i.remove();
-                } else {
-                    break;
                 }
             }
-            //sort by most frequently used queries first
-            Collections.sort(list);
+            droppedCount = maxDropped;
+        } finally {
+            trimLock.unlock();
+        }
+    }
+
+    /**
+     * Queries that were not used during the last timeToKeepQueries are removed
+     * from the cache and the cache is trimmed to its capacity. The highest
+     * count dropped so far is forgotten with them, so that queries seen in the
+     * next period do not start from counts of an earlier one.
+     */
+    public void purgeEntries() {
+        long oldest = System.currentTimeMillis() - timeToKeepQueries;
+        droppedCount = 0;
+        Iterator<QueryStats> it = queries.values().iterator();
+        while (it.hasNext()) {
+            QueryStats s = it.next();
+            if (s.lastUsageTime < oldest) {
+                if (_logger.isLoggable(Level.FINEST)) {
+                    _logger.finest("removing sql=" + s.sql);
+                }
+                it.remove();
+            }
         }
+        trim(capacity);
+    }
+
+    /**
+     * Selects the top 'n' queries represented by numTopQueriesToReport, most
+     * frequently used first.
+     */
+    private List<QueryStats> getTopQueryStats() {
+        //min-heap of the current top queries, its head is the least used of them
+        PriorityQueue<QueryStats> heap = new PriorityQueue<QueryStats>(numTopQueriesToReport + 1,
+                Collections.reverseOrder(FREQUENCY_ORDER));
+        for (QueryStats s : queries.values()) {
+            heap.offer(s);
+            if (heap.size() > numTopQueriesToReport) {
+                heap.poll();
+            }
+        }
+        List<QueryStats> top = new ArrayList<QueryStats>(heap);
+        Collections.sort(top, FREQUENCY_ORDER);
+        return top;
     }
 
     /**
@@ -201,12 +316,68 @@ public class SQLTraceCache {
      * @return string representation of the list of sql queries sorted
      */
     public String getTopQueries() {
-        purgeEntries();
-        StringBuffer sb = new StringBuffer();
-        for(SQLTrace cache : list) {
+        StringBuilder sb = new StringBuilder();
+        for (QueryStats s : getTopQueryStats()) {
+            sb.append(LINE_BREAK);
+            sb.append(s.sql);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the String representation of the top 'n' sql queries along with
+     * their number of executions and 50th, 99th and 99.9th percentiles of their
+     * execution time in milliseconds.
+     *
+     * @return string representation of the top sql queries and their execution times
+     */
+    public String getTopQueriesExecutionTimes() {
+        StringBuilder sb = new StringBuilder();
+        for (QueryStats s : getTopQueryStats()) {
             sb.append(LINE_BREAK);
-            sb.append(cache.getQueryName());
+            sb.append("count=").append(s.count.get());
+            sb.append(" p50=").append(s.getPercentileInMillis(50.0));
+            sb.append(" p99=").append(s.getPercentileInMillis(99.0));
+            sb.append(" p999=").append(s.getPercentileInMillis(99.9));
+            sb.append(" ms : ").append(s.sql);
         }
         return sb.toString();
     }
+
+    /**
+     * Usage statistics of a sql query.
+     */
+    private static final class QueryStats {
+        //execution times are recorded in microseconds, up to one hour
+        private static final long MAX_EXECUTION_TIME = TimeUnit.HOURS.toMicros(1);
+
+        private final String sql;
+        private final AtomicLong count;
+        private volatile long lastUsageTime;
+        private final LatencyHistogram executionTimes = new LatencyHistogram(MAX_EXECUTION_TIME);
+
+        QueryStats(String sql, long initialCount) {
+            this.sql = sql;
+            this.count = new AtomicLong(initialCount);
+            this.lastUsageTime = System.currentTimeMillis();
+        }
+
+        void recordExecutionTime(long nanos) {
+            executionTimes.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+
+        /**
+         * @param percentile e.g. 99.9 for p999
+         * @return execution time at the given percentile, in milliseconds
+         */
+        double getPercentileInMillis(double percentile) {
+            return executionTimes.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        SQLTrace toSQLTrace() {
+            long c = count.get();
+            return new SQLTrace(sql, (c > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) c,
+                    lastUsageTime);
+        }
+    }
 }
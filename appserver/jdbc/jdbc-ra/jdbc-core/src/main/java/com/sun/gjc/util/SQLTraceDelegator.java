@@ -116,24 +116,71 @@ public class SQLTraceDelegator implements SQLTraceListener {
 
         if (record != null) {
             record.setPoolName(poolName);
-            String methodName = record.getMethodName();
-            //Check if the method name is one in which sql query is used
-            if (isMethodValidForCaching(methodName)) {
-                Object[] params = record.getParams();
-                if (params != null && params.length > 0) {
-                    String sqlQuery = null;
-                    for (Object param : params) {
-                        if(param instanceof String) {
-                            sqlQuery = param.toString();
-                        }
-                        break;
-                    }
-                    if (sqlQuery != null) {
-                        probeProvider.traceSQLEvent(poolName, appName, moduleName, sqlQuery);
+            String sqlQuery = getSqlQuery(record);
+            if (sqlQuery != null) {
+                probeProvider.traceSQLEvent(poolName, appName, moduleName, sqlQuery);
+            }
+        }
+    }
+
+    /**
+     * Notifies that the method described by the trace record, which was
+     * passed to {@link #sqlTrace(SQLTraceRecord)} before its execution, has
+     * completed.
+     *
+     * @param record sql trace record
+     * @param executionTime time taken by the method, in nanoseconds
+     */
+    public void sqlTraceCompleted(SQLTraceRecord record, long executionTime) {
+        sqlTraceCompleted(record, null, executionTime);
+    }
+
+    /**
+     * Notifies that the method described by the trace record, which was
+     * passed to {@link #sqlTrace(SQLTraceRecord)} before its execution, has
+     * completed. Only executions of a sql query are timed : the query is
+     * the sql string passed to the method or, when there is none, the sql
+     * string the statement was prepared with.
+     *
+     * @param record sql trace record
+     * @param preparedSql sql string of the prepared statement the method was
+     * called on, null for other objects
+     * @param executionTime time taken by the method, in nanoseconds
+     */
+    public void sqlTraceCompleted(SQLTraceRecord record, String preparedSql, long executionTime) {
+        if (record != null && isExecutionMethod(record.getMethodName())) {
+            String sqlQuery = getSqlQuery(record);
+            if (sqlQuery == null) {
+                sqlQuery = preparedSql;
+            }
+            if (sqlQuery != null) {
+                probeProvider.traceSQLExecutionTimeEvent(poolName, appName, moduleName,
+                        sqlQuery, executionTime);
+            }
+        }
+    }
+
+    /**
+     * Get the sql string of the trace record.
+     *
+     * @param record sql trace record
+     * @return sql string or null when the method traced does not use a sql string
+     */
+    private String getSqlQuery(SQLTraceRecord record) {
+        String sqlQuery = null;
+        //Check if the method name is one in which sql query is used
+        if (isMethodValidForCaching(record.getMethodName())) {
+            Object[] params = record.getParams();
+            if (params != null && params.length > 0) {
+                for (Object param : params) {
+                    if(param instanceof String) {
+                        sqlQuery = param.toString();
                     }
+                    break;
                 }
             }
         }
+        return sqlQuery;
     }
 
    /**
@@ -148,4 +195,14 @@ public class SQLTraceDelegator implements SQLTraceListener {
     private boolean isMethodValidForCaching(String methodName) {
         return JdbcRAConstants.validSqlTracingMethodNames.contains(methodName);
     }
+
+    /**
+     * Check if the method name from the sql trace record executes a sql query.
+     *
+     * @param methodName
+     * @return true if the method executes a sql query
+     */
+    private boolean isExecutionMethod(String methodName) {
+        return JdbcRAConstants.sqlExecutionMethodNames.contains(methodName);
+    }
 }
@@ -174,7 +174,7 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
         try{
             output = (java.sql.CallableStatement)getProxyObject(
                     mc.prepareCachedCallableStatement(this,sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), 
-                    intf);
+                    intf, sql);
         }catch(Exception e){
             SQLException se = new SQLException(e.getMessage());
             se.initCause(e);
@@ -200,7 +200,7 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
         try{
             output = (java.sql.CallableStatement)getProxyObject(
                     mc.prepareCachedCallableStatement(this, sql, resultSetType, resultSetConcurrency), 
-                    intf);
+                    intf, sql);
         }catch(Exception e){
             SQLException se = new SQLException(e.getMessage());
             se.initCause(e);
@@ -228,7 +228,7 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
         try{
             output = (java.sql.CallableStatement)getProxyObject(
                     mc.prepareCachedCallableStatement(this, sql, resultSetType, resultSetConcurrency, resultSetHoldability), 
-                    intf);
+                    intf, sql);
         }catch(Exception e){
             SQLException se = new SQLException(e.getMessage());
             se.initCause(e);
@@ -251,7 +251,7 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
         try{
             output = (PreparedStatement)getProxyObject(
                     mc.prepareCachedStatement(this, sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY),
-                    intf);
+                    intf, sql);
         }catch(Exception e){
             SQLException se = new SQLException(e.getMessage());
             se.initCause(e);
@@ -274,7 +274,7 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
         Class intf[] = new Class[]{java.sql.PreparedStatement.class};
         try{
             output = (PreparedStatement)getProxyObject(
-                    mc.prepareCachedStatement(this, sql, autoGeneratedKeys), intf);
+                    mc.prepareCachedStatement(this, sql, autoGeneratedKeys), intf, sql);
         }catch(Exception e){
             SQLException se = new SQLException(e.getMessage());
             se.initCause(e);
@@ -298,7 +298,7 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
         Class intf[] = new Class[]{java.sql.PreparedStatement.class};
         try{
             output = (PreparedStatement)getProxyObject(
-                    mc.prepareCachedStatement(this, sql, columnIndexes), intf);
+                    mc.prepareCachedStatement(this, sql, columnIndexes), intf, sql);
         }catch(Exception e){
             SQLException se = new SQLException(e.getMessage());
             se.initCause(e);
@@ -324,7 +324,7 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
         try{
             output = (PreparedStatement)getProxyObject(
                     mc.prepareCachedStatement(this, sql, resultSetType, resultSetConcurrency), 
-                    intf);
+                    intf, sql);
         }catch(Exception e){
             SQLException se = new SQLException(e.getMessage());
             se.initCause(e);
@@ -352,7 +352,7 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
         try{
             output = (PreparedStatement)getProxyObject(
                     mc.prepareCachedStatement(this, sql, resultSetType, resultSetConcurrency, resultSetHoldability), 
-                    intf);
+                    intf, sql);
         }catch(Exception e){
             SQLException se = new SQLException(e.getMessage());
             se.initCause(e);
@@ -377,7 +377,7 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
         Class intf[] = new Class[]{java.sql.PreparedStatement.class};
         try{
             output = (PreparedStatement)getProxyObject(mc.prepareCachedStatement(this, sql, columnNames), 
-                    intf);
+                    intf, sql);
         }catch(Exception e){
             SQLException se = new SQLException(e.getMessage());
             se.initCause(e);
@@ -439,8 +439,17 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
                 enableCaching);
     }
 
-    //TODO refactor this method and move to a higher level
     private <T> T getProxyObject(final Object actualObject, Class<T>[] ifaces) throws Exception {
+        return getProxyObject(actualObject, ifaces, null);
+    }
+
+    /**
+     * Wraps a JDBC object so that its method calls are traced. Executions of a
+     * statement prepared with <code>sql</code> are timed against that query.
+     */
+    //TODO refactor this method and move to a higher level
+    private <T> T getProxyObject(final Object actualObject, Class<T>[] ifaces,
+            final String sql) throws Exception {
         
         
         T result;
@@ -455,7 +464,12 @@ public class ProfiledConnectionWrapper30 extends ConnectionHolder30 implements C
                 record.setThreadID(Thread.currentThread().getId());
                 record.setTimeStamp(System.currentTimeMillis());
                 sqlTraceDelegator.sqlTrace(record);
-                return method.invoke(actualObject, args);
+                long startTime = System.nanoTime();
+                try {
+                    return method.invoke(actualObject, args);
+                } finally {
+                    sqlTraceDelegator.sqlTraceCompleted(record, sql, System.nanoTime() - startTime);
+                }
             }
         };
         result = (T) Proxy.newProxyInstance(actualObject.getClass().getClassLoader(), ifaces, ih);
@@ -47,16 +47,20 @@ import org.glassfish.external.probe.provider.annotations.ProbeListener;
 import org.glassfish.external.probe.provider.annotations.ProbeParam;
 import org.glassfish.external.statistics.CountStatistic;
 import org.glassfish.external.statistics.RangeStatistic;
+import org.glassfish.external.statistics.StringStatistic;
 import org.glassfish.external.statistics.annotations.Reset;
 import org.glassfish.external.statistics.impl.CountStatisticImpl;
 import org.glassfish.external.statistics.impl.RangeStatisticImpl;
 import org.glassfish.external.statistics.impl.StatisticImpl;
+import org.glassfish.external.statistics.impl.StringStatisticImpl;
+import org.glassfish.flashlight.statistics.concurrent.LatencyHistogram;
 import org.glassfish.gmbal.AMXMetadata;
 import org.glassfish.gmbal.Description;
 import org.glassfish.gmbal.ManagedAttribute;
 import org.glassfish.gmbal.ManagedObject;
 import org.glassfish.resourcebase.resources.api.PoolInfo;
 
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -137,6 +141,12 @@ public class JdbcConnPoolStatsProvider {
     private CountStatisticImpl waitQueueLength = new CountStatisticImpl(
             "WaitQueueLength", StatisticImpl.UNIT_COUNT, 
             "Number of connection requests in the queue waiting to be serviced.");
+    private StringStatisticImpl connRequestQueueTime = new StringStatisticImpl(
+            "ConnRequestQueueTime", "List",
+            "Percentiles of the time connection requests spent in the wait queue, " +
+            "in milliseconds.");
+    private final LatencyHistogram queueTimeHistogram =
+            new LatencyHistogram(TimeUnit.HOURS.toMillis(1));
     private static final String JDBC_PROBE_LISTENER = "glassfish:jdbc:connection-pool:";
 
 
@@ -481,7 +491,8 @@ public class JdbcConnPoolStatsProvider {
         numPotentialConnLeak.reset();
         averageConnWaitTime.reset();
         totalConnRequestWaitTime.reset();
-        waitQueueLength.reset();        
+        waitQueueLength.reset();
+        queueTimeHistogram.reset();        
     }
     
     /**
@@ -566,6 +577,27 @@ public class JdbcConnPoolStatsProvider {
         }                        
     }
 
+    /**
+     * When a request leaves the wait queue, record the time it spent waiting.
+     */
+    @ProbeListener(JDBC_PROBE_LISTENER + "connectionRequestQueueTimeEvent")
+    public void connectionRequestQueueTimeEvent(
+            @ProbeParam("poolName") String poolName,
+            @ProbeParam("appName") String appName,
+            @ProbeParam("moduleName") String moduleName,
+            @ProbeParam("queueTimeInMillis") long queueTimeInMillis
+            ) {
+
+        PoolInfo poolInfo = new PoolInfo(poolName, appName, moduleName);
+        if(this.poolInfo.equals(poolInfo)) {
+            if(logger.isLoggable(Level.FINEST)) {
+                logger.finest("Wait Queue time event received - " +
+                    "poolName = " + poolName);
+            }
+            queueTimeHistogram.record(queueTimeInMillis);
+        }
+    }
+
     public PoolInfo getPoolInfo() {
         return poolInfo;
     }
@@ -710,4 +742,10 @@ public class JdbcConnPoolStatsProvider {
     public CountStatistic getWaitQueueLength() {
         return waitQueueLength;
     }
+
+    @ManagedAttribute(id="connrequestqueuetime")
+    public StringStatistic getConnRequestQueueTime() {
+        connRequestQueueTime.setCurrent(queueTimeHistogram.toString());
+        return connRequestQueueTime;
+    }
 }
@@ -3033,6 +3033,10 @@ public class EntityContainer
 	    return totalPassivations - totalPassivationErrors;
 	}
 
+	public int getPassivationQueueDepth() {
+	    return 0;
+	}
+
 	public int getMaxCacheSize() {
 	    return this.confMaxCacheSize;
 	}
@@ -41,6 +41,7 @@
 package com.sun.enterprise.transaction;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.*;
 import java.rmi.RemoteException;
 
@@ -106,7 +107,8 @@ public class JavaEETransactionManagerSimplified
 
     @Inject protected InvocationManager invMgr;
 
-    private JavaEETransactionManagerDelegate delegate;
+    // Volatile so that getDelegate() can read it without locking
+    private volatile JavaEETransactionManagerDelegate delegate;
 
     // Sting Manager for Localization
     private static StringManager sm 
@@ -131,12 +133,17 @@ public class JavaEETransactionManagerSimplified
     private int purgeCancelledTtransactions = 0;
 
     // admin and monitoring related parameters
-    private  static final Hashtable statusMap = new Hashtable();
-    private List activeTransactions = Collections.synchronizedList(new ArrayList());
+    // Only populated by the static initializer, so reads need no locking
+    private  static final Map<Integer, String> statusMap = new HashMap<Integer, String>();
+    // Transactions in flight when monitoring is enabled. A concurrent set gives
+    // constant time add/remove without a global lock, and iterating it for a
+    // snapshot does not block begin/commit.
+    private final Set<Transaction> activeTransactions = 
+            Collections.newSetFromMap(new ConcurrentHashMap<Transaction, Boolean>());
     private boolean monitoringEnabled = false;
 
     private TransactionServiceProbeProvider monitor;
-    private Hashtable txnTable = null;
+    private volatile Map<String, Transaction> txnTable = null;
 
     private Cache resourceTable;
 
@@ -1126,11 +1133,9 @@ public class JavaEETransactionManagerSimplified
     */
     public ArrayList getActiveTransactions() {
         ArrayList tranBeans = new ArrayList();
-        txnTable = new Hashtable();
-        Object[] activeCopy = activeTransactions.toArray(); // get the clone of the active transactions
-        for(int i=0;i<activeCopy.length;i++){
+        Map<String, Transaction> table = new HashMap<String, Transaction>();
+        for(Transaction tran : activeTransactions){ // weakly consistent snapshot
             try{
-                Transaction tran = (Transaction)activeCopy[i];
                 TransactionAdminBean tBean = getDelegate().getTransactionAdminBean(tran);
                 if (tBean == null) {
                     // Shouldn't happen
@@ -1139,7 +1144,7 @@ public class JavaEETransactionManagerSimplified
                     if (_logger.isLoggable(Level.FINE))
                         _logger.log(Level.FINE, "TM: Adding txnId " + tBean.getId() + " to txnTable");
 
-                    txnTable.put(tBean.getId(), tran);
+                    table.put(tBean.getId(), tran);
                     tranBeans.add(tBean);
                 }
             }catch(Exception ex){
@@ -1147,6 +1152,7 @@ public class JavaEETransactionManagerSimplified
                     "transaction.monitor.error_while_getting_monitor_attr", ex);
             }
         }
+        txnTable = table;
         return tranBeans;
     }
 
@@ -1179,14 +1185,15 @@ public class JavaEETransactionManagerSimplified
              getActiveTransactions();
          // XXX - WORK AROUND MONITORING BUG
 
-         if (txnTable == null || txnTable.get(txnId) == null) {
+         Map<String, Transaction> table = txnTable;
+         if (table == null || table.get(txnId) == null) {
             String result = sm.getString("transaction.monitor.rollback_invalid_id");
             throw new  IllegalStateException(result);
         } else {
             if (_logger.isLoggable(Level.FINE))
                 _logger.log(Level.FINE, "TM: Marking txnId " + txnId + " for rollback");
 
-             ((Transaction) txnTable.get(txnId)).setRollbackOnly();
+             table.get(txnId).setRollbackOnly();
          }
 
     }
@@ -1256,7 +1263,7 @@ public class JavaEETransactionManagerSimplified
 /************************* Helper Methods ***********************************/
 /****************************************************************************/
     public static String getStatusAsString(int status) {
-        return (String)statusMap.get(status);
+        return statusMap.get(status);
     }
 
     private void delistComponentResources(ComponentInvocation inv,
@@ -1474,7 +1481,7 @@ public class JavaEETransactionManagerSimplified
     /**
      * Called by JavaEETransactionImpl also
      */
-    synchronized JavaEETransactionManagerDelegate getDelegate() {
+    JavaEETransactionManagerDelegate getDelegate() {
         JavaEETransactionManagerDelegate d = delegates.get();
         return (d == null)? delegate : d;
     }
@@ -45,8 +45,11 @@ import java.util.logging.*;
 
 import org.glassfish.external.statistics.CountStatistic;
 import org.glassfish.external.statistics.StringStatistic;
+import org.glassfish.external.statistics.TimeStatistic;
 import org.glassfish.external.statistics.impl.CountStatisticImpl;
+import org.glassfish.external.statistics.impl.StatisticImpl;
 import org.glassfish.external.statistics.impl.StringStatisticImpl;
+import org.glassfish.external.statistics.impl.TimeStatisticImpl;
 import org.glassfish.external.probe.provider.annotations.*;
 import org.glassfish.gmbal.AMXMetadata;
 import org.glassfish.gmbal.Description;
@@ -86,6 +89,17 @@ public class TransactionServiceStatsProvider {
     private StringStatisticImpl state = new StringStatisticImpl("State", "String", 
                 "Indicates if the transaction service has been frozen.");
 
+    private CountStatisticImpl forcedLogRecordCount = new CountStatisticImpl("ForcedLogRecordCount", "count",
+            "Provides the number of transaction log records that have been forced to disk.");
+
+    private CountStatisticImpl commitsPerSync = new CountStatisticImpl("CommitsPerSync", "count",
+            "Provides the average number of forced transaction log records made durable by one log sync.");
+
+    private TimeStatisticImpl logSyncTime = new TimeStatisticImpl(0L, 0L, 0L, 0L,
+            "LogSyncTime", StatisticImpl.UNIT_MICROSECOND,
+            "Provides the number and duration of the syncs of the transaction log.",
+            System.currentTimeMillis(), -1L);
+
     private boolean isFrozen = false;
 
     private JavaEETransactionManager txMgr;
@@ -122,6 +136,26 @@ public class TransactionServiceStatsProvider {
         return state;
     }
     
+    @ManagedAttribute(id="forcedlogrecordcount")
+    @Description( "Provides the number of transaction log records that have been forced to disk." )
+    public CountStatistic getForcedLogRecordCount() {
+        return forcedLogRecordCount;
+    }
+
+    @ManagedAttribute(id="commitspersync")
+    @Description( "Provides the average number of forced transaction log records made durable by one log sync." )
+    public CountStatistic getCommitsPerSync() {
+        long syncs = logSyncTime.getCount();
+        commitsPerSync.setCount((syncs == 0)? 0 : forcedLogRecordCount.getCount()/syncs);
+        return commitsPerSync;
+    }
+
+    @ManagedAttribute(id="logsynctime")
+    @Description( "Provides the number and duration in microseconds of the syncs of the transaction log." )
+    public TimeStatistic getLogSyncTime() {
+        return logSyncTime;
+    }
+
     @ManagedAttribute(id="activeids")
     @Description( "List of inflight transactions." )
     public StringStatistic getActiveIds() {
@@ -217,6 +251,13 @@ public class TransactionServiceStatsProvider {
         isFrozen = b;
     }
 
+    @ProbeListener("glassfish:transaction:transaction-service:logforced")
+    public void logForcedEvent(@ProbeParam("records") int records,
+            @ProbeParam("syncTime") long syncTime) {
+        forcedLogRecordCount.increment(records);
+        logSyncTime.incrementCount(syncTime);
+    }
+
     private void appendColumn(StringBuffer buf, String text, int length) {
         buf.append(text);
         for (int i=text.length(); i<length; i++){
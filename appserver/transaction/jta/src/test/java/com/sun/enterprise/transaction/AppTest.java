@@ -503,6 +503,61 @@ public class AppTest extends TestCase {
         }
     }
 
+    public void testConcurrentBeginCommit() {
+        System.out.println("**Testing concurrent TM begin/commit ===>");
+        JavaEETransactionManagerSimplified tm = (JavaEETransactionManagerSimplified) t;
+        tm.invMgr = new org.glassfish.api.invocation.InvocationManagerImpl();
+        tm.postConstruct();
+        tm.setMonitoringEnabled(true);
+
+        final java.util.concurrent.atomic.AtomicInteger failures =
+                new java.util.concurrent.atomic.AtomicInteger();
+        Thread[] threads = new Thread[8];
+        // Each thread keeps its first transaction active until the
+        // active transactions have been checked
+        final java.util.concurrent.CountDownLatch begun =
+                new java.util.concurrent.CountDownLatch(threads.length);
+        final java.util.concurrent.CountDownLatch checked =
+                new java.util.concurrent.CountDownLatch(1);
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            t.begin();
+                            if (t.getStatus() != Status.STATUS_ACTIVE)
+                                failures.incrementAndGet();
+                            if (j == 0) {
+                                begun.countDown();
+                                checked.await();
+                            }
+                            t.commit();
+                            if (t.getStatus() != Status.STATUS_NO_TRANSACTION)
+                                failures.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        try {
+            begun.await();
+            assertEquals(threads.length, tm.getActiveTransactions().size());
+            checked.countDown();
+            for (Thread thread : threads)
+                thread.join();
+        } catch (InterruptedException ex) {
+            fail();
+        } finally {
+            checked.countDown();
+        }
+        assertEquals(0, failures.get());
+        assertTrue(tm.getActiveTransactions().isEmpty());
+    }
+
     public void testRollback() {
         System.out.println("**Testing TM rollback ===>");
         try {
@@ -214,6 +214,29 @@ public class Configuration extends Object {
      */
     public final static String TIMEOUT_INTERVAL = "com.sun.jts.timeoutInterval" ;
 
+    /**The property key used to specify whether forced writes to the transaction
+     * log should be group committed.  When enabled, a forced write no longer syncs
+     * the log while holding the log lock; instead concurrent forced writes are
+     * coalesced and a single thread writes and syncs the accumulated records on
+     * behalf of all of them.
+     * <p>
+     * The value is <em><b>com.sun.jts.groupCommit</b></em>.
+     * <p>
+     * The default value for this property is false.
+     */
+    public final static String GROUP_COMMIT = "com.sun.jts.groupCommit"/*#Frozen*/;
+
+    /**The property key used to specify the time in microseconds for which the thread
+     * performing a group commit waits for further forced writes to join the group
+     * before it syncs the log.
+     * <p>
+     * The value is <em><b>com.sun.jts.groupCommitWindow</b></em>.
+     * <p>
+     * The default value for this property is 0, in which case a group consists of
+     * the forced writes that arrived while the previous sync was in progress.
+     */
+    public final static String GROUP_COMMIT_WINDOW = "com.sun.jts.groupCommitWindow"/*#Frozen*/;
+
     /**The default subdirectory in which log and repository files are stored.
      */
     public final static String JTS_SUBDIRECTORY = "jts"/*#Frozen*/;
@@ -40,8 +40,13 @@
 
 package com.sun.jts.CosTransactions;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.sql.*;
 import javax.sql.*;
 import javax.naming.*;
@@ -54,6 +59,11 @@ import com.sun.jts.utils.LogFormatter;
 
 /** The LogDBHelper class takes care of writing the transaction logs
   *  into database.
+  *  <p>
+  *  If the com.sun.jts.dblogging.batch system property is set, log and delete
+  *  operations are queued and written in JDBC batches on a dedicated
+  *  non-transactional connection. addRecord still returns only after the batch
+  *  containing its record has been committed.
   * @author Sun Micro Systems, Inc
 */
 
@@ -83,16 +93,31 @@ class LogDBHelper {
                  "select distinct servername from txn_log_table where instancename = ? ");
     private static final String createTableStatement = 
                  "create table txn_log_table (localtid varchar(20), servername varchar(150), instancename varchar(150), gtrid blob)";
+    private static final String batchDeleteStatement =
+                 "delete from txn_log_table where servername = ? and localtid in (";
     private static final boolean useNonTxConnectionForAddRecord = Boolean.getBoolean("com.sun.jts.dblogging.use.nontx.connection.for.add");
+    private static final boolean useBatchedLogging = Boolean.getBoolean("com.sun.jts.dblogging.batch");
+    private static final int batchSize = Integer.getInteger("com.sun.jts.dblogging.batch.size", 100);
+    // Upper bound of the in-list of a batched delete
+    private static final int MAX_DELETE_RANGE = 50;
     private static Logger _logger = LogDomains.getLogger(LogDBHelper.class, LogDomains.TRANSACTION_LOGGER);
-    private static LogDBHelper _instance = new LogDBHelper();
+
+    // Created on first use, so that the data source is only looked up when
+    // database logging is actually used
+    private static class InstanceHolder {
+        private static final LogDBHelper _instance = new LogDBHelper();
+    }
+
+    private final boolean batched;
+    private BatchWriter batchWriter = null;
 
     static LogDBHelper getInstance() {
-        return _instance;
+        return InstanceHolder._instance;
     }
 
     LogDBHelper() {
         instanceName = Configuration.getPropertyValue(Configuration.INSTANCE_NAME);
+        batched = useBatchedLogging;
         if (Configuration.getPropertyValue(Configuration.DB_LOG_RESOURCE) != null) {
             resName = Configuration.getPropertyValue(Configuration.DB_LOG_RESOURCE);
         }
@@ -115,6 +140,19 @@ class LogDBHelper {
         }
     }
 
+    /**
+     * Creates a helper that logs to the given data source under the given server
+     * name. The data source must provide a getNonTxConnection method.
+     */
+    LogDBHelper(DataSource ds, String serverName, boolean batched) throws Exception {
+        instanceName = Configuration.getPropertyValue(Configuration.INSTANCE_NAME);
+        this.serverName = serverName;
+        this.batched = batched;
+        this.ds = ds;
+        getNonTxConnectionMethod = ds.getClass().getMethod("getNonTxConnection");
+        createTable();
+    }
+
     void setServerName() {
         // Add a mapping between the serverName and the instanceName
         String serverName0 = Configuration.getServerName();
@@ -152,6 +190,9 @@ class LogDBHelper {
                 _logger.fine("LogDBHelper.addRecord for serverName: " + serverName);
                 _logger.fine("LogDBHelper.addRecord for instanceName: " + instanceName);
             }
+            if (batched) {
+                return getBatchWriter().add(localTID, serverName, data);
+            }
             Connection conn = null;
             PreparedStatement prepStmt1 = null;    
             try {
@@ -196,6 +237,12 @@ class LogDBHelper {
             if (_logger.isLoggable(Level.FINE)) {
                 _logger.fine("LogDBHelper.deleteRecord for localTID: " + localTID + " and serverName: " + serverName0);
             }
+            if (batched) {
+                // Not waited for: a record left behind only makes recovery
+                // look at a transaction that has already completed
+                getBatchWriter().delete(localTID, serverName0);
+                return true;
+            }
             Connection conn = null;
             PreparedStatement prepStmt1 = null;    
             try {
@@ -233,6 +280,9 @@ class LogDBHelper {
             if (_logger.isLoggable(Level.FINE)) {
                 _logger.fine("LogDBHelper get records for serverName: " + serverName0);
             }
+            if (batched) {
+                getBatchWriter().flush();
+            }
             Connection conn = null;
             PreparedStatement prepStmt1 = null;    
             ResultSet rs = null;
@@ -354,4 +404,201 @@ class LogDBHelper {
             }
         }
     }   
+
+    private synchronized BatchWriter getBatchWriter() {
+        if (batchWriter == null) {
+            batchWriter = new BatchWriter();
+        }
+        return batchWriter;
+    }
+
+    /**
+     * A queued log or delete operation. A caller waiting for the operation is
+     * released once the batch that contains it has been written.
+     */
+    private static class LogOperation {
+        static final int INSERT = 0;
+        static final int DELETE = 1;
+        static final int FLUSH = 2;
+
+        final int type;
+        final long localTID;
+        final String serverName;
+        final byte[] data;
+
+        private boolean done = false;
+        private boolean result = false;
+
+        LogOperation(int type, long localTID, String serverName, byte[] data) {
+            this.type = type;
+            this.localTID = localTID;
+            this.serverName = serverName;
+            this.data = data;
+        }
+
+        synchronized void complete(boolean result0) {
+            result = result0;
+            done = true;
+            notifyAll();
+        }
+
+        synchronized boolean await() {
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Writes the queued operations from a single daemon thread. Each pass takes
+     * everything queued so far, up to the batch size, inserts the new records
+     * as one JDBC batch, removes completed records with one range delete per
+     * server name and commits. All operations of a failed batch report failure.
+     */
+    private class BatchWriter implements Runnable {
+        private final BlockingQueue<LogOperation> queue = new LinkedBlockingQueue<LogOperation>();
+
+        // Only used by the writer thread
+        private Connection conn = null;
+
+        BatchWriter() {
+            Thread writer = new Thread(this, "JTS DB Log Writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        boolean add(long localTID, String serverName0, byte[] data) {
+            LogOperation op = new LogOperation(LogOperation.INSERT, localTID, serverName0, data);
+            queue.add(op);
+            return op.await();
+        }
+
+        void delete(long localTID, String serverName0) {
+            queue.add(new LogOperation(LogOperation.DELETE, localTID, serverName0, null));
+        }
+
+        void flush() {
+            LogOperation op = new LogOperation(LogOperation.FLUSH, 0, null, null);
+            queue.add(op);
+            op.await();
+        }
+
+        public void run() {
+            List<LogOperation> ops = new ArrayList<LogOperation>(batchSize);
+            while (true) {
+                try {
+                    ops.add(queue.take());
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                queue.drainTo(ops, batchSize - 1);
+                boolean result = writeBatch(ops);
+                for (LogOperation op : ops) {
+                    op.complete(result);
+                }
+                ops.clear();
+            }
+        }
+
+        private boolean writeBatch(List<LogOperation> ops) {
+            if (_logger.isLoggable(Level.FINE)) {
+                _logger.fine("LogDBHelper writing batch of " + ops.size() + " operations");
+            }
+            PreparedStatement insertStmt = null;
+            try {
+                if (conn == null) {
+                    conn = (Connection)(getNonTxConnectionMethod.invoke(ds));
+                    conn.setAutoCommit(false);
+                }
+
+                // A transaction's record is deleted only after addRecord returned,
+                // so inserts never need to follow deletes within the same batch
+                Map<String, List<Long>> deletes = new LinkedHashMap<String, List<Long>>();
+                for (LogOperation op : ops) {
+                    if (op.type == LogOperation.INSERT) {
+                        if (insertStmt == null) {
+                            insertStmt = conn.prepareStatement(insertStatement);
+                        }
+                        insertStmt.setString(1,Long.toString(op.localTID));
+                        insertStmt.setString(2,op.serverName);
+                        insertStmt.setString(3,instanceName);
+                        insertStmt.setBytes(4,op.data);
+                        insertStmt.addBatch();
+                    } else if (op.type == LogOperation.DELETE) {
+                        List<Long> tids = deletes.get(op.serverName);
+                        if (tids == null) {
+                            tids = new ArrayList<Long>();
+                            deletes.put(op.serverName, tids);
+                        }
+                        tids.add(op.localTID);
+                    }
+                }
+                if (insertStmt != null) {
+                    insertStmt.executeBatch();
+                }
+                for (Map.Entry<String, List<Long>> entry : deletes.entrySet()) {
+                    deleteRange(entry.getKey(), entry.getValue());
+                }
+                conn.commit();
+                return true;
+            } catch (Throwable ex) {
+                _logger.log(Level.SEVERE,"jts.exception_in_db_log_resource",ex);
+                resetConnection();
+                return false;
+            } finally {
+                try {
+                    if (insertStmt != null)
+                        insertStmt.close();
+                } catch (Exception ex1) {
+                    _logger.log(Level.SEVERE,"jts.exception_in_db_log_resource",ex1);
+                }
+            }
+        }
+
+        private void deleteRange(String serverName0, List<Long> tids) throws SQLException {
+            for (int start = 0; start < tids.size(); start += MAX_DELETE_RANGE) {
+                int end = Math.min(start + MAX_DELETE_RANGE, tids.size());
+                StringBuilder sb = new StringBuilder(batchDeleteStatement);
+                for (int i = start; i < end; i++) {
+                    sb.append((i == start) ? "?" : ", ?");
+                }
+                sb.append(")");
+                PreparedStatement deleteStmt = conn.prepareStatement(sb.toString());
+                try {
+                    deleteStmt.setString(1,serverName0);
+                    for (int i = start; i < end; i++) {
+                        deleteStmt.setString(i - start + 2,Long.toString(tids.get(i)));
+                    }
+                    deleteStmt.executeUpdate();
+                } finally {
+                    deleteStmt.close();
+                }
+            }
+        }
+
+        private void resetConnection() {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (Exception ex1) {
+                    _logger.log(Level.FINE,"jts.exception_in_db_log_resource",ex1);
+                }
+                try {
+                    conn.close();
+                } catch (Exception ex1) {
+                    _logger.log(Level.FINE,"jts.exception_in_db_log_resource",ex1);
+                }
+                conn = null;
+            }
+        }
+    }
 }
@@ -131,6 +131,10 @@ class LogFile {
      * <p>
      * Returns true if the write completed successfully and false if the write
      * did not complete.
+     * <p>
+     * When group commit is enabled, a forced write is buffered while holding the
+     * lock and then forced outside it, so that the forced writes of concurrent
+     * callers can share a single sync.
      *
      * @param writeType   Forced/non-forced write indicator.
      * @param record      Log record data.
@@ -141,10 +145,10 @@ class LogFile {
      *
      * @see
      */
-    synchronized boolean write( int    writeType,
-                                byte[] record,
-                                int    recordType,
-                                LogLSN recordLSN ) {
+    boolean write( int    writeType,
+                   byte[] record,
+                   int    recordType,
+                   LogLSN recordLSN ) {
 
         boolean result = true;
 
@@ -152,10 +156,20 @@ class LogFile {
         // Set the result based on return code from log write.
 
         try {
-            LogLSN resultLSN = handle.writeRecord(record,recordType,
-                                                  (writeType==LogFile.FORCED ? LogHandle.FORCE : LogHandle.BUFFER));
-            if( recordLSN != null )
-                recordLSN.copy(resultLSN);
+            if( writeType == LogFile.FORCED && LogHandle.groupCommit ) {
+                long sequence;
+                synchronized( this ) {
+                    sequence = handle.writeRecordGrouped(record,recordType,recordLSN);
+                }
+                handle.forceGroup(sequence);
+            } else {
+                synchronized( this ) {
+                    LogLSN resultLSN = handle.writeRecord(record,recordType,
+                                                          (writeType==LogFile.FORCED ? LogHandle.FORCE : LogHandle.BUFFER));
+                    if( recordLSN != null )
+                        recordLSN.copy(resultLSN);
+                }
+            }
         } catch( LogException le ) {
 			_logger.log(Level.SEVERE,"jts.log_error",le.toString());
 			 String msg = LogFormatter.getLocalizedMessage(_logger,"jts.log_error",
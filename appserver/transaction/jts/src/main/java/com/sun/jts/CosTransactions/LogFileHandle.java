@@ -58,6 +58,9 @@ package com.sun.jts.CosTransactions;
 
 import com.sun.enterprise.util.i18n.StringManager;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**This class encapsulates file I/O operations and the file handle.
  *
@@ -136,6 +139,12 @@ class LogFileHandle {
     int bufferUpdateEnd   = -1;
     int buffPos = 0;
 
+    /**Serialises the transfer of the buffer to the file.  It is held from the
+     * point a pending write is detached until that write has been synced, so that
+     * updates reach the file in the order in which they were buffered.
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
     static {
         dsyncProp = System.getProperty(DSYNC_PROPERTY);
         if (dsyncProp != null) {
@@ -389,6 +398,7 @@ class LogFileHandle {
     void fileClose()
         throws LogException {
 
+        flushLock.lock();
         try {
 
             // If buffered, then ensure that the buffer is stored and synced with the
@@ -403,6 +413,8 @@ class LogFileHandle {
         } catch( Throwable e ) {
             throw new LogException(LogException.LOG_CLOSE_FAILURE,1,
                     sm.getString("jts.log_close_failed"), e);
+        } finally {
+            flushLock.unlock();
         }
 
         // Reset the file handle and descriptor values.
@@ -470,9 +482,11 @@ class LogFileHandle {
 
         // Synchronization is only done for buffered files which have been updated.
         // Non-buffered files have every write synchronized with the file system.
+        // The flush lock also makes us wait for any detached write still in progress.
 
-        if( bufferUpdateStart != -1 )
-            try {
+        flushLock.lock();
+        try {
+            if( bufferUpdateStart != -1 ) {
                 fhandle.seek(bufferUpdateStart);
                 fhandle.write(bufferData,bufferUpdateStart,bufferUpdateEnd-bufferUpdateStart);
                 if (dsyncProp == null)
@@ -480,11 +494,116 @@ class LogFileHandle {
 
                 bufferUpdateStart = -1;
                 bufferUpdateEnd   = -1;
+            }
+        } catch (Throwable e) {
+            throw new LogException(LogException.LOG_READ_FAILURE,1,
+                    sm.getString("jts.log_file_sync_failed"), e);
+        } finally {
+            flushLock.unlock();
+        }
+
+    }
+
+    /**Detaches the buffered updates which have not yet been written to the file,
+     * so that they can be written and synced by PendingWrite.complete without
+     * holding the lock which protects the buffer.
+     * <p>
+     * The caller must hold the lock which protects the buffer.  If a pending write
+     * is returned, other syncs of this file wait until it has been completed or
+     * abandoned.
+     *
+     * @param
+     *
+     * @return  The pending write, or null if there are no buffered updates.
+     *
+     * @see
+     */
+    PendingWrite detachPendingWrite() {
+
+        if( bufferUpdateStart == -1 )
+            return null;
+
+        flushLock.lock();
+        PendingWrite pending = new PendingWrite(bufferUpdateStart,bufferUpdateEnd);
+        bufferUpdateStart = -1;
+        bufferUpdateEnd   = -1;
+
+        return pending;
+    }
+
+    /**A range of buffered updates, detached from the buffer, which has still to be
+     * written and synced with the file system.
+     */
+    final class PendingWrite {
+
+        private final int updateStart;
+        private final int updateEnd;
+        private final ByteBuffer data;
+
+        PendingWrite( int updateStart,
+                      int updateEnd ) {
+            this.updateStart = updateStart;
+            this.updateEnd   = updateEnd;
+            byte[] bytes = new byte[updateEnd-updateStart];
+            System.arraycopy(bufferData,updateStart,bytes,0,bytes.length);
+            data = ByteBuffer.wrap(bytes);
+        }
+
+        /**Writes the detached updates with a single positional write and syncs
+         * them with the file system.  The flush lock is released in all cases.
+         *
+         * @param
+         *
+         * @return
+         *
+         * @exception LogException The write or sync failed
+         *
+         * @see
+         */
+        void complete() throws LogException {
+            try {
+                FileChannel channel = fhandle.getChannel();
+                long position = updateStart;
+                while( data.hasRemaining() )
+                    position += channel.write(data,position);
+                if (dsyncProp == null)
+                    fd.sync();
             } catch (Throwable e) {
                 throw new LogException(LogException.LOG_READ_FAILURE,1,
                         sm.getString("jts.log_file_sync_failed"), e);
+            } finally {
+                flushLock.unlock();
             }
+        }
 
+        /**Releases the flush lock without writing the detached updates.
+         *
+         * @param
+         *
+         * @return
+         *
+         * @see
+         */
+        void abandon() {
+            flushLock.unlock();
+        }
+
+        /**Marks the detached updates as unwritten again after the write failed or
+         * was abandoned, so that the next sync writes them.  The caller must hold
+         * the lock which protects the buffer.
+         *
+         * @param
+         *
+         * @return
+         *
+         * @see
+         */
+        void restore() {
+            if( bufferUpdateStart == -1 || updateStart < bufferUpdateStart )
+                bufferUpdateStart = updateStart;
+            if( updateEnd > bufferUpdateEnd )
+                bufferUpdateEnd = updateEnd;
+        }
     }
 
     /**Reads a vector of records from the file.
@@ -56,8 +56,11 @@ package com.sun.jts.CosTransactions;
 
 // Import required classes.
 
+import com.sun.enterprise.transaction.monitoring.TransactionServiceProbeProvider;
 import com.sun.enterprise.util.i18n.StringManager;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.io.*;
 
 /**A class containing attributes of an open log file.
@@ -211,6 +214,30 @@ class LogHandle {
      */
     final static int ALLOCATE_SIZE = MAX_EXTENT_SIZE;
 
+    /**Indicates whether forced writes are group committed, see
+     * Configuration.GROUP_COMMIT.
+     */
+    static boolean groupCommit = false;
+
+    /**The time in microseconds for which the thread performing a group commit
+     * waits for further forced writes to join the group.
+     */
+    static long groupCommitWindow = 0;
+
+    /**Emits the log sync events for the transaction service statistics.
+     */
+    private static final TransactionServiceProbeProvider monitor = new TransactionServiceProbeProvider();
+
+    static {
+        groupCommit = Boolean.valueOf(Configuration.getPropertyValue(Configuration.GROUP_COMMIT)).booleanValue();
+
+        String groupCommitWindowEnv = Configuration.getPropertyValue(Configuration.GROUP_COMMIT_WINDOW);
+        if( groupCommitWindowEnv != null )
+            try {
+                groupCommitWindow = Long.parseLong(groupCommitWindowEnv);
+            } catch( Throwable e ) {}
+    }
+
     // Instance members
 
     LogHandle            blockValid = null;
@@ -228,6 +255,14 @@ class LogHandle {
     LogControlDescriptor logControlDescriptor = null;
     LogControl           logControl = null;
 
+    // Group commit state.  The write sequence is protected by the LogHandle lock,
+    // the remaining fields by groupLock.
+
+    long                 groupWriteSequence = 0;
+    private final Object groupLock = new Object();
+    private boolean      groupForceActive = false;
+    private long         groupForcedSequence = 0;
+
 
     /**Creates a LogHandle object for the given log instance.
      *
@@ -555,6 +590,7 @@ class LogHandle {
         //   ENDLOOP
 
         if( writeMode == FORCE ) {
+            long syncStart = System.nanoTime();
             Enumeration extents = extentTable.elements();
             while( extents.hasMoreElements() ) {
                 LogExtent nextEDP = (LogExtent)extents.nextElement();
@@ -567,6 +603,7 @@ class LogHandle {
                                 sm.getString("jts.log_file_sync_failed"), le);
                     }
             }
+            monitor.logForcedEvent(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - syncStart));
         }
 
         // Update the head LSN and 'next free' LSN in the Log_FileDescriptor
@@ -603,6 +640,152 @@ class LogHandle {
         return result;
     }
 
+    /**Writes a record to the log as part of a group commit.
+     * <p>
+     * The record is buffered as for a BUFFER write.  The caller must then pass the
+     * returned sequence number to forceGroup, without holding any log lock, to wait
+     * until the record has been forced to permanent storage.
+     *
+     * @param record      The log record.
+     * @param recordType  The log record type.
+     * @param recordLSN   Set to the LSN of the written record, if not null.
+     *
+     * @return  The sequence number of the write.
+     *
+     * @exception LogException The write failed.
+     *
+     * @see
+     */
+    synchronized long writeRecordGrouped( byte[] record,
+                                          int    recordType,
+                                          LogLSN recordLSN )
+        throws LogException {
+
+        LogLSN result = writeRecord(record,recordType,BUFFER);
+        if( recordLSN != null )
+            recordLSN.copy(result);
+
+        return ++groupWriteSequence;
+    }
+
+    /**Waits until the grouped write with the given sequence number has been forced
+     * to permanent storage.
+     * <p>
+     * If no other thread is forcing the log, the caller forces it on behalf of all
+     * the grouped writes made so far, writing the buffered updates of each extent
+     * with one write and one sync.  Otherwise the caller waits for that force and,
+     * if it did not cover the caller's write, performs the next one.
+     *
+     * @param sequence  The sequence number returned by writeRecordGrouped.
+     *
+     * @return
+     *
+     * @exception LogException The force failed.
+     *
+     * @see
+     */
+    void forceGroup( long sequence )
+        throws LogException {
+
+        long previousSequence;
+        boolean interrupted = false;
+        synchronized( groupLock ) {
+            while( groupForcedSequence < sequence && groupForceActive )
+                try {
+                    groupLock.wait();
+                } catch( InterruptedException e ) {
+                    interrupted = true;
+                }
+
+            if( interrupted )
+                Thread.currentThread().interrupt();
+
+            if( groupForcedSequence >= sequence )
+                return;
+
+            groupForceActive = true;
+            previousSequence = groupForcedSequence;
+        }
+
+        long forcedSequence = previousSequence;
+        try {
+            if( groupCommitWindow > 0 )
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(groupCommitWindow));
+
+            long syncStart = System.nanoTime();
+            forcedSequence = forceGroupedWrites();
+            monitor.logForcedEvent((int)(forcedSequence - previousSequence),
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - syncStart));
+        } finally {
+            synchronized( groupLock ) {
+                groupForcedSequence = forcedSequence;
+                groupForceActive = false;
+                groupLock.notifyAll();
+            }
+        }
+    }
+
+    /**Writes and syncs the buffered updates of every extent written since the last
+     * force.  Only the detaching of the updates is done under the LogHandle lock, so
+     * that other threads can continue to write records while the sync is in progress.
+     *
+     * @param
+     *
+     * @return  The sequence number of the last grouped write that has been forced.
+     *
+     * @exception LogException The force failed.
+     *
+     * @see
+     */
+    private long forceGroupedWrites()
+        throws LogException {
+
+        long forcedSequence;
+        List<LogExtent> extents = new ArrayList<LogExtent>();
+        List<LogFileHandle.PendingWrite> pendingWrites = new ArrayList<LogFileHandle.PendingWrite>();
+
+        synchronized( this ) {
+            forcedSequence = groupWriteSequence;
+            Enumeration extentElements = extentTable.elements();
+            while( extentElements.hasMoreElements() ) {
+                LogExtent nextEDP = (LogExtent)extentElements.nextElement();
+                if( nextEDP.writtenSinceLastForce ) {
+                    LogFileHandle.PendingWrite pending = nextEDP.fileHandle.detachPendingWrite();
+                    if( pending != null ) {
+                        extents.add(nextEDP);
+                        pendingWrites.add(pending);
+                    }
+                    nextEDP.writtenSinceLastForce = false;
+                }
+            }
+        }
+
+        int completed = 0;
+        try {
+            for( ; completed < pendingWrites.size(); completed++ )
+                pendingWrites.get(completed).complete();
+        } catch( LogException le ) {
+
+            // The failed write has already released its flush lock; release the rest
+            // and mark all the writes that did not complete as unwritten again.
+
+            for( int i = completed + 1; i < pendingWrites.size(); i++ )
+                pendingWrites.get(i).abandon();
+
+            synchronized( this ) {
+                for( int i = completed; i < pendingWrites.size(); i++ ) {
+                    pendingWrites.get(i).restore();
+                    extents.get(i).writtenSinceLastForce = true;
+                }
+            }
+
+            throw new LogException(LogException.LOG_ERROR_FORCING_LOG, 14,
+                    sm.getString("jts.log_file_sync_failed"), le);
+        }
+
+        return forcedSequence;
+    }
+
     /**Reads a record from the log.
      *
      * @param readLSN  The LSN of the record to be read.
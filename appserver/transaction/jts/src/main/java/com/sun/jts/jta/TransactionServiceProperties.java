@@ -156,6 +156,14 @@ public class TransactionServiceProperties {
                             if (isValueSet(value)) {
                                 jtsProperties.put(Configuration.COMMIT_ONE_PHASE_DURING_RECOVERY, value);
                             }
+                        } else if (name.equals("group-commit")) {
+                            if (isValueSet(value)) {
+                                jtsProperties.put(Configuration.GROUP_COMMIT, value);
+                            }
+                        } else if (name.equals("group-commit-window-in-micros")) {
+                            if (isValueSet(value)) {
+                                jtsProperties.put(Configuration.GROUP_COMMIT_WINDOW, value);
+                            }
                         } else if (name.equals("add-wait-point-during-recovery")) {
                             if (isValueSet(value)) {
                                 try {
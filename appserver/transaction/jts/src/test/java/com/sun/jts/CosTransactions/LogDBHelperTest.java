@@ -0,0 +1,167 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.jts.CosTransactions;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the transaction log records written by LogDBHelper to an embedded Derby database.
+ */
+public class LogDBHelperTest {
+
+    private static final String SERVER_NAME = "server1";
+
+    /**
+     * Embedded data source that also provides the non-transactional connection
+     * LogDBHelper asks for.
+     */
+    public static class TestDataSource extends EmbeddedDataSource {
+        public Connection getNonTxConnection() throws SQLException {
+            return getConnection();
+        }
+    }
+
+    private static LogDBHelper createHelper(String dbName, boolean batched) throws Exception {
+        TestDataSource ds = new TestDataSource();
+        ds.setDatabaseName("memory:" + dbName);
+        ds.setCreateDatabase("create");
+        return new LogDBHelper(ds, SERVER_NAME, batched);
+    }
+
+    private static byte[] tid(long localTID) {
+        return ("gtid-" + localTID).getBytes();
+    }
+
+    private static void addAndDelete(LogDBHelper helper) {
+        for (long i = 1; i <= 10; i++) {
+            assertTrue(helper.addRecord(i, tid(i)));
+        }
+        for (long i = 1; i <= 10; i += 2) {
+            assertTrue(helper.deleteRecord(i));
+        }
+
+        Map gtidMap = helper.getGlobalTIDMap();
+        assertEquals(5, gtidMap.size());
+        for (long i = 2; i <= 10; i += 2) {
+            assertEquals(Long.valueOf(i), gtidMap.get(GlobalTID.fromTIDBytes(tid(i))));
+        }
+        assertFalse(gtidMap.containsKey(GlobalTID.fromTIDBytes(tid(1))));
+    }
+
+    @Test
+    public void testAddAndDeleteRecords() throws Exception {
+        addAndDelete(createHelper("txnlog-direct", false));
+    }
+
+    @Test
+    public void testAddAndDeleteRecordsBatched() throws Exception {
+        addAndDelete(createHelper("txnlog-batched", true));
+    }
+
+    /**
+     * Concurrent callers are batched together, and each one returns only once its
+     * record can be read back.
+     */
+    @Test
+    public void testConcurrentBatchedRecords() throws Exception {
+        final LogDBHelper helper = createHelper("txnlog-concurrent", true);
+        final int threads = 8;
+        final int recordsPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < threads; t++) {
+                final long first = t * recordsPerThread + 1;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        boolean added = true;
+                        for (long i = first; i < first + recordsPerThread; i++) {
+                            added &= helper.addRecord(i, tid(i));
+                        }
+                        // Remove every other record of this caller
+                        for (long i = first; i < first + recordsPerThread; i += 2) {
+                            helper.deleteRecord(i);
+                        }
+                        return added;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Map gtidMap = helper.getGlobalTIDMap();
+        assertEquals(threads * recordsPerThread / 2, gtidMap.size());
+        for (long i = 2; i <= threads * recordsPerThread; i += 2) {
+            assertEquals(Long.valueOf(i), gtidMap.get(GlobalTID.fromTIDBytes(tid(i))));
+        }
+    }
+
+    @Test
+    public void testRecordsOfOtherServerAreKept() throws Exception {
+        LogDBHelper helper = createHelper("txnlog-servers", true);
+        assertTrue(helper.addRecord(1, tid(1)));
+        assertTrue(helper.deleteRecord(1, "server2"));
+
+        Map gtidMap = helper.getGlobalTIDMap();
+        assertEquals(1, gtidMap.size());
+        assertTrue(helper.getGlobalTIDMap("server2").isEmpty());
+    }
+}
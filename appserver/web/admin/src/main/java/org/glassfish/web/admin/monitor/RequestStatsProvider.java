@@ -40,14 +40,17 @@
 
 package org.glassfish.web.admin.monitor;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.external.statistics.CountStatistic;
 import org.glassfish.external.statistics.annotations.Reset;
-import org.glassfish.external.statistics.impl.CountStatisticImpl;
 import org.glassfish.external.statistics.impl.StatisticImpl;
-import org.glassfish.external.statistics.impl.TimeStatisticImpl;
 import org.glassfish.external.probe.provider.annotations.*;
+import org.glassfish.flashlight.client.KeyedProbeListener;
+import org.glassfish.flashlight.statistics.concurrent.StripedCountStatistic;
+import org.glassfish.flashlight.statistics.concurrent.StripedTimeStatistic;
 import org.glassfish.gmbal.AMXMetadata;
 import org.glassfish.gmbal.Description;
 import org.glassfish.gmbal.ManagedObject;
@@ -62,7 +65,7 @@ import org.glassfish.web.admin.LogFacade;
 @AMXMetadata(type="web-request-mon", group="monitoring")
 @ManagedObject
 @Description("Web Request Statistics")
-public class RequestStatsProvider {
+public class RequestStatsProvider implements KeyedProbeListener {
 
     private static final Logger logger = LogFacade.getLogger();
 
@@ -75,33 +78,24 @@ public class RequestStatsProvider {
     private static final String PROCESSING_TIME_DESCRIPTION = 
         "Average request processing time";
 
-    private CountStatisticImpl errorCount = new CountStatisticImpl("ErrorCount",
+    private StripedCountStatistic errorCount = new StripedCountStatistic("ErrorCount",
             StatisticImpl.UNIT_COUNT, ERROR_COUNT_DESCRIPTION);
-    private CountStatisticImpl requestCount = new CountStatisticImpl("RequestCount",
+    private StripedCountStatistic requestCount = new StripedCountStatistic("RequestCount",
             StatisticImpl.UNIT_COUNT, REQUEST_COUNT_DESCRIPTION);
-    private CountStatisticImpl maxTime = new CountStatisticImpl("MaxTime",
+    private StripedCountStatistic maxTime = new StripedCountStatistic("MaxTime",
             StatisticImpl.UNIT_MILLISECOND, MAX_TIME_DESCRIPTION);
-    private CountStatisticImpl processingTime = new CountStatisticImpl("ProcessingTime",
+    private StripedCountStatistic processingTime = new StripedCountStatistic("ProcessingTime",
             StatisticImpl.UNIT_MILLISECOND, PROCESSING_TIME_DESCRIPTION);
 
-    private TimeStatisticImpl requestProcessTime = new TimeStatisticImpl(0L, 0L, 0L, 0L,
-            "", "", "", System.currentTimeMillis(), -1L);
+    private StripedTimeStatistic requestProcessTime = new StripedTimeStatistic(
+            "RequestProcessTime", StatisticImpl.UNIT_MILLISECOND, "");
     
     private String virtualServerName = null;
     private String moduleName = null;
 
     private ThreadLocal<TimeStatData> timeStatDataLocal = new ThreadLocal<TimeStatData> (){
-        TimeStatData tsd;
-
         protected TimeStatData initialValue (){
-            tsd = new TimeStatData ();
-            return tsd;
-        }
-        public TimeStatData get (){
-            if (tsd == null) {
-                tsd = new TimeStatData();
-            }
-            return tsd;
+            return new TimeStatData ();
         }
     };
 
@@ -159,31 +153,16 @@ public class RequestStatsProvider {
                 " : Expecting (vsName, appName) = (" +
                 virtualServerName + ", " + moduleName + ")");
         }
-        if ((virtualServerName != null) && (moduleName != null)) {
-            //String vs = WebTelemetryBootstrap.getVirtualServerName(
-            //    hostName, String.valueOf(request.getServerPort()));
-            if ((appName != null && hostName != null) &&
-                    hostName.equals(virtualServerName) &&
-                    appName.equals(moduleName)){
-                //increment counts
-                timeStatDataLocal.get().setEntryTime(System.currentTimeMillis());
-                if (logger.isLoggable(Level.FINEST)) {
-                    logger.finest(
-                        "[TM]requestStartEvent resolved - virtual-server = " +
-                        serverName + ": application = " +
-                        contextPath + " :appName = " + appName +
-                        " : servlet = " + servletPath + " : port = " +
-                        serverPort);
-                }
-            }
-        } else {
-            timeStatDataLocal.get().setEntryTime(System.currentTimeMillis());
-            if (logger.isLoggable(Level.FINEST)) {
-                logger.finest(
-                    "[TM]requestStartEvent resolved - virtual-server = " +
-                    serverName + ": application = " + contextPath +
-                    " : servlet = " + servletPath);
-            }
+        // only events for this (vsName, appName) are routed here,
+        // see getProbeListenerKey()
+        timeStatDataLocal.get().setEntryTime(System.currentTimeMillis());
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.finest(
+                "[TM]requestStartEvent resolved - virtual-server = " +
+                serverName + ": application = " +
+                contextPath + " :appName = " + appName +
+                " : servlet = " + servletPath + " : port = " +
+                serverPort);
         }
     }
 
@@ -208,51 +187,40 @@ public class RequestStatsProvider {
                 statusCode + " : Expecting (vsName, appName) = (" +
                 virtualServerName + ", " + moduleName + ")");
         }
-        if ((virtualServerName != null) && (moduleName != null)) {
-            //String vs = WebTelemetryBootstrap.getVirtualServerName(
-            //    hostName, String.valueOf(request.getServerPort()));
-            if ((appName != null && hostName != null) &&
-                    hostName.equals(virtualServerName) &&
-                    appName.equals(moduleName)){
-                //increment counts
-                TimeStatData tsd = timeStatDataLocal.get();
-                tsd.setExitTime(System.currentTimeMillis());
-                requestProcessTime.incrementCount(tsd.getTotalTime());
+        TimeStatData tsd = timeStatDataLocal.get();
+        tsd.setExitTime(System.currentTimeMillis());
+        requestProcessTime.incrementCount(tsd.getTotalTime());
 
-                if (statusCode >= 400) {
-                    errorCount.increment();
-                }
-                if (logger.isLoggable(Level.FINEST)) {
-                    logger.finest(
-                        "[TM]requestEndEvent resolved - virtual-server = " +
-                        serverName + ": application = " + contextPath +
-                        " :appName = " + appName +
-                        " : servlet = " + servletPath +
-                        " : port = " + serverPort +
-                        " :Response code = " + statusCode);
-                }
-            }
-        } else {
-            TimeStatData tsd = timeStatDataLocal.get();
-            tsd.setExitTime(System.currentTimeMillis());
-            requestProcessTime.incrementCount(tsd.getTotalTime());
+        if (statusCode >= 400) {
+            errorCount.increment();
+        }
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.finest(
+                "[TM]requestEndEvent resolved - virtual-server = " +
+                serverName + ": application = " + contextPath +
+                " :appName = " + appName +
+                " : servlet = " + servletPath +
+                " : port = " + serverPort +
+                " :Response code = " + statusCode);
+        }
+    }
 
-            if (statusCode >= 400) {
-                errorCount.increment();
-            }
-            if (logger.isLoggable(Level.FINEST)) {
-                logger.finest(
-                    "[TM]requestEndEvent resolved - virtual-server = " +
-                    serverName + ": application = " +
-                    contextPath + " : servlet = " +
-                    servletPath + " : port = " +
-                    serverPort  + " :Response code = " +
-                    statusCode);
-            }
+    /**
+     * Routes only the requests of this provider's application on its
+     * virtual server to the probe listener methods. The server-wide
+     * provider, which has neither, receives every request.
+     */
+    @Override
+    public Map<String, ?> getProbeListenerKey() {
+        if ((virtualServerName == null) || (moduleName == null)) {
+            return null;
         }
+        Map<String, String> key = new LinkedHashMap<String, String>(2);
+        key.put("appName", moduleName);
+        key.put("hostName", virtualServerName);
+        return key;
     }
 
-    
     public long getProcessTime() {
         return requestProcessTime.getTotalTime()/requestProcessTime.getCount();
     }
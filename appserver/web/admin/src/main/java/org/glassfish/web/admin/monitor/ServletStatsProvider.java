@@ -44,10 +44,10 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.external.statistics.CountStatistic;
 import org.glassfish.external.statistics.RangeStatistic;
-import org.glassfish.external.statistics.impl.CountStatisticImpl;
 import org.glassfish.external.statistics.impl.RangeStatisticImpl;
 import org.glassfish.external.statistics.impl.StatisticImpl;
 import org.glassfish.external.probe.provider.annotations.*;
+import org.glassfish.flashlight.statistics.concurrent.StripedCountStatistic;
 import org.glassfish.gmbal.AMXMetadata;
 import org.glassfish.gmbal.Description;
 import org.glassfish.gmbal.ManagedAttribute;
@@ -78,8 +78,8 @@ public class ServletStatsProvider {
     private String moduleName;
     private String vsName;
     private RangeStatisticImpl activeServletsLoadedCount;
-    private CountStatisticImpl totalServletsLoadedCount;
-    private CountStatisticImpl servletProcessingTimes;
+    private StripedCountStatistic totalServletsLoadedCount;
+    private StripedCountStatistic servletProcessingTimes;
     
     public ServletStatsProvider(String moduleName, String vsName) {
         this.moduleName = moduleName;
@@ -88,10 +88,10 @@ public class ServletStatsProvider {
         activeServletsLoadedCount = new RangeStatisticImpl(
             0L, 0L, 0L, "ActiveServletsLoaded", StatisticImpl.UNIT_COUNT,
             ACTIVE_SERVLETS_LOADED_DESCRIPTION, curTime, curTime);
-        totalServletsLoadedCount = new CountStatisticImpl(
+        totalServletsLoadedCount = new StripedCountStatistic(
             "TotalServletsLoaded", StatisticImpl.UNIT_COUNT,
             TOTAL_SERVLETS_LOADED_DESCRIPTION);
-        servletProcessingTimes = new CountStatisticImpl(
+        servletProcessingTimes = new StripedCountStatistic(
             "ServletProcessingTimes", StatisticImpl.UNIT_MILLISECOND,
             SERVLET_PROCESSING_TIMES_DESCRIPTION);
     }
@@ -109,4 +109,12 @@ public class SessionProbeProvider {
         @ProbeParam("sessionId") String sessionId,
         @ProbeParam("appName") String appName,
         @ProbeParam("hostName") String hostName) {}
+
+    @Probe(name="sessionStoreStatsEvent")
+    public void sessionStoreStatsEvent(
+        @ProbeParam("residentSessions") int residentSessions,
+        @ProbeParam("storedSessions") int storedSessions,
+        @ProbeParam("storedBytes") long storedBytes,
+        @ProbeParam("appName") String appName,
+        @ProbeParam("hostName") String hostName) {}
 }
@@ -80,6 +80,12 @@ public class SessionStatsProvider{
         "Total number of sessions ever passivated";
     private static final String ACTIVATED_SESSIONS_DESCRIPTION =
         "Total number of sessions ever activated";
+    private static final String RESIDENT_SESSIONS_DESCRIPTION =
+        "Number of sessions held in the heap";
+    private static final String OFF_HEAP_SESSIONS_DESCRIPTION =
+        "Number of sessions held in the off-heap session store";
+    private static final String OFF_HEAP_BYTES_DESCRIPTION =
+        "Size of the sessions held in the off-heap session store";
 
     private String moduleName;
     private String vsName;
@@ -91,6 +97,9 @@ public class SessionStatsProvider{
     private CountStatisticImpl persistedSessionsTotal;
     private CountStatisticImpl passivatedSessionsTotal;
     private CountStatisticImpl activatedSessionsTotal;
+    private RangeStatisticImpl residentSessionsCount;
+    private RangeStatisticImpl offHeapSessionsCount;
+    private RangeStatisticImpl offHeapBytesCount;
 
     public SessionStatsProvider(String moduleName, String vsName) {
         this.moduleName = moduleName;
@@ -116,6 +125,15 @@ public class SessionStatsProvider{
         activatedSessionsTotal = new CountStatisticImpl(
             "ActivatedSessionsTotal", StatisticImpl.UNIT_COUNT,
             ACTIVATED_SESSIONS_DESCRIPTION);
+        residentSessionsCount = new RangeStatisticImpl(
+            0L, 0L, 0L, "ResidentSessions", StatisticImpl.UNIT_COUNT,
+            RESIDENT_SESSIONS_DESCRIPTION, curTime, curTime);
+        offHeapSessionsCount = new RangeStatisticImpl(
+            0L, 0L, 0L, "OffHeapSessions", StatisticImpl.UNIT_COUNT,
+            OFF_HEAP_SESSIONS_DESCRIPTION, curTime, curTime);
+        offHeapBytesCount = new RangeStatisticImpl(
+            0L, 0L, 0L, "OffHeapBytes", "bytes",
+            OFF_HEAP_BYTES_DESCRIPTION, curTime, curTime);
     }
     
     @ManagedAttribute(id="activesessionscurrent")
@@ -159,6 +177,24 @@ public class SessionStatsProvider{
     public CountStatistic getActivatedSessionsTotal() {
         return activatedSessionsTotal;
     }
+
+    @ManagedAttribute(id="residentsessionscurrent")
+    @Description(RESIDENT_SESSIONS_DESCRIPTION)
+    public RangeStatistic getResidentSessions() {
+        return residentSessionsCount;
+    }
+
+    @ManagedAttribute(id="offheapsessionscurrent")
+    @Description(OFF_HEAP_SESSIONS_DESCRIPTION)
+    public RangeStatistic getOffHeapSessions() {
+        return offHeapSessionsCount;
+    }
+
+    @ManagedAttribute(id="offheapbytescurrent")
+    @Description(OFF_HEAP_BYTES_DESCRIPTION)
+    public RangeStatistic getOffHeapBytes() {
+        return offHeapBytesCount;
+    }
     
     @ProbeListener("glassfish:web:session:sessionCreatedEvent")
     public void sessionCreatedEvent(
@@ -314,6 +350,33 @@ public class SessionStatsProvider{
         }
     }
     
+    @ProbeListener("glassfish:web:session:sessionStoreStatsEvent")
+    public void sessionStoreStatsEvent(
+        @ProbeParam("residentSessions") int residentSessions,
+        @ProbeParam("storedSessions") int storedSessions,
+        @ProbeParam("storedBytes") long storedBytes,
+        @ProbeParam("appName") String appName,
+        @ProbeParam("hostName") String hostName){
+
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.finest("[TM]sessionStoreStatsEvent received - resident = " +
+                          residentSessions + ": stored = " + storedSessions +
+                          ": appname = " + appName +
+                          ": hostName = " + hostName);
+        }
+        if (isValidEvent(appName, hostName)) {
+            synchronized (residentSessionsCount) {
+                residentSessionsCount.setCurrent(residentSessions);
+            }
+            synchronized (offHeapSessionsCount) {
+                offHeapSessionsCount.setCurrent(storedSessions);
+            }
+            synchronized (offHeapBytesCount) {
+                offHeapBytesCount.setCurrent(storedBytes);
+            }
+        }
+    }
+
     public String getModuleName() {
         return moduleName;
     }
@@ -56,6 +56,7 @@ import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.jar.Attributes;
 import java.util.jar.Attributes.Name;
 import java.util.jar.JarEntry;
@@ -92,7 +93,12 @@ import java.util.logging.Logger;
  * <p>
  * <strong>IMPLEMENTATION NOTE</strong> - Local repositories are searched in
  * the order they are added via the initial constructor and/or any subsequent
- * calls to <code>addRepository()</code> or <code>addJar()</code>.
+ * calls to <code>addRepository()</code> or <code>addJar()</code>. JARs are
+ * indexed by directory when they are added, and only the JARs containing
+ * the directory of a resource are searched for it.
+ * <p>
+ * <strong>IMPLEMENTATION NOTE</strong> - This class loader is registered as
+ * parallel capable: classes with different names may be loaded concurrently.
  * <p>
  * <strong>IMPLEMENTATION NOTE</strong> - No check for sealing violations or
  * security is made unless a security manager is present.
@@ -135,6 +141,11 @@ public class WebappClassLoader
     private static final Permission ALL_PERMISSION = new AllPermission();
 
 
+    static {
+        registerAsParallelCapable();
+    }
+
+
     // ----------------------------------------------------- Instance Variables
 
     // START PE 4989455
@@ -207,13 +218,28 @@ public class WebappClassLoader
      * The list of JARs, in the order they should be searched
      * for locally loaded classes or resources.
      */
-    protected JarFile[] jarFiles = new JarFile[0];
+    protected volatile JarFile[] jarFiles = new JarFile[0];
 
     /**
      * Lock to synchronize closing and opening of jar
      */
     protected final Object jarFilesLock = new Object();
 
+    /**
+     * Held for reading while looking up resources in the JARs, and for
+     * writing while closing them.
+     */
+    private final ReentrantReadWriteLock jarLookupLock =
+        new ReentrantReadWriteLock();
+
+    /**
+     * The positions in <code>jarFiles</code> of the JARs containing each
+     * directory, in the order they should be searched, keyed by directory
+     * name ("" for the root).
+     */
+    private final ConcurrentHashMap<String, int[]> jarDirectoryIndex =
+        new ConcurrentHashMap<String, int[]>();
+
     /**
      * The list of JARs, in the order they should be searched
      * for locally loaded classes or resources.
@@ -815,7 +841,9 @@ public class WebappClassLoader
             result2[i] = jarFiles[i];
         }
         result2[jarFiles.length] = jarFile;
+        // publish the JAR before its position can be found in the index
         jarFiles = result2;
+        indexJar(jarFile, result2.length - 1);
 
         // Add the file to the list
         File[] result4 = new File[jarRealFiles.length + 1];
@@ -827,6 +855,45 @@ public class WebappClassLoader
     }
 
 
+    /**
+     * Adds the directories of the given JAR to the JAR index.
+     *
+     * @param jarFile the JAR
+     * @param position the position of the JAR in <code>jarFiles</code>
+     */
+    private void indexJar(JarFile jarFile, int position) {
+        Set<String> directories = new HashSet<String>();
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            directories.add(getDirectory(entries.nextElement().getName()));
+        }
+        for (String directory : directories) {
+            int[] positions = jarDirectoryIndex.get(directory);
+            if (positions == null) {
+                positions = new int[] { position };
+            } else {
+                positions = Arrays.copyOf(positions, positions.length + 1);
+                positions[positions.length - 1] = position;
+            }
+            jarDirectoryIndex.put(directory, positions);
+        }
+    }
+
+
+    /**
+     * Returns the directory part of a JAR entry or resource path, ignoring
+     * a trailing '/'.
+     */
+    private static String getDirectory(String path) {
+        int end = path.length();
+        if (end > 0 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        int pos = path.lastIndexOf('/', end - 1);
+        return (pos > 0) ? path.substring(0, pos) : "";
+    }
+
+
     /**
      * Have one or more classes or resources been modified so that a reload
      * is appropriate?
@@ -993,7 +1060,7 @@ public class WebappClassLoader
                 // Create the code source object
                 CodeSource codeSource =
                     new CodeSource(entry.codeBase, entry.certificates);
-                synchronized (this) {
+                synchronized (entry) {
                     if (entry.loadedClass == null) {
                         /* START GlassFish [680]
                         clazz = defineClass(name, entry.binaryContent, 0,
@@ -1457,7 +1524,16 @@ public class WebappClassLoader
      * @exception ClassNotFoundException if the class was not found
      */
     @Override
-    protected synchronized Class<?> loadClass(String name, boolean resolve)
+    protected Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+
+        synchronized (getClassLoadingLock(name)) {
+            return loadClass0(name, resolve);
+        }
+    }
+
+
+    private Class<?> loadClass0(String name, boolean resolve)
         throws ClassNotFoundException {
 
         if (logger.isLoggable(Level.FINER)) {
@@ -1792,6 +1868,7 @@ public class WebappClassLoader
 
         notFoundResources.clear();
         resourceEntries.clear();
+        jarDirectoryIndex.clear();
         resources = null;
         repositories = null;
         repositoryURLs = null;
@@ -1823,22 +1900,28 @@ public class WebappClassLoader
      */
     public void closeJARs(boolean force) {
         if (jarFiles.length > 0) {
-            synchronized (jarFilesLock) {
-                if (force || (System.currentTimeMillis()
-                              > (lastJarAccessed + 90000))) {
-                    for (int i = 0; i < jarFiles.length; i++) {
-                        try {
-                            if (jarFiles[i] != null) {
-                                jarFiles[i].close();
-                                jarFiles[i] = null;
-                            }
-                        } catch (IOException e) {
-                            if (logger.isLoggable(Level.FINE)) {
-                                logger.log(Level.FINE, "Failed to close JAR", e);
+            // wait for the lookups in progress
+            jarLookupLock.writeLock().lock();
+            try {
+                synchronized (jarFilesLock) {
+                    if (force || (System.currentTimeMillis()
+                                  > (lastJarAccessed + 90000))) {
+                        for (int i = 0; i < jarFiles.length; i++) {
+                            try {
+                                if (jarFiles[i] != null) {
+                                    jarFiles[i].close();
+                                    jarFiles[i] = null;
+                                }
+                            } catch (IOException e) {
+                                if (logger.isLoggable(Level.FINE)) {
+                                    logger.log(Level.FINE, "Failed to close JAR", e);
+                                }
                             }
                         }
                     }
                 }
+            } finally {
+                jarLookupLock.writeLock().unlock();
             }
         }
     }
@@ -1957,10 +2040,7 @@ public class WebappClassLoader
          */
         while(loadedClasses.hasNext()) {
             ResourceEntry entry = loadedClasses.next();
-            Class<?> clazz = null;
-            synchronized(this) {
-                clazz = entry.loadedClass;
-            }
+            Class<?> clazz = entry.loadedClass;
             if (clazz != null) {
                 try {
                     Field[] fields = clazz.getDeclaredFields();
@@ -1982,10 +2062,7 @@ public class WebappClassLoader
         loadedClasses = values.iterator();
         while (loadedClasses.hasNext()) {
             ResourceEntry entry = loadedClasses.next();
-            Class<?> clazz = null;
-            synchronized(this) {
-                clazz = entry.loadedClass;
-            }
+            Class<?> clazz = entry.loadedClass;
             if (clazz != null) {
                 try {
                     Field[] fields = clazz.getDeclaredFields();
@@ -2542,7 +2619,7 @@ public class WebappClassLoader
         if (entry == null)
                throw new ClassNotFoundException(name);
 
-        synchronized (this) {
+        synchronized (entry) {
             Class<?> clazz = entry.loadedClass;
             if (clazz != null)
                 return entry;
@@ -2646,8 +2723,11 @@ public class WebappClassLoader
         entry = findResourceInternalFromRepositories(name, path);
 
         if (entry == null) {
-            synchronized (jarFiles) {
+            jarLookupLock.readLock().lock();
+            try {
                 entry = findResourceInternalFromJars(name, path);
+            } finally {
+                jarLookupLock.readLock().unlock();
             }
         }
 
@@ -2770,13 +2850,18 @@ public class WebappClassLoader
         int contentLength = -1;
         InputStream binaryStream = null;
 
-        if (!openJARs()){
+        // only the JARs holding the directory of the resource may have it
+        int[] positions = jarDirectoryIndex.get(getDirectory(path));
+        if (positions == null) {
             return null;
         }
 
-        int jarFilesLength = jarFiles.length;
+        if (!openJARs()){
+            return null;
+        }
 
-        for (int i=0; (entry == null) && (i < jarFilesLength); i++) {
+        for (int j=0; (entry == null) && (j < positions.length); j++) {
+            int i = positions[j];
             jarEntry = jarFiles[i].getJarEntry(path);
 
             if (jarEntry != null) {
@@ -3000,7 +3085,7 @@ public class WebappClassLoader
 
         ResourceEntry entry = resourceEntries.get(name);
         if (entry != null) {
-            synchronized(this) {
+            synchronized(entry) {
                 return entry.loadedClass;
             }
         }
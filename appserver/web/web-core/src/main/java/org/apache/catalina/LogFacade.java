@@ -3606,4 +3606,34 @@ public class LogFacade {
             level = "WARNING"
     )
     public static final String REPOSITORY_PATH_CONTAIN_NULL_CHARACTER = prefix + "00550";
+
+    @LogMessageInfo(
+            message = "Loading Session {0} of {1} bytes from the off-heap session store",
+            level = "FINE"
+    )
+    public static final String LOADING_SESSION_FROM_OFF_HEAP_STORE = prefix + "00551";
+
+    @LogMessageInfo(
+            message = "Saving Session {0} of {1} bytes to the off-heap session store",
+            level = "FINE"
+    )
+    public static final String SAVING_SESSION_TO_OFF_HEAP_STORE = prefix + "00552";
+
+    @LogMessageInfo(
+            message = "Session {0} of {1} bytes does not fit into the off-heap session store of at most {2} bytes",
+            level = "WARNING"
+    )
+    public static final String OFF_HEAP_STORE_FULL = prefix + "00553";
+
+    @LogMessageInfo(
+            message = "Invalid value {1} for the {0} of the off-heap session store",
+            level = "WARNING"
+    )
+    public static final String INVALID_OFF_HEAP_STORE_SIZE = prefix + "00554";
+
+    @LogMessageInfo(
+            message = "Exception expiring a session stored in the off-heap session store",
+            level = "WARNING"
+    )
+    public static final String OFF_HEAP_STORE_EXPIRE_EXCEPTION = prefix + "00555";
 }
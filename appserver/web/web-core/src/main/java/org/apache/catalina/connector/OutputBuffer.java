@@ -19,6 +19,7 @@ package org.apache.catalina.connector;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.channels.InterruptedByTimeoutException;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -299,6 +300,32 @@ public class OutputBuffer extends Writer
     }
 
 
+    /**
+     * Hands the remaining content of the given buffer over to the grizzly
+     * output buffer without copying it into the response buffer first.
+     * The buffer must not be modified until the response is complete.
+     *
+     * @param buf Byte buffer to be written to the response
+     *
+     * @throws IOException An underlying IOException occurred
+     */
+    public void writeByteBuffer(ByteBuffer buf) throws IOException {
+
+        if (suspended)
+            return;
+
+        if (grizzlyOutputBuffer.isClosed())
+            return;
+        if (log.isLoggable(Level.FINE))
+            log.log(Level.FINE, "writeByteBuffer(buf)");
+
+        int len = buf.remaining();
+        grizzlyOutputBuffer.writeByteBuffer(buf);
+        bytesWritten += len;
+
+    }
+
+
     // XXX Char or byte ?
     public void writeByte(int b)
         throws IOException {
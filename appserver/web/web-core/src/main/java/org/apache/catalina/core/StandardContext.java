@@ -7611,6 +7611,12 @@ public class StandardContext
         // Deliberate noop
     }
 
+    public void sessionStoreStatsEvent(int residentSessions,
+                                       int storedSessions,
+                                       long storedBytes) {
+        // Deliberate noop
+    }
+
     public static class RestrictedServletContextListener
             implements ServletContextListener {
 
@@ -17,6 +17,7 @@
 
 package org.apache.catalina.session;
 
+import com.sun.enterprise.util.uuid.PooledUuidGeneratorImpl;
 import com.sun.enterprise.util.uuid.UuidGenerator;
 import com.sun.enterprise.util.uuid.UuidGeneratorImpl;
 import org.apache.catalina.*;
@@ -124,7 +125,7 @@ public abstract class ManagerBase implements Manager {
     /**
      * A random number generator to use when generating session identifiers.
      */
-    private Random random = null;
+    private volatile Random random = null;
     
     
     /**
@@ -132,7 +133,13 @@ public abstract class ManagerBase implements Manager {
      * when generating universally unique session identifiers.
      * HERCULES: add
      */
-    protected UuidGenerator uuidGenerator = new UuidGeneratorImpl();     
+    protected UuidGenerator uuidGenerator = new PooledUuidGeneratorImpl();
+
+    /**
+     * Whether the uuid generator is known to be thread safe, in which case
+     * session identifiers are generated without locking this manager.
+     */
+    private volatile boolean uuidGeneratorThreadSafe = true;
 
 
     /**
@@ -235,6 +242,9 @@ public abstract class ManagerBase implements Manager {
      */
     public void setUuidGenerator(UuidGenerator aUuidGenerator) {
         uuidGenerator = aUuidGenerator;
+        uuidGeneratorThreadSafe = aUuidGenerator != null
+                && (aUuidGenerator.getClass() == PooledUuidGeneratorImpl.class
+                    || aUuidGenerator.getClass() == UuidGeneratorImpl.class);
     }
 
 
@@ -496,7 +506,17 @@ public abstract class ManagerBase implements Manager {
      * generating session identifiers.  If there is no such generator
      * currently defined, construct and seed a new one.
      */
-    public synchronized Random getRandom() {
+    public Random getRandom() {
+        Random result = this.random;
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            return initRandom();
+        }
+    }
+
+    private Random initRandom() {
         if (this.random == null) {
             // Calculate the new random number generator seed
             long seed = System.currentTimeMillis();
@@ -908,17 +928,24 @@ public abstract class ManagerBase implements Manager {
     
     /**
      * Generate and return a new session identifier.
+     * Custom uuid generators that are not known to be thread safe are
+     * still invoked while holding the lock on this manager.
      * Hercules:added
      */
-    protected synchronized String generateSessionId(Object obj) {
-        return uuidGenerator.generateUuid(obj);
+    protected String generateSessionId(Object obj) {
+        if (uuidGeneratorThreadSafe) {
+            return uuidGenerator.generateUuid(obj);
+        }
+        synchronized (this) {
+            return uuidGenerator.generateUuid(obj);
+        }
     }   
     
     /**
      * Generate and return a new session identifier.
      * Hercules:modified
      */
-    protected synchronized String generateSessionId() {
+    protected String generateSessionId() {
         return generateSessionId(new Object());
     }    
 
@@ -0,0 +1,578 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package org.apache.catalina.session;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.LogFacade;
+import org.apache.catalina.Session;
+import org.apache.catalina.core.StandardContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of the <b>Store</b> interface that keeps the serialized
+ * sessions outside of the Java heap, in an arena of direct buffers.
+ * <p>
+ * Used with a PersistentManager that swaps idle sessions out, this keeps
+ * only the recently used sessions on the heap. The arena is made of slabs
+ * which are allocated as needed, up to <code>maxSize</code> bytes, and
+ * divided into fixed size blocks; a session occupies as many blocks as its
+ * serialized form needs. The last access time and the maximum inactive
+ * interval of every stored session are kept on the heap, so that expired
+ * sessions can be found without deserializing the others.
+ */
+public final class OffHeapStore extends StoreBase {
+
+    private static final Logger log = LogFacade.getLogger();
+    private static final ResourceBundle rb = log.getResourceBundle();
+
+    // ----------------------------------------------------- Constants
+
+    /**
+     * The default size of the blocks sessions are stored in.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    /**
+     * The default upper bound on the size of the arena.
+     */
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * The number of blocks in a slab.
+     */
+    private static final int BLOCKS_PER_SLAB = 1024;
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The descriptive information about this implementation.
+     */
+    private static final String info = "OffHeapStore/1.0";
+
+    /**
+     * Name to register for this Store, used for logging.
+     */
+    private static final String storeName = "offHeapStore";
+
+    /**
+     * The size of the blocks sessions are stored in.
+     */
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+
+    /**
+     * The upper bound on the size of the arena.
+     */
+    private long maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * The stored sessions, indexed by their id.
+     */
+    private final ConcurrentHashMap<String, StoredSession> storedSessions =
+        new ConcurrentHashMap<String, StoredSession>();
+
+    /**
+     * Blocks are copied from under the read lock, and only released to
+     * the free list under the write lock, so that they cannot be reused
+     * while being read.
+     */
+    private final ReentrantReadWriteLock arenaLock =
+        new ReentrantReadWriteLock();
+
+    /**
+     * The slabs of the arena; only replaced by a larger copy while holding
+     * the lock of this store.
+     */
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+
+    /**
+     * The free blocks; guarded by this store.
+     */
+    private int[] freeBlocks = new int[0];
+    private int freeCount = 0;
+
+    /**
+     * The number of bytes of serialized session data held by the arena.
+     */
+    private final AtomicLong storedBytes = new AtomicLong();
+
+
+    // ------------------------------------------------------------- Properties
+
+
+    /**
+     * Return descriptive information about this Store implementation and
+     * the corresponding version number, in the format
+     * <code>&lt;description&gt;/&lt;version&gt;</code>.
+     */
+    public String getInfo() {
+        return (info);
+    }
+
+    /**
+     * Return the name for this Store, used for logging.
+     */
+    public String getStoreName() {
+        return (storeName);
+    }
+
+    /**
+     * Return the size of the blocks sessions are stored in.
+     */
+    public int getBlockSize() {
+        return (blockSize);
+    }
+
+    /**
+     * Set the size of the blocks sessions are stored in. Takes effect only
+     * before the store has been started.
+     *
+     * @param blockSize The new block size, in bytes
+     */
+    public void setBlockSize(int blockSize) {
+        // a slab of BLOCKS_PER_SLAB blocks must fit in a ByteBuffer
+        if (blockSize <= 0 || blockSize > Integer.MAX_VALUE / BLOCKS_PER_SLAB) {
+            String msg = MessageFormat.format(
+                rb.getString(LogFacade.INVALID_OFF_HEAP_STORE_SIZE),
+                new Object[] {"blockSize", blockSize});
+            throw new IllegalArgumentException(msg);
+        }
+        int oldBlockSize = this.blockSize;
+        this.blockSize = blockSize;
+        support.firePropertyChange("blockSize", oldBlockSize, this.blockSize);
+    }
+
+    /**
+     * Return the upper bound on the size of the arena, in bytes.
+     */
+    public long getMaxSize() {
+        return (maxSize);
+    }
+
+    /**
+     * Set the upper bound on the size of the arena. Takes effect only
+     * before the store has been started.
+     *
+     * @param maxSize The new upper bound, in bytes
+     */
+    public void setMaxSize(long maxSize) {
+        if (maxSize <= 0) {
+            String msg = MessageFormat.format(
+                rb.getString(LogFacade.INVALID_OFF_HEAP_STORE_SIZE),
+                new Object[] {"maxSize", maxSize});
+            throw new IllegalArgumentException(msg);
+        }
+        long oldMaxSize = this.maxSize;
+        this.maxSize = maxSize;
+        support.firePropertyChange("maxSize", oldMaxSize, this.maxSize);
+    }
+
+    /**
+     * Return the number of Sessions present in this Store.
+     */
+    public int getSize() {
+        return (storedSessions.size());
+    }
+
+    /**
+     * Return the number of bytes of serialized session data held by
+     * this Store.
+     */
+    public long getStoredBytes() {
+        return (storedBytes.get());
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+
+    /**
+     * Remove all of the Sessions in this Store.
+     */
+    public void clear() {
+        String[] keys = keys();
+        for (int i = 0; i < keys.length; i++) {
+            remove(keys[i]);
+        }
+    }
+
+    /**
+     * Return an array containing the session identifiers of all Sessions
+     * currently saved in this Store.  If there are no such Sessions, a
+     * zero-length array is returned.
+     */
+    public String[] keys() {
+        return storedSessions.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Load and return the Session associated with the specified session
+     * identifier from this Store, without removing it.  If there is no
+     * such stored Session, return <code>null</code>.
+     *
+     * @param id Session identifier of the session to load
+     *
+     * @exception ClassNotFoundException if a deserialization error occurs
+     * @exception IOException if an input/output error occurs
+     */
+    public Session load(String id)
+        throws ClassNotFoundException, IOException {
+
+        byte[] bytes = read(id);
+        if (bytes == null) {
+            return (null);
+        }
+
+        if (log.isLoggable(Level.FINE)) {
+            log.log(Level.FINE, LogFacade.LOADING_SESSION_FROM_OFF_HEAP_STORE,
+                    new Object[] {id, bytes.length});
+        }
+
+        ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
+        ObjectInputStream ois = null;
+        try {
+            Container container = manager.getContainer();
+            if (container != null) {
+                ois = ((StandardContext)container).createObjectInputStream(bis);
+            } else {
+                ois = new ObjectInputStream(bis);
+            }
+            StandardSession session =
+                StandardSession.deserialize(ois, manager);
+            session.setManager(manager);
+            return (session);
+        } finally {
+            if (ois != null) {
+                try {
+                    ois.close();
+                } catch (IOException f) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the Session with the specified session identifier from
+     * this Store, if present.  If no such Session is present, this method
+     * takes no action.
+     *
+     * @param id Session identifier of the Session to be removed
+     */
+    public void remove(String id) {
+        StoredSession stored = storedSessions.remove(id);
+        if (stored != null) {
+            release(stored);
+        }
+    }
+
+    /**
+     * Save the specified Session into this Store.  Any previously saved
+     * information for the associated session identifier is replaced.
+     *
+     * @param session Session to be saved
+     *
+     * @exception IOException if an input/output error occurs, or if the
+     *  arena has no room left for the session
+     */
+    public void save(Session session) throws IOException {
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(blockSize);
+        ObjectOutputStream oos = null;
+        try {
+            Container container = manager.getContainer();
+            if (container != null) {
+                oos = ((StandardContext) container).createObjectOutputStream(bos);
+            } else {
+                oos = new ObjectOutputStream(bos);
+            }
+            oos.writeObject(session);
+        } finally {
+            if (oos != null) {
+                try {
+                    oos.close();
+                } catch (IOException ioe) {
+                    //ignore
+                }
+            }
+        }
+        byte[] bytes = bos.toByteArray();
+
+        int[] blocks = allocate((bytes.length + blockSize - 1) / blockSize);
+        if (blocks == null) {
+            String msg = MessageFormat.format(
+                rb.getString(LogFacade.OFF_HEAP_STORE_FULL),
+                new Object[] {session.getIdInternal(), bytes.length, maxSize});
+            throw new IOException(msg);
+        }
+
+        // the blocks are not reachable by readers yet
+        for (int i = 0, offset = 0; i < blocks.length; i++) {
+            int len = Math.min(blockSize, bytes.length - offset);
+            ByteBuffer block = block(blocks[i]);
+            block.put(bytes, offset, len);
+            offset += len;
+        }
+
+        StandardSession standardSession = (StandardSession) session;
+        StoredSession stored = new StoredSession(blocks, bytes.length,
+            standardSession.thisAccessedTime,
+            standardSession.getMaxInactiveInterval());
+        storedBytes.addAndGet(bytes.length);
+
+        if (log.isLoggable(Level.FINE)) {
+            log.log(Level.FINE, LogFacade.SAVING_SESSION_TO_OFF_HEAP_STORE,
+                    new Object[] {session.getIdInternal(), bytes.length});
+        }
+
+        StoredSession previous =
+            storedSessions.put(session.getIdInternal(), stored);
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    /**
+     * Called by our background reaper thread to check if Sessions
+     * saved in our store are subject of being expired. Only the sessions
+     * that have expired are deserialized, to expire them.
+     */
+    public void processExpires() {
+        if (!started) {
+            return;
+        }
+
+        long timeNow = System.currentTimeMillis();
+        for (Map.Entry<String, StoredSession> entry :
+                storedSessions.entrySet()) {
+            StoredSession stored = entry.getValue();
+            if (!stored.hasExpired(timeNow)) {
+                continue;
+            }
+
+            String id = entry.getKey();
+            try {
+                StandardSession session = (StandardSession) load(id);
+                if (session == null) {
+                    continue;
+                }
+                if (((PersistentManagerBase) manager).isLoaded(id)) {
+                    // recycle old backup session
+                    session.recycle();
+                } else {
+                    // expire swapped out session
+                    session.expire();
+                }
+            } catch (IOException e) {
+                log.log(Level.WARNING, LogFacade.OFF_HEAP_STORE_EXPIRE_EXCEPTION, e);
+            } catch (ClassNotFoundException e) {
+                log.log(Level.WARNING, LogFacade.OFF_HEAP_STORE_EXPIRE_EXCEPTION, e);
+            }
+            // expire() may already have removed and released the session
+            if (storedSessions.remove(id, stored)) {
+                release(stored);
+            }
+        }
+
+        Container container = manager.getContainer();
+        if (container instanceof StandardContext) {
+            ((StandardContext) container).sessionStoreStatsEvent(
+                manager.getActiveSessions(), storedSessions.size(),
+                storedBytes.get());
+        }
+    }
+
+    /**
+     * Release the arena.
+     */
+    public void stop() throws org.apache.catalina.LifecycleException {
+        super.stop();
+        storedSessions.clear();
+        arenaLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                slabs = new ByteBuffer[0];
+                freeBlocks = new int[0];
+                freeCount = 0;
+            }
+            storedBytes.set(0);
+        } finally {
+            arenaLock.writeLock().unlock();
+        }
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    /**
+     * Copy the serialized form of the session with the given id out of
+     * the arena.
+     */
+    private byte[] read(String id) {
+        arenaLock.readLock().lock();
+        try {
+            StoredSession stored = storedSessions.get(id);
+            if (stored == null) {
+                return null;
+            }
+
+            byte[] bytes = new byte[stored.length];
+            for (int i = 0, offset = 0; i < stored.blocks.length; i++) {
+                int len = Math.min(blockSize, stored.length - offset);
+                block(stored.blocks[i]).get(bytes, offset, len);
+                offset += len;
+            }
+            return bytes;
+        } finally {
+            arenaLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return a buffer positioned at the start of the given block.
+     */
+    private ByteBuffer block(int block) {
+        ByteBuffer buffer = slabs[block / BLOCKS_PER_SLAB].duplicate();
+        buffer.position((block % BLOCKS_PER_SLAB) * blockSize);
+        return buffer;
+    }
+
+    /**
+     * Take the given number of blocks from the free list, allocating new
+     * slabs as needed.
+     * @return the blocks, or null if the arena is full
+     */
+    private synchronized int[] allocate(int count) {
+        long maxSlabs = maxSize / ((long) blockSize * BLOCKS_PER_SLAB);
+        while (freeCount < count && slabs.length < Math.max(1, maxSlabs)) {
+            int first = slabs.length * BLOCKS_PER_SLAB;
+            ByteBuffer[] newSlabs = Arrays.copyOf(slabs, slabs.length + 1);
+            newSlabs[slabs.length] =
+                ByteBuffer.allocateDirect(blockSize * BLOCKS_PER_SLAB);
+            slabs = newSlabs;
+            freeBlocks = Arrays.copyOf(freeBlocks,
+                                       slabs.length * BLOCKS_PER_SLAB);
+            // hand out the lower blocks of the new slab first
+            for (int i = BLOCKS_PER_SLAB - 1; i >= 0; i--) {
+                freeBlocks[freeCount++] = first + i;
+            }
+        }
+
+        if (freeCount < count) {
+            return null;
+        }
+
+        int[] blocks = new int[count];
+        for (int i = 0; i < count; i++) {
+            blocks[i] = freeBlocks[--freeCount];
+        }
+        return blocks;
+    }
+
+    /**
+     * Return the blocks of a session that is no longer reachable through
+     * the index to the free list, once the pending reads are done.
+     */
+    private void release(StoredSession stored) {
+        arenaLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (slabs.length == 0) {
+                    // the store has been stopped
+                    return;
+                }
+                for (int i = 0; i < stored.blocks.length; i++) {
+                    freeBlocks[freeCount++] = stored.blocks[i];
+                }
+            }
+            storedBytes.addAndGet(-stored.length);
+        } finally {
+            arenaLock.writeLock().unlock();
+        }
+    }
+
+
+    // -------------------------------------------------------- Inner classes
+
+
+    /**
+     * The location and expiry data of a stored session.
+     */
+    private static final class StoredSession {
+
+        final int[] blocks;
+        final int length;
+        final long thisAccessedTime;
+        final int maxInactiveInterval;
+
+        StoredSession(int[] blocks, int length, long thisAccessedTime,
+                      int maxInactiveInterval) {
+            this.blocks = blocks;
+            this.length = length;
+            this.thisAccessedTime = thisAccessedTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+        }
+
+        boolean hasExpired(long timeNow) {
+            if (maxInactiveInterval < 0) {
+                return false;
+            }
+            int timeIdle = (int) ((timeNow - thisAccessedTime) / 1000L);
+            return (timeIdle >= maxInactiveInterval);
+        }
+    }
+}
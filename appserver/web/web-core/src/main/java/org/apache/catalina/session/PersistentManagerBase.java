@@ -1265,8 +1265,6 @@ public abstract class PersistentManagerBase
         long timeNow = System.currentTimeMillis();
 
         // Swap out all sessions idle longer than maxIdleSwap
-        // FIXME: What's preventing us from mangling a session during
-        // a request?
         if (maxIdleSwap >= 0) {
             for (int i = 0; i < sessions.length; i++) {
                 StandardSession session = (StandardSession) sessions[i];
@@ -1275,6 +1273,10 @@ public abstract class PersistentManagerBase
                 int timeIdle = // Truncate, do not round up
                     (int) ((timeNow - session.getLastAccessedTime()) / 1000L);
                 if (timeIdle > maxIdleSwap && timeIdle > minIdleSwap) {
+                    //skip the session if it is in use by a request
+                    if (!session.lockBackground()) {
+                        continue;
+                    }
                     if (log.isLoggable(Level.FINE)) {
                         log.log(Level.FINE, LogFacade.SWAPPING_SESSION_TO_STORE, new Object[] {session.getIdInternal(),
                                 Integer.valueOf(timeIdle)});
@@ -1283,6 +1285,8 @@ public abstract class PersistentManagerBase
                         swapOut(session);
                     } catch (IOException e) {
                         // This is logged in writeSession()
+                    } finally {
+                        session.unlockBackground();
                     }
                 }
             }
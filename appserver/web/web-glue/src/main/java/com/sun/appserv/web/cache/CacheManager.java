@@ -64,6 +64,8 @@ public class CacheManager {
     public static final String DEFAULT_CACHE_CLASSNAME = 
         "com.sun.appserv.util.cache.LruCache";
 
+    public static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+
     private static final Logger _logger = LogFacade.getLogger();
 
     /**
@@ -78,6 +80,10 @@ public class CacheManager {
     
     boolean enabled = false;
 
+    // keep a gzip variant of compressible responses, at least this large
+    boolean compressCachedResponses = false;
+    int compressionMinSize = DEFAULT_COMPRESSION_MIN_SIZE;
+
     // application servlet context
     ServletContext context;
 
@@ -149,6 +155,18 @@ public class CacheManager {
     public void addProperty(String name, String value) {
         if (name.equalsIgnoreCase("cacheClassName")) {
            cacheClassName = value; 
+        } else if (name.equalsIgnoreCase("compressCachedResponses")) {
+            compressCachedResponses = Boolean.parseBoolean(value);
+        } else if (name.equalsIgnoreCase("compressionMinSize")) {
+            try {
+                compressionMinSize = Integer.parseInt(value.trim());
+            } catch (NumberFormatException nfe) {
+                _logger.log(Level.WARNING,
+                            LogFacade.CACHE_MANAGER_INVALID_PROPERTY,
+                            new Object[] { name, value,
+                                           DEFAULT_COMPRESSION_MIN_SIZE });
+                compressionMinSize = DEFAULT_COMPRESSION_MIN_SIZE;
+            }
         } else {
             if (cacheProps == null) {
                 cacheProps = new Properties();
@@ -259,6 +277,15 @@ public class CacheManager {
         }
     }
 
+    /**
+     * get the minimum size of the response bodies for which a gzip variant
+     * is cached along with the response
+     * @return the size in bytes, or -1 if cached responses are not compressed
+     */
+    public int getCompressionMinSize() {
+        return (compressCachedResponses ? compressionMinSize : -1);
+    }
+
     /**
      * get the underlying cache name
      * @return the cacheClassName 
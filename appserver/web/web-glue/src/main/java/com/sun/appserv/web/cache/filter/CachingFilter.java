@@ -50,12 +50,18 @@ import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.catalina.connector.CoyoteOutputStream;
 import org.glassfish.web.LogFacade;
 
 public class CachingFilter implements Filter, CacheManagerListener {
@@ -63,6 +69,13 @@ public class CachingFilter implements Filter, CacheManagerListener {
     private static final String PROCESSING_SET =
         "com.sun.appserv.web.cache.filter.CachingFilter.PROCESSING_SET";
 
+    // returned by startFill when the response is generated without
+    // coalescing it with other requests for the same key
+    private static final CountDownLatch NOT_COALESCED = new CountDownLatch(0);
+
+    // chunk size used when the body cannot be handed over to the connector
+    private static final int WRITE_CHUNK_SIZE = 8192;
+
     // this servlet filter name
     String filterName;
     String servletName;
@@ -75,6 +88,10 @@ public class CachingFilter implements Filter, CacheManagerListener {
 
     boolean isEnabled = false;
 
+    // fills in progress, indexed by the cache key
+    private final ConcurrentHashMap<String, CountDownLatch> fills =
+        new ConcurrentHashMap<String, CountDownLatch>();
+
     private static final Logger _logger = LogFacade.getLogger();
 
     /** 
@@ -154,15 +171,13 @@ public class CachingFilter implements Filter, CacheManagerListener {
         if (isEnabled && helper.isCacheable((HttpServletRequest)request) &&
                 (key = helper.getCacheKey(request)) != null) {
 
-            // have the key index for reuse
-            int index = cache.getIndex(key);
-
             if (isFine) {
-                _logger.log(Level.FINE, LogFacade.CACHING_FILTER_CACHEABLE, new Object[]{request.getServletPath(), key, index});
+                _logger.log(Level.FINE, LogFacade.CACHING_FILTER_CACHEABLE, new Object[]{request.getServletPath(), key, cache.getIndex(key)});
             }
 
             HttpCacheEntry entry = null;
-            boolean entryReady = false, waitForRefresh = true;
+            boolean entryReady = false;
+            CountDownLatch fill = null;
             
             // if refresh is not needed then check the cache first
             if (!helper.isRefreshNeeded(request)) {
@@ -181,9 +196,9 @@ public class CachingFilter implements Filter, CacheManagerListener {
                          *  if there are more than one thread tries to fill/refresh
                          *  same cache entry, then all but the first thread will block.
                          */
-                        waitForRefresh = waitForRefresh(request, key, index);
+                        fill = startFill(request, key);
                     }
-                } while (waitForRefresh);
+                } while (fill == null);
             } else {
                 if (isFine) {
                     _logger.log(Level.FINE, LogFacade.CACHING_FILTER_NEEDS_REFRESH, new Object[]{request.getServletPath(), key});
@@ -195,12 +210,11 @@ public class CachingFilter implements Filter, CacheManagerListener {
                 if (isFine) {
                     _logger.log(Level.FINE, LogFacade.CACHING_FILTER_SERVING_RESPONSE, new Object[]{request.getServletPath(), key});
                 }
-                sendCachedResponse(entry, response);
+                sendCachedResponse(entry, request, response);
             } else {
                 // call the target servlet
 
                 CachingResponseWrapper wrapper = null;
-                boolean needNotify = true;
 
                 try {
                     // setup the response wrapper (and the output stream)
@@ -217,7 +231,8 @@ public class CachingFilter implements Filter, CacheManagerListener {
                         int timeout = helper.getTimeout(request);
 
                         // previous entry gets replaced
-                        entry = wrapper.cacheResponse();
+                        entry = wrapper.cacheResponse(
+                                    manager.getCompressionMinSize());
 
                         if (timeout == CacheHelper.TIMEOUT_VALUE_NOT_SET) {
                             // extracts this from the Expires: date header
@@ -238,11 +253,11 @@ public class CachingFilter implements Filter, CacheManagerListener {
 
                         cache.put(key, entry, entry.getSize());
 
-                        cache.notifyRefresh(index);
-                        needNotify = false;
+                        endFill(key, fill);
+                        fill = null;
 
                         // transmit the response body content
-                        writeBody(entry, response);
+                        writeBody(entry.body, response);
                     } else {
                         /** either there was an error or response from this
                          *  resource is not cacheable anymore; so, remove the
@@ -252,9 +267,7 @@ public class CachingFilter implements Filter, CacheManagerListener {
                     }
                 } finally {
                     // IT 12891
-                    if (needNotify) {
-                        cache.notifyRefresh(index);
-                    }
+                    endFill(key, fill);
 
                     // clear the wrapper (XXX: cache these??)
                     if (wrapper != null) {
@@ -288,13 +301,17 @@ public class CachingFilter implements Filter, CacheManagerListener {
     /**
      * called by doFilter to send out the cached response
      * @param entry cached response entry
+     * @param request the request being served
      * @param response response object to write out the response
      * @throws IOException and ServletException.
      */
     private void sendCachedResponse(HttpCacheEntry entry, 
+                                    HttpServletRequest request,
                                     HttpServletResponse response)
             throws IOException {
 
+        boolean gzip = (entry.gzipBody != null && acceptsGzip(request));
+
         // status code/message
         if (entry.statusCode != HttpCacheEntry.VALUE_NOT_SET) {
             response.setStatus(entry.statusCode);
@@ -328,7 +345,10 @@ public class CachingFilter implements Filter, CacheManagerListener {
         }
 
         // content type, length and locale
-        if (entry.contentLength != HttpCacheEntry.VALUE_NOT_SET) {
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+            response.setContentLength(entry.gzipBody.remaining());
+        } else if (entry.contentLength != HttpCacheEntry.VALUE_NOT_SET) {
             response.setContentLength(entry.contentLength);
         }
         if (entry.contentType != null) {
@@ -339,27 +359,78 @@ public class CachingFilter implements Filter, CacheManagerListener {
         }
 
         // the response body
-        writeBody(entry, response);
+        writeBody((gzip ? entry.gzipBody : entry.body), response);
     }
 
     /**
-     * called by doFilter/sendCachedResponse to write the body content
-     * @param entry cached response entry
+     * called by doFilter/sendCachedResponse to write the body content.
+     * The cached buffer is handed over to the connector when the response
+     * is not wrapped, and copied through the output stream otherwise.
+     * @param body cached response body
      * @param response response object to write out the response
      * @throws IOException and ServletException.
      */
-    private void writeBody(HttpCacheEntry entry, 
+    private void writeBody(ByteBuffer body, 
                            HttpServletResponse response)
                            throws IOException {
         ServletOutputStream out = response.getOutputStream();
-        out.write(entry.bytes);
+        ByteBuffer buf = body.duplicate();
+        if (out instanceof CoyoteOutputStream) {
+            ((CoyoteOutputStream) out).write(buf);
+        } else if (buf.hasRemaining()) {
+            byte[] chunk = new byte[Math.min(buf.remaining(), WRITE_CHUNK_SIZE)];
+            while (buf.hasRemaining()) {
+                int len = Math.min(buf.remaining(), chunk.length);
+                buf.get(chunk, 0, len);
+                out.write(chunk, 0, len);
+            }
+        }
+    }
+
+    /**
+     * does the client accept a gzip encoded response?
+     */
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        Enumeration<String> values = request.getHeaders("Accept-Encoding");
+        while (values != null && values.hasMoreElements()) {
+            for (String coding : values.nextElement().split(",")) {
+                String name = coding;
+                String params = null;
+                int semicolon = coding.indexOf(';');
+                if (semicolon >= 0) {
+                    name = coding.substring(0, semicolon);
+                    params = coding.substring(semicolon + 1);
+                }
+                if (name.trim().equalsIgnoreCase("gzip")) {
+                    return (params == null || !isZeroQuality(params));
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZeroQuality(String params) {
+        String q = params.trim().toLowerCase(Locale.ENGLISH);
+        if (!q.startsWith("q=")) {
+            return false;
+        }
+        try {
+            return Float.parseFloat(q.substring(2).trim()) == 0f;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
     }
 
     /**
-     * Call cache.waitRefresh only when the cache processing is not started.
-     * See IT 17377.
+     * Start generating the response for the key, unless another request is
+     * already doing so; in that case wait until it is done.
+     * Requests do not wait for a key they are already processing
+     * themselves. See IT 17377.
+     * @return the latch to release through endFill once the response is
+     *  cached, NOT_COALESCED if the response is to be generated without
+     *  coalescing, or null after waiting for another request
      */
-    private boolean waitForRefresh(HttpServletRequest req, String key, int index) {
+    private CountDownLatch startFill(HttpServletRequest req, String key) {
         Object obj = req.getAttribute(PROCESSING_SET);
         HashSet<String> processingSet = null;
         if (obj == null) {
@@ -373,10 +444,33 @@ public class CachingFilter implements Filter, CacheManagerListener {
             throw new IllegalStateException();
         }
 
-        if (processingSet.add(key)) {
-            return cache.waitRefresh(index);
-        } else {
-            return false;
+        if (!processingSet.add(key)) {
+            return NOT_COALESCED;
+        }
+
+        CountDownLatch fill = new CountDownLatch(1);
+        CountDownLatch current = fills.putIfAbsent(key, fill);
+        if (current == null) {
+            return fill;
+        }
+
+        // wait till the fill is finished
+        try {
+            current.await();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return NOT_COALESCED;
+        }
+        return null;
+    }
+
+    /**
+     * release the requests waiting for the response of the key
+     */
+    private void endFill(String key, CountDownLatch fill) {
+        if (fill != null && fill != NOT_COALESCED) {
+            fills.remove(key, fill);
+            fill.countDown();
         }
     }
 
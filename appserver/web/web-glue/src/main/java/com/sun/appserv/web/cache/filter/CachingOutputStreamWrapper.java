@@ -44,16 +44,18 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * an output stream wrapper to cache response bytes
  */
 public class CachingOutputStreamWrapper extends ServletOutputStream {
 
-    ByteArrayOutputStream baos;
+    ExposedByteArrayOutputStream baos;
 
     public CachingOutputStreamWrapper() {
-        this.baos = new ByteArrayOutputStream(4096);
+        this.baos = new ExposedByteArrayOutputStream(4096);
     }
 
     /**
@@ -134,4 +136,49 @@ public class CachingOutputStreamWrapper extends ServletOutputStream {
     public byte[] getBytes() {
         return baos.toByteArray();
     }
+
+    /**
+     * return the number of cached bytes
+     */
+    public int size() {
+        return baos.size();
+    }
+
+    /**
+     * return the cached bytes in a read-only direct buffer, which can be
+     * handed over to the connector without further copies
+     */
+    public ByteBuffer getBody() {
+        return baos.toByteBuffer();
+    }
+
+    /**
+     * return the gzip compressed cached bytes in a read-only direct buffer
+     */
+    public ByteBuffer getGzipBody() throws IOException {
+        ExposedByteArrayOutputStream gzipBytes =
+            new ExposedByteArrayOutputStream(Math.max(512, baos.size() / 4));
+        GZIPOutputStream gzip = new GZIPOutputStream(gzipBytes);
+        baos.writeTo(gzip);
+        gzip.close();
+        return gzipBytes.toByteBuffer();
+    }
+
+    /**
+     * a ByteArrayOutputStream whose content can be copied out once
+     */
+    private static final class ExposedByteArrayOutputStream
+            extends ByteArrayOutputStream {
+
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        ByteBuffer toByteBuffer() {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(count);
+            buffer.put(buf, 0, count);
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
 }
@@ -47,9 +47,11 @@ import javax.servlet.http.HttpServletResponseWrapper;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 // import org.apache.catalina.Context;
 
 /**
@@ -58,7 +60,8 @@ import java.util.Locale;
  * @see javax.servlet.http.HttpServletResponse
  */
 public class CachingResponseWrapper extends HttpServletResponseWrapper {
-    private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
+    private static final ByteBuffer EMPTY_BODY =
+        ByteBuffer.allocateDirect(0).asReadOnlyBuffer();
 
     int statusCode = HttpCacheEntry.VALUE_NOT_SET;
 
@@ -370,6 +373,17 @@ public class CachingResponseWrapper extends HttpServletResponseWrapper {
      * @return the entry with cached response headers and body.
      */
     public HttpCacheEntry cacheResponse() throws IOException {
+        return cacheResponse(-1);
+    }
+
+    /**
+     * called by doFilter to cache the response that was just sent out
+     * @param compressionMinSize the minimum body size for which a gzip
+     *  variant is kept with the entry; a negative value disables compression
+     * @return the entry with cached response headers and body.
+     */
+    public HttpCacheEntry cacheResponse(int compressionMinSize)
+            throws IOException {
         // create a new entry
         HttpCacheEntry entry = new HttpCacheEntry();
         entry.responseHeaders = headers;
@@ -389,10 +403,79 @@ public class CachingResponseWrapper extends HttpServletResponseWrapper {
 
 
         // IT 12891
-        entry.bytes = ((cosw != null)? cosw.getBytes() : EMPTY_BYTE_ARRAY);
+        entry.body = ((cosw != null)? cosw.getBody() : EMPTY_BODY);
+
+        if (compressionMinSize >= 0 && cosw != null &&
+                cosw.size() >= compressionMinSize && isCompressible()) {
+            ByteBuffer gzipBody = cosw.getGzipBody();
+            if (gzipBody.remaining() < entry.body.remaining()) {
+                entry.gzipBody = gzipBody;
+                // the body served now depends on Accept-Encoding, tell
+                // the client and the caches downstream, for this response
+                // and with the cached headers
+                if (!variesOnAcceptEncoding()) {
+                    addHeader("Vary", "Accept-Encoding");
+                }
+            }
+        }
 
         return entry;
     }
+
+    /**
+     * does a Vary header of this response already cover Accept-Encoding?
+     */
+    private boolean variesOnAcceptEncoding() {
+        for (Map.Entry<String, ArrayList<String>> header : headers.entrySet()) {
+            if (!header.getKey().equalsIgnoreCase("Vary")) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                for (String field : value.split(",")) {
+                    field = field.trim();
+                    if (field.equals("*") ||
+                            field.equalsIgnoreCase("Accept-Encoding")) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * can a gzip variant of this response be served instead?
+     * Only plain successful responses of a textual content type qualify;
+     * responses carrying an entity tag or their own encoding do not.
+     */
+    private boolean isCompressible() {
+        if (statusCode != HttpCacheEntry.VALUE_NOT_SET &&
+                statusCode != SC_OK) {
+            return false;
+        }
+
+        if (contentType == null) {
+            return false;
+        }
+
+        for (String name : headers.keySet()) {
+            if (name.equalsIgnoreCase("Content-Encoding") ||
+                    name.equalsIgnoreCase("ETag") ||
+                    name.equalsIgnoreCase("Content-Range")) {
+                return false;
+            }
+        }
+
+        String type = contentType.toLowerCase(Locale.ENGLISH);
+        int semicolon = type.indexOf(';');
+        if (semicolon >= 0) {
+            type = type.substring(0, semicolon).trim();
+        }
+        return (type.startsWith("text/") ||
+                type.endsWith("/json") || type.endsWith("+json") ||
+                type.endsWith("/xml") || type.endsWith("+xml") ||
+                type.endsWith("/javascript"));
+    }
     
     /**
      * clear the contents of this wrapper
@@ -40,6 +40,7 @@
 
 package com.sun.appserv.web.cache.filter;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Locale;
@@ -68,7 +69,11 @@ public class HttpCacheEntry {
     int contentLength;
 
     // XXX: other cacheable response info 
-    byte[] bytes; 
+
+    // read-only response body, and its gzip variant if one was produced;
+    // duplicates are handed to the connector, so they are never modified
+    ByteBuffer body;
+    ByteBuffer gzipBody;
 
     volatile long expireTime = 0;
 
@@ -103,7 +108,8 @@ public class HttpCacheEntry {
      * clear the contents
      */
     public void clear() {
-        bytes = null;
+        body = null;
+        gzipBody = null;
         responseHeaders = null;
         cookies = null;
     }
@@ -115,8 +121,11 @@ public class HttpCacheEntry {
      */
     public int getSize() {
         int size = 0;
-        if (bytes != null) {
-            size = bytes.length;
+        if (body != null) {
+            size = body.capacity();
+        }
+        if (gzipBody != null) {
+            size += gzipBody.capacity();
         }
 
         // size of response bytes plus headers (each approx 20 chars or 40 bytes)
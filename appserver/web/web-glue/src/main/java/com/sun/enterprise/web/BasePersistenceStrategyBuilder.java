@@ -84,6 +84,9 @@ public abstract class BasePersistenceStrategyBuilder
     protected static final int DEFAULT_SESSION_TIMEOUT = 1800;   // 30 minute
     protected int sessionMaxInactiveInterval = DEFAULT_SESSION_TIMEOUT;
     protected String persistentCookieName = "GLASSFISHCOOKIE";
+    protected static final int DEFAULT_MAX_IDLE_SWAP = 60;   // 1 minute
+    protected int maxIdleSwap = DEFAULT_MAX_IDLE_SWAP;
+    protected long maxOffHeapSize = -1;   // store default
     protected boolean relaxCacheVersionSemantics;
 
     // Special constant for Java Server Faces
@@ -137,6 +140,10 @@ public abstract class BasePersistenceStrategyBuilder
         // Default settings for persistence-type = 'file'
         storeReapInterval = DEFAULT_REAP_INTERVAL;
 
+        // Default settings for persistence-type = 'offheap'
+        maxIdleSwap = DEFAULT_MAX_IDLE_SWAP;
+        maxOffHeapSize = -1;
+
         directory = ((StandardContext) ctx).getWorkDir(); 
     }
     
@@ -306,6 +313,12 @@ public abstract class BasePersistenceStrategyBuilder
                         sessionFilename = value;                        
                     } else if (name.equalsIgnoreCase("persistenceFrequency")) {
                         _persistenceFrequency = value;
+                    } else if (name.equalsIgnoreCase("maxIdleSwapSeconds")) {
+                        try {
+                            maxIdleSwap = Integer.parseInt(value);
+                        } catch (NumberFormatException e) {
+                            // XXX need error message
+                        }
                     } else {
                         if (_logger.isLoggable(Level.INFO)) {
                             Object[] params = { name };
@@ -332,6 +345,12 @@ public abstract class BasePersistenceStrategyBuilder
                         _persistenceScope = value;
                     } else if (name.equalsIgnoreCase("cookieName")) {
                         persistentCookieName = value;                     
+                    } else if (name.equalsIgnoreCase("maxOffHeapSizeBytes")) {
+                        try {
+                            maxOffHeapSize = Long.parseLong(value);
+                        } catch (NumberFormatException e) {
+                            // XXX need error message
+                        }
                     } else {
                         if (_logger.isLoggable(Level.INFO)) {
                             Object[] params = { name };
@@ -111,6 +111,9 @@ public final class Constants {
     public static final String ACCESS_LOG_WRITE_INTERVAL_PROPERTY =
         "accessLogWriteInterval";
 
+    public static final String ACCESS_LOG_ASYNC_BUFFERS_PROPERTY =
+        "accessLogAsyncBuffers";
+
     public static final String ACCESS_LOGGING_ENABLED = "accessLoggingEnabled";
 
     public static final String SSO_ENABLED = "sso-enabled";
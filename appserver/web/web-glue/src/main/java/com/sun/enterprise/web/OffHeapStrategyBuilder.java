@@ -0,0 +1,91 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.web;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.session.OffHeapStore;
+import org.apache.catalina.session.PersistentManager;
+import org.glassfish.web.LogFacade;
+import org.glassfish.web.deployment.runtime.SessionManager;
+import org.jvnet.hk2.annotations.Service;
+
+import java.util.logging.Level;
+
+/**
+ * Keeps the sessions which have been idle for more than maxIdleSwapSeconds
+ * serialized outside of the Java heap, and restores them on their next use.
+ */
+@Service(name="offheap")
+public class OffHeapStrategyBuilder extends BasePersistenceStrategyBuilder {
+
+    public void initializePersistenceStrategy(
+            Context ctx,
+            SessionManager smBean,
+            ServerConfigLookup serverConfigLookup) {
+
+        if (_logger.isLoggable(Level.INFO)) {
+            _logger.log(Level.INFO, LogFacade.OFF_HEAP_PERSISTENCE, ctx.getPath());
+        }
+
+        super.initializePersistenceStrategy(ctx, smBean, serverConfigLookup);
+
+        PersistentManager mgr = new PersistentManager();
+        mgr.setMaxActiveSessions(maxSessions);
+        mgr.setMaxIdleSwap(maxIdleSwap);
+        mgr.setSaveOnRestart(false);
+
+        OffHeapStore store = new OffHeapStore();
+        if (maxOffHeapSize > 0) {
+            store.setMaxSize(maxOffHeapSize);
+        }
+        mgr.setStore(store);
+
+        mgr.setSessionLocker(new PESessionLocker(ctx));
+
+        ctx.setManager(mgr);
+
+        if(!((StandardContext)ctx).isSessionTimeoutOveridden()) {
+            mgr.setMaxInactiveInterval(sessionMaxInactiveInterval);
+        }
+    }
+}
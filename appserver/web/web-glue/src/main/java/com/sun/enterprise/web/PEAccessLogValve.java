@@ -46,6 +46,7 @@ import com.sun.enterprise.web.accesslog.AccessLogFormatter;
 import com.sun.enterprise.web.accesslog.CombinedAccessLogFormatterImpl;
 import com.sun.enterprise.web.accesslog.CommonAccessLogFormatterImpl;
 import com.sun.enterprise.web.accesslog.DefaultAccessLogFormatterImpl;
+import com.sun.enterprise.web.accesslog.StripedAccessLogBuffer;
 import com.sun.enterprise.web.pluggable.WebContainerFeatureFactory;
 import com.sun.enterprise.util.io.FileUtils;
 import org.apache.catalina.*;
@@ -66,6 +67,7 @@ import java.nio.charset.Charset;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -77,7 +79,10 @@ import java.util.logging.Logger;
  * automatic rollover of log files at a specified interval is also supported.
  *
  * </p>This class uses a direct <code>ByteBuffer</code> to store and write 
- * logs. 
+ * logs. If async buffers are enabled, each request is formatted without
+ * holding a shared lock and encoded into a striped byte buffer, which is
+ * handed to the background writer thread (see
+ * <code>StripedAccessLogBuffer</code>).
  *
  * @author Jean-Francois Arcand
  * @author Charlie J. Hunt
@@ -114,6 +119,13 @@ public final class PEAccessLogValve
      * The minimum size a buffer can have.
      */
     private final static int MIN_BUFFER_SIZE = 5120;
+
+
+    /**
+     * The initial capacity of the per-thread buffer used to format an
+     * access log entry when async buffers are enabled.
+     */
+    private final static int ENTRY_BUFFER_SIZE = 512;
     
     
     // ----------------------------------------------------- Instance Variables
@@ -295,6 +307,45 @@ public final class PEAccessLogValve
      * Simple lock
      */
     private Object lock = new Object();
+
+
+    /**
+     * Should entries be appended to striped byte buffers that are written
+     * by the background writer thread, instead of the shared CharBuffer?
+     */
+    private boolean asyncBuffers;
+
+
+    /**
+     * The striped byte buffers used to store the logs if async buffers
+     * are enabled.
+     */
+    private volatile StripedAccessLogBuffer stripedBuffer;
+
+
+    /**
+     * ThreadLocal for the CharBuffer into which an entry is formatted if
+     * async buffers are enabled.
+     */
+    private final ThreadLocal<CharBuffer> entryBuffer =
+        new ThreadLocal<CharBuffer>() {
+            @Override
+            protected CharBuffer initialValue() {
+                return CharBuffer.allocate(ENTRY_BUFFER_SIZE);
+            }
+        };
+
+
+    /**
+     * The number of dropped entries that has last been reported.
+     */
+    private long reportedDroppedEntries;
+
+    /**
+     * A buffer handed over by the striped buffer whose write failed, written
+     * again before the next ones; guarded by <code>lock</code>.
+     */
+    private ByteBuffer unwrittenBuffer;
     
 
     /**
@@ -353,6 +404,42 @@ public final class PEAccessLogValve
         return bufferSize;
     }
 
+
+    /**
+     * Set whether entries are written through striped async buffers
+     */
+    public void setAsyncBuffers(boolean asyncBuffers) {
+        this.asyncBuffers = asyncBuffers;
+    }
+
+
+    /**
+     * Return whether entries are written through striped async buffers
+     */
+    public boolean isAsyncBuffers() {
+        return asyncBuffers;
+    }
+
+
+    /**
+     * Return the number of access log entries dropped since the
+     * background writer thread fell behind
+     */
+    public long getDroppedEntries() {
+        StripedAccessLogBuffer buffer = stripedBuffer;
+        return (buffer == null ? 0 : buffer.getDroppedEntries());
+    }
+
+
+    /**
+     * Return the number of times a full buffer could not be handed to the
+     * background writer thread
+     */
+    public long getBackpressureEvents() {
+        StripedAccessLogBuffer buffer = stripedBuffer;
+        return (buffer == null ? 0 : buffer.getBackpressureEvents());
+    }
+
     // ------------------------------------------------------------- Properties
 
 
@@ -579,6 +666,12 @@ public final class PEAccessLogValve
                 null!=request.getRequest().getAttribute(condition)) {
              return;
         }
+
+        StripedAccessLogBuffer buffer = stripedBuffer;
+        if (buffer != null) {
+            appendToStripedBuffer(buffer, request, response);
+            return;
+        }
         
         synchronized (lock){
             // Reset properly the buffer in case of an unexpected
@@ -618,6 +711,95 @@ public final class PEAccessLogValve
     }
 
 
+    /**
+     * Formats the access log entry for the given request and response
+     * into the calling thread's entry buffer, and appends it to the
+     * striped buffer.
+     */
+    private void appendToStripedBuffer(StripedAccessLogBuffer buffer,
+            Request request, Response response) {
+        if (formatter == null) {
+            return;
+        }
+
+        CharBuffer entry = entryBuffer.get();
+        while (true) {
+            entry.clear();
+            try {
+                formatter.appendLogEntry(request, response, entry);
+                entry.put('\n');
+                break;
+            } catch (BufferOverflowException ex) {
+                if (entry.capacity() >= bufferSize) {
+                    _logger.log(
+                        Level.SEVERE,
+                        LogFacade.ACCESS_LOG_UNABLE_TO_WRITE,
+                        new Object[] {ex});
+                    return;
+                }
+                entry = CharBuffer.allocate(
+                    Math.min(entry.capacity() * 2, bufferSize));
+                entryBuffer.set(entry);
+            }
+        }
+        entry.flip();
+
+        // Wake the writer up as soon as a full buffer is waiting, so that
+        // the ring is drained well before it fills up
+        if (buffer.append(entry) != StripedAccessLogBuffer.APPENDED
+                || flushRealTime) {
+            Thread t = writerThread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+
+
+    /**
+     * Writes the buffers handed over by the striped buffer to the log file,
+     * and reports the entries that have been dropped since the last call.
+     */
+    private void writeStripedBuffer() {
+        synchronized (lock) {
+            writeHandedOverBuffers();
+            stripedBuffer.flushStripes();
+            writeHandedOverBuffers();
+
+            long dropped = stripedBuffer.getDroppedEntries();
+            if (dropped != reportedDroppedEntries) {
+                reportedDroppedEntries = dropped;
+                _logger.log(Level.WARNING,
+                    LogFacade.ACCESS_LOG_ENTRIES_DROPPED,
+                    new Object[] {dropped,
+                        stripedBuffer.getBackpressureEvents()});
+            }
+        }
+    }
+
+
+    private void writeHandedOverBuffers() {
+        ByteBuffer byteBuffer = unwrittenBuffer;
+        unwrittenBuffer = null;
+        if (byteBuffer == null) {
+            byteBuffer = stripedBuffer.poll();
+        }
+        while (byteBuffer != null) {
+            try {
+                while (byteBuffer.hasRemaining()) {
+                    fileChannel.write(byteBuffer);
+                }
+            } catch (IOException ex) {
+                // keep the entries for the next attempt
+                unwrittenBuffer = byteBuffer;
+                return;
+            }
+            stripedBuffer.recycle(byteBuffer);
+            byteBuffer = stripedBuffer.poll();
+        }
+    }
+
+
     /**
      * Log the specified message to the log file, switching files if the date
      * has changed since the previous log call.
@@ -652,6 +834,11 @@ public final class PEAccessLogValve
             }
         }
         
+        if (stripedBuffer != null) {
+            writeStripedBuffer();
+            return;
+        }
+
         synchronized(lock){
             try{
                 charBuffer.flip();
@@ -790,6 +977,13 @@ public final class PEAccessLogValve
             }
         }
 
+        /*
+         * The accessLogAsyncBuffers property defined under <virtual-server>
+         * selects the striped async buffers
+         */
+        setAsyncBuffers(Boolean.parseBoolean(vsBean.getPropertyValue(
+            Constants.ACCESS_LOG_ASYNC_BUFFERS_PROPERTY)));
+
         return true;
     }
 
@@ -1060,7 +1254,13 @@ public final class PEAccessLogValve
             bufferSize = MIN_BUFFER_SIZE;
         }
 
-        charBuffer = CharBuffer.allocate(bufferSize);
+        if (asyncBuffers) {
+            stripedBuffer = new StripedAccessLogBuffer(bufferSize,
+                Charset.defaultCharset());
+            reportedDroppedEntries = 0;
+        } else {
+            charBuffer = CharBuffer.allocate(bufferSize);
+        }
 
         // Initialize the timeZone, Date formatters, and currentDate
         final TimeZone tz = TimeZone.getDefault();
@@ -1085,7 +1285,7 @@ public final class PEAccessLogValve
 
         lastAccessLogCreationTime = systime;
 
-        if (!flushRealTime){
+        if (!flushRealTime || stripedBuffer != null){
             // Start the background writer writerThread
             threadStart();
         }
@@ -1112,12 +1312,14 @@ public final class PEAccessLogValve
         lifecycle.fireLifecycleEvent(STOP_EVENT, null);
         started = false;
         
-        if (!flushRealTime){
+        if (!flushRealTime || stripedBuffer != null){
             // Stop the background writer thread
             threadStop();
         }
         
         close();
+        stripedBuffer = null;
+        unwrittenBuffer = null;
     }
 
     
@@ -1128,7 +1330,22 @@ public final class PEAccessLogValve
 
         // Loop until the termination semaphore is set
         while (!threadDone) {
-            threadSleep();
+            if (stripedBuffer != null) {
+                // Woken up early when a request hands a full buffer over
+                // or finds the ring full, or after every request when
+                // flushing in real time
+                LockSupport.parkNanos(
+                    (writeInterval > 0 ? writeInterval : 1) * 1000000000L);
+                // parkNanos leaves the interrupt status set, and a write
+                // by an interrupted thread would close the log file
+                Thread.interrupted();
+                if (threadDone) {
+                    // close() writes the remaining entries
+                    break;
+                }
+            } else {
+                threadSleep();
+            }
             try {
                 log();
             } catch (IOException ioe) {
@@ -1162,7 +1379,7 @@ public final class PEAccessLogValve
      */
     private void threadStart() {
 
-        if (writerThread != null || writeInterval == 0)
+        if (writerThread != null || (writeInterval == 0 && stripedBuffer == null))
             return;
 
         threadDone = false;
@@ -1179,11 +1396,16 @@ public final class PEAccessLogValve
      */
     private void threadStop() {
 
-        if (writerThread == null || writeInterval == 0)
+        if (writerThread == null)
             return;
 
         threadDone = true;
-        writerThread.interrupt();
+        if (stripedBuffer != null) {
+            // an interrupt would close the log file under a pending write
+            LockSupport.unpark(writerThread);
+        } else {
+            writerThread.interrupt();
+        }
         try {
             writerThread.join();
         } catch (InterruptedException e) {
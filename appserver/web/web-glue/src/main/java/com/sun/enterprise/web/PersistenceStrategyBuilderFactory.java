@@ -84,6 +84,7 @@ public class PersistenceStrategyBuilderFactory {
 
         if (persistenceType.equalsIgnoreCase(PersistenceType.MEMORY.getType()) ||
                 persistenceType.equalsIgnoreCase(PersistenceType.FILE.getType()) ||
+                persistenceType.equalsIgnoreCase(PersistenceType.OFFHEAP.getType()) ||
                 persistenceType.equalsIgnoreCase(PersistenceType.COOKIE.getType())) {
             // Deliberately leaving frequency & scope null
         } else {
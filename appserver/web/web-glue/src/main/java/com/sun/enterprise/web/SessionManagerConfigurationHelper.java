@@ -176,6 +176,7 @@ protected WebModule _ctx = null;
         String scope = null;
         if ( persistence == PersistenceType.MEMORY 
             || persistence == PersistenceType.FILE 
+            || persistence == PersistenceType.OFFHEAP
             || persistence == PersistenceType.CUSTOM) {
             // Deliberately leaving frequency & scope null
         } else {
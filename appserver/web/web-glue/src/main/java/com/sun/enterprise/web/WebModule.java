@@ -2117,6 +2117,14 @@ public class WebModule extends PwcWebModule implements Context {
             monitoringNodeName, vsId);
     }
 
+    @Override
+    public void sessionStoreStatsEvent(int residentSessions,
+                                       int storedSessions,
+                                       long storedBytes) {
+        sessionProbeProvider.sessionStoreStatsEvent(residentSessions,
+            storedSessions, storedBytes, monitoringNodeName, vsId);
+    }
+
 
     /*
      * Web module lifecycle related probe events
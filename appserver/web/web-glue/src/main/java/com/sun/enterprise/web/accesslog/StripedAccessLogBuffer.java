@@ -0,0 +1,349 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.web.accesslog;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Striped byte buffers holding encoded access log entries until they are
+ * written by the access log writer thread.
+ *
+ * Request threads append their entry to one of a fixed number of stripes,
+ * chosen by thread id, so that they only contend with the threads sharing
+ * the same stripe. Entries are encoded directly into the stripe's
+ * <code>ByteBuffer</code>. A full stripe buffer is handed to the writer
+ * through a bounded lock-free ring and replaced by a recycled buffer, and
+ * the caller is told so, to wake the writer up.
+ *
+ * The number of buffers is bounded. When the writer falls behind and the
+ * ring is full, the entry is dropped rather than blocking the request
+ * thread, and both the backpressure event and the dropped entry are
+ * counted.
+ *
+ * Entries appended by different threads may be written in a different
+ * order than they were appended, entries of the same stripe keep their
+ * order.
+ */
+public final class StripedAccessLogBuffer {
+
+    /**
+     * The entry was appended to a stripe buffer.
+     */
+    public static final int APPENDED = 0;
+
+    /**
+     * The entry was appended, after a full stripe buffer was handed over
+     * to the writer.
+     */
+    public static final int HANDED_OVER = 1;
+
+    /**
+     * The entry was dropped.
+     */
+    public static final int DROPPED = 2;
+
+    private final Stripe[] stripes;
+
+    private final Ring ring;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> freeBuffers =
+        new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private final AtomicInteger allocatedBuffers = new AtomicInteger();
+
+    private final int maxBuffers;
+
+    private final int bufferSize;
+
+    private final AtomicLong droppedEntries = new AtomicLong();
+
+    private final AtomicLong backpressureEvents = new AtomicLong();
+
+
+    /**
+     * Constructor.
+     *
+     * @param bufferSize The size in bytes of each buffer
+     * @param charset The charset used to encode the access log entries
+     */
+    public StripedAccessLogBuffer(int bufferSize, Charset charset) {
+        this.bufferSize = bufferSize;
+        int n = Integer.highestOneBit(
+            Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe(charset);
+        }
+        ring = new Ring(Math.max(16, n * 2));
+        maxBuffers = n + ring.capacity();
+    }
+
+
+    /**
+     * Appends the given access log entry.
+     *
+     * @param entry The formatted access log entry, ready to be read
+     *
+     * @return {@link #APPENDED}, {@link #HANDED_OVER} if a full buffer is
+     * waiting for the writer, or {@link #DROPPED} if the entry was dropped
+     * because the writer fell behind
+     */
+    public int append(CharBuffer entry) {
+        Stripe stripe = stripes[
+            (int) Thread.currentThread().getId() & (stripes.length - 1)];
+        synchronized (stripe) {
+            if (stripe.buffer == null) {
+                stripe.buffer = takeBuffer();
+                if (stripe.buffer == null) {
+                    backpressureEvents.incrementAndGet();
+                    droppedEntries.incrementAndGet();
+                    return DROPPED;
+                }
+            }
+            if (stripe.encode(entry)) {
+                return APPENDED;
+            }
+            if (stripe.buffer.position() == 0) {
+                // The entry does not fit even into an empty buffer
+                droppedEntries.incrementAndGet();
+                return DROPPED;
+            }
+            ByteBuffer next = takeBuffer();
+            if (next == null) {
+                backpressureEvents.incrementAndGet();
+                droppedEntries.incrementAndGet();
+                return DROPPED;
+            }
+            ByteBuffer full = stripe.buffer;
+            full.flip();
+            if (!ring.offer(full)) {
+                full.position(full.limit());
+                full.limit(full.capacity());
+                freeBuffers.offer(next);
+                backpressureEvents.incrementAndGet();
+                droppedEntries.incrementAndGet();
+                return DROPPED;
+            }
+            stripe.buffer = next;
+            if (stripe.encode(entry)) {
+                return HANDED_OVER;
+            }
+            droppedEntries.incrementAndGet();
+            return DROPPED;
+        }
+    }
+
+
+    /**
+     * Hands the partially filled stripe buffers over to the writer, so
+     * that their entries are returned by subsequent calls to
+     * {@link #poll()}. Stripe buffers that cannot be handed over because
+     * the ring is full are left in place.
+     */
+    public void flushStripes() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                ByteBuffer buffer = stripe.buffer;
+                if (buffer == null || buffer.position() == 0) {
+                    continue;
+                }
+                buffer.flip();
+                if (ring.offer(buffer)) {
+                    stripe.buffer = null;
+                } else {
+                    buffer.position(buffer.limit());
+                    buffer.limit(buffer.capacity());
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns the next buffer to be written, ready to be read, or null if
+     * there is none. Must only be called by the single writer thread.
+     */
+    public ByteBuffer poll() {
+        return ring.poll();
+    }
+
+
+    /**
+     * Returns a buffer obtained from {@link #poll()} once it was written.
+     */
+    public void recycle(ByteBuffer buffer) {
+        buffer.clear();
+        freeBuffers.offer(buffer);
+    }
+
+
+    /**
+     * Gets the number of access log entries that were dropped because the
+     * writer fell behind.
+     */
+    public long getDroppedEntries() {
+        return droppedEntries.get();
+    }
+
+
+    /**
+     * Gets the number of times a request thread found no room to hand over
+     * a full buffer to the writer.
+     */
+    public long getBackpressureEvents() {
+        return backpressureEvents.get();
+    }
+
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        while (true) {
+            int allocated = allocatedBuffers.get();
+            if (allocated >= maxBuffers) {
+                return freeBuffers.poll();
+            }
+            if (allocatedBuffers.compareAndSet(allocated, allocated + 1)) {
+                return ByteBuffer.allocate(bufferSize);
+            }
+        }
+    }
+
+
+    /**
+     * A stripe, guarded by its own monitor.
+     */
+    private static final class Stripe {
+
+        private final CharsetEncoder encoder;
+
+        private ByteBuffer buffer;
+
+        Stripe(Charset charset) {
+            encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        /**
+         * Encodes the entry into the stripe buffer, leaving both unchanged
+         * if the entry does not fit.
+         */
+        boolean encode(CharBuffer entry) {
+            int entryPos = entry.position();
+            int bufferPos = buffer.position();
+            encoder.reset();
+            CoderResult result = encoder.encode(entry, buffer, true);
+            if (!result.isOverflow()) {
+                result = encoder.flush(buffer);
+            }
+            if (result.isOverflow()) {
+                entry.position(entryPos);
+                buffer.position(bufferPos);
+                return false;
+            }
+            return true;
+        }
+    }
+
+
+    /**
+     * Bounded multi-producer, single-consumer ring of buffers.
+     */
+    private static final class Ring {
+
+        private final AtomicReferenceArray<ByteBuffer> slots;
+
+        private final int mask;
+
+        private final AtomicLong tail = new AtomicLong();
+
+        private volatile long head;
+
+        Ring(int minCapacity) {
+            int capacity = Integer.highestOneBit(minCapacity - 1) << 1;
+            slots = new AtomicReferenceArray<ByteBuffer>(capacity);
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        boolean offer(ByteBuffer buffer) {
+            while (true) {
+                long t = tail.get();
+                if (t - head > mask) {
+                    return false;
+                }
+                if (tail.compareAndSet(t, t + 1)) {
+                    slots.lazySet((int) t & mask, buffer);
+                    return true;
+                }
+            }
+        }
+
+        ByteBuffer poll() {
+            long h = head;
+            int index = (int) h & mask;
+            ByteBuffer buffer = slots.get(index);
+            if (buffer == null) {
+                return null;
+            }
+            slots.lazySet(index, null);
+            head = h + 1;
+            return buffer;
+        }
+    }
+}
@@ -60,6 +60,12 @@ public final class PersistenceType {
     public static final PersistenceType FILE =
         new PersistenceType("file");
 
+    /**
+     * Off-heap persistence for idle sessions.
+     */
+    public static final PersistenceType OFFHEAP =
+        new PersistenceType("offheap");
+
     /**
      * Cookie-based persistence
      */
@@ -160,6 +166,8 @@ public final class PersistenceType {
                 pType = MEMORY;            
             else if (type.equalsIgnoreCase(FILE.getType()))
                 pType = FILE;
+            else if (type.equalsIgnoreCase(OFFHEAP.getType()))
+                pType = OFFHEAP;
             else if (type.equalsIgnoreCase(COOKIE.getType()))
                 pType = COOKIE;
             else if (type.equalsIgnoreCase(CUSTOM.getType()))
@@ -1571,4 +1571,23 @@ public class LogFacade {
         message = "Exception getting Validator Factory from JNDI: {0}",
         level = "WARNING")
     public static final String EXCEPTION_GETTING_VALIDATOR_FACTORY = prefix + "00285";
+
+    @LogMessageInfo(
+            message = "{0} access log entries have been dropped since the access log writer fell behind ({1} backpressure events)",
+            level = "WARNING",
+            cause = "Access log entries are produced faster than they can be written to the access log file",
+            action = "Check the disk holding the access log, or increase the access log buffer size")
+    public static final String ACCESS_LOG_ENTRIES_DROPPED = prefix + "00286";
+
+    @LogMessageInfo(
+            message = "Invalid value {1} for cache property {0}; using the default value {2}",
+            level = "WARNING",
+            cause = "The value of the cache property is not a number",
+            action = "Correct the value of the cache property")
+    public static final String CACHE_MANAGER_INVALID_PROPERTY = prefix + "00287";
+
+    @LogMessageInfo(
+            message = "Enabling off-heap persistence for web module [{0}]''s idle sessions",
+            level = "INFO")
+    public static final String OFF_HEAP_PERSISTENCE = prefix + "00288";
 }
@@ -40,6 +40,7 @@
 
 package org.glassfish.admin.monitor.jvm;
 
+import com.sun.enterprise.loader.ASURLClassLoader;
 import java.lang.management.ClassLoadingMXBean;
 import java.lang.management.ManagementFactory;
 import org.glassfish.external.statistics.CountStatistic;
@@ -65,6 +66,14 @@ public class JVMClassLoadingStatsProvider {
             "Total number of classes that have been loaded since the Java virtual machine has started execution");
     private CountStatisticImpl unloadedClassCount = new CountStatisticImpl("UnLoadedClassCount", CountStatisticImpl.UNIT_COUNT,
             "Total number of classes unloaded since the Java virtual machine has started execution");
+    private CountStatisticImpl indexBuildTime = new CountStatisticImpl("IndexBuildTime", CountStatisticImpl.UNIT_MILLISECOND,
+            "Total time spent indexing the repositories of application class loaders");
+    private CountStatisticImpl indexBuildCount = new CountStatisticImpl("IndexBuildCount", CountStatisticImpl.UNIT_COUNT,
+            "Number of repository indexes built by application class loaders");
+    private CountStatisticImpl indexLookupCount = new CountStatisticImpl("IndexLookupCount", CountStatisticImpl.UNIT_COUNT,
+            "Number of class and resource lookups served by application class loader indexes");
+    private CountStatisticImpl indexProbeCount = new CountStatisticImpl("IndexProbeCount", CountStatisticImpl.UNIT_COUNT,
+            "Number of repositories searched by the lookups served by application class loader indexes");
 
     @ManagedAttribute(id="loadedclass-count")
     @Description( "number of classes currently loaded in the JVM" )
@@ -86,4 +95,32 @@ public class JVMClassLoadingStatsProvider {
         unloadedClassCount.setCount(clBean.getUnloadedClassCount());
         return unloadedClassCount;
     }
+
+    @ManagedAttribute(id="indexbuildtime-count")
+    @Description( "total time spent indexing the repositories of application class loaders" )
+    public CountStatistic getIndexBuildTime() {
+        indexBuildTime.setCount(ASURLClassLoader.getIndexBuildTime());
+        return indexBuildTime;
+    }
+
+    @ManagedAttribute(id="indexbuild-count")
+    @Description( "number of repository indexes built by application class loaders" )
+    public CountStatistic getIndexBuildCount() {
+        indexBuildCount.setCount(ASURLClassLoader.getIndexBuildCount());
+        return indexBuildCount;
+    }
+
+    @ManagedAttribute(id="indexlookup-count")
+    @Description( "number of lookups served by application class loader indexes" )
+    public CountStatistic getIndexLookupCount() {
+        indexLookupCount.setCount(ASURLClassLoader.getIndexLookupCount());
+        return indexLookupCount;
+    }
+
+    @ManagedAttribute(id="indexprobe-count")
+    @Description( "number of repositories searched by the indexed lookups" )
+    public CountStatistic getIndexProbeCount() {
+        indexProbeCount.setCount(ASURLClassLoader.getIndexProbeCount());
+        return indexProbeCount;
+    }
 }
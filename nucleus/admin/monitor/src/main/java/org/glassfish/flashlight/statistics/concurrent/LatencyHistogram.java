@@ -0,0 +1,268 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package org.glassfish.flashlight.statistics.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-size, lock-free latency histogram in the style of HdrHistogram.
+ * <p>
+ * Values below 32 are counted exactly. Above that, each power of two is
+ * split into 32 linear sub-buckets, so a recorded value is reported with a
+ * relative error of at most 1/32 (about 3%). Values above the highest
+ * trackable value are counted in the last bucket.
+ * <p>
+ * Like a {@link java.util.concurrent.atomic.LongAdder}, the counts are
+ * striped: each thread records into one of up to {@link #MAX_STRIPES}
+ * bucket arrays, chosen by its thread id, so threads hitting the same hot
+ * bucket mostly update different cells. A stripe is only allocated the first
+ * time a thread maps to it. Once allocated, recording a value is a single
+ * atomic increment and never allocates. Reads sum the stripes.
+ * <p>
+ * Histograms with the same highest trackable value can be merged, e.g. to
+ * aggregate per-application histograms into a server-wide one.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    static final int MAX_STRIPES = 8;
+    private static final int STRIPES;
+
+    static {
+        int n = 1;
+        int cpus = Runtime.getRuntime().availableProcessors();
+        while (n < cpus && n < MAX_STRIPES) {
+            n <<= 1;
+        }
+        STRIPES = n;
+    }
+
+    private final long highestTrackableValue;
+    private final int bucketCount;
+    private final AtomicReferenceArray<AtomicLongArray> stripes =
+            new AtomicReferenceArray<AtomicLongArray>(STRIPES);
+
+    /**
+     * Creates a histogram covering the whole positive <code>long</code>
+     * range (1888 buckets per stripe).
+     */
+    public LatencyHistogram() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a histogram for values up to <code>highestTrackableValue</code>.
+     * A tighter bound needs fewer buckets, e.g. one hour in milliseconds
+     * needs 567.
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        if (highestTrackableValue < 1) {
+            throw new IllegalArgumentException(
+                    "highestTrackableValue must be positive: " + highestTrackableValue);
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.bucketCount = indexOf(highestTrackableValue) + 1;
+    }
+
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    /**
+     * Counts one occurrence of <code>value</code>. Negative values are
+     * counted as 0.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > highestTrackableValue) {
+            value = highestTrackableValue;
+        }
+        stripe().incrementAndGet(indexOf(value));
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts != null) {
+                for (int i = 0; i < bucketCount; i++) {
+                    total += counts.get(i);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the value at the given percentile, e.g. 99.9 for p999. The
+     * result is the highest value that falls in the same bucket as the
+     * requested rank, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException(
+                    "percentile must be between 0 and 100: " + percentile);
+        }
+        long[] snapshot = new long[bucketCount];
+        long total = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts != null) {
+                for (int i = 0; i < bucketCount; i++) {
+                    long count = counts.get(i);
+                    snapshot[i] += count;
+                    total += count;
+                }
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), highestTrackableValue);
+            }
+        }
+        return highestTrackableValue;
+    }
+
+    /**
+     * Adds the counts of <code>other</code> to this histogram.
+     *
+     * @throws IllegalArgumentException if the histograms have different
+     * highest trackable values
+     */
+    public void add(LatencyHistogram other) {
+        if (other.highestTrackableValue != highestTrackableValue) {
+            throw new IllegalArgumentException("Cannot merge a histogram tracking values up to "
+                    + other.highestTrackableValue + " into one tracking values up to "
+                    + highestTrackableValue);
+        }
+        AtomicLongArray target = null;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = other.stripes.get(s);
+            if (counts == null) {
+                continue;
+            }
+            for (int i = 0; i < bucketCount; i++) {
+                long count = counts.get(i);
+                if (count != 0) {
+                    if (target == null) {
+                        target = stripe();
+                    }
+                    target.addAndGet(i, count);
+                }
+            }
+        }
+    }
+
+    public void reset() {
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts != null) {
+                for (int i = 0; i < bucketCount; i++) {
+                    counts.set(i, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the count and main percentiles, for publishing the histogram
+     * as a <code>StringStatistic</code>, e.g.
+     * "count=120; p50=3; p90=7; p99=18; p999=40"
+     */
+    @Override
+    public String toString() {
+        return "count=" + getTotalCount()
+                + "; p50=" + getValueAtPercentile(50.0)
+                + "; p90=" + getValueAtPercentile(90.0)
+                + "; p99=" + getValueAtPercentile(99.0)
+                + "; p999=" + getValueAtPercentile(99.9);
+    }
+
+    private AtomicLongArray stripe() {
+        long id = Thread.currentThread().getId();
+        // spread consecutive thread ids over the stripes
+        int s = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1);
+        AtomicLongArray counts = stripes.get(s);
+        if (counts == null) {
+            stripes.compareAndSet(s, null, new AtomicLongArray(bucketCount));
+            counts = stripes.get(s);
+        }
+        return counts;
+    }
+
+    /*
+     * Values below SUB_BUCKET_COUNT map to themselves. A larger value with
+     * its highest bit at position e is shifted right by e - SUB_BUCKET_BITS,
+     * which leaves a sub-bucket number in [SUB_BUCKET_COUNT,
+     * 2 * SUB_BUCKET_COUNT), and each extra shift moves the value up by one
+     * band of SUB_BUCKET_COUNT buckets.
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        long highest = ((subBucket + 1) << shift) - 1;
+        // the top bucket of the long range would overflow
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package org.glassfish.flashlight.statistics.concurrent;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.glassfish.external.statistics.CountStatistic;
+import org.glassfish.external.statistics.impl.StatisticImpl;
+
+/**
+ * A {@link CountStatistic} that can be updated from many threads without
+ * locking, for use in place of
+ * {@link org.glassfish.external.statistics.impl.CountStatisticImpl}, whose
+ * methods all synchronize on the statistic.
+ * <p>
+ * The count is kept in a {@link LongAdder}, so concurrent increments go to
+ * different cells instead of contending on one lock or one field. Reading
+ * the count sums the cells. The last sample time is only written when the
+ * clock has moved on, so most updates do not touch a shared field at all.
+ */
+public class StripedCountStatistic extends StatisticImpl implements CountStatistic {
+
+    private final LongAdder count = new LongAdder();
+    private volatile long lastSampleTime = -1L;
+
+    public StripedCountStatistic(String name, String unit, String desc) {
+        super(name, unit, desc);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Replaces the count. Meant for statistics that publish a value computed
+     * elsewhere, e.g. from a getter. The count moves from the old to the new
+     * value in one step, so readers never see an intermediate value.
+     * Concurrent calls are serialized; an increment racing with this call
+     * may be absorbed by it.
+     */
+    public synchronized void setCount(long value) {
+        count.add(value - count.sum());
+        sampled();
+    }
+
+    public void increment() {
+        count.increment();
+        sampled();
+    }
+
+    public void increment(long delta) {
+        count.add(delta);
+        sampled();
+    }
+
+    public void decrement() {
+        count.decrement();
+        sampled();
+    }
+
+    @Override
+    public long getLastSampleTime() {
+        return lastSampleTime;
+    }
+
+    @Override
+    public synchronized void reset() {
+        super.reset();
+        count.reset();
+        lastSampleTime = -1L;
+    }
+
+    @Override
+    public synchronized Map getStaticAsMap() {
+        sampleTime = lastSampleTime;
+        Map m = super.getStaticAsMap();
+        m.put("count", getCount());
+        return m;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + NEWLINE + "Count: " + getCount();
+    }
+
+    private void sampled() {
+        long now = System.currentTimeMillis();
+        if (now != lastSampleTime) {
+            lastSampleTime = now;
+        }
+    }
+}
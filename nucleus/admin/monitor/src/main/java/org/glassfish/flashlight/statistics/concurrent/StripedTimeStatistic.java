@@ -0,0 +1,180 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package org.glassfish.flashlight.statistics.concurrent;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.glassfish.external.statistics.TimeStatistic;
+import org.glassfish.external.statistics.impl.StatisticImpl;
+
+/**
+ * A {@link TimeStatistic} that can be updated from many threads without
+ * locking, for use in place of
+ * {@link org.glassfish.external.statistics.impl.TimeStatisticImpl}.
+ * <p>
+ * Count and total time are {@link LongAdder}s and the minimum and maximum
+ * are {@link LongAccumulator}s. Every sample is also recorded in a
+ * {@link LatencyHistogram}, so the statistic can report percentiles. The
+ * p50, p99 and p999 values are added to {@link #getStaticAsMap()}, which
+ * is what the REST interface and the monitoring reporter print, without
+ * changing the {@link TimeStatistic} methods callers already use.
+ */
+public class StripedTimeStatistic extends StatisticImpl implements TimeStatistic {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+    private final LongAccumulator maxTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private final LongAccumulator minTime = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LatencyHistogram histogram;
+    private volatile long lastSampleTime = -1L;
+
+    public StripedTimeStatistic(String name, String unit, String desc) {
+        this(name, unit, desc, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param highestTrackableValue the largest time the percentile histogram
+     * has to tell apart; see {@link LatencyHistogram#LatencyHistogram(long)}
+     */
+    public StripedTimeStatistic(String name, String unit, String desc,
+            long highestTrackableValue) {
+        super(name, unit, desc);
+        histogram = new LatencyHistogram(highestTrackableValue);
+    }
+
+    /**
+     * Adds one sample of the given duration.
+     */
+    public void incrementCount(long time) {
+        count.increment();
+        totalTime.add(time);
+        maxTime.accumulate(time);
+        minTime.accumulate(time);
+        histogram.record(time);
+
+        long now = System.currentTimeMillis();
+        if (now != lastSampleTime) {
+            lastSampleTime = now;
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getMaxTime() {
+        long max = maxTime.get();
+        return max == Long.MIN_VALUE ? 0L : max;
+    }
+
+    @Override
+    public long getMinTime() {
+        long min = minTime.get();
+        return min == Long.MAX_VALUE ? 0L : min;
+    }
+
+    @Override
+    public long getTotalTime() {
+        return totalTime.sum();
+    }
+
+    /**
+     * @param percentile between 0 and 100, e.g. 99.9
+     * @return the time below which the given percentage of samples fall,
+     * within the histogram's precision, or 0 if there are no samples
+     */
+    public long getPercentile(double percentile) {
+        return histogram.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * The underlying histogram, e.g. for merging into an aggregate.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public long getLastSampleTime() {
+        return lastSampleTime;
+    }
+
+    @Override
+    public synchronized void reset() {
+        super.reset();
+        count.reset();
+        totalTime.reset();
+        maxTime.reset();
+        minTime.reset();
+        histogram.reset();
+        lastSampleTime = -1L;
+    }
+
+    @Override
+    public synchronized Map getStaticAsMap() {
+        sampleTime = lastSampleTime;
+        Map m = super.getStaticAsMap();
+        m.put("count", getCount());
+        m.put("maxtime", getMaxTime());
+        m.put("mintime", getMinTime());
+        m.put("totaltime", getTotalTime());
+        m.put("p50time", getPercentile(50.0));
+        m.put("p99time", getPercentile(99.0));
+        m.put("p999time", getPercentile(99.9));
+        return m;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + NEWLINE
+                + "Count: " + getCount() + NEWLINE
+                + "MinTime: " + getMinTime() + NEWLINE
+                + "MaxTime: " + getMaxTime() + NEWLINE
+                + "TotalTime: " + getTotalTime() + NEWLINE
+                + "P50Time: " + getPercentile(50.0) + NEWLINE
+                + "P99Time: " + getPercentile(99.0) + NEWLINE
+                + "P999Time: " + getPercentile(99.9);
+    }
+}
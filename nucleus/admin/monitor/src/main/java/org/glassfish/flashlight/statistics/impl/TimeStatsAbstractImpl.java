@@ -42,9 +42,7 @@ package org.glassfish.flashlight.statistics.impl;
 
 import org.glassfish.flashlight.datatree.impl.AbstractTreeNode;
 import org.glassfish.flashlight.statistics.*;
-import org.glassfish.flashlight.statistics.factory.AverageFactory;
-
-import java.util.concurrent.atomic.AtomicLong;
+import org.glassfish.flashlight.statistics.concurrent.StripedTimeStatistic;
 
 /**
  * @author Harpreet Singh
@@ -52,34 +50,25 @@ import java.util.concurrent.atomic.AtomicLong;
 public abstract class TimeStatsAbstractImpl extends AbstractTreeNode
         implements TimeStats {
 
-    private Average average = AverageFactory.createAverage();
-
+    // lock-free; also keeps a histogram for getPercentile()
+    private final StripedTimeStatistic samples =
+            new StripedTimeStatistic("TimeStats", "", "");
 
-    private AtomicLong lastSampleTime = new AtomicLong(0);
+    private volatile long lastSampleTime = 0;
     protected long startTime = 0;
 
-    private ThreadLocalTimeStatData individualData = new ThreadLocalTimeStatData();
-
-    private static class ThreadLocalTimeStatData extends ThreadLocal<TimeStatData> {
-
-        private TimeStatData tsd;
-
-        protected TimeStatData initialValue (){
-            tsd = new TimeStatData ();
-            return tsd;
+    private final ThreadLocal<TimeStatData> individualData = new ThreadLocal<TimeStatData>() {
+        @Override
+        protected TimeStatData initialValue() {
+            return new TimeStatData();
         }
-        public TimeStatData get (){
-            if (tsd == null)
-                tsd = new TimeStatData();
-            return tsd;
-        }
-        
-    }
+    };
 
     protected static final String NEWLINE = System.getProperty("line.separator");
 
     public double getTime() {
-        return average.getAverage();
+        long count = samples.getCount();
+        return count == 0 ? 0 : (double) samples.getTotalTime() / count;
     }
 
     abstract public void entry();
@@ -97,31 +86,40 @@ public abstract class TimeStatsAbstractImpl extends AbstractTreeNode
     public void postExit(long exitTime) {
         TimeStatData tsd = individualData.get();
         tsd.setExitTime(exitTime);
-        average.addDataPoint(tsd.getTotalTime());
+        samples.incrementCount(tsd.getTotalTime());
     }
 
     public long getMinimumTime() {
-        return average.getMin();
+        return samples.getMinTime();
     }
 
     public long getMaximumTime() {
-        return average.getMax();
+        return samples.getMaxTime();
+    }
+
+    /**
+     * @param percentile between 0 and 100, e.g. 99.9
+     * @return the time below which the given percentage of the measured
+     * calls completed, within about 3%
+     */
+    public long getPercentile(double percentile) {
+        return samples.getPercentile(percentile);
     }
 
     // only for testing purposes.
     public void setTime(long time) {
         //  System.err.println ("setTime only for Testing purposes");
         individualData.get().setTotalTime(time);
-        average.addDataPoint(time);
+        samples.incrementCount(time);
     }
 
     public void setReset(boolean reset) {
-        average.setReset();
+        samples.reset();
         individualData.get().setReset();
     }
 
     public long getTimesCalled() {
-        return average.getSize();
+        return samples.getCount();
     }
     // Implementations for TimeStatistic
     public long getCount() {
@@ -137,11 +135,11 @@ public abstract class TimeStatsAbstractImpl extends AbstractTreeNode
     }
 
     public long getTotalTime() {
-        return average.getTotal();
+        return samples.getTotalTime();
     }
 
     public long getLastSampleTime() {
-        return this.lastSampleTime.get();
+        return this.lastSampleTime;
     }
 
     public long getStartTime() {
@@ -149,7 +147,10 @@ public abstract class TimeStatsAbstractImpl extends AbstractTreeNode
     }
 
     private void setLastSampleTime(long time) {
-        this.lastSampleTime.set(time);
+        // skip the shared write when nothing changed
+        if (time != lastSampleTime) {
+            this.lastSampleTime = time;
+        }
     }
 
     private static class TimeStatData {
@@ -0,0 +1,193 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package org.glassfish.flashlight.statistics.concurrent;
+
+import java.util.Map;
+import org.glassfish.external.statistics.impl.StatisticImpl;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long v = 0; v < 32; v++) {
+            assertEquals(v, LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(v)));
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguousAndWithinThreePercent() {
+        long previous = -1;
+        for (int i = 0; i <= LatencyHistogram.indexOf(Long.MAX_VALUE); i++) {
+            long highest = LatencyHistogram.highestValueOf(i);
+            assertTrue(highest > previous);
+            assertEquals(i, LatencyHistogram.indexOf(previous + 1));
+            assertEquals(i, LatencyHistogram.indexOf(highest));
+            assertTrue(highest - (previous + 1) <= (previous + 1) / 32);
+            previous = highest;
+        }
+        assertEquals(Long.MAX_VALUE, previous);
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram h = new LatencyHistogram(3600000L);
+        assertEquals(0, h.getValueAtPercentile(99.0));
+        for (long v = 1; v <= 1000; v++) {
+            h.record(v);
+        }
+        assertEquals(1000, h.getTotalCount());
+        assertWithin(500, h.getValueAtPercentile(50.0));
+        assertWithin(990, h.getValueAtPercentile(99.0));
+        assertWithin(999, h.getValueAtPercentile(99.9));
+        assertWithin(1000, h.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped() {
+        LatencyHistogram h = new LatencyHistogram(1000L);
+        h.record(-5);
+        h.record(1000000);
+        assertEquals(0, h.getValueAtPercentile(50.0));
+        assertEquals(1000, h.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void addAndReset() {
+        LatencyHistogram a = new LatencyHistogram(1000L);
+        LatencyHistogram b = new LatencyHistogram(1000L);
+        a.record(10);
+        b.record(20);
+        b.record(20);
+        a.add(b);
+        assertEquals(3, a.getTotalCount());
+        assertEquals(20, a.getValueAtPercentile(50.0));
+        a.reset();
+        assertEquals(0, a.getTotalCount());
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final LatencyHistogram h = new LatencyHistogram(1000L);
+        Thread[] threads = new Thread[2 * LatencyHistogram.MAX_STRIPES];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        h.record(7);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(threads.length * 10000L, h.getTotalCount());
+        assertEquals(7, h.getValueAtPercentile(99.9));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addRejectsDifferentRanges() {
+        new LatencyHistogram(1000L).add(new LatencyHistogram(2000L));
+    }
+
+    @Test
+    public void timeStatistic() {
+        StripedTimeStatistic ts = new StripedTimeStatistic("Test",
+                StatisticImpl.UNIT_MILLISECOND, "test");
+        assertEquals(0, ts.getMinTime());
+        assertEquals(0, ts.getMaxTime());
+        assertEquals(-1L, ts.getLastSampleTime());
+        ts.incrementCount(5);
+        ts.incrementCount(15);
+        assertEquals(2, ts.getCount());
+        assertEquals(5, ts.getMinTime());
+        assertEquals(15, ts.getMaxTime());
+        assertEquals(20, ts.getTotalTime());
+        assertTrue(ts.getLastSampleTime() > 0);
+
+        Map m = ts.getStaticAsMap();
+        assertEquals(2L, m.get("count"));
+        assertEquals(15L, m.get("p99time"));
+        assertEquals(ts.getLastSampleTime(), m.get("lastsampletime"));
+
+        ts.reset();
+        assertEquals(0, ts.getCount());
+        assertEquals(0, ts.getMaxTime());
+        assertEquals(0, ts.getPercentile(50.0));
+    }
+
+    @Test
+    public void countStatistic() throws InterruptedException {
+        final StripedCountStatistic cs = new StripedCountStatistic("Test",
+                StatisticImpl.UNIT_COUNT, "test");
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        cs.increment();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(40000, cs.getCount());
+        assertEquals(40000L, cs.getStaticAsMap().get("count"));
+        cs.setCount(7);
+        assertEquals(7, cs.getCount());
+        cs.reset();
+        assertEquals(0, cs.getCount());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 32);
+    }
+}
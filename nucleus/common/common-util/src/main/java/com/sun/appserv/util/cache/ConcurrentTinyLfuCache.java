@@ -0,0 +1,796 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.appserv.util.cache;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrentTinyLfuCache -- in-memory cache bounded by the number of entries
+ * and, if the MaxSize property is given as for BoundedMultiLruCache, by the
+ * size in bytes of the cached values.
+ *
+ * Lookups do not take any lock. Entries are kept in a ConcurrentHashMap and
+ * accesses are recorded into striped, lossy read buffers, which are replayed
+ * against the replacement policy under the eviction lock by whichever thread
+ * fills a buffer or performs a write. Writes update the map and the policy
+ * under the eviction lock.
+ *
+ * The replacement policy follows W-TinyLFU: new entries go through a small
+ * LRU admission window; an entry leaving the window competes with the least
+ * recently used entry of the main space, which is a segmented LRU, and only
+ * the one accessed more often according to a frequency sketch is kept.
+ *
+ * The refresh support (<code>waitRefresh</code>, <code>notifyRefresh</code>)
+ * and the monitoring of BaseCache are retained, so the cache can be used
+ * wherever a cache class name is configurable, and exposed through
+ * <code>JmxBaseCacheMBean</code>.
+ */
+public class ConcurrentTinyLfuCache extends BaseCache {
+
+    // share of maxEntries reserved for the admission window, in percent
+    private static final int WINDOW_PERCENT = 1;
+
+    // share of the main space reserved for the protected segment, in percent
+    private static final int PROTECTED_PERCENT = 80;
+
+    private static final int READ_BUFFER_SIZE = 32;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    // queues a node may be linked into
+    private static final int NONE = 0;
+    private static final int WINDOW = 1;
+    private static final int PROBATION = 2;
+    private static final int PROTECTED = 3;
+
+    // upper bound on the cache size
+    protected long maxSize = Constants.DEFAULT_MAX_CACHE_SIZE;
+    protected volatile long currentSize;
+
+    private ConcurrentHashMap<Object, Node> map;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private ReadBuffer[] readBuffers;
+    private FrequencySketch sketch;
+
+    // policy queues, guarded by the eviction lock
+    private final Node window = new Node(null, 0, null);
+    private final Node probation = new Node(null, 0, null);
+    private final Node protectedSegment = new Node(null, 0, null);
+    private int windowCount;
+    private int protectedCount;
+    private int windowMax;
+    private int protectedMax;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile long evictionCount;
+    private volatile long rejectionCount;
+
+    /**
+     * initialize the cache
+     * @param maxEntries maximum number of entries expected in the cache
+     * @param loadFactor the load factor
+     * @param props opaque list of properties for a given cache implementation
+     */
+    public void init(int maxEntries, float loadFactor, Properties props) {
+        super.init(maxEntries, loadFactor, props);
+
+        if (props != null && props.getProperty("MaxSize") != null) {
+            maxSize = BoundedMultiLruCache.parseMaxSize(
+                                        props.getProperty("MaxSize"));
+        }
+
+        windowMax = Math.max(1, (int) ((long) this.maxEntries * WINDOW_PERCENT / 100));
+        protectedMax = (int) ((long) (this.maxEntries - windowMax) * PROTECTED_PERCENT / 100);
+
+        map = new ConcurrentHashMap<Object, Node>(
+                        Math.min(this.maxEntries, Constants.DEFAULT_MAX_ENTRIES));
+        sketch = new FrequencySketch(this.maxEntries);
+
+        int n = Integer.highestOneBit(
+            Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        readBuffers = new ReadBuffer[n];
+        for (int i = 0; i < n; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+
+        window.prev = window.next = window;
+        probation.prev = probation.next = probation;
+        protectedSegment.prev = protectedSegment.next = protectedSegment;
+        currentSize = 0;
+    }
+
+    /**
+     * get the item stored at the key.
+     * @param key lookup key
+     * @returns the item stored at the key; null if not found.
+     */
+    public Object get(Object key) {
+        return get(hash(key), key);
+    }
+
+    /**
+     * get the item stored at the given pre-computed hash code and the key.
+     * @param key lookup key
+     * @returns the item stored at the key; null if not found.
+     */
+    public Object get(int hashCode, Object key) {
+        Node node = map.get(key);
+        if (node == null) {
+            misses.increment();
+            return loadValue(key, hashCode);
+        }
+
+        hits.increment();
+        recordAccess(node);
+        return node.values.value;
+    }
+
+    /**
+     * get all the items stored at the key.
+     * @param key lookup key
+     * @returns an Iterator over the items with the given key.
+     */
+    public Iterator getAll(Object key) {
+        ArrayList valueList = new ArrayList();
+        Node node = map.get(key);
+        if (node != null) {
+            for (Value v = node.values; v != null; v = v.next) {
+                hits.increment();
+                valueList.add(v.value);
+            }
+            recordAccess(node);
+        }
+        return valueList.iterator();
+    }
+
+    /**
+     * get an Iterator for the keys stored in the cache
+     * @returns an Iterator
+     */
+    public Iterator keys() {
+        return new ArrayList(map.keySet()).iterator();
+    }
+
+    /**
+     * get an Enumeration for the keys stored in the cache
+     * @returns an Enumeration
+     */
+    public Enumeration elements() {
+        return new Vector(map.keySet()).elements();
+    }
+
+    /**
+     * get an Iterator for the values stored in the cache
+     * @returns an Iterator
+     */
+    public Iterator values() {
+        ArrayList valueList = new ArrayList(map.size());
+        for (Node node : map.values()) {
+            for (Value v = node.values; v != null; v = v.next) {
+                valueList.add(v.value);
+            }
+        }
+        return valueList.iterator();
+    }
+
+    /**
+     * cache the given value at the specified key and return previous value
+     * @param hashCode previously computed hashCode for the key
+     * @param key lookup key
+     * @param object item value to be stored
+     * @param size in bytes of the value being cached
+     * @param addValue treate this operation to add (default is to replace)
+     * @returns the previous item stored at the key; null if not found.
+     */
+    protected Object _put(int hashCode, Object key,
+                            Object value, int size, boolean addValue) {
+        Object oldValue = null;
+        boolean added = true;
+        List<Node> evicted;
+
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+
+            Node node = map.get(key);
+            if (node == null) {
+                node = new Node(key, hashCode, new Value(value, size, null));
+                node.weight = weightOf(size);
+                map.put(key, node);
+                link(window, node, WINDOW);
+                windowCount++;
+                currentSize += node.weight;
+                sketch.increment(hashCode);
+            } else if (addValue) {
+                node.values = new Value(value, size, node.values);
+                node.weight += weightOf(size);
+                currentSize += weightOf(size);
+                onAccess(node);
+            } else {
+                Value head = node.values;
+                oldValue = head.value;
+                node.values = new Value(value, size, head.next);
+                long delta = weightOf(size) - weightOf(head.size);
+                node.weight += delta;
+                currentSize += delta;
+                onAccess(node);
+                added = false;
+            }
+
+            if (added) {
+                incrementEntryCount();
+                incrementAddCount();
+            } else {
+                incrementRefreshCount();
+            }
+
+            evicted = evict();
+        } finally {
+            evictionLock.unlock();
+        }
+
+        notifyTrimmed(evicted);
+        return oldValue;
+    }
+
+    /**
+     * remove the item stored at the key.
+     * @param hashCode a precomputed hashCode
+     * @param key lookup key
+     * @param value of the item to be matched 
+     * @returns the item stored at the key; null if not found.
+     */
+    protected CacheItem _remove(int hashCode, Object key, Object value) {
+        Value removed = null;
+
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+
+            Node node = map.get(key);
+            if (node != null) {
+                Value prev = null;
+                for (Value v = node.values; v != null; v = v.next) {
+                    if (value == null || value == v.value) {
+                        removed = v;
+                        break;
+                    }
+                    prev = v;
+                }
+
+                if (removed != null) {
+                    // rebuild the values preceding the removed one
+                    Value values = removed.next;
+                    if (prev != null) {
+                        ArrayList<Value> preceding = new ArrayList<Value>();
+                        for (Value v = node.values; v != removed; v = v.next) {
+                            preceding.add(v);
+                        }
+                        for (int i = preceding.size() - 1; i >= 0; i--) {
+                            Value v = preceding.get(i);
+                            values = new Value(v.value, v.size, values);
+                        }
+                    }
+
+                    node.weight -= weightOf(removed.size);
+                    currentSize -= weightOf(removed.size);
+                    if (values == null) {
+                        map.remove(key, node);
+                        unlink(node);
+                    } else {
+                        node.values = values;
+                    }
+                    decrementEntryCount();
+                    incrementRemovalCount();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+
+        if (removed != null) {
+            hits.increment();
+            return createItem(hashCode, key, removed.value, removed.size);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * remove all the item with the given key.
+     * @param key lookup key
+     */
+    public void removeAll(Object key) {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+
+            Node node = map.remove(key);
+            if (node != null) {
+                removeNode(node);
+                for (Value v = node.values; v != null; v = v.next) {
+                    incrementRemovalCount();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * clear all the entries from the cache.
+     * @returns the number of entries cleared from the cache
+     */
+    public int clear() {
+        int count = 0;
+
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+
+            Iterator<Node> it = map.values().iterator();
+            while (it.hasNext()) {
+                Node node = it.next();
+                it.remove();
+                count += removeNode(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+
+        return count;
+    }
+
+    /**
+     * get the desired statistic counter
+     * @param key to corresponding stat
+     * @return an Object corresponding to the stat
+     * See also: Constant.java for the key
+     */
+    public Object getStatByName(String key) {
+        if (key == null)
+            return null;
+
+        if (key.equals(Constants.STAT_BASECACHE_HIT_COUNT))
+            return Integer.valueOf(hits.intValue());
+        else if (key.equals(Constants.STAT_BASECACHE_MISS_COUNT))
+            return Integer.valueOf(misses.intValue());
+        else if (key.equals(Constants.STAT_TINYLFUCACHE_CURRENT_SIZE))
+            return Long.valueOf(currentSize);
+        else if (key.equals(Constants.STAT_TINYLFUCACHE_MAX_SIZE)) {
+            if (maxSize == Constants.DEFAULT_MAX_CACHE_SIZE)
+                return Constants.STAT_DEFAULT;
+            else
+                return Long.valueOf(maxSize);
+        } else if (key.equals(Constants.STAT_TINYLFUCACHE_EVICTION_COUNT))
+            return Long.valueOf(evictionCount);
+        else if (key.equals(Constants.STAT_TINYLFUCACHE_REJECTION_COUNT))
+            return Long.valueOf(rejectionCount);
+
+        return super.getStatByName(key);
+    }
+
+    /**
+     * get the stats snapshot
+     * @return a Map of stats
+     * See also: Constant.java for the keys
+     */
+    public Map getStats() {
+        Map stats = super.getStats();
+
+        stats.put(Constants.STAT_BASECACHE_HIT_COUNT,
+                  Integer.valueOf(hits.intValue()));
+        stats.put(Constants.STAT_BASECACHE_MISS_COUNT,
+                  Integer.valueOf(misses.intValue()));
+        stats.put(Constants.STAT_TINYLFUCACHE_CURRENT_SIZE,
+                  Long.valueOf(currentSize));
+        if (maxSize == Constants.DEFAULT_MAX_CACHE_SIZE) {
+            stats.put(Constants.STAT_TINYLFUCACHE_MAX_SIZE,
+                      Constants.STAT_DEFAULT);
+        } else {
+            stats.put(Constants.STAT_TINYLFUCACHE_MAX_SIZE,
+                      Long.valueOf(maxSize));
+        }
+        stats.put(Constants.STAT_TINYLFUCACHE_EVICTION_COUNT,
+                  Long.valueOf(evictionCount));
+        stats.put(Constants.STAT_TINYLFUCACHE_REJECTION_COUNT,
+                  Long.valueOf(rejectionCount));
+
+        return stats;
+    }
+
+    /**
+     * clear the stats
+     */
+    public void clearStats() {
+        super.clearStats();
+        hits.reset();
+        misses.reset();
+        evictionCount = 0;
+        rejectionCount = 0;
+    }
+
+    /**
+     * record an access to the node, and replay the recorded accesses
+     * if the read buffer is full and nobody else holds the eviction lock
+     */
+    private void recordAccess(Node node) {
+        ReadBuffer buffer = readBuffers[
+            (int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+        if (buffer.offer(node) && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * replay the recorded accesses; eviction lock is held by the caller
+     */
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            buffer.drain(this);
+        }
+    }
+
+    /**
+     * the node was accessed; eviction lock is held by the caller
+     */
+    void onAccess(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                sketch.increment(node.hashCode);
+                unlink(node);
+                link(window, node, WINDOW);
+                break;
+            case PROBATION:
+                sketch.increment(node.hashCode);
+                unlink(node);
+                link(protectedSegment, node, PROTECTED);
+                protectedCount++;
+                while (protectedCount > protectedMax) {
+                    Node demoted = protectedSegment.next;
+                    unlink(demoted);
+                    protectedCount--;
+                    link(probation, demoted, PROBATION);
+                }
+                break;
+            case PROTECTED:
+                sketch.increment(node.hashCode);
+                unlink(node);
+                link(protectedSegment, node, PROTECTED);
+                protectedCount++;
+                break;
+            default:
+                // the node has been removed meanwhile
+                break;
+        }
+    }
+
+    /**
+     * move the entries overflowing the admission window into probation,
+     * and evict entries until the cache is within its bounds; eviction lock
+     * is held by the caller
+     * @return the evicted nodes; may be null
+     */
+    private List<Node> evict() {
+        while (windowCount > windowMax) {
+            Node node = window.next;
+            unlink(node);
+            link(probation, node, PROBATION);
+        }
+
+        List<Node> evicted = null;
+        while (entryCount > maxEntries || currentSize > maxSize) {
+            // candidates enter probation at its tail; victims are at its head
+            Node victim = probation.next;
+            Node candidate = probation.prev;
+            Node node;
+            if (victim != probation && victim != candidate) {
+                if (sketch.frequency(candidate.hashCode) >
+                        sketch.frequency(victim.hashCode)) {
+                    node = victim;
+                } else {
+                    node = candidate;
+                    rejectionCount++;
+                }
+            } else if (victim != probation) {
+                node = victim;
+            } else if (protectedSegment.next != protectedSegment) {
+                node = protectedSegment.next;
+            } else if (window.next != window) {
+                node = window.next;
+            } else {
+                break;
+            }
+
+            map.remove(node.key, node);
+            removeNode(node);
+            evictionCount++;
+
+            if (evicted == null) {
+                evicted = new ArrayList<Node>();
+            }
+            evicted.add(node);
+        }
+        return evicted;
+    }
+
+    /**
+     * unlink a node that has been removed from the map and release its
+     * entries; eviction lock is held by the caller
+     * @return the number of values the node held
+     */
+    private int removeNode(Node node) {
+        unlink(node);
+        currentSize -= node.weight;
+
+        int count = 0;
+        for (Value v = node.values; v != null; v = v.next) {
+            decrementEntryCount();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * notify the listeners of the trimmed entries
+     */
+    private void notifyTrimmed(List<Node> evicted) {
+        if (evicted == null) {
+            return;
+        }
+        for (Node node : evicted) {
+            for (Value v = node.values; v != null; v = v.next) {
+                for (int i = 0; i < listeners.size(); i++) {
+                    CacheListener listener = (CacheListener) listeners.get(i);
+                    listener.trimEvent(node.key, v.value);
+                }
+            }
+        }
+    }
+
+    private void link(Node queue, Node node, int queueType) {
+        node.prev = queue.prev;
+        node.next = queue;
+        queue.prev.next = node;
+        queue.prev = node;
+        node.queue = queueType;
+    }
+
+    private void unlink(Node node) {
+        switch (node.queue) {
+            case NONE:
+                return;
+            case WINDOW:
+                windowCount--;
+                break;
+            case PROTECTED:
+                protectedCount--;
+                break;
+            default:
+                break;
+        }
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+        node.queue = NONE;
+    }
+
+    private static long weightOf(int size) {
+        return (size > 0) ? size : 0;
+    }
+
+    /**
+     * an immutable list of the values cached at a key
+     */
+    static final class Value {
+        final Object value;
+        final int size;
+        final Value next;
+
+        Value(Object value, int size, Value next) {
+            this.value = value;
+            this.size = size;
+            this.next = next;
+        }
+    }
+
+    /**
+     * a key of the cache, linked into one of the policy queues
+     */
+    static final class Node {
+        final Object key;
+        final int hashCode;
+        volatile Value values;
+
+        // guarded by the eviction lock
+        long weight;
+        int queue;
+        Node prev;
+        Node next;
+
+        Node(Object key, int hashCode, Value values) {
+            this.key = key;
+            this.hashCode = hashCode;
+            this.values = values;
+        }
+    }
+
+    /**
+     * lossy buffer of node accesses; accesses are dropped while the buffer
+     * is full or contended
+     */
+    static final class ReadBuffer {
+        private final AtomicReferenceArray<Node> slots =
+            new AtomicReferenceArray<Node>(READ_BUFFER_SIZE);
+        private final AtomicLong writeCount = new AtomicLong();
+        private volatile long readCount;
+
+        /**
+         * @return true if the buffer is full and should be drained
+         */
+        boolean offer(Node node) {
+            long w = writeCount.get();
+            long size = w - readCount;
+            if (size >= READ_BUFFER_SIZE) {
+                return true;
+            }
+            if (writeCount.compareAndSet(w, w + 1)) {
+                slots.lazySet((int) w & READ_BUFFER_MASK, node);
+                return (size + 1 >= READ_BUFFER_SIZE);
+            }
+            return false;
+        }
+
+        /**
+         * replay the buffered accesses; eviction lock is held by the caller
+         */
+        void drain(ConcurrentTinyLfuCache cache) {
+            long r = readCount;
+            long w = writeCount.get();
+            for (; r < w; r++) {
+                int index = (int) r & READ_BUFFER_MASK;
+                Node node = slots.get(index);
+                if (node == null) {
+                    // not published yet
+                    break;
+                }
+                slots.lazySet(index, null);
+                cache.onAccess(node);
+            }
+            readCount = r;
+        }
+    }
+
+    /**
+     * count-min sketch of the access frequencies, with 4-bit counters
+     * which are halved periodically so that old accesses fade out
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final long ONE_MASK = 0x1111111111111111L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int size;
+
+        FrequencySketch(int maximum) {
+            int n = Integer.highestOneBit(Math.max(16, maximum) - 1) << 1;
+            table = new long[n];
+            tableMask = n - 1;
+            sampleSize = (int) Math.min(10L * n, Integer.MAX_VALUE);
+        }
+
+        int frequency(int hashCode) {
+            int h = spread(hashCode);
+            int start = (h & 3) << 2;
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(h, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(int hashCode) {
+            int h = spread(hashCode);
+            int start = (h & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(h, i), start + i);
+            }
+            if (added && ++size >= sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int i, int j) {
+            int offset = j << 2;
+            long mask = (0xfL << offset);
+            if ((table[i] & mask) != mask) {
+                table[i] += (1L << offset);
+                return true;
+            }
+            return false;
+        }
+
+        private void reset() {
+            int count = 0;
+            for (int i = 0; i < table.length; i++) {
+                count += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = (size >>> 1) - (count >>> 2);
+        }
+
+        private int indexOf(int h, int i) {
+            long hash = (h + SEEDS[i]) * SEEDS[i];
+            hash += (hash >>> 32);
+            return ((int) hash) & tableMask;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
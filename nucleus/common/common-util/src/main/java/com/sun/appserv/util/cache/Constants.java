@@ -76,4 +76,9 @@ public class Constants {
 
     public final static String STAT_BOUNDEDMULTILRUCACHE_CURRENT_SIZE="cache.BoundedMultiLruCache.stat_currentSize";
     public final static String STAT_BOUNDEDMULTILRUCACHE_MAX_SIZE="cache.BoundedMultiLruCache.stat_maxSize";
+
+    public final static String STAT_TINYLFUCACHE_CURRENT_SIZE="cache.ConcurrentTinyLfuCache.stat_currentSize";
+    public final static String STAT_TINYLFUCACHE_MAX_SIZE="cache.ConcurrentTinyLfuCache.stat_maxSize";
+    public final static String STAT_TINYLFUCACHE_EVICTION_COUNT="cache.ConcurrentTinyLfuCache.stat_evictionCount";
+    public final static String STAT_TINYLFUCACHE_REJECTION_COUNT="cache.ConcurrentTinyLfuCache.stat_rejectionCount";
 }
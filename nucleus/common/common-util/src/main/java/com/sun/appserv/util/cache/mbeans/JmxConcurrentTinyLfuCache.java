@@ -0,0 +1,101 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.appserv.util.cache.mbeans;
+
+import com.sun.appserv.util.cache.ConcurrentTinyLfuCache;
+import com.sun.appserv.util.cache.Constants;
+
+/**
+ * This class provides implementation for JmxConcurrentTinyLfuCache MBean
+ */
+public class JmxConcurrentTinyLfuCache extends JmxBaseCache
+                              implements JmxConcurrentTinyLfuCacheMBean {
+
+    private ConcurrentTinyLfuCache tinyLfuCache;
+
+    public JmxConcurrentTinyLfuCache(ConcurrentTinyLfuCache tinyLfuCache,
+                                     String name) {
+        super(tinyLfuCache, name);
+        this.tinyLfuCache = tinyLfuCache;
+    }
+
+    /**
+     * Returns the current size of the cache in bytes
+     */
+    public Long getCurrentSize() {
+        return (Long) tinyLfuCache.getStatByName(
+                                        Constants.STAT_TINYLFUCACHE_CURRENT_SIZE);
+    }
+
+    /**
+     * Returns the upper bound on the cache size
+     */
+    public Long getMaxSize() {
+        Object object = tinyLfuCache.getStatByName(
+                                        Constants.STAT_TINYLFUCACHE_MAX_SIZE);
+        // "default" is returned if no MaxSize was configured
+        if (object instanceof String &&
+            ((String) object).equals(Constants.STAT_DEFAULT)) {
+            return Long.valueOf(Constants.DEFAULT_MAX_CACHE_SIZE);
+        }
+        else {
+            return (Long) object;
+        }
+    }
+
+    /**
+     * Returns the number of entries evicted to keep the cache in its bounds
+     */
+    public Long getEvictionCount() {
+        return (Long) tinyLfuCache.getStatByName(
+                                        Constants.STAT_TINYLFUCACHE_EVICTION_COUNT);
+    }
+
+    /**
+     * Returns the number of new entries evicted because they were accessed
+     * less often than the entries they would have replaced
+     */
+    public Long getRejectionCount() {
+        return (Long) tinyLfuCache.getStatByName(
+                                        Constants.STAT_TINYLFUCACHE_REJECTION_COUNT);
+    }
+}
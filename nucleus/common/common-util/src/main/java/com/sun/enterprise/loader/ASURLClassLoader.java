@@ -75,6 +75,7 @@ import java.security.cert.Certificate;
 import java.security.Permissions;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -90,6 +91,10 @@ import org.glassfish.hk2.api.PreDestroy;
  * Class loader used by the ejbs of an application or stand alone module.
  *
  * This class loader also keeps cache of not found classes and resources.
+ * The jar files of the repositories are indexed by directory the first time
+ * a class or resource is looked up, so that lookups only probe the
+ * repositories that may contain the requested entry. The class loader is
+ * parallel capable.
  * </xmp>
  *
  * @author Nazrul Islam
@@ -112,12 +117,34 @@ public class ASURLClassLoader
     /** logger for this class */
     private static final Logger _logger=CULoggerInfo.getLogger();
 
+    static {
+        registerAsParallelCapable();
+    }
+
+    /** total time spent building repository indexes, in nanoseconds */
+    private static final LongAdder indexBuildTime = new LongAdder();
+
+    /** number of repository indexes built */
+    private static final LongAdder indexBuildCount = new LongAdder();
+
+    /** number of class and resource lookups served from an index */
+    private static final LongAdder indexLookupCount = new LongAdder();
+
+    /** number of repositories probed by these lookups */
+    private static final LongAdder indexProbeCount = new LongAdder();
+
     /*
        list of url entries of this class loader. Using LinkedHashSet instead of original ArrayList
        for faster search.
     */
     private final Set<URLEntry> urlSet = Collections.synchronizedSet(new LinkedHashSet<URLEntry>());
 
+    /**
+       index of the url entries, built on first lookup and reset when a url is
+       added. Must be 'volatile', it is read outside of 'synchronized'.
+    */
+    private volatile RepositoryIndex repositoryIndex;
+
     /** cache of not found resources */
     private final Map<String,String> notFoundResources   = new ConcurrentHashMap<String,String>();
 
@@ -246,6 +273,7 @@ public class ASURLClassLoader
             // clears out the tables
             // Clear all values.  Because fields are 'final' (for thread safety), cannot null them
             this.urlSet.clear();
+            this.repositoryIndex = null;
             if (this.notFoundResources != null) { this.notFoundResources.clear(); }
             if (this.notFoundClasses != null)   { this.notFoundClasses.clear();   }
         }
@@ -304,6 +332,7 @@ public class ASURLClassLoader
             if ( !urlSet.contains(entry) ) {
                 // adds the url entry to the list
                 this.urlSet.add(entry);
+                this.repositoryIndex = null;
 
                 if (entry.isJar) {
                     // checks the manifest if a jar
@@ -518,34 +547,27 @@ public class ASURLClassLoader
             return null;
         }
 
-        // This code is dubious, because it iterates over items that could
-        // be changing via another thread.   It appears that since 'urlSet' cannot shrink
-        // that the iteration at least won't go out of bounds.  And it's probably OK
-        // if more than one thread adds the same resource to 'notFoundResources'.
-        //
-        // HOWEVER, there is still a race condition from the check for 'doneCalled' above.
-        // That's OK for 'notFoundResources', but it could lead to an ArrayIndexOutOfBounds
-        // excpetion for 'urlSet', should the set be cleared while looping.
-
         // resource is in the not found list
         String nf = (String) notFoundResources.get(name);
         if (nf != null && nf.equals(name) ) {
             return null;
         }
 
-        int i = 0;
-        synchronized(this) {
-            for (final URLEntry u : this.urlSet) {
+        // the index is a snapshot of 'urlSet', it is null if done() has
+        // been called in the meantime
+        RepositoryIndex index = getRepositoryIndex();
+        if (index == null) {
+            return null;
+        }
 
-                if (!u.hasItem(name)) {
-                    i++;
-                    continue;
-                }
+        for (final URLEntry u : index.getCandidates(name)) {
 
-                final URL url = findResource0(u, name);
-                if (url != null) return url;
-                i++;
+            if (!u.hasItem(name)) {
+                continue;
             }
+
+            final URL url = findResource0(u, name);
+            if (url != null) return url;
         }
 
         // add resource to the not found list
@@ -558,11 +580,10 @@ public class ASURLClassLoader
      * Returns an enumeration of java.net.URL objects
      * representing all the resources with the given name.
      *
-     * This method is synchronized to avoid (a) race condition checking 'doneCalled',
-     * (b) changes to contents or length of 'resourcesList' and/or 'notFoundResources' while iterating
-     * over them, (c) thread visibility to all of the above.
+     * The repositories are searched through a snapshot of 'urlSet', so
+     * the method need not be synchronized.
      */
-    public synchronized Enumeration<URL>
+    public Enumeration<URL>
     findResources(String name) throws IOException {
         if( doneCalled ) {
             _logger.log(Level.WARNING, CULoggerInfo.doneAlreadyCalled,
@@ -578,8 +599,12 @@ public class ASURLClassLoader
             return (new Vector(resourcesList)).elements();
         }
 
-        for (Iterator<URLEntry> iter = this.urlSet.iterator(); iter.hasNext();) {
-            final URLEntry urlEntry = iter.next();
+        RepositoryIndex index = getRepositoryIndex();
+        if (index == null) {
+            return (new Vector(resourcesList)).elements();
+        }
+
+        for (final URLEntry urlEntry : index.getCandidates(name)) {
             final URL url = findResource0(urlEntry, name);
             if (url != null) {
                 resourcesList.add(url);
@@ -812,14 +837,16 @@ public class ASURLClassLoader
      * have to be read and reading the bytes. It does not actually define
      * the Class object.
      * <p>
-     * To preclude a race condition on checking 'doneCalled', as well as transient errors
-     * if done() is called while running, this method is 'synchronized'.
+     * The method is not 'synchronized', so that classes can be defined
+     * concurrently. It works on a snapshot of the repositories, and a lookup
+     * failing because done() was called while running ends with a
+     * ClassNotFoundException.
 
      * @param name class name in java.lang.Object format
      * @return class bytes as well protection domain information
      * @throws ClassNotFoundException
      */
-    protected synchronized ClassData findClassData(String name) throws ClassNotFoundException {
+    protected ClassData findClassData(String name) throws ClassNotFoundException {
 
         if( doneCalled ) {
             _logger.log(Level.WARNING,
@@ -836,14 +863,26 @@ public class ASURLClassLoader
         // search thru the JARs for a file of the form java/lang/Object.class
         String entryName = name.replace('.', '/') + ".class";
 
-        int i = 0;
-        for (URLEntry u : this.urlSet) {
+        RepositoryIndex index = getRepositoryIndex();
+        if (index == null) {
+            throw new ClassNotFoundException(name);
+        }
+
+        for (URLEntry u : index.getCandidates(entryName)) {
             if (!u.hasItem(entryName)) {
-                i++;
                 continue;
             }
 
-            byte[] result = loadClassData0(u, entryName);
+            byte[] result;
+            try {
+                result = loadClassData0(u, entryName);
+            } catch (IllegalStateException ise) {
+                // the jar has been closed by done()
+                if (doneCalled) {
+                    throw new ClassNotFoundException(name, ise);
+                }
+                throw ise;
+            }
             if (result != null) {
                 if (System.getSecurityManager() == null)
                     return new ClassData(result, u.pd);
@@ -856,7 +895,6 @@ public class ASURLClassLoader
                     return new ClassData(result, pdWithPemissions);
                 }
             }
-            i++;
         }
 
         // add to the not found classes list
@@ -865,6 +903,57 @@ public class ASURLClassLoader
         throw new ClassNotFoundException(name);
     }
 
+    /**
+     * Returns the index of the repositories, building it if needed.
+     *
+     * @return the index or null if done() has been called
+     */
+    private RepositoryIndex getRepositoryIndex() {
+        RepositoryIndex index = this.repositoryIndex;
+        if (index == null) {
+            // 'urlSet' only changes while holding this lock
+            synchronized (this) {
+                index = this.repositoryIndex;
+                if (index == null && !doneCalled) {
+                    long start = System.nanoTime();
+                    index = new RepositoryIndex(this.urlSet);
+                    indexBuildTime.add(System.nanoTime() - start);
+                    indexBuildCount.increment();
+                    this.repositoryIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the total time spent building repository indexes, in milliseconds
+     */
+    public static long getIndexBuildTime() {
+        return indexBuildTime.sum() / 1000000L;
+    }
+
+    /**
+     * @return the number of repository indexes built
+     */
+    public static long getIndexBuildCount() {
+        return indexBuildCount.sum();
+    }
+
+    /**
+     * @return the number of class and resource lookups served from an index
+     */
+    public static long getIndexLookupCount() {
+        return indexLookupCount.sum();
+    }
+
+    /**
+     * @return the number of repositories probed by the indexed lookups
+     */
+    public static long getIndexProbeCount() {
+        return indexProbeCount.sum();
+    }
+
     /**
      * Returns the byte array from the given input stream.
      *
@@ -1452,6 +1541,97 @@ public class ASURLClassLoader
         }
     }
 
+    /**
+     * Immutable snapshot of the url entries of a class loader. The jar
+     * entries are indexed by the directories they contain. Directory entries
+     * can get new files after the index is built, so they are always
+     * searched. The candidates of every directory are computed when the
+     * index is built, so that lookups do not allocate.
+     */
+    private static final class RepositoryIndex {
+
+        /** the directory entries, in search order */
+        private final URLEntry[] directories;
+
+        /** the entries that may contain each directory, in search order */
+        private final Map<String,URLEntry[]> candidates = new HashMap<String,URLEntry[]>();
+
+        RepositoryIndex(Collection<URLEntry> urlEntries) {
+            URLEntry[] entries = urlEntries.toArray(new URLEntry[urlEntries.size()]);
+            List<URLEntry> dirs = new ArrayList<URLEntry>();
+            Map<String,List<Integer>> jarDirectories = new HashMap<String,List<Integer>>();
+            for (int i = 0; i < entries.length; i++) {
+                URLEntry u = entries[i];
+                if (!u.isJar) {
+                    dirs.add(u);
+                    continue;
+                }
+                Set<String> names = new HashSet<String>();
+                for (Enumeration<JarEntry> e = u.zip.entries(); e.hasMoreElements();) {
+                    names.add(getDirectory(e.nextElement().getName()));
+                }
+                for (String name : names) {
+                    List<Integer> positions = jarDirectories.get(name);
+                    if (positions == null) {
+                        positions = new ArrayList<Integer>();
+                        jarDirectories.put(name, positions);
+                    }
+                    positions.add(i);
+                }
+            }
+            directories = dirs.toArray(new URLEntry[dirs.size()]);
+
+            // merge the jars holding each directory with the directory
+            // entries, keeping the search order
+            for (Map.Entry<String,List<Integer>> jars : jarDirectories.entrySet()) {
+                List<Integer> positions = jars.getValue();
+                URLEntry[] result = new URLEntry[positions.size() + directories.length];
+                int i = 0;
+                int k = 0;
+                for (int j = 0; j < entries.length; j++) {
+                    if (i < positions.size() && positions.get(i) == j) {
+                        result[k++] = entries[j];
+                        i++;
+                    } else if (!entries[j].isJar) {
+                        result[k++] = entries[j];
+                    }
+                }
+                candidates.put(jars.getKey(), result);
+            }
+        }
+
+        /**
+         * Returns the url entries that may contain the given entry, in
+         * search order. The returned array must not be modified.
+         */
+        URLEntry[] getCandidates(String name) {
+            URLEntry[] result = candidates.get(getDirectory(name));
+            if (result == null) {
+                result = directories;
+            }
+            indexLookupCount.increment();
+            indexProbeCount.add(result.length);
+            return result;
+        }
+
+        /**
+         * Returns the directory part of an entry name, ignoring leading
+         * "./" and a trailing '/'.
+         */
+        private static String getDirectory(String name) {
+            int start = 0;
+            while (name.startsWith("./", start)) {
+                start += 2;
+            }
+            int end = name.length();
+            if (end > start && name.charAt(end - 1) == '/') {
+                end--;
+            }
+            int pos = name.lastIndexOf('/', end - 1);
+            return (pos > start) ? name.substring(start, pos) : "";
+        }
+    }
+
     /**
      * This class is used as return value of findClassIntenal method  to return
      * both class bytes and protection domain.
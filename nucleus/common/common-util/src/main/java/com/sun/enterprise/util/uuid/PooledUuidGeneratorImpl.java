@@ -0,0 +1,150 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.util.uuid;
+
+import java.security.SecureRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * UuidGenerator producing the same uuids as {@link UuidGeneratorImpl}
+ * without serializing all callers on a single <code>SecureRandom</code>.
+ *
+ * The random values are drawn from a fixed number of stripes, each owning
+ * its own self-seeded <code>SecureRandom</code> and a buffer of
+ * pre-generated values. A caller picks its stripe from its thread id, so
+ * concurrent callers rarely meet on the same lock. When a stripe consumes
+ * its buffer it swaps in a spare buffer that is refilled in the background,
+ * and only fills the buffer inline when the spare is not ready yet.
+ */
+public class PooledUuidGeneratorImpl implements UuidGenerator {
+
+    private static final int BUFFER_SIZE = 512;
+
+    private static final Stripe[] stripes = initStripes();
+
+    private static final Executor refiller = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "uuid-random-refiller");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    /** Creates a new instance of PooledUuidGeneratorImpl */
+    public PooledUuidGeneratorImpl() {
+    }
+
+    public String generateUuid() {
+        return generateUuid(new Object());
+    }
+
+    public String generateUuid(Object obj) {
+        long randoms = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)].nextLong();
+        return UuidUtil.generateUuid(obj, (int) (randoms >>> 32), (int) randoms);
+    }
+
+    private static Stripe[] initStripes() {
+        int n = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        Stripe[] result = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = new Stripe();
+        }
+        return result;
+    }
+
+    private static final class Stripe implements Runnable {
+
+        private final SecureRandom random = new SecureRandom();
+        private final AtomicBoolean refilling = new AtomicBoolean();
+        private int[] buffer = new int[BUFFER_SIZE];
+        private int position = BUFFER_SIZE;
+        private volatile int[] spare;
+
+        synchronized long nextLong() {
+            if (position + 2 > buffer.length) {
+                int[] next = spare;
+                if (next != null) {
+                    spare = null;
+                    buffer = next;
+                } else {
+                    fill(buffer);
+                }
+                position = 0;
+                scheduleRefill();
+            }
+            long high = buffer[position++];
+            long low = buffer[position++] & 0xFFFFFFFFL;
+            return (high << 32) | low;
+        }
+
+        private void scheduleRefill() {
+            if (spare == null && refilling.compareAndSet(false, true)) {
+                try {
+                    refiller.execute(this);
+                } catch (RejectedExecutionException ree) {
+                    refilling.set(false);
+                }
+            }
+        }
+
+        public void run() {
+            try {
+                int[] next = new int[BUFFER_SIZE];
+                fill(next);
+                spare = next;
+            } finally {
+                refilling.set(false);
+            }
+        }
+
+        private void fill(int[] values) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextInt();
+            }
+        }
+    }
+}
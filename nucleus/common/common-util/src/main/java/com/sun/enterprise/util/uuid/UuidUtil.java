@@ -75,6 +75,13 @@ public class UuidUtil
     //this method can take in the session object
     //and insure better uniqueness guarantees
     public static String generateUuid(Object obj) {
+        int addressRandom = getNextInt();
+        return generateUuid(obj, addressRandom, getNextInt());
+    }
+
+    //builds the uuid from the given random values, which allows callers
+    //to draw them from a random source other than the shared seeder
+    static String generateUuid(Object obj, int addressRandom, int random) {
 
         //low order time bits
         long presentTime = System.currentTimeMillis();
@@ -87,9 +94,9 @@ public class UuidUtil
         sb.append(getIdentityHashCode(obj));
         //sb.append(":");
         //sb.append(_inetAddr);
-        sb.append(addRandomTo(_inetAddr));
+        sb.append(addRandomTo(_inetAddr, addressRandom));
         //sb.append(":");
-        sb.append(getNextRandomString());
+        sb.append(formatHexString(random));
         return sb.toString();
     }
 
@@ -125,10 +132,9 @@ public class UuidUtil
         }
     }
 
-    private static String addRandomTo(String hexString)
+    private static String addRandomTo(String hexString, int nextRandom)
     {
         long hexAsLong = convertToLong(hexString);
-        int nextRandom = getNextInt();
         long resultInt = hexAsLong + nextRandom;
         String result = Long.toHexString(resultInt);
         // START PWC 6425338
@@ -193,11 +199,6 @@ public class UuidUtil
         return _seeder.nextInt();
     }
 
-    private static String getNextRandomString() {
-        int nextInt = getNextInt();
-        return formatHexString(nextInt);
-    }
-
     private static long convertToLong(String hexString)
     {
         long result = 0;
@@ -0,0 +1,128 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.appserv.util.cache;
+
+import java.util.Properties;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ConcurrentTinyLfuCacheTest {
+
+    /**
+     * Entries are evicted once maxEntries is exceeded, and frequently
+     * accessed entries survive a scan of one-off keys.
+     */
+    @Test
+    public void frequentEntriesSurviveScan() throws Exception {
+        ConcurrentTinyLfuCache cache = new ConcurrentTinyLfuCache();
+        cache.init(100, null);
+
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot" + i, Integer.valueOf(i));
+        }
+        for (int n = 0; n < 10; n++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.get("hot" + i));
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            cache.put("cold" + i, Integer.valueOf(i));
+        }
+
+        assertTrue(cache.getEntryCount() <= 100);
+        int hot = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot" + i) != null) {
+                hot++;
+            }
+        }
+        assertTrue(hot >= 45);
+        assertTrue(((Long) cache.getStatByName(
+            Constants.STAT_TINYLFUCACHE_REJECTION_COUNT)).longValue() > 0);
+    }
+
+    /**
+     * The byte size of the cached values is bounded by MaxSize.
+     */
+    @Test
+    public void boundedBySize() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("MaxSize", "10KB");
+        ConcurrentTinyLfuCache cache = new ConcurrentTinyLfuCache();
+        cache.init(1000, props);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(Integer.valueOf(i), new byte[1024], 1024);
+        }
+        long size = ((Long) cache.getStatByName(
+            Constants.STAT_TINYLFUCACHE_CURRENT_SIZE)).longValue();
+        assertTrue(size <= 10 * 1024);
+        assertEquals(size, 1024L * cache.getEntryCount());
+
+        cache.clear();
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(Long.valueOf(0), cache.getStatByName(
+            Constants.STAT_TINYLFUCACHE_CURRENT_SIZE));
+    }
+
+    /**
+     * Removing one of several values cached at a key keeps the others.
+     */
+    @Test
+    public void removeOneOfMultipleValues() throws Exception {
+        ConcurrentTinyLfuCache cache = new ConcurrentTinyLfuCache();
+        cache.init(10, null);
+        String a = "a", b = "b", c = "c";
+        cache.add("k", a);
+        cache.add("k", b);
+        cache.add("k", c);
+        assertEquals(3, cache.getEntryCount());
+
+        assertSame(b, cache.remove("k", b));
+        assertEquals(2, cache.getEntryCount());
+        assertSame(c, cache.get("k"));
+
+        cache.removeAll("k");
+        assertEquals(0, cache.getEntryCount());
+        assertNull(cache.get("k"));
+    }
+}
@@ -542,6 +542,7 @@ public class ApplicationLifecycle implements Deployment, PostConstruct {
             } else {
 
                 try {
+                    long scanStartTime = System.currentTimeMillis();
                     // scan the jar and store the result in the deployment context.
                     ParsingContext parsingContext = new ParsingContext.Builder().logger(context.getLogger()).executorService(executorService).build();
                     Parser parser = new Parser(parsingContext);
@@ -561,6 +562,10 @@ public class ApplicationLifecycle implements Deployment, PostConstruct {
                     }
                     parser.awaitTermination();
                     scannerAdapter.close();
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine("Scanned types of " + context.getSource().getName() + " in " +
+                            (System.currentTimeMillis() - scanStartTime) + " ms");
+                    }
                     context.addTransientAppMetaData(Types.class.getName(), parsingContext.getTypes());
                     context.addTransientAppMetaData(Parser.class.getName(), parser);
                     return parsingContext.getTypes();
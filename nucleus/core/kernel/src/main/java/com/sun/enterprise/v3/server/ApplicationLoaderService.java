@@ -49,6 +49,12 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.inject.Inject;
@@ -148,6 +154,16 @@ public class ApplicationLoaderService implements org.glassfish.hk2.api.PreDestro
     private Map<String,Integer> appOrderInfoMap = new HashMap<String, Integer>();
     private int appOrder = 0;
 
+    /**
+     * When set to true, applications that do not depend on each other are
+     * loaded concurrently during server startup.
+     */
+    private final static String PARALLEL_LOADING_PROPERTY = "org.glassfish.parallelAppLoading";
+    private final static String MAX_LOADING_THREADS_PROPERTY = "org.glassfish.maxAppLoadingThreads";
+
+    // load time of each application loaded during startup, null afterwards
+    private volatile Map<String, Long> appLoadTimes;
+
     /**
      * Starts the application loader service.
      *
@@ -236,12 +252,23 @@ public class ApplicationLoaderService implements org.glassfish.hk2.api.PreDestro
             }
         }
 
+        List<Application> orderedApps = new ArrayList<Application>();
         Iterator iter = DeploymentOrder.getApplicationDeployments();
         while (iter.hasNext()) {
-          Application app = (Application)iter.next();
-          ApplicationRef appRef = server.getApplicationRef(app.getName());
-          processApplication(app, appRef);
+          orderedApps.add((Application)iter.next());
+        }
+
+        long loadStartTime = System.currentTimeMillis();
+        appLoadTimes = new ConcurrentHashMap<String, Long>();
+        if (Boolean.getBoolean(PARALLEL_LOADING_PROPERTY) && orderedApps.size() > 1) {
+            loadApplicationsInParallel(orderedApps);
+        } else {
+            for (Application app : orderedApps) {
+                ApplicationRef appRef = server.getApplicationRef(app.getName());
+                processApplication(app, appRef);
+            }
         }
+        logLoadTimes(System.currentTimeMillis() - loadStartTime);
 
         // does the user want us to run a particular application
         String defaultParam = env.getStartupContext().getArguments().getProperty("default");
@@ -326,6 +353,137 @@ public class ApplicationLoaderService implements org.glassfish.hk2.api.PreDestro
 
     }
 
+    /**
+     * Loads the given applications, sorted in deployment order, concurrently.
+     * An application is only loaded once the applications it depends on are
+     * loaded:
+     * <ul>
+     * <li>system applications and standalone resource adapters are loaded one
+     * at a time, as in sequential loading
+     * <li>an application waits for all applications with a lower deployment
+     * order
+     * <li>applications with the same deployment order that reference a common
+     * library are loaded in the order in which they occur in domain.xml
+     * </ul>
+     */
+    private void loadApplicationsInParallel(List<Application> orderedApps) {
+        int threads = Integer.getInteger(MAX_LOADING_THREADS_PROPERTY,
+            Runtime.getRuntime().availableProcessors());
+        ExecutorService loaders = Executors.newFixedThreadPool(Math.max(threads, 1),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "application-loader-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+        // resolve these once rather than concurrently from every loader
+        initializeRuntimeDependencies();
+
+        try {
+            List<CompletableFuture<Void>> loads = new ArrayList<CompletableFuture<Void>>();
+            List<CompletableFuture<Void>> previousGroup = Collections.emptyList();
+            List<CompletableFuture<Void>> currentGroup = new ArrayList<CompletableFuture<Void>>();
+            Map<String, CompletableFuture<Void>> libraryUsers = new HashMap<String, CompletableFuture<Void>>();
+            String currentKey = null;
+
+            for (final Application app : orderedApps) {
+                // applications with the same key may be loaded concurrently
+                String key = "user".equals(app.getObjectType()) && !isStandaloneAdapter(app) ?
+                    app.getDeploymentOrder() : null;
+                if (key == null || !key.equals(currentKey)) {
+                    if (!currentGroup.isEmpty()) {
+                        previousGroup = currentGroup;
+                    }
+                    currentGroup = new ArrayList<CompletableFuture<Void>>();
+                    libraryUsers.clear();
+                    currentKey = key;
+                }
+
+                List<CompletableFuture<Void>> dependencies = new ArrayList<CompletableFuture<Void>>(previousGroup);
+                List<String> libraries = getLibraries(app);
+                for (String library : libraries) {
+                    CompletableFuture<Void> user = libraryUsers.get(library);
+                    if (user != null) {
+                        dependencies.add(user);
+                    }
+                }
+
+                // a failed application does not prevent its dependents from loading,
+                // just as in sequential loading
+                CompletableFuture<Void> load = CompletableFuture
+                    .allOf(dependencies.toArray(new CompletableFuture[dependencies.size()]))
+                    .thenRunAsync(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                processApplication(app, server.getApplicationRef(app.getName()));
+                            } catch (RuntimeException e) {
+                                logger.log(Level.SEVERE, KernelLoggerInfo.deployException, e);
+                            }
+                        }
+                    }, loaders);
+
+                for (String library : libraries) {
+                    libraryUsers.put(library, load);
+                }
+                currentGroup.add(load);
+                loads.add(load);
+            }
+
+            CompletableFuture.allOf(loads.toArray(new CompletableFuture[loads.size()])).join();
+        } finally {
+            loaders.shutdown();
+        }
+    }
+
+    private static boolean isStandaloneAdapter(Application app) {
+        return app.isStandaloneModule() && app.containsSnifferType(ServerTags.CONNECTOR);
+    }
+
+    private static List<String> getLibraries(Application app) {
+        List<String> libraries = new ArrayList<String>();
+        String libs = app.getLibraries();
+        if (libs != null) {
+            for (String lib : libs.split(",")) {
+                lib = lib.trim();
+                if (lib.length() > 0) {
+                    libraries.add(lib);
+                }
+            }
+        }
+        return libraries;
+    }
+
+    private void logLoadTimes(long totalTime) {
+        Map<String, Long> loadTimes = appLoadTimes;
+        appLoadTimes = null;
+        if (loadTimes.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(loadTimes.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> e1, Map.Entry<String, Long> e2) {
+                return e2.getValue().compareTo(e1.getValue());
+            }
+        });
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : entries) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        logger.log(Level.INFO, KernelLoggerInfo.applicationLoadTimes, new Object[] {
+            entries.size(), totalTime, sb.toString()});
+    }
+
     private void initializeRuntimeDependencies() {
         // ApplicationLoaderService needs to be initialized after
         // ManagedBeanManagerImpl. By injecting ManagedBeanManagerImpl,
@@ -409,8 +567,13 @@ public class ApplicationLoaderService implements org.glassfish.hk2.api.PreDestro
                         if (tracing!=null) {
                             tracing.print(System.out);
                         }
+                        long loadTime = Calendar.getInstance().getTimeInMillis() - operationStartTime;
                         logger.log(Level.INFO, KernelLoggerInfo.loadingApplicationTime, new Object[] {
-                                appName, (Calendar.getInstance().getTimeInMillis() - operationStartTime)});
+                                appName, loadTime});
+                        Map<String, Long> loadTimes = appLoadTimes;
+                        if (loadTimes != null) {
+                            loadTimes.put(appName, loadTime);
+                        }
                     } else {
                         logger.log(Level.SEVERE, KernelLoggerInfo.deployFail, report.getMessage());
                     }
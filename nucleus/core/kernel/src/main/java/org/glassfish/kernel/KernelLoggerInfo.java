@@ -647,4 +647,9 @@ public class KernelLoggerInfo {
             level = "INFO")
     public static final String checkpointAutoResumeDone = LOGMSG_PREFIX + "-00096";
 
+    @LogMessageInfo(
+            message = "Loaded {0} applications in {1} ms. Load time in ms per application, slowest first: {2}",
+            level = "INFO")
+    public static final String applicationLoadTimes = LOGMSG_PREFIX + "-00097";
+
 }
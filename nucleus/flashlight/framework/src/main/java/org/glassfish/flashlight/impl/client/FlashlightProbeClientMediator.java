@@ -53,6 +53,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -61,6 +62,7 @@ import org.glassfish.external.probe.provider.annotations.ProbeListener;
 import org.glassfish.flashlight.FlashlightLoggerInfo;
 import static org.glassfish.flashlight.FlashlightLoggerInfo.*;
 import org.glassfish.flashlight.FlashlightUtils;
+import org.glassfish.flashlight.client.KeyedProbeListener;
 import org.glassfish.flashlight.client.ProbeClientInvoker;
 import org.glassfish.flashlight.client.ProbeClientInvokerFactory;
 import org.glassfish.flashlight.client.ProbeClientMediator;
@@ -150,17 +152,75 @@ public class FlashlightProbeClientMediator
             return;
         }
 
+        Map<String, ?> key = null;
+        if (listener instanceof KeyedProbeListener) {
+            key = ((KeyedProbeListener) listener).getProbeListenerKey();
+            if (key != null && key.isEmpty())
+                key = null;
+        }
+
+        // resolve every key up front so a bad key registers nothing
+        Object[] keyValues = null;
+        if (key != null) {
+            keyValues = key.values().toArray();
+            for (MethodProbe mp : methodProbePairs)
+                mp.keyIndexes = getKeyIndexes(mp.probe, key);
+        }
+
         for (MethodProbe mp : methodProbePairs) {
             FlashlightProbe probe = mp.probe;
             ProbeClientInvoker invoker = ProbeClientInvokerFactory.createInvoker(listener, mp.method, probe);
             ProbeClientMethodHandleImpl hi = new ProbeClientMethodHandleImpl(invoker.getId(), invoker, probe);
             pcms.add(hi);
 
-            if (probe.addInvoker(invoker))
+            boolean isFirst;
+            if (key == null)
+                isFirst = probe.addInvoker(invoker);
+            else
+                isFirst = probe.addInvoker(invoker, mp.keyIndexes, keyValues);
+            if (isFirst)
                 probesRequiringClassTransformation.add(probe);
         }
     }
 
+    /**
+     * Resolve the parameter names of a listener key to their positions in
+     * the probe's parameter array.
+     *
+     * @throws RuntimeException if the probe is stateful or does not declare
+     * one of the key parameters.
+     */
+    private static int[] getKeyIndexes(FlashlightProbe probe, Map<String, ?> key) {
+        if (probe.getStateful()) {
+            String errStr = localStrings.getLocalString("keyedStatefulProbe",
+                    "Keyed listeners are not supported for stateful probe: {0}",
+                    probe.getProbeDesc());
+            throw new RuntimeException(errStr);
+        }
+
+        String[] probeParamNames = probe.getProbeParamNames();
+        int[] keyIndexes = new int[key.size()];
+        int i = 0;
+
+        for (String name : key.keySet()) {
+            int index = -1;
+            for (int j = 0; j < probeParamNames.length; j++) {
+                if (probeParamNames[j].equals(name)) {
+                    index = j;
+                    break;
+                }
+            }
+            if (index < 0) {
+                String errStr = localStrings.getLocalString("keyParamNotFound",
+                        "Probe {0} has no parameter named {1} to use as a listener key",
+                        probe.getProbeDesc(), name);
+                throw new RuntimeException(errStr);
+            }
+            keyIndexes[i++] = index;
+        }
+        return keyIndexes;
+    }
+
     private Object registerDTraceListener(
             FlashlightProbeProvider propro,
             List<ProbeClientMethodHandle> pcms,
@@ -266,5 +326,6 @@ public class FlashlightProbeClientMediator
         }
         Method method;
         FlashlightProbe probe;
+        int[] keyIndexes;
     }
 }
@@ -121,7 +121,19 @@ public class FlashlightProbe
         }
     }
 
-    public synchronized boolean addInvoker(ProbeClientInvoker invoker) {
+    public boolean addInvoker(ProbeClientInvoker invoker) {
+        return addInvoker(invoker, null, null);
+    }
+
+    /**
+     * Adds an invoker that is only called when the probe parameters at
+     * <code>keyIndexes</code> are equal to <code>keyValues</code>.  Keyed
+     * invokers are looked up by their key in {@link #fireProbe} instead of
+     * being called for every event.  A null <code>keyIndexes</code> adds a
+     * plain invoker.
+     */
+    public synchronized boolean addInvoker(ProbeClientInvoker invoker,
+            int[] keyIndexes, Object[] keyValues) {
     	boolean isFirst = (invokers.isEmpty() && firstTransform);
 
         if(invokers.putIfAbsent(invoker.getId(), invoker) != null) {
@@ -132,6 +144,12 @@ public class FlashlightProbe
             if (logger.isLoggable(Level.FINE))
                 logger.fine("Adding an Invoker that does not exist: " + invoker.getId() +   " $$$$$$$$$$$$$");
         }
+        if (keyIndexes != null) {
+            invokerKeys.put(invoker.getId(), new InvokerKey(keyIndexes, keyValues));
+        }
+        else {
+            invokerKeys.remove(invoker.getId());
+        }
         if (logger.isLoggable(Level.FINE)) {
             logger.fine("Total invokers = " + invokers.size());
         }
@@ -144,6 +162,7 @@ public class FlashlightProbe
 
     public synchronized boolean removeInvoker(ProbeClientInvoker invoker) {
         ProbeClientInvoker pci = invokers.remove(invoker.getId());
+        invokerKeys.remove(invoker.getId());
 
         if(pci != null) {
             if (logger.isLoggable(Level.FINE))
@@ -180,6 +199,11 @@ public class FlashlightProbe
                 invoker.invoke(params);
             }
         } 
+
+        KeyedInvokers[] keyed = keyedInvokers;
+        for (int i = 0; i < keyed.length; i++) {
+            keyed[i].invoke(params);
+        }
     }
 
     public ArrayList<ProbeInvokeState> fireProbeBefore(Object[] params) {
@@ -362,6 +386,7 @@ public class FlashlightProbe
     private void initInvokerList() {
         Set<Map.Entry<Integer, ProbeClientInvoker>> entries = invokers.entrySet();
         List<ProbeClientInvoker> invList = new ArrayList(2);
+        List<KeyedInvokers> keyedList = new ArrayList<KeyedInvokers>(1);
         if (stateful) {
             // If this is a stateful probe, we only want invokers in the list that actually can handle stateful
             // invokes
@@ -373,11 +398,28 @@ public class FlashlightProbe
         } else {
             for (Map.Entry<Integer, ProbeClientInvoker> entry : entries) {
                 ProbeClientInvoker invoker = entry.getValue();
-                invList.add(invoker);
+                InvokerKey key = invokerKeys.get(entry.getKey());
+                if (key == null) {
+                    invList.add(invoker);
+                    continue;
+                }
+                KeyedInvokers group = null;
+                for (KeyedInvokers ki : keyedList) {
+                    if (Arrays.equals(ki.keyIndexes, key.keyIndexes)) {
+                        group = ki;
+                        break;
+                    }
+                }
+                if (group == null) {
+                    group = new KeyedInvokers(key.keyIndexes);
+                    keyedList.add(group);
+                }
+                group.add(key.keyValues, invoker);
             }
         }
 
         invokerList = invList;
+        keyedInvokers = keyedList.toArray(new KeyedInvokers[keyedList.size()]);
     }
 
     private int findStateIndex(int invokerId, ArrayList <ProbeInvokeState> states) {
@@ -394,6 +436,69 @@ public class FlashlightProbe
         return -1;
     }
     
+    private static final class InvokerKey {
+        private final int[] keyIndexes;
+        private final Object[] keyValues;
+
+        InvokerKey(int[] keyIndexes, Object[] keyValues) {
+            this.keyIndexes = keyIndexes.clone();
+            this.keyValues = keyValues.clone();
+        }
+    }
+
+    /*
+     * All the keyed invokers sharing the same key parameters.  The lookup
+     * table has one level of nested maps per key parameter; the innermost
+     * values are the invoker arrays.  It is rebuilt on every add/remove and
+     * never modified afterwards, so firing a probe just walks it without
+     * locking or allocating.
+     */
+    private static final class KeyedInvokers {
+        private final int[] keyIndexes;
+        private final Map<Object, Object> table = new HashMap<Object, Object>();
+
+        KeyedInvokers(int[] keyIndexes) {
+            this.keyIndexes = keyIndexes;
+        }
+
+        @SuppressWarnings("unchecked")
+        void add(Object[] keyValues, ProbeClientInvoker invoker) {
+            Map<Object, Object> map = table;
+            int last = keyIndexes.length - 1;
+            for (int i = 0; i < last; i++) {
+                Map<Object, Object> next = (Map<Object, Object>) map.get(keyValues[i]);
+                if (next == null) {
+                    next = new HashMap<Object, Object>();
+                    map.put(keyValues[i], next);
+                }
+                map = next;
+            }
+            ProbeClientInvoker[] current = (ProbeClientInvoker[]) map.get(keyValues[last]);
+            ProbeClientInvoker[] updated;
+            if (current == null) {
+                updated = new ProbeClientInvoker[] { invoker };
+            }
+            else {
+                updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = invoker;
+            }
+            map.put(keyValues[last], updated);
+        }
+
+        void invoke(Object[] params) {
+            Object node = table;
+            for (int i = 0; i < keyIndexes.length && node != null; i++) {
+                node = ((Map<?, ?>) node).get(params[keyIndexes[i]]);
+            }
+            if (node != null) {
+                ProbeClientInvoker[] matched = (ProbeClientInvoker[]) node;
+                for (int i = 0; i < matched.length; i++) {
+                    matched[i].invoke(params);
+                }
+            }
+        }
+    }
+
     public static final class ProbeInvokeState {
         private int invokerId;
         private Object state = null;
@@ -426,6 +531,8 @@ public class FlashlightProbe
     private boolean hidden;
     private boolean firstTransform = true;
     private ConcurrentMap<Integer, ProbeClientInvoker> invokers = new ConcurrentHashMap<Integer, ProbeClientInvoker>();
+    private ConcurrentMap<Integer, InvokerKey> invokerKeys = new ConcurrentHashMap<Integer, InvokerKey>();
+    private volatile KeyedInvokers[] keyedInvokers = new KeyedInvokers[0];
     private static final Logger logger = FlashlightLoggerInfo.getLogger();
     public final static LocalStringManagerImpl localStrings =
                             new LocalStringManagerImpl(FlashlightProbe.class);